@@ -0,0 +1,89 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ *  CheckListの要素を指定した操作のベンチマークです
+ *  <p>
+ *  作成したCheckListのすべての要素をcheck(E)でチェックし、isCheckedAll()で確かめるまでの時間を計測します。
+ *  作成だけにかかる時間はnewCheckListで計測するので、その差がチェックにかかる時間です。
+ *  要素からエントリを引くハッシュ表により、100万要素でもチェックは数十ミリ秒で終わります
+ *  checkAllWithCheckpointは、チェックの有無をファイルに保存しながら同じ操作を行います
+ *  <pre>
+ * ./gradlew jmh -PjmhInclude=CheckListBenchmark
+ *  </pre>
+ *
+ *  @since 1.3.0
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CheckListBenchmark {
+
+    // JMHが値を設定し、結果に表示するパラメータ
+    @Param({ "1000", "200000", "1000000" })
+    public int size;
+
+    private List<String> mElems;
+    private Path mCheckpoint;
+
+    @Setup
+    public void setUp() throws IOException {
+        mElems = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            mElems.add("elem" + i);
+        }
+        mCheckpoint = Files.createTempFile("check-list-benchmark", ".chk");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(mCheckpoint);
+    }
+
+    @Benchmark
+    public CheckList<String> newCheckList() {
+        return new CheckList<>(mElems);
+    }
+
+    @Benchmark
+    public boolean checkAll() {
+        CheckList<String> list = new CheckList<>(mElems);
+        for (String elem : mElems) {
+            list.check(elem);
+        }
+        return list.isCheckedAll();
+    }
+
+    @Benchmark
+    public boolean checkAllWithCheckpoint() throws IOException {
+        CheckList<String> list = CheckList.withCheckpoint(mCheckpoint, mElems);
+        list.uncheckAll();
+        for (String elem : mElems) {
+            list.check(elem);
+        }
+        return list.isCheckedAll();
+    }
+
+    @Benchmark
+    public int indexOfAll() {
+        CheckList<String> list = new CheckList<>(mElems);
+        int sum = 0;
+        for (String elem : mElems) {
+            sum += list.indexOf(elem);
+        }
+        return sum;
+    }
+}
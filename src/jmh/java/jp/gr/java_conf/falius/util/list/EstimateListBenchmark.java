@@ -0,0 +1,73 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  EstimateListの要素を指定した操作のベンチマークです
+ *  <p>
+ *  estimate(E)で要素を順に指定する時間を、indexed(Collection)で作成した場合とそうでない場合で比較します。
+ *  estimateAfterInsertは、先頭への追加でハッシュ表を作り直した直後の指定を計測します
+ *  <pre>
+ * ./gradlew jmh -PjmhInclude=EstimateListBenchmark
+ *  </pre>
+ *
+ *  @since 1.3.0
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EstimateListBenchmark {
+
+    // JMHが値を設定し、結果に表示するパラメータ
+    @Param({ "1000", "500000" })
+    public int size;
+
+    private List<String> mElems;
+    private EstimateList<String> mPlain;
+    private EstimateList<String> mIndexed;
+    private int mNext = 0;
+
+    @Setup
+    public void setUp() {
+        mElems = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            mElems.add("elem" + i);
+        }
+        mPlain = new EstimateList<>(mElems);
+        mIndexed = EstimateList.indexed(mElems);
+    }
+
+    // 指定する要素を、リスト全体に散らばるように選ぶ
+    private String nextElem() {
+        mNext = (mNext + 7919) % size;
+        return mElems.get(mNext);
+    }
+
+    @Benchmark
+    public int estimate() {
+        mPlain.estimate(nextElem());
+        return mPlain.estimatedIndex();
+    }
+
+    @Benchmark
+    public int estimateIndexed() {
+        mIndexed.estimate(nextElem());
+        return mIndexed.estimatedIndex();
+    }
+
+    @Benchmark
+    public int estimateAfterInsert() {
+        mIndexed.add(0, "inserted");
+        mIndexed.remove(0);
+        mIndexed.estimate(nextElem());
+        return mIndexed.estimatedIndex();
+    }
+}
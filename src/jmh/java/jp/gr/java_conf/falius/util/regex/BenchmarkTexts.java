@@ -0,0 +1,37 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Random;
+
+/**
+ *  ベンチマークで使うターゲット文字列を作成するクラスです
+ *  <p>
+ *  アプリケーションのログを模した行を、指定した長さになるまで並べます。
+ *  同じ長さであれば毎回同じ文字列になります
+ *
+ *  @since 1.3.0
+ */
+final class BenchmarkTexts {
+    private static final String[] LEVELS = { "INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR" };
+    private static final String[] WORDS = { "start", "retry", "connect", "timeout", "disk", "cache", "user", "request" };
+
+    private BenchmarkTexts() {
+    }
+
+    /**
+     *  ログを模した文字列を作成します
+     *  @param length 文字列の長さ
+     *  @return 改行で区切られた行からなる、指定した長さの文字列
+     */
+    static String log(int length) {
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder(length + 128);
+        while (sb.length() < length) {
+            sb.append(String.format("2017-%02d-%02d %s %s ", random.nextInt(12) + 1, random.nextInt(28) + 1,
+                    LEVELS[random.nextInt(LEVELS.length)], WORDS[random.nextInt(WORDS.length)]));
+            sb.append("'").append(WORDS[random.nextInt(WORDS.length)]).append(" green' id=")
+                    .append(random.nextInt(100000)).append('\n');
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
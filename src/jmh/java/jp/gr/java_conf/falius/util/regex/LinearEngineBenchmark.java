@@ -0,0 +1,75 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  nオプションの線形時間のエンジンと、Patternによるマッチングを比較するベンチマークです
+ *  <p>
+ *  通常のログの走査と、バックトラックが爆発する入力(^(\w+\s?)*$に対する末尾だけが合わない文字列)を計測します。
+ *  後者は、Patternでは長さが増えるごとに時間が指数関数的に増えます
+ *  <pre>
+ * ./gradlew jmh -PjmhInclude=LinearEngineBenchmark
+ *  </pre>
+ *
+ *  @since 1.3.0
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinearEngineBenchmark {
+    private static final CompiledRegex LOG = CompiledRegex.compile("/(\\d{4})-(\\d\\d)-(\\d\\d) ERROR (\\w+)/g");
+    private static final CompiledRegex LOG_N = CompiledRegex.compile("/(\\d{4})-(\\d\\d)-(\\d\\d) ERROR (\\w+)/gn");
+    private static final CompiledRegex EVIL = CompiledRegex.compile("/^(\\w+\\s?)*$/");
+    private static final CompiledRegex EVIL_N = CompiledRegex.compile("/^(\\w+\\s?)*$/n");
+
+    // JMHが値を設定し、結果に表示するパラメータ
+    @Param({ "10000", "1000000" })
+    public int length;
+
+    @Param({ "16", "24" })
+    public int evilLength;
+
+    private String mLog;
+    private String mEvil;
+
+    @Setup
+    public void setUp() {
+        if (!LOG_N.isLinear() || !EVIL_N.isLinear()) {
+            throw new IllegalStateException("linear engine is not used");
+        }
+        mLog = BenchmarkTexts.log(length);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < evilLength; i++) {
+            sb.append('a');
+        }
+        mEvil = sb.append('!').toString();
+    }
+
+    @Benchmark
+    public int logPattern() {
+        return LOG.forEachOffsets(mLog, offsets -> {
+        });
+    }
+
+    @Benchmark
+    public int logLinear() {
+        return LOG_N.forEachOffsets(mLog, offsets -> {
+        });
+    }
+
+    @Benchmark
+    public boolean evilPattern() {
+        return EVIL.test(mEvil);
+    }
+
+    @Benchmark
+    public boolean evilLinear() {
+        return EVIL_N.test(mEvil);
+    }
+}
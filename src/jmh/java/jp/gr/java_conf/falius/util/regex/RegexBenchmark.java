@@ -0,0 +1,117 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *  Regexの主なメソッドのベンチマークです
+ *  <p>
+ *  ターゲット文字列の長さ(100文字から1億文字)とgオプションの有無を組み合わせて計測します。
+ *  build.gradleの設定で-prof gcが有効になっているので、呼び出しごとの割り当て量(gc.alloc.rate.norm)も出力されます
+ *  <pre>
+ * ./gradlew jmh -PjmhInclude=RegexBenchmark
+ *  </pre>
+ *
+ *  @since 1.3.0
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegexBenchmark {
+
+    // JMHが値を設定し、結果に表示するパラメータ
+    @Param({ "100", "10000", "1000000", "100000000" })
+    public int length;
+
+    @Param({ "", "g" })
+    public String option;
+
+    private String mTarget;
+    private String mRegex; // 各行のエラーの単語を取り出す
+    private String mMissing; // どこにもマッチしない
+    private String mWhole; // ターゲット文字列全体にマッチする
+    private Regex mMatched; // マッチング済みのインスタンス
+    private Regex mReused; // renewMatchで使いまわすインスタンス
+
+    @Setup
+    public void setUp() {
+        mTarget = BenchmarkTexts.log(length);
+        mRegex = "/ERROR (\\w+) '(\\w+) green'/" + option;
+        mMissing = "/FATAL (\\w+)/" + option;
+        mWhole = "/(?s)\\d.*/" + option;
+        mMatched = Regex.newInstance(mRegex).match(mTarget);
+        mMatched.matchCount(); // すべてのマッチ箇所を探しておく
+        mReused = Regex.newInstance(mRegex).match(mTarget);
+    }
+
+    @Benchmark
+    public boolean test() {
+        return Regex.test(mTarget, mMissing);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return Regex.matches(mTarget, mWhole);
+    }
+
+    @Benchmark
+    public boolean newInstanceMatch() {
+        return Regex.newInstance(mRegex).match(mTarget).test();
+    }
+
+    @Benchmark
+    public boolean renewMatch() {
+        return mReused.match(mTarget).test();
+    }
+
+    @Benchmark
+    public void findGroup(Blackhole bh) {
+        Regex regex = Regex.newInstance(mRegex).match(mTarget);
+        int count = regex.matchCount();
+        for (int i = 0; i < count; i++) {
+            bh.consume(regex.find(i).group(1));
+        }
+    }
+
+    @Benchmark
+    public void findGroupMatched(Blackhole bh) {
+        int count = mMatched.matchCount();
+        for (int i = 0; i < count; i++) {
+            bh.consume(mMatched.find(i).group(2));
+        }
+    }
+
+    @Benchmark
+    public String replaceAll() {
+        return Regex.newInstance(mRegex).match(mTarget).replaceAll("FAILED $1");
+    }
+
+    @Benchmark
+    public void groupIterator(Blackhole bh) {
+        Regex regex = Regex.newInstance(mRegex).match(mTarget);
+        if (regex.matchCount() == 0) {
+            return;
+        }
+        for (String group : regex.groupIterator(1)) {
+            bh.consume(group);
+        }
+    }
+
+    // gオプションの有無で、各マッチ箇所か最初のマッチ箇所のグループのどちらかをイテレートする
+    @Benchmark
+    public void iterator(Blackhole bh) {
+        Regex regex = Regex.newInstance(mRegex).match(mTarget);
+        if (!regex.test()) {
+            return;
+        }
+        for (String group : regex) {
+            bh.consume(group);
+        }
+    }
+}
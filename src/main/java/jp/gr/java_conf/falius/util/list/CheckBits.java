@@ -0,0 +1,272 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * 固定長のビット列を、立っているビットの数とともに保持するクラスです。<br>
+ * CheckListが各要素のチェックの有無を保持するために使います。
+ * <p>
+ * ビットは64個ずつlongに詰めて保持し、立っているビットの数は変更のたびに数え直すので、
+ * count()は定数時間で、nextSet(int)やnextClear(int)は64ビットずつの走査で求められます。
+ * 範囲を指定した変更も、ワードごとにまとめて64ビットずつ行います。
+ * <p>
+ * attach(LongBuffer)でLongBufferを結び付けると、変更したワードだけをそのLongBufferにも書き込みます。
+ * 読み込みは常にこのクラスが保持するビット列から行います。
+ * <p>
+ * ビットはAtomicLongArrayに保持してワードごとにCASで更新し、立っているビットの数もAtomicIntegerで数えるので、
+ * 複数のスレッドから同時に異なるビットを変更しても変更は失われず、他のスレッドからはすぐに見えます。
+ * 範囲を指定した変更はワードごとに不可分ですが、範囲全体としては不可分ではありません。
+ *
+ * @author "ymiyauchi"
+ * @since 1.3.0
+ */
+final class CheckBits {
+    private static final int ADDRESS_BITS = 6; // 64 = 1 << 6
+
+    private final AtomicLongArray mWords;
+    private final int mSize;
+    private final AtomicInteger mCount = new AtomicInteger();
+    private LongBuffer mStore = null; // 変更を書き込む先。なければnull。他のスレッドと共有する前に設定する
+
+    CheckBits(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size is negative : " + size);
+        }
+        mSize = size;
+        mWords = new AtomicLongArray((size + 63) >>> ADDRESS_BITS);
+    }
+
+    /**
+     * ビットの数を返します。
+     * @return ビットの数
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * 立っているビットの数を返します。
+     * @return 立っているビットの数
+     */
+    int count() {
+        return mCount.get();
+    }
+
+    /**
+     * すべてのビットが立っているかどうかを返します。
+     * @return すべて立っていればtrue。ビットがひとつもない場合もtrue
+     */
+    boolean isAll() {
+        return mCount.get() == mSize;
+    }
+
+    /**
+     * ビットが立っているかどうかを返します。
+     * @param index ビットの位置
+     * @return 立っていればtrue
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    boolean get(int index) {
+        checkIndex(index);
+        return (mWords.get(index >>> ADDRESS_BITS) & (1L << index)) != 0;
+    }
+
+    /**
+     * ビットを立てます。
+     * @param index ビットの位置
+     * @return ビットが新たに立った場合はtrue、すでに立っていた場合はfalse
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    boolean set(int index) {
+        checkIndex(index);
+        long mask = 1L << index;
+        return (updateWord(index >>> ADDRESS_BITS, mask, true) & mask) == 0;
+    }
+
+    /**
+     * ビットを下ろします。
+     * @param index ビットの位置
+     * @return ビットが新たに下りた場合はtrue、すでに下りていた場合はfalse
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    boolean clear(int index) {
+        checkIndex(index);
+        long mask = 1L << index;
+        return (updateWord(index >>> ADDRESS_BITS, mask, false) & mask) != 0;
+    }
+
+    /**
+     * ビットを反転します。
+     * @param index ビットの位置
+     * @return 反転した後にビットが立っていればtrue
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    boolean flip(int index) {
+        checkIndex(index);
+        int wordIndex = index >>> ADDRESS_BITS;
+        long mask = 1L << index;
+        while (true) {
+            long old = mWords.get(wordIndex);
+            long word = old ^ mask;
+            if (mWords.compareAndSet(wordIndex, old, word)) {
+                boolean ret = (word & mask) != 0;
+                mCount.addAndGet(ret ? 1 : -1);
+                store(wordIndex);
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * [from, to)の範囲のビットを立てます。
+     * @param from 範囲の開始位置
+     * @param to 範囲の終了位置。この位置は含まない
+     * @throws IndexOutOfBoundsException 範囲が正しくない場合
+     */
+    void setRange(int from, int to) {
+        updateRange(from, to, true);
+    }
+
+    /**
+     * [from, to)の範囲のビットを下ろします。
+     * @param from 範囲の開始位置
+     * @param to 範囲の終了位置。この位置は含まない
+     * @throws IndexOutOfBoundsException 範囲が正しくない場合
+     */
+    void clearRange(int from, int to) {
+        updateRange(from, to, false);
+    }
+
+    /**
+     * すべてのビットを下ろします。
+     */
+    void clearAll() {
+        for (int i = 0; i < mWords.length(); i++) {
+            updateWord(i, -1L, false);
+        }
+    }
+
+    /**
+     * LongBufferからビット列を読み込み、以降の変更をそのLongBufferにも書き込むようにします。
+     * 読み込みはワード単位で行うので、ビットの数の64分の1の時間で終わります。
+     * 作成直後、他のスレッドと共有する前に呼び出してください。
+     * @param store ワードの数以上の長さを持つLongBuffer。位置はワードのインデックスで指定する
+     * @throws IllegalArgumentException storeが短い場合や、ビットの数を超えた位置にビットが立っている場合
+     */
+    void attach(LongBuffer store) {
+        if (store.limit() < mWords.length()) {
+            throw new IllegalArgumentException("store has " + store.limit() + " words, not " + mWords.length());
+        }
+        long[] words = new long[mWords.length()];
+        int count = 0;
+        for (int i = 0; i < words.length; i++) {
+            words[i] = store.get(i);
+            count += Long.bitCount(words[i]);
+        }
+        if (words.length > 0 && (words[words.length - 1] & ~(-1L >>> -mSize)) != 0) {
+            throw new IllegalArgumentException("store has bits beyond size " + mSize);
+        }
+        for (int i = 0; i < words.length; i++) {
+            mWords.set(i, words[i]);
+        }
+        mCount.set(count);
+        mStore = store;
+    }
+
+    // 複数のスレッドが同じワードを更新した場合でも最後に書き込む値が最新になるように、
+    // 書き込む値はロックを取ってから読む
+    private void store(int wordIndex) {
+        if (mStore != null) {
+            synchronized (mStore) {
+                mStore.put(wordIndex, mWords.get(wordIndex));
+            }
+        }
+    }
+
+    private void updateRange(int from, int to, boolean isSet) {
+        if (from < 0 || to > mSize || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", size=" + mSize);
+        }
+        if (from == to) {
+            return;
+        }
+        int startWord = from >>> ADDRESS_BITS;
+        int endWord = (to - 1) >>> ADDRESS_BITS;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to; // toが64の倍数であればすべてのビット
+        if (startWord == endWord) {
+            updateWord(startWord, firstMask & lastMask, isSet);
+            return;
+        }
+        updateWord(startWord, firstMask, isSet);
+        for (int i = startWord + 1; i < endWord; i++) {
+            updateWord(i, -1L, isSet);
+        }
+        updateWord(endWord, lastMask, isSet);
+    }
+
+    // ワードをCASで更新し、変化したビットの数だけ立っているビットの数を増減する。更新前のワードを返す
+    private long updateWord(int wordIndex, long mask, boolean isSet) {
+        while (true) {
+            long old = mWords.get(wordIndex);
+            long word = isSet ? old | mask : old & ~mask;
+            if (word == old) {
+                return old;
+            }
+            if (mWords.compareAndSet(wordIndex, old, word)) {
+                mCount.addAndGet(Long.bitCount(word) - Long.bitCount(old));
+                store(wordIndex);
+                return old;
+            }
+        }
+    }
+
+    /**
+     * 指定した位置以降で最初に立っているビットの位置を返します。
+     * @param from 探し始める位置
+     * @return 立っているビットの位置。なければ-1
+     */
+    int nextSet(int from) {
+        return next(from, false);
+    }
+
+    /**
+     * 指定した位置以降で最初に下りているビットの位置を返します。
+     * @param from 探し始める位置
+     * @return 下りているビットの位置。なければ-1
+     */
+    int nextClear(int from) {
+        return next(from, true);
+    }
+
+    // 下りているビットを探す場合は、各ワードを反転して立っているビットを探す
+    private int next(int from, boolean isClear) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("from < 0 : " + from);
+        }
+        if (from >= mSize) {
+            return -1;
+        }
+        int wordIndex = from >>> ADDRESS_BITS;
+        long word = (isClear ? ~mWords.get(wordIndex) : mWords.get(wordIndex)) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int ret = (wordIndex << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+                return ret < mSize ? ret : -1; // 末尾のワードのsize以降は常に下りている
+            }
+            if (++wordIndex == mWords.length()) {
+                return -1;
+            }
+            word = isClear ? ~mWords.get(wordIndex) : mWords.get(wordIndex);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mSize);
+        }
+    }
+}
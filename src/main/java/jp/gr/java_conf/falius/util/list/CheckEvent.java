@@ -0,0 +1,75 @@
+package jp.gr.java_conf.falius.util.list;
+
+/**
+ * <p>
+ * Checkableのチェックの変化を表す不変クラスです。<br>
+ * [getFromIndex(), getToIndex())の範囲の要素が、isChecked()の状態になったことを表します。
+ * <p>
+ * ひとつの要素の変化であれば、getElement()でその要素を取得できます。
+ * checkRange(int, int)などの範囲の変化では、範囲内のすべての要素が実際に変化したとは限りません。
+ * EstimateListで指定が移った場合は、それまで指定されていた要素のチェックが外れたイベントと、
+ * 新たに指定された要素がチェックされたイベントが順に通知されます。
+ *
+ * @author "ymiyauchi"
+ *
+ * @param <T> 要素の型
+ * @since 1.3.0
+ */
+public final class CheckEvent<T> {
+    private final int mFromIndex;
+    private final int mToIndex;
+    private final boolean mIsChecked;
+    private final T mElement; // ひとつの要素の変化でなければnull
+
+    CheckEvent(int fromIndex, int toIndex, boolean isChecked, T element) {
+        mFromIndex = fromIndex;
+        mToIndex = toIndex;
+        mIsChecked = isChecked;
+        mElement = element;
+    }
+
+    // ひとつの要素の変化を表すイベントを作成する
+    static <T> CheckEvent<T> of(int index, boolean isChecked, T element) {
+        return new CheckEvent<>(index, index + 1, isChecked, element);
+    }
+
+    /**
+     * 変化した範囲の開始インデックスを返します。
+     * @return 開始インデックス
+     */
+    public int getFromIndex() {
+        return mFromIndex;
+    }
+
+    /**
+     * 変化した範囲の終了インデックスを返します。
+     * @return 終了インデックス。このインデックスは範囲に含まない
+     */
+    public int getToIndex() {
+        return mToIndex;
+    }
+
+    /**
+     * 変化した後にチェックされているかどうかを返します。
+     * @return チェックされた場合はtrue、チェックが外れた場合はfalse
+     */
+    public boolean isChecked() {
+        return mIsChecked;
+    }
+
+    /**
+     * 変化した要素を返します。
+     * @return 変化した要素。範囲の変化であればnull
+     */
+    public T getElement() {
+        return mElement;
+    }
+
+    /**
+     * "[開始インデックス, 終了インデックス) checked"の形の文字列表現を返します。
+     */
+    @Override
+    public String toString() {
+        return "[" + mFromIndex + ", " + mToIndex + ") " + (mIsChecked ? "checked" : "unchecked");
+    }
+}
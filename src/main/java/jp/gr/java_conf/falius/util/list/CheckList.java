@@ -1,33 +1,79 @@
 package jp.gr.java_conf.falius.util.list;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
  * 各要素に対してチェックされたかどうかを保持するクラスです。<br>
  * 保持する要素に重複は許容されません。
  * また、要素を後から増減することはできません。
+ * <p>
+ * 要素からインデックスを引くハッシュ表を作成時に構築するので、
+ * 要素を指定したcheck(E)やisChecked(E)、contains(Object)、indexOf(Object)は要素数によらず定数時間で行えます。
+ * 重複した要素が渡された場合、要素を指定した操作は最初の要素に対して行われます
+ * <p>
+ * チェックの有無は要素ごとのオブジェクトではなく、64要素ずつlongに詰めたビット列とチェック済みの要素数で保持します。
+ * そのため、isCheckedAll()とcheckedCount()は定数時間で、nextUnchecked(int)は64要素ずつの走査で求められます。
+ * <p>
+ * withCheckpoint(Path, Iterable)で作成すると、チェックの有無をファイルに保存します。
+ * 変更はメモリにマップしたファイルの該当するワードに直接書き込まれるので、変更のたびにファイル全体を書き出すことはありません。
+ * 同じファイルと同じ要素で作成し直すと、保存されていたチェックの有無から再開できます。
+ * <pre>{@code
+ * CheckList<String> done = CheckList.withCheckpoint(Paths.get("progress.chk"), ids);
+ * for (int i = done.nextUnchecked(0); i >= 0; i = done.nextUnchecked(i + 1)) {
+ *     process(done.get(i));
+ *     done.checkByIndex(i);
+ * }
+ * }</pre>
+ * <p>
+ * CheckListenerを登録すると、チェックの有無が実際に変化した場合にのみ通知されます。
+ * checkRange(int, int)などの範囲の操作は、範囲全体でひとつのCheckEventとして通知されます。
+ * <p>
+ * ひとつの要素に対する操作は、複数のスレッドから同時に行えます。
+ * 異なるスレッドが同時にチェックしてもチェックは失われず、他のスレッドのisCheckedAll()やisChecked(E)にすぐに反映されます。
+ * checkRange(int, int)やcheckAll(Collection)などの複数の要素に対する操作は、全体としては不可分ではありません。
+ * すべての要素のチェックを待つ場合は、待機の手段を持つConcurrentCheckListを使ってください。
  *
  * @author "ymiyauchi"
  *
  * @param <E> 保持する要素の型
  * @since 1.0
- * @version 1.2.0
+ * @version 1.3.0
  */
 public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
-    private final List<Entry<E>> mEntries = new ArrayList<>();
+    private final List<E> mElems;
+    private final Map<Object, Integer> mIndex; // 要素と、その要素が最初に現れるインデックス
+    private final CheckBits mChecked;
+    private final boolean mHasDuplicates; // 重複した要素があるかどうか
+    private final CheckListeners<E> mListeners = new CheckListeners<>();
+    private CheckpointFile mCheckpoint = null; // チェックの有無を保存するファイル。なければnull
 
     public CheckList(Iterable<E> elems) {
+        int size = elems instanceof Collection ? ((Collection<?>) elems).size() : 16;
+        mElems = new ArrayList<>(size);
+        mIndex = new HashMap<>(size * 4 / 3 + 1);
         for (E elem : elems) {
-            mEntries.add(new Entry<E>(elem));
+            mIndex.putIfAbsent(elem, mElems.size());
+            mElems.add(elem);
         }
+        mChecked = new CheckBits(mElems.size());
+        mHasDuplicates = mIndex.size() < mElems.size();
     }
 
     @SuppressWarnings("unchecked")
@@ -35,13 +81,51 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
         this(Arrays.asList(elems));
     }
 
+    /**
+     * <p>
+     * チェックの有無をファイルに保存するCheckListを作成します。<br>
+     * ファイルがあれば、保存されていたチェックの有無を読み込みます。なければ新しく作成します。
+     * <p>
+     * ファイルにはチェックの有無だけを要素の順に保存するので、前回と同じ要素を同じ順序で渡してください。
+     * 以降の変更はすぐにファイルに反映され、プロセスが異常終了しても失われません。
+     * OSの停止に備える場合は、syncCheckpoint()で変更をディスクに書き込んでください。
+     * @param file チェックの有無を保存するファイル
+     * @param elems 要素
+     * @return 作成したCheckList
+     * @throws IOException ファイルを開けなかった場合や、ファイルの内容が正しくない場合
+     * @throws IllegalArgumentException ファイルが異なる要素数で作成されていた場合
+     * @since 1.3.0
+     */
+    public static <E> CheckList<E> withCheckpoint(Path file, Iterable<E> elems) throws IOException {
+        CheckList<E> ret = new CheckList<>(elems);
+        CheckpointFile checkpoint = CheckpointFile.open(file, ret.size());
+        try {
+            ret.mChecked.attach(checkpoint.words());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + " is corrupted", e);
+        }
+        ret.mCheckpoint = checkpoint;
+        return ret;
+    }
+
+    /**
+     * チェックの有無を保存しているファイルの変更を、ディスクに書き込みます。
+     * @throws IllegalStateException withCheckpoint(Path, Iterable)で作成したCheckListでない場合
+     * @since 1.3.0
+     */
+    public void syncCheckpoint() {
+        if (Objects.isNull(mCheckpoint)) {
+            throw new IllegalStateException("no checkpoint file");
+        }
+        mCheckpoint.force();
+    }
+
     /**
      * @throws IllegalArgumentException 存在しない要素が渡された場合
      */
     @Override
     public void check(E e) {
-        Entry<E> entry = find(e);
-        entry.mIsChecked = true;
+        checkByIndex(find(e));
     }
 
     /**
@@ -51,8 +135,143 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      * @throws IndexOutOfBoundsException indexが範囲外の場合
      */
     public void checkByIndex(int index) {
-        Entry<E> entry = mEntries.get(index);
-        entry.mIsChecked = true;
+        if (mChecked.set(index)) {
+            fireChanged(index, true);
+        }
+    }
+
+    /**
+     * [from, to)の範囲のインデックスの要素にチェックを付けます。
+     * 64要素ずつまとめて変更します。
+     * @param from 範囲の開始インデックス
+     * @param to 範囲の終了インデックス。このインデックスは含まない
+     * @throws IndexOutOfBoundsException 範囲が正しくない場合
+     * @since 1.3.0
+     */
+    public void checkRange(int from, int to) {
+        int count = mChecked.count();
+        mChecked.setRange(from, to);
+        if (count != mChecked.count()) {
+            fireRange(from, to, true);
+        }
+    }
+
+    /**
+     * 渡されたすべての要素にチェックを付けます。
+     * 先にすべての要素のインデックスを求めるので、存在しない要素が含まれていた場合はどの要素もチェックされません。
+     * 新たにチェックされた要素は、ひとつのリストにまとめてリスナーに通知されます。
+     * @param elems チェックする要素
+     * @throws IllegalArgumentException 存在しない要素が含まれていた場合
+     * @since 1.3.0
+     */
+    public void checkAll(Collection<? extends E> elems) {
+        int[] indexes = new int[elems.size()];
+        int i = 0;
+        for (E elem : elems) {
+            indexes[i++] = find(elem);
+        }
+        List<CheckEvent<E>> events = new ArrayList<>();
+        for (int index : indexes) {
+            if (mChecked.set(index) && !mListeners.isEmpty()) {
+                events.add(CheckEvent.of(index, true, mElems.get(index)));
+            }
+        }
+        mListeners.fire(events);
+    }
+
+    /**
+     * 要素のチェックを外します。
+     * @param e 要素
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     * @since 1.3.0
+     */
+    public void uncheck(E e) {
+        uncheckByIndex(find(e));
+    }
+
+    /**
+     * 追加された順序であるインデックスで要素を指定してチェックを外します。
+     * @param index 要素のインデックス
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     * @since 1.3.0
+     */
+    public void uncheckByIndex(int index) {
+        if (mChecked.clear(index)) {
+            fireChanged(index, false);
+        }
+    }
+
+    /**
+     * [from, to)の範囲のインデックスの要素のチェックを外します。
+     * 64要素ずつまとめて変更します。
+     * @param from 範囲の開始インデックス
+     * @param to 範囲の終了インデックス。このインデックスは含まない
+     * @throws IndexOutOfBoundsException 範囲が正しくない場合
+     * @since 1.3.0
+     */
+    public void uncheckRange(int from, int to) {
+        int count = mChecked.count();
+        mChecked.clearRange(from, to);
+        if (count != mChecked.count()) {
+            fireRange(from, to, false);
+        }
+    }
+
+    /**
+     * すべての要素のチェックを外します。
+     * @since 1.3.0
+     */
+    public void uncheckAll() {
+        int count = mChecked.count();
+        mChecked.clearAll();
+        if (count != 0) {
+            fireRange(0, mElems.size(), false);
+        }
+    }
+
+    /**
+     * 要素のチェックの有無を反転します。
+     * @param e 要素
+     * @return 反転した後にチェックが付いていればtrue
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     * @since 1.3.0
+     */
+    public boolean toggle(E e) {
+        int index = find(e);
+        boolean ret = mChecked.flip(index);
+        fireChanged(index, ret);
+        return ret;
+    }
+
+    /**
+     * {@inheritDoc}
+     * subList(int, int)で作成したリストには、このリストのリスナーは引き継がれません。
+     * @since 1.3.0
+     */
+    @Override
+    public void addCheckListener(CheckListener<? super E> listener, Executor executor, long window, TimeUnit unit) {
+        mListeners.add(listener, executor, window, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public boolean removeCheckListener(CheckListener<?> listener) {
+        return mListeners.remove(listener);
+    }
+
+    private void fireChanged(int index, boolean isChecked) {
+        if (!mListeners.isEmpty()) {
+            mListeners.fire(CheckEvent.of(index, isChecked, mElems.get(index)));
+        }
+    }
+
+    private void fireRange(int from, int to, boolean isChecked) {
+        if (!mListeners.isEmpty()) {
+            mListeners.fire(new CheckEvent<E>(from, to, isChecked, null));
+        }
     }
 
     /**
@@ -61,8 +280,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      * @return
      */
     public boolean isChecked(E e) {
-        Entry<E> entry = find(e);
-        return entry.mIsChecked;
+        return mChecked.get(find(e));
     }
 
     /**
@@ -70,37 +288,59 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      * @return
      */
     public boolean isCheckedAll() {
-        for (Entry<E> entry : mEntries) {
-            if (!entry.mIsChecked) {
-                return false;
-            }
-        }
-        return true;
+        return mChecked.isAll();
+    }
+
+    /**
+     * チェックされた要素の数を返します。
+     * @return チェックされた要素の数
+     * @since 1.3.0
+     */
+    public int checkedCount() {
+        return mChecked.count();
+    }
+
+    /**
+     * 指定したインデックス以降で、最初にチェックされていない要素のインデックスを返します。
+     * <pre>{@code
+     * for (int i = list.nextUnchecked(0); i >= 0; i = list.nextUnchecked(i + 1)) {
+     *     System.out.println(list.get(i));
+     * }
+     * }</pre>
+     * @param from 探し始めるインデックス
+     * @return チェックされていない要素のインデックス。なければ-1
+     * @throws IndexOutOfBoundsException fromが負の場合
+     * @since 1.3.0
+     */
+    public int nextUnchecked(int from) {
+        return mChecked.nextClear(from);
     }
 
     /**
      * チェックされた要素の集合を返します。
+     * 返される集合は変更できないビューであり、その後のチェックが反映されます。
+     * ただし、重複した要素がある場合は、呼び出した時点の要素をコピーした集合を返します。
      * @return
      */
     public Set<E> checkedSet() {
-        Set<E> ret = new HashSet<>();
-        for (Entry<E> entry : mEntries) {
-            if (entry.mIsChecked) {
-                ret.add(entry.mElem);
-            }
-        }
-        return ret;
+        return mHasDuplicates ? copySet(true) : new CheckedView(true);
     }
 
     /**
      * チェックされていない要素の集合を返します。
+     * 返される集合は変更できないビューであり、その後のチェックが反映されます。
+     * ただし、重複した要素がある場合は、呼び出した時点の要素をコピーした集合を返します。
      * @return
      */
     public Set<E> nonCheckedSet() {
+        return mHasDuplicates ? copySet(false) : new CheckedView(false);
+    }
+
+    private Set<E> copySet(boolean isChecked) {
         Set<E> ret = new HashSet<>();
-        for (Entry<E> entry : mEntries) {
-            if (!entry.mIsChecked) {
-                ret.add(entry.mElem);
+        for (int i = 0; i < mElems.size(); i++) {
+            if (mChecked.get(i) == isChecked) {
+                ret.add(mElems.get(i));
             }
         }
         return ret;
@@ -112,7 +352,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public E get(int index) {
-        return mEntries.get(index).mElem;
+        return mElems.get(index);
     }
 
     /**
@@ -120,7 +360,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public int size() {
-        return mEntries.size();
+        return mElems.size();
     }
 
     @Override
@@ -128,13 +368,12 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
         return new EntryIterator<E>(this);
     }
 
-    private Entry<E> find(Object e) {
-        for (Entry<E> entry : mEntries) {
-            if (entry.mElem.equals(e)) {
-                return entry;
-            }
+    private int find(Object e) {
+        Integer index = mIndex.get(e);
+        if (Objects.isNull(index)) {
+            throw new IllegalArgumentException(String.format("%s is not in %s", e, mElems));
         }
-        throw new IllegalArgumentException(String.format("%s is not in %s", e, mEntries));
+        return index;
     }
 
     private static class EntryIterator<E> implements Iterator<E> {
@@ -147,7 +386,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
 
         @Override
         public boolean hasNext() {
-            return nextIndex < mOuter.mEntries.size();
+            return nextIndex < mOuter.mElems.size();
         }
 
         @Override
@@ -156,16 +395,50 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
         }
     }
 
-    private static class Entry<E> {
-        private final E mElem;
-        private volatile boolean mIsChecked = false;
+    // チェックの有無が一致する要素の集合を、ビット列から直接読むビュー
+    // 重複した要素がない場合にのみ使う
+    private class CheckedView extends AbstractSet<E> {
+        private final boolean mIsChecked;
+
+        private CheckedView(boolean isChecked) {
+            mIsChecked = isChecked;
+        }
+
+        private int nextIndex(int from) {
+            return mIsChecked ? mChecked.nextSet(from) : mChecked.nextClear(from);
+        }
 
-        private Entry(E elem) {
-            mElem = elem;
+        @Override
+        public int size() {
+            return mIsChecked ? mChecked.count() : mChecked.size() - mChecked.count();
         }
 
-        public String toString() {
-            return mElem.toString();
+        @Override
+        public boolean contains(Object o) {
+            Integer index = mIndex.get(o);
+            return Objects.nonNull(index) && mChecked.get(index) == mIsChecked;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int mNext = nextIndex(0);
+
+                @Override
+                public boolean hasNext() {
+                    return mNext >= 0;
+                }
+
+                @Override
+                public E next() {
+                    if (mNext < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    E ret = mElems.get(mNext);
+                    mNext = nextIndex(mNext + 1);
+                    return ret;
+                }
+            };
         }
     }
 
@@ -174,7 +447,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public boolean isEmpty() {
-        return mEntries.isEmpty();
+        return mElems.isEmpty();
     }
 
     /**
@@ -182,12 +455,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public boolean contains(Object o) {
-        for (Entry<E> entry : mEntries) {
-            if (entry.mElem.equals(o)) {
-                return true;
-            }
-        }
-        return false;
+        return mIndex.containsKey(o);
     }
 
     /**
@@ -195,12 +463,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public Object[] toArray() {
-        int size = mEntries.size();
-        Object[] array = new Object[size];
-        for (int i = 0; i < size; i++) {
-            array[i] = mEntries.get(i).mElem;
-        }
-        return array;
+        return mElems.toArray();
     }
 
     /**
@@ -320,12 +583,8 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public int indexOf(Object o) {
-        for (int i = 0; i < mEntries.size(); i++) {
-            if (mEntries.get(i).mElem.equals(o)) {
-                return i;
-            }
-        }
-        return -1;
+        Integer index = mIndex.get(o);
+        return Objects.isNull(index) ? -1 : index;
     }
 
     /**
@@ -333,12 +592,7 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
      */
     @Override
     public int lastIndexOf(Object o) {
-        for (int i = mEntries.size() - 1; i >= 0; i--) {
-            if (mEntries.get(i).mElem.equals(o)) {
-                return i;
-            }
-        }
-        return -1;
+        return mElems.lastIndexOf(o);
     }
 
     /**
@@ -366,10 +620,8 @@ public class CheckList<E> implements Checkable<E>, Iterable<E>, List<E> {
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public List<E> subList(int fromIndex, int toIndex) {
-        List<Entry<E>> subEntries = mEntries.subList(fromIndex, toIndex);
-        return new CheckList<E>((E[]) subEntries.toArray());
+        return new CheckList<E>(mElems.subList(fromIndex, toIndex));
     }
 }
@@ -0,0 +1,25 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Checkableのチェックの変化を受け取るリスナーです。<br>
+ * Checkable.addCheckListenerで登録します。
+ * 変化はひとつ以上のCheckEventのリストとしてまとめて渡されます。
+ * 集約する時間を指定して登録した場合は、その間に起きた変化が発生した順にひとつのリストにまとめられます。
+ *
+ * @author "ymiyauchi"
+ *
+ * @param <T> 要素の型
+ * @since 1.3.0
+ */
+@FunctionalInterface
+public interface CheckListener<T> {
+
+    /**
+     * チェックの変化を受け取ります。
+     * @param events 発生した順に並んだ、変更できない変化のリスト。空になることはない
+     */
+    void onChange(List<CheckEvent<T>> events);
+}
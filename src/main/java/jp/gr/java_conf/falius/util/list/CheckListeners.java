@@ -0,0 +1,153 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Checkableの実装クラスが、登録されたCheckListenerとその配信方法を保持するクラスです。<br>
+ * リスナーごとに、呼び出しに使うExecutorと変化を集約する時間を保持します。
+ * <p>
+ * 集約する時間が0であれば、変化のたびにExecutorでリスナーを呼び出します。
+ * そうでなければ、最初の変化から集約する時間が経つまでの変化をためておき、
+ * 共有のタイマースレッドからまとめてExecutorに渡します。
+ * <p>
+ * 複数のスレッドから同時にfireを呼び出すことができます。
+ * 呼び出し側はisEmpty()で確認し、リスナーがなければイベントを作成しないでください。
+ *
+ * @author "ymiyauchi"
+ *
+ * @param <T> 要素の型
+ * @since 1.3.0
+ */
+final class CheckListeners<T> {
+    private final List<Registration<T>> mRegistrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * リスナーを登録します。
+     * @param listener 登録するリスナー
+     * @param executor リスナーを呼び出すExecutor
+     * @param window 変化を集約する時間。0であれば集約しない
+     * @param unit windowの単位
+     * @throws NullPointerException nullが渡された場合
+     * @throws IllegalArgumentException windowが負の場合
+     */
+    @SuppressWarnings("unchecked")
+    void add(CheckListener<? super T> listener, Executor executor, long window, TimeUnit unit) {
+        Objects.requireNonNull(listener, "listener is null");
+        Objects.requireNonNull(executor, "executor is null");
+        Objects.requireNonNull(unit, "unit is null");
+        if (window < 0) {
+            throw new IllegalArgumentException("window is negative : " + window);
+        }
+        // リスナーはイベントから要素を読むだけなので、要素の型をTとして扱っても問題ない
+        mRegistrations.add(new Registration<>((CheckListener<T>) listener, executor, unit.toNanos(window)));
+    }
+
+    /**
+     * リスナーの登録を解除します。集約中でまだ渡していない変化は破棄されます。
+     * @param listener 解除するリスナー
+     * @return 登録されていた場合はtrue
+     */
+    boolean remove(CheckListener<?> listener) {
+        boolean ret = false;
+        for (Registration<T> registration : mRegistrations) {
+            if (registration.mListener == listener && mRegistrations.remove(registration)) {
+                registration.mIsRemoved = true;
+                ret = true;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 登録されているリスナーがないかどうかを返します。
+     * @return リスナーがなければtrue
+     */
+    boolean isEmpty() {
+        return mRegistrations.isEmpty();
+    }
+
+    /**
+     * ひとつの変化を各リスナーに渡します。
+     * @param event 変化
+     */
+    void fire(CheckEvent<T> event) {
+        fire(Collections.singletonList(event));
+    }
+
+    /**
+     * 変化を各リスナーに渡します。
+     * @param events 発生した順に並んだ変化
+     */
+    void fire(List<CheckEvent<T>> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Registration<T> registration : mRegistrations) {
+            registration.accept(events);
+        }
+    }
+
+    private static final class Registration<T> {
+        private final CheckListener<T> mListener;
+        private final Executor mExecutor;
+        private final long mWindowNanos;
+        private volatile boolean mIsRemoved = false;
+        private List<CheckEvent<T>> mPending = null; // 集約中の変化。thisで同期する
+
+        private Registration(CheckListener<T> listener, Executor executor, long windowNanos) {
+            mListener = listener;
+            mExecutor = executor;
+            mWindowNanos = windowNanos;
+        }
+
+        private void accept(List<CheckEvent<T>> events) {
+            if (mWindowNanos == 0) {
+                deliver(new ArrayList<>(events));
+                return;
+            }
+            synchronized (this) {
+                if (Objects.nonNull(mPending)) {
+                    mPending.addAll(events);
+                    return;
+                }
+                mPending = new ArrayList<>(events);
+            }
+            // 最初の変化から集約する時間が経った時点で、それまでにたまった変化をまとめて渡す
+            Timer.INSTANCE.schedule(this::flush, mWindowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void flush() {
+            List<CheckEvent<T>> events;
+            synchronized (this) {
+                events = mPending;
+                mPending = null;
+            }
+            if (!mIsRemoved) {
+                deliver(events);
+            }
+        }
+
+        private void deliver(List<CheckEvent<T>> events) {
+            List<CheckEvent<T>> unmodifiable = Collections.unmodifiableList(events);
+            mExecutor.execute(() -> mListener.onChange(unmodifiable));
+        }
+    }
+
+    // 集約した変化を渡すためのタイマー。集約するリスナーが初めて変化を受け取るまで作成しない
+    private static final class Timer {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "check-listener-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
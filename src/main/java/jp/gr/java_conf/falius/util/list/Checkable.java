@@ -1,14 +1,76 @@
 package jp.gr.java_conf.falius.util.list;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 /**
+ * <p>
+ * 要素をチェックできるクラスが実装するインターフェースです。
+ * <p>
+ * CheckListenerを登録すると、チェックの変化を受け取ることができます。
+ * 変化を調べるためにisCheckedAll()などを繰り返し呼び出す必要はありません。
+ * リスナーが登録されていなければ、変化を通知するための負荷はかかりません。
  *
  * @author "ymiyauchi"
  *
  * @param <T> 要素の型
  * @since 1.0
- * @version 1.2.0
+ * @version 1.3.0
  */
 public interface Checkable<T> {
 
     void check(T e);
+
+    /**
+     * チェックの変化を受け取るリスナーを登録します。
+     * リスナーは変化させたスレッドで、変化のたびに呼び出されます。
+     * @param listener 登録するリスナー
+     * @throws NullPointerException nullが渡された場合
+     * @throws UnsupportedOperationException リスナーに対応していない場合
+     * @since 1.3.0
+     */
+    default void addCheckListener(CheckListener<? super T> listener) {
+        addCheckListener(listener, Runnable::run);
+    }
+
+    /**
+     * チェックの変化を受け取るリスナーを登録します。
+     * リスナーは変化のたびに、指定したExecutorで呼び出されます。
+     * 変化させたスレッドがリスナーの処理を待たないようにするには、別スレッドで実行するExecutorを渡してください。
+     * @param listener 登録するリスナー
+     * @param executor リスナーを呼び出すExecutor
+     * @throws NullPointerException nullが渡された場合
+     * @throws UnsupportedOperationException リスナーに対応していない場合
+     * @since 1.3.0
+     */
+    default void addCheckListener(CheckListener<? super T> listener, Executor executor) {
+        addCheckListener(listener, executor, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * チェックの変化を集約して受け取るリスナーを登録します。
+     * 最初の変化から指定した時間の間に起きた変化は、発生した順にひとつのリストにまとめられ、
+     * 指定したExecutorでリスナーに渡されます。時間に0を指定すると集約しません。
+     * @param listener 登録するリスナー
+     * @param executor リスナーを呼び出すExecutor
+     * @param window 変化を集約する時間
+     * @param unit windowの単位
+     * @throws NullPointerException nullが渡された場合
+     * @throws IllegalArgumentException windowが負の場合
+     * @throws UnsupportedOperationException リスナーに対応していない場合
+     * @since 1.3.0
+     */
+    default void addCheckListener(CheckListener<? super T> listener, Executor executor, long window, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * リスナーの登録を解除します。集約中でまだ渡していない変化は破棄されます。
+     * @param listener 解除するリスナー
+     * @return 登録されていた場合はtrue
+     * @since 1.3.0
+     */
+    default boolean removeCheckListener(CheckListener<?> listener) {
+        return false;
+    }
 }
@@ -0,0 +1,96 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * CheckListのチェックの有無を保存するファイルを、メモリにマップして扱うクラスです。
+ * <p>
+ * ファイルは16バイトのヘッダと、それに続く64要素ずつのビット列からなります。
+ * <pre>
+ * 0  int  マジックナンバー "CHKL"
+ * 4  int  フォーマットのバージョン
+ * 8  int  要素数
+ * 12 int  予約
+ * 16 long[(要素数 + 63) / 64]  CheckBitsと同じ並びのビット列
+ * </pre>
+ * 値はリトルエンディアンで書き込みます。
+ * <p>
+ * ファイルはマップした後すぐに閉じます。マップはこのインスタンスが参照されている間有効で、
+ * ビット列への書き込みはプロセスが異常終了してもOSのページキャッシュに残ります。
+ * OSの停止に備えるにはforce()を呼び出してください。
+ *
+ * @author "ymiyauchi"
+ * @since 1.3.0
+ */
+final class CheckpointFile {
+    private static final int MAGIC = 0x43484b4c; // "CHKL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final MappedByteBuffer mBuffer;
+    private final LongBuffer mWords;
+
+    private CheckpointFile(MappedByteBuffer buffer) {
+        mBuffer = buffer;
+        buffer.position(HEADER_SIZE);
+        mWords = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    /**
+     * ファイルを開いてメモリにマップします。ファイルがなければ、すべてのビットが下りた状態で作成します。
+     * @param path ファイルのパス
+     * @param size 要素数
+     * @return マップしたファイル
+     * @throws IOException ファイルを開けなかった場合や、ファイルの内容が正しくない場合
+     * @throws IllegalArgumentException ファイルが異なる要素数で作成されていた場合
+     */
+    static CheckpointFile open(Path path, int size) throws IOException {
+        long length = HEADER_SIZE + (long) ((size + 63) >>> 6) * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            if (fileSize != 0 && fileSize < HEADER_SIZE) {
+                throw new IOException(path + " is not a checkpoint file");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize == 0 ? length : fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (fileSize == 0) {
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, size);
+                return new CheckpointFile(buffer);
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a checkpoint file");
+            }
+            if (buffer.getInt(8) != size) {
+                throw new IllegalArgumentException(
+                        String.format("%s was created for %d elements, not %d", path, buffer.getInt(8), size));
+            }
+            if (fileSize != length) {
+                throw new IOException(path + " is truncated or corrupted");
+            }
+            return new CheckpointFile(buffer);
+        }
+    }
+
+    /**
+     * ヘッダに続くビット列を返します。位置は各ワードのインデックスで指定します。
+     * @return ビット列
+     */
+    LongBuffer words() {
+        return mWords;
+    }
+
+    /**
+     * 変更されたページをディスクに書き込みます。
+     */
+    void force() {
+        mBuffer.force();
+    }
+}
@@ -0,0 +1,299 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * 複数のスレッドから同時にチェックできるCheckListです。<br>
+ * ワーカースレッドが終えた要素をチェックし、別のスレッドがすべての要素のチェックを待つ、
+ * 作業の完了の追跡に利用してください。
+ * <pre>{@code
+ * ConcurrentCheckList<Task> done = new ConcurrentCheckList<>(tasks);
+ * for (Task task : tasks) {
+ *     executor.execute(() -> {
+ *         task.run();
+ *         done.check(task);
+ *     });
+ * }
+ * done.awaitAllChecked();
+ * }</pre>
+ * <p>
+ * チェックの有無はAtomicLongArrayに64要素ずつ詰めたビット列で保持し、CASで更新するのでロックを取りません。
+ * チェック済みの要素数はLongAdderで数えるので、多くのスレッドが同時にチェックしても競合しにくくなっています。
+ * 要素からインデックスを引くハッシュ表は作成時に構築し、以降は変更しません。
+ * <p>
+ * 最後の要素がチェックされると、awaitAllChecked()で待っているスレッドが再開し、allChecked()が返すCompletableFutureが完了します。
+ * 一度付けたチェックを外すことはできません。
+ * <p>
+ * CheckListenerは、要素を新たにチェックしたスレッドで通知されます。
+ * チェックするワーカースレッドを待たせないように、集約する時間や別スレッドで実行するExecutorを指定して登録してください。
+ *
+ * @author "ymiyauchi"
+ *
+ * @param <E> 保持する要素の型
+ * @since 1.3.0
+ */
+public class ConcurrentCheckList<E> implements Checkable<E>, Iterable<E> {
+    private static final int ADDRESS_BITS = 6; // 64 = 1 << 6
+
+    private final List<E> mElems;
+    private final Map<Object, Integer> mIndex; // 要素と、その要素が最初に現れるインデックス
+    private final AtomicLongArray mWords;
+    private final LongAdder mCount = new LongAdder();
+    private final CountDownLatch mAllCheckedLatch = new CountDownLatch(1);
+    private final CompletableFuture<Void> mAllChecked = new CompletableFuture<>();
+    private final CheckListeners<E> mListeners = new CheckListeners<>();
+
+    public ConcurrentCheckList(Iterable<E> elems) {
+        int size = elems instanceof Collection ? ((Collection<?>) elems).size() : 16;
+        List<E> list = new ArrayList<>(size);
+        Map<Object, Integer> index = new HashMap<>(size * 4 / 3 + 1);
+        for (E elem : elems) {
+            index.putIfAbsent(elem, list.size());
+            list.add(elem);
+        }
+        mElems = Collections.unmodifiableList(list);
+        mIndex = index;
+        mWords = new AtomicLongArray((list.size() + 63) >>> ADDRESS_BITS);
+        if (list.isEmpty()) {
+            onAllChecked();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentCheckList(E... elems) {
+        this(Arrays.asList(elems));
+    }
+
+    /**
+     * 要素にチェックを付けます。すでにチェックされていれば何もしません。
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     */
+    @Override
+    public void check(E e) {
+        checkByIndex(find(e));
+    }
+
+    /**
+     * 追加された順序であるインデックスで要素を指定してチェックをつけます。
+     * @param index 要素のインデックス
+     * @return 新たにチェックを付けた場合はtrue、すでにチェックされていた場合はfalse
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    public boolean checkByIndex(int index) {
+        checkIndex(index);
+        int wordIndex = index >>> ADDRESS_BITS;
+        long mask = 1L << index;
+        while (true) {
+            long word = mWords.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (mWords.compareAndSet(wordIndex, word, word | mask)) {
+                break;
+            }
+        }
+        mCount.increment();
+        if (!mListeners.isEmpty()) {
+            mListeners.fire(CheckEvent.of(index, true, mElems.get(index)));
+        }
+        // 最後の要素をチェックしたスレッドは、自身の加算の後で必ず要素数と等しい合計を読む
+        if (mCount.sum() == mElems.size()) {
+            onAllChecked();
+        }
+        return true;
+    }
+
+    // isCheckedAll()はFutureを読むので、Futureを完了させた時点で完了を表す三つの手段がそろう
+    // Futureに続く処理はcomplete()の中で実行されるが、その時点でisCheckedAll()はすでにtrueを返す
+    // awaitAllChecked()から戻った時点でallChecked()の結果も完了しているように、ラッチは後から下ろす
+    private void onAllChecked() {
+        mAllChecked.complete(null);
+        mAllCheckedLatch.countDown();
+    }
+
+    /**
+     * 指定した要素にチェックが付いているかどうかを返します。
+     * @param e 要素
+     * @return チェックが付いていればtrue
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     */
+    public boolean isChecked(E e) {
+        return isCheckedByIndex(find(e));
+    }
+
+    /**
+     * 指定したインデックスの要素にチェックが付いているかどうかを返します。
+     * @param index 要素のインデックス
+     * @return チェックが付いていればtrue
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    public boolean isCheckedByIndex(int index) {
+        checkIndex(index);
+        return (mWords.get(index >>> ADDRESS_BITS) & (1L << index)) != 0;
+    }
+
+    /**
+     * すべての要素がチェックされたかどうかを返します。
+     * @return すべての要素がチェックされていればtrue
+     */
+    public boolean isCheckedAll() {
+        return mAllChecked.isDone();
+    }
+
+    /**
+     * チェックされた要素の数を返します。
+     * 他のスレッドが同時にチェックしている場合、その一部が反映されていないことがあります。
+     * @return チェックされた要素の数
+     */
+    public int checkedCount() {
+        return mCount.intValue();
+    }
+
+    /**
+     * 指定したインデックス以降で、最初にチェックされていない要素のインデックスを返します。
+     * @param from 探し始めるインデックス
+     * @return チェックされていない要素のインデックス。なければ-1
+     * @throws IndexOutOfBoundsException fromが負の場合
+     */
+    public int nextUnchecked(int from) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("from < 0 : " + from);
+        }
+        int size = mElems.size();
+        if (from >= size) {
+            return -1;
+        }
+        int wordIndex = from >>> ADDRESS_BITS;
+        long word = ~mWords.get(wordIndex) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int ret = (wordIndex << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+                return ret < size ? ret : -1;
+            }
+            if (++wordIndex == mWords.length()) {
+                return -1;
+            }
+            word = ~mWords.get(wordIndex);
+        }
+    }
+
+    /**
+     * すべての要素がチェックされるまで待ちます。
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    public void awaitAllChecked() throws InterruptedException {
+        mAllCheckedLatch.await();
+    }
+
+    /**
+     * すべての要素がチェックされるまで、指定した時間を上限に待ちます。
+     * @param timeout 待機する時間の上限
+     * @param unit timeoutの単位
+     * @return すべての要素がチェックされた場合はtrue、時間内にチェックされなかった場合はfalse
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    public boolean awaitAllChecked(long timeout, TimeUnit unit) throws InterruptedException {
+        return mAllCheckedLatch.await(timeout, unit);
+    }
+
+    /**
+     * すべての要素がチェックされた時点で完了するCompletableFutureを返します。
+     * 返されたCompletableFutureを完了させたり取り消したりしても、このリストには影響しません。
+     * @return すべての要素がチェックされると完了する新しいCompletableFuture
+     */
+    public CompletableFuture<Void> allChecked() {
+        return mAllChecked.thenApply(v -> v);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public void addCheckListener(CheckListener<? super E> listener, Executor executor, long window, TimeUnit unit) {
+        mListeners.add(listener, executor, window, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public boolean removeCheckListener(CheckListener<?> listener) {
+        return mListeners.remove(listener);
+    }
+
+    /**
+     * 指定されたインデックスの要素を返します。
+     * @param index 要素のインデックス
+     * @return 要素
+     * @throws IndexOutOfBoundsException インデックスが範囲外の場合
+     */
+    public E get(int index) {
+        return mElems.get(index);
+    }
+
+    /**
+     * 要素数を返します。
+     * @return 要素数
+     */
+    public int size() {
+        return mElems.size();
+    }
+
+    /**
+     * 要素を保持しているかどうかを返します。
+     * @param o 要素
+     * @return 保持していればtrue
+     */
+    public boolean contains(Object o) {
+        return mIndex.containsKey(o);
+    }
+
+    /**
+     * 要素が最初に現れるインデックスを返します。
+     * @param o 要素
+     * @return インデックス。保持していなければ-1
+     */
+    public int indexOf(Object o) {
+        Integer index = mIndex.get(o);
+        return Objects.isNull(index) ? -1 : index;
+    }
+
+    /**
+     * 追加された順に要素を返すイテレータを返します。
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return mElems.iterator();
+    }
+
+    private int find(Object e) {
+        Integer index = mIndex.get(e);
+        if (Objects.isNull(index)) {
+            throw new IllegalArgumentException(String.format("%s is not in %s", e, mElems));
+        }
+        return index;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mElems.size()) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mElems.size());
+        }
+    }
+}
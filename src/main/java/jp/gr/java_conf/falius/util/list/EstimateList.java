@@ -3,21 +3,41 @@ package jp.gr.java_conf.falius.util.list;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * いずれかの値を指定するリスト。
  * 常にいずれかの要素が指定されている。
  * リストが空の時に限り、指定インデックスは-1になる。
+ * CheckListenerを登録すると、estimate(E)などで指定が移るたびに、
+ * それまでの指定が外れたイベントと新たな指定のイベントが通知される。
+ * 要素の追加や削除に伴う指定インデックスの移動は通知されない。
+ * <p>
+ * indexed(Collection)で作成すると、要素からインデックスを引くハッシュ表を保持し、
+ * estimate(E)やindexOf(Object)、contains(Object)を定数時間で行う。
+ * 末尾への追加と末尾の削除ではハッシュ表をその場で更新し、それ以外の変更ではハッシュ表を破棄して、
+ * 次に要素を指定した操作を行った時に作り直す。
+ * ただし、remove(Object)とremoveAll(Collection)はハッシュ表を作り直さず、必要であればリストを走査する。
+ * 変更が少なく、要素による指定を頻繁に行う場合に向いている。
  * @author "ymiyauchi"
  * @since 1.2.0
+ * @version 1.3.0
  *
  */
 public class EstimateList<E> implements List<E>, Checkable<E> {
     private final List<E> mValues;
     private int mIndex = -1;
+    private final CheckListeners<E> mListeners = new CheckListeners<>();
+    // 要素と、その要素が最初に現れるインデックス。索引を使わなければnull
+    private Map<Object, Integer> mPositions = null;
+    private boolean mIsPositionsStale = false; // trueであれば、次に使う時にmPositionsを作り直す
 
     public EstimateList() {
         mValues = new ArrayList<>();
@@ -46,6 +66,29 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         this(Arrays.asList(es));
     }
 
+    /**
+     * 要素からインデックスを引くハッシュ表を保持するEstimateListを作成します。
+     * estimate(E)、indexOf(Object)、contains(Object)が要素数によらず定数時間で行えます。
+     * @param c 要素
+     * @return 作成したEstimateList
+     * @since 1.3.0
+     */
+    public static <E> EstimateList<E> indexed(Collection<? extends E> c) {
+        EstimateList<E> ret = new EstimateList<>(c);
+        ret.mPositions = new HashMap<>();
+        ret.mIsPositionsStale = true;
+        return ret;
+    }
+
+    /**
+     * 要素からインデックスを引くハッシュ表を保持しているかどうかを返します。
+     * @return indexed(Collection)で作成した場合はtrue
+     * @since 1.3.0
+     */
+    public boolean isIndexed() {
+        return Objects.nonNull(mPositions);
+    }
+
     /**
      * 指定値を設定します。
      * 指定された値を保持していなければ何もせずにfalseを返します。
@@ -54,11 +97,11 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      * @since 1.2.0
      */
     public boolean estimate(E val) {
-        int index = mValues.indexOf(val);
+        int index = indexOf(val);
         if (index == -1) {
             return false;
         }
-        mIndex = index;
+        moveTo(index);
         return true;
     }
 
@@ -91,11 +134,11 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
             return false;
         }
         if (index >= size()) {
-            mIndex = size() - 1;
+            moveTo(size() - 1);
             return true;
         }
 
-        mIndex = index;
+        moveTo(index);
         return true;
     }
 
@@ -141,11 +184,11 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         }
 
         if (index == size() - 1) {
-            mIndex = 0;
+            moveTo(0);
             return true;
         }
 
-        mIndex++;
+        moveTo(index + 1);
         return true;
     }
 
@@ -163,14 +206,47 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         }
 
         if (index == 0) {
-            mIndex = size() - 1;
+            moveTo(size() - 1);
             return true;
         }
 
-        mIndex--;
+        moveTo(index - 1);
         return true;
     }
 
+    // 指定を移し、指定が変わった場合はリスナーに通知する
+    private void moveTo(int index) {
+        int old = estimatedIndex();
+        mIndex = index;
+        if (old == index || mListeners.isEmpty()) {
+            return;
+        }
+        List<CheckEvent<E>> events = new ArrayList<>(2);
+        if (old >= 0 && old < size()) {
+            events.add(CheckEvent.of(old, false, mValues.get(old)));
+        }
+        events.add(CheckEvent.of(index, true, mValues.get(index)));
+        mListeners.fire(events);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public void addCheckListener(CheckListener<? super E> listener, Executor executor, long window, TimeUnit unit) {
+        mListeners.add(listener, executor, window, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public boolean removeCheckListener(CheckListener<?> listener) {
+        return mListeners.remove(listener);
+    }
+
     /**
      * {@inheritDoc}
      * @since 1.2.0
@@ -195,7 +271,7 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public boolean contains(Object o) {
-        return mValues.contains(o);
+        return indexOf(o) >= 0;
     }
 
     /**
@@ -204,7 +280,7 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        return mValues.iterator();
+        return tracksChanges() ? listIterator() : mValues.iterator();
     }
 
     /**
@@ -231,7 +307,10 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public boolean add(E e) {
-        return mValues.add(e);
+        int from = size();
+        boolean ret = mValues.add(e);
+        appended(from);
+        return ret;
     }
 
     /**
@@ -242,7 +321,8 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public boolean remove(Object o) {
-        int rmIndex = indexOf(o);
+        // removeAll(Collection)で削除のたびにハッシュ表を作り直さないように、作り直しが必要であれば走査で探す
+        int rmIndex = positionOf(o, false);
         E ret = remove(rmIndex);
         if (ret == null) {
             return false;
@@ -266,7 +346,10 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        return mValues.addAll(c);
+        int from = size();
+        boolean ret = mValues.addAll(c);
+        appended(from);
+        return ret;
     }
 
     /**
@@ -278,7 +361,14 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         if (index <= mIndex) {
             mIndex += c.size();
         }
-        return mValues.addAll(index, c);
+        int from = size();
+        boolean ret = mValues.addAll(index, c);
+        if (index == from) {
+            appended(from);
+        } else {
+            invalidatePositions();
+        }
+        return ret;
     }
 
     /**
@@ -305,6 +395,7 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
     public boolean retainAll(Collection<?> c) {
         E estimatedValue = estimatedValue();
         boolean ret = mValues.retainAll(c);
+        invalidatePositions();
         mIndex = lastIndexOf(estimatedValue);
         return ret;
     }
@@ -317,6 +408,10 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
     public void clear() {
         mValues.clear();
         mIndex = -1;
+        if (isIndexed()) {
+            mPositions.clear();
+            mIsPositionsStale = false;
+        }
     }
 
     /**
@@ -335,7 +430,11 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public E set(int index, E element) {
-        return mValues.set(index, element);
+        E ret = mValues.set(index, element);
+        if (!Objects.equals(ret, element)) {
+            invalidatePositions();
+        }
+        return ret;
     }
 
     /**
@@ -347,7 +446,13 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         if (index <= mIndex) {
             mIndex++;
         }
+        int from = size();
         mValues.add(index, element);
+        if (index == from) {
+            appended(from);
+        } else {
+            invalidatePositions();
+        }
     }
 
     /**
@@ -370,7 +475,14 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
             mIndex--;
         }
 
-        return mValues.remove(index);
+        E ret = mValues.remove(index);
+        if (index == size() && isIndexed() && !mIsPositionsStale) {
+            // 末尾の要素が最初に現れるインデックスが末尾であれば、他に同じ要素はない
+            mPositions.remove(ret, index);
+        } else {
+            invalidatePositions();
+        }
+        return ret;
     }
 
     /**
@@ -379,7 +491,44 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public int indexOf(Object o) {
-        return mValues.indexOf(o);
+        return positionOf(o, true);
+    }
+
+    // ハッシュ表を作り直す必要がある場合、isRebuildがtrueであれば作り直し、falseであればリストを走査する
+    private int positionOf(Object o, boolean isRebuild) {
+        if (!isIndexed() || (mIsPositionsStale && !isRebuild)) {
+            return mValues.indexOf(o);
+        }
+        if (mIsPositionsStale) {
+            mPositions.clear();
+            mIsPositionsStale = false;
+            appended(0);
+        }
+        Integer ret = mPositions.get(o);
+        return Objects.isNull(ret) ? -1 : ret;
+    }
+
+    // [from, size())の要素を末尾に追加したものとしてハッシュ表に加える
+    // サブリストでは、元のリストのハッシュ表を作り直すようにする
+    void appended(int from) {
+        if (!isIndexed() || mIsPositionsStale) {
+            return;
+        }
+        for (int i = from; i < mValues.size(); i++) {
+            mPositions.putIfAbsent(mValues.get(i), i);
+        }
+    }
+
+    // 末尾以外の変更があったので、次に使う時にハッシュ表を作り直す
+    void invalidatePositions() {
+        if (isIndexed()) {
+            mIsPositionsStale = true;
+        }
+    }
+
+    // イテレータを通した変更をハッシュ表に反映する必要があるかどうか
+    boolean tracksChanges() {
+        return isIndexed();
     }
 
     /**
@@ -397,7 +546,7 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public ListIterator<E> listIterator() {
-        return mValues.listIterator();
+        return listIterator(0);
     }
 
     /**
@@ -406,7 +555,8 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
      */
     @Override
     public ListIterator<E> listIterator(int index) {
-        return mValues.listIterator(index);
+        ListIterator<E> ret = mValues.listIterator(index);
+        return tracksChanges() ? new IndexedListIterator(ret) : ret;
     }
 
     /**
@@ -431,6 +581,63 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         return sb.toString();
     }
 
+    // 索引を使う場合に、イテレータを通した変更でハッシュ表を作り直すようにする
+    private class IndexedListIterator implements ListIterator<E> {
+        private final ListIterator<E> mIterator;
+
+        private IndexedListIterator(ListIterator<E> iterator) {
+            mIterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mIterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return mIterator.next();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return mIterator.hasPrevious();
+        }
+
+        @Override
+        public E previous() {
+            return mIterator.previous();
+        }
+
+        @Override
+        public int nextIndex() {
+            return mIterator.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return mIterator.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            mIterator.remove();
+            invalidatePositions();
+        }
+
+        @Override
+        public void set(E e) {
+            mIterator.set(e);
+            invalidatePositions();
+        }
+
+        @Override
+        public void add(E e) {
+            mIterator.add(e);
+            invalidatePositions();
+        }
+    }
+
     /**
      * サブリスト用クラス
      * このクラスのインスタンスへの変更は、オリジナルのインスタンスにも影響する
@@ -473,6 +680,7 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
         @Override
         public void clear() {
             super.clear();
+            mOriginal.invalidatePositions();
             if (mOriginal.mIndex >= mFromIndex && mOriginal.mIndex < mToIndex) {
                 // 指定値が範囲内にあった場合、消去したら指定値がなくなる
                 mOriginal.mIndex = -1;
@@ -490,5 +698,22 @@ public class EstimateList<E> implements List<E>, Checkable<E> {
             return super.mIndex;
         }
 
+        @Override
+        void appended(int from) {
+            super.appended(from);
+            mOriginal.invalidatePositions();
+        }
+
+        @Override
+        void invalidatePositions() {
+            super.invalidatePositions();
+            mOriginal.invalidatePositions();
+        }
+
+        @Override
+        boolean tracksChanges() {
+            return mOriginal.tracksChanges();
+        }
+
     }
 }
@@ -0,0 +1,236 @@
+package jp.gr.java_conf.falius.util.list;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * int値の各要素に対してチェックされたかどうかを保持する、CheckList&lt;Integer&gt;のプリミティブ版です。<br>
+ * 要素を後から増減することはできません。
+ * 重複した要素が渡された場合、要素を指定した操作は最初の要素に対して行われます
+ * <p>
+ * 要素はint配列に、要素からインデックスを引くハッシュ表は開番地法のint配列に、チェックの有無はビット列に保持します。
+ * ボクシングも要素ごとのオブジェクトも作らないので、一要素あたりのメモリは約9バイトです
+ * (要素4バイト、ハッシュ表5バイト、ビット列1ビット)。
+ * <p>
+ * 同期は行わないので、複数のスレッドからチェックする場合は外部で同期をとってください。
+ *
+ * @author "ymiyauchi"
+ * @since 1.3.0
+ */
+public class IntCheckList implements Checkable<Integer> {
+    private final int[] mValues;
+    // 要素のインデックス+1を、要素のハッシュ値から決まる位置に置く。0は空き
+    // 大きさは要素数の1.25倍で、2のべき乗には丸めない
+    private final int[] mTable;
+    private final CheckBits mChecked;
+    private final CheckListeners<Integer> mListeners = new CheckListeners<>();
+
+    public IntCheckList(int... values) {
+        mValues = Arrays.copyOf(values, values.length);
+        mTable = new int[values.length + values.length / 4 + 1];
+        for (int i = 0; i < mValues.length; i++) {
+            int slot = slot(mValues[i]);
+            while (mTable[slot] != 0 && mValues[mTable[slot] - 1] != mValues[i]) {
+                slot = slot + 1 == mTable.length ? 0 : slot + 1;
+            }
+            if (mTable[slot] == 0) {
+                mTable[slot] = i + 1;
+            }
+        }
+        mChecked = new CheckBits(mValues.length);
+    }
+
+    // ハッシュ値の上位ビットを、剰余を使わずに[0, mTable.length)に写す
+    private int slot(int value) {
+        int hash = value * 0x9e3779b9;
+        return (int) (((hash & 0xffffffffL) * mTable.length) >>> 32);
+    }
+
+    /**
+     * 要素にチェックを付けます。
+     * @param value 要素
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     */
+    public void check(int value) {
+        checkByIndex(find(value));
+    }
+
+    /**
+     * 要素にチェックを付けます。check(int)と同じです。
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     * @throws NullPointerException nullが渡された場合
+     */
+    @Override
+    public void check(Integer e) {
+        Objects.requireNonNull(e, "e is null");
+        check(e.intValue());
+    }
+
+    /**
+     * 追加された順序であるインデックスで要素を指定してチェックをつけます。
+     * @param index 要素のインデックス
+     * @throws IndexOutOfBoundsException indexが範囲外の場合
+     */
+    public void checkByIndex(int index) {
+        if (mChecked.set(index) && !mListeners.isEmpty()) {
+            mListeners.fire(CheckEvent.of(index, true, mValues[index]));
+        }
+    }
+
+    /**
+     * 指定した要素にチェックが付いているかどうかを返します。
+     * @param value 要素
+     * @return チェックが付いていればtrue
+     * @throws IllegalArgumentException 存在しない要素が渡された場合
+     */
+    public boolean isChecked(int value) {
+        return mChecked.get(find(value));
+    }
+
+    /**
+     * すべての要素がチェックされたかどうかを返します。
+     * @return すべての要素がチェックされていればtrue
+     */
+    public boolean isCheckedAll() {
+        return mChecked.isAll();
+    }
+
+    /**
+     * チェックされた要素の数を返します。
+     * @return チェックされた要素の数
+     */
+    public int checkedCount() {
+        return mChecked.count();
+    }
+
+    /**
+     * 指定したインデックス以降で、最初にチェックされていない要素のインデックスを返します。
+     * @param from 探し始めるインデックス
+     * @return チェックされていない要素のインデックス。なければ-1
+     * @throws IndexOutOfBoundsException fromが負の場合
+     */
+    public int nextUnchecked(int from) {
+        return mChecked.nextClear(from);
+    }
+
+    /**
+     * 指定されたインデックスの要素を返します。
+     * @param index 要素のインデックス
+     * @return 要素
+     * @throws IndexOutOfBoundsException インデックスが範囲外の場合
+     */
+    public int get(int index) {
+        if (index < 0 || index >= mValues.length) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mValues.length);
+        }
+        return mValues[index];
+    }
+
+    /**
+     * 要素数を返します。
+     * @return 要素数
+     */
+    public int size() {
+        return mValues.length;
+    }
+
+    /**
+     * 要素を保持しているかどうかを返します。
+     * @param value 要素
+     * @return 保持していればtrue
+     */
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * 要素が最初に現れるインデックスを返します。
+     * @param value 要素
+     * @return インデックス。保持していなければ-1
+     */
+    public int indexOf(int value) {
+        if (mValues.length == 0) {
+            return -1;
+        }
+        int slot = slot(value);
+        while (mTable[slot] != 0) {
+            int index = mTable[slot] - 1;
+            if (mValues[index] == value) {
+                return index;
+            }
+            slot = slot + 1 == mTable.length ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 追加された順にすべての要素をactionに渡します。
+     * @param action 要素を受け取る処理
+     */
+    public void forEach(IntConsumer action) {
+        Objects.requireNonNull(action, "action is null");
+        for (int value : mValues) {
+            action.accept(value);
+        }
+    }
+
+    /**
+     * 追加された順に、チェックされた要素をactionに渡します。
+     * @param action 要素を受け取る処理
+     */
+    public void forEachChecked(IntConsumer action) {
+        Objects.requireNonNull(action, "action is null");
+        for (int i = mChecked.nextSet(0); i >= 0; i = mChecked.nextSet(i + 1)) {
+            action.accept(mValues[i]);
+        }
+    }
+
+    /**
+     * 追加された順に、チェックされていない要素をactionに渡します。
+     * @param action 要素を受け取る処理
+     */
+    public void forEachUnchecked(IntConsumer action) {
+        Objects.requireNonNull(action, "action is null");
+        for (int i = mChecked.nextClear(0); i >= 0; i = mChecked.nextClear(i + 1)) {
+            action.accept(mValues[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public void addCheckListener(CheckListener<? super Integer> listener, Executor executor, long window, TimeUnit unit) {
+        mListeners.add(listener, executor, window, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 1.3.0
+     */
+    @Override
+    public boolean removeCheckListener(CheckListener<?> listener) {
+        return mListeners.remove(listener);
+    }
+
+    private int find(int value) {
+        int ret = indexOf(value);
+        if (ret < 0) {
+            throw new IllegalArgumentException(value + " is not in the list");
+        }
+        return ret;
+    }
+
+    /**
+     * 要素の文字列表現を返します。
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(mValues);
+    }
+}
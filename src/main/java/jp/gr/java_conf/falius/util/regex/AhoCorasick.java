@@ -0,0 +1,190 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ *  複数の固定文字列を、対象文字列の一度の走査でまとめて探すAho-Corasick法のオートマトンです
+ *  <p>
+ *  ASCII文字の大文字と小文字は区別しません。
+ *  ASCII文字の遷移は状態ごとの配列にした決定性オートマトンとして、それ以外の文字の遷移はMapと失敗遷移で扱います
+ *  <p>
+ *  作成後は不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+final class AhoCorasick {
+    private static final int ASCII_SIZE = 128;
+    private static final int ROOT = 0;
+
+    private final int[][] mAsciiNext; // [状態][ASCII文字] -> 次の状態
+    private final List<Map<Character, Integer>> mOtherNext; // ASCII以外の文字のトライ上の遷移。なければnull
+    private final int[] mFail;
+    private final int[][] mOutputs; // 状態に到達したときに見つかった文字列のid。なければnull
+
+    /**
+     *  オートマトンを作成します
+     *  @param keywords 探す文字列。空文字列は無視されます
+     *  @param ids 各文字列が見つかったときに報告するid
+     */
+    AhoCorasick(List<String> keywords, int[] ids) {
+        if (keywords.size() != ids.length) {
+            throw new IllegalArgumentException("keywords and ids must have the same size");
+        }
+        List<int[]> asciiNext = new ArrayList<>();
+        List<Map<Character, Integer>> otherNext = new ArrayList<>();
+        List<int[]> outputs = new ArrayList<>();
+        newState(asciiNext, otherNext, outputs);
+
+        // トライを作る
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = fold(keyword.charAt(i));
+                int next = goTo(asciiNext, otherNext, state, c);
+                if (next < 0) {
+                    next = newState(asciiNext, otherNext, outputs);
+                    if (c < ASCII_SIZE) {
+                        asciiNext.get(state)[c] = next;
+                    } else {
+                        if (Objects.isNull(otherNext.get(state))) {
+                            otherNext.set(state, new HashMap<>());
+                        }
+                        otherNext.get(state).put(c, next);
+                    }
+                }
+                state = next;
+            }
+            if (state != ROOT) {
+                outputs.set(state, add(outputs.get(state), ids[k]));
+            }
+        }
+
+        // 幅優先で失敗遷移を求め、ASCII文字の遷移を埋めて決定性にする
+        int size = asciiNext.size();
+        int[] fail = new int[size];
+        Queue<Integer> queue = new ArrayDeque<>();
+        int[] root = asciiNext.get(ROOT);
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            if (root[c] < 0) {
+                root[c] = ROOT;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        if (Objects.nonNull(otherNext.get(ROOT))) {
+            queue.addAll(otherNext.get(ROOT).values());
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs.set(state, merge(outputs.get(state), outputs.get(fail[state])));
+            int[] next = asciiNext.get(state);
+            for (int c = 0; c < ASCII_SIZE; c++) {
+                if (next[c] < 0) {
+                    next[c] = asciiNext.get(fail[state])[c];
+                } else {
+                    fail[next[c]] = asciiNext.get(fail[state])[c];
+                    queue.add(next[c]);
+                }
+            }
+            Map<Character, Integer> other = otherNext.get(state);
+            if (Objects.nonNull(other)) {
+                for (Map.Entry<Character, Integer> entry : other.entrySet()) {
+                    fail[entry.getValue()] = otherStep(otherNext, fail, fail[state], entry.getKey());
+                    queue.add(entry.getValue());
+                }
+            }
+        }
+
+        mAsciiNext = asciiNext.toArray(new int[size][]);
+        mOtherNext = otherNext;
+        mFail = fail;
+        mOutputs = outputs.toArray(new int[size][]);
+    }
+
+    /**
+     *  対象文字列を一度だけ走査し、見つかった文字列のidをfoundに設定します
+     *  @param text 対象文字列
+     *  @param found 見つかった文字列のidを設定するBitSet
+     */
+    void scan(CharSequence text, BitSet found) {
+        int state = ROOT;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = fold(text.charAt(i));
+            state = c < ASCII_SIZE ? mAsciiNext[state][c] : otherStep(mOtherNext, mFail, state, c);
+            int[] output = mOutputs[state];
+            if (Objects.nonNull(output)) {
+                for (int id : output) {
+                    found.set(id);
+                }
+            }
+        }
+    }
+
+    private static int otherStep(List<Map<Character, Integer>> otherNext, int[] fail, int state, char c) {
+        while (true) {
+            Map<Character, Integer> next = otherNext.get(state);
+            Integer ret = Objects.isNull(next) ? null : next.get(c);
+            if (Objects.nonNull(ret)) {
+                return ret;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static int newState(List<int[]> asciiNext, List<Map<Character, Integer>> otherNext,
+            List<int[]> outputs) {
+        int[] next = new int[ASCII_SIZE];
+        Arrays.fill(next, -1);
+        asciiNext.add(next);
+        otherNext.add(null);
+        outputs.add(null);
+        return asciiNext.size() - 1;
+    }
+
+    private static int goTo(List<int[]> asciiNext, List<Map<Character, Integer>> otherNext, int state, char c) {
+        if (c < ASCII_SIZE) {
+            return asciiNext.get(state)[c];
+        }
+        Map<Character, Integer> next = otherNext.get(state);
+        Integer ret = Objects.isNull(next) ? null : next.get(c);
+        return Objects.isNull(ret) ? -1 : ret;
+    }
+
+    private static int[] add(int[] ids, int id) {
+        if (Objects.isNull(ids)) {
+            return new int[] { id };
+        }
+        int[] ret = Arrays.copyOf(ids, ids.length + 1);
+        ret[ids.length] = id;
+        return ret;
+    }
+
+    private static int[] merge(int[] ids, int[] other) {
+        if (Objects.isNull(other)) {
+            return ids;
+        }
+        if (Objects.isNull(ids)) {
+            return other;
+        }
+        int[] ret = Arrays.copyOf(ids, ids.length + other.length);
+        System.arraycopy(other, 0, ret, ids.length, other.length);
+        return ret;
+    }
+
+    // ASCII文字の大文字を小文字にする
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
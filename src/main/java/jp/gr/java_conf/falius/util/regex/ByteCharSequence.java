@@ -0,0 +1,58 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  ByteBufferの各バイトを1文字(ISO-8859-1)として扱うCharSequenceです
+ *  <p>
+ *  バイト列をコピーせずにそのまま参照するので、メモリマップしたファイルをStringにすることなくPatternにマッチさせることができます。
+ *  US-ASCIIやISO-8859-1、ASCII文字のみからなるUTF-8のバイト列であれば、元の文字列と同じ内容になります
+ *
+ *  @since 1.3.0
+ */
+final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer mBuffer;
+    private final int mOffset; // mBufferの絶対位置で、このシーケンスの先頭
+    private final int mLength;
+
+    ByteCharSequence(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    private ByteCharSequence(ByteBuffer buffer, int offset, int length) {
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= mLength) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + mLength);
+        }
+        return (char) (mBuffer.get(mOffset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > mLength || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + mLength);
+        }
+        return new ByteCharSequence(mBuffer, mOffset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[mLength];
+        for (int i = 0; i < mLength; i++) {
+            bytes[i] = mBuffer.get(mOffset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,489 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  <p>
+ *  スラッシュで囲まれた正規表現を解析し、コンパイルした結果を保持する不変クラスです
+ *  <p>
+ *  正規表現本体とPattern、オプション、gオプションの有無のみを持ち、マッチングの状態は持ちません。
+ *  そのため、複数のスレッドで共有したり、staticフィールドに保持したりすることができます<br>
+ *  マッチングはmatch(CharSequence)で行い、その結果は呼び出しごとに作成されるRegexResultが扱います
+ *  <pre>{@code
+ * private static final CompiledRegex ERROR = CompiledRegex.compile("/ERROR (\\w+)/g");
+ *
+ * String code = ERROR.match(line).find(0).group(1);
+ * }</pre>
+ *  <p>
+ *  compile(CharSequence)はRegexCacheを経由するので、同じ正規表現を何度渡しても解析とコンパイルは一度で済みます
+ *
+ *  @since 1.3.0
+ */
+public final class CompiledRegex {
+    private final String mRegex; // スラッシュやオプションを除いた正規表現の本体
+    private final int mPatternFlag; // 有効になっているオプションの値
+    private final boolean mIsOptionG; // gオプションの有無
+    private final boolean mIsOptionN; // nオプションの有無
+    private final Pattern mPattern;
+    private final int mGroupCount; // マッチ箇所全体を除いたグループの数
+    private final Map<String, Integer> mGroupNames; // 名前付きグループの名前とグループ番号
+    private final boolean mHasNestedQuantifier; // バックトラックが爆発しうる入れ子の量指定子を含むかどうか
+    private final LinearProgram mLinearProgram; // nオプションで線形時間のエンジンを使う場合の命令列。使わなければnull
+
+    // 正規表現から取り出した固定文字列の探索。MatchCursorがマッチ箇所になりえない部分を省くために使う
+    private final LiteralSearch mLiteralSearch; // LITERALオプションの場合の正規表現全体
+    private final LiteralSearch mPrefixSearch; // マッチ箇所の先頭の固定文字列
+    private final LiteralSearch[] mRequiredSearches; // マッチ箇所が少なくともひとつを含む固定文字列
+
+    // 直前に作成したReplacement。同じ置換文字列が続けて使われる場合に解析を省く
+    // どのスレッドから見ても完全に作成されたReplacementであれば良いので、同期はしない
+    private volatile Replacement mLastReplacement = null;
+    // マッチ箇所が改行を含みえないかどうか。MatchSpliteratorが初めて分割するときに求める
+    private volatile Boolean mIsLineBounded = null;
+
+    /**
+     *  スラッシュで囲まれた正規表現をコンパイルします
+     *  @param regex スラッシュで囲まれた正規表現
+     *  @return コンパイルされた正規表現
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException 引数がスラッシュで囲まれた正規表現の形になっていない場合
+     *  @throws java.util.regex.PatternSyntaxException 正規表現の構文が正しくない場合
+     */
+    public static CompiledRegex compile(CharSequence regex) {
+        CompiledRegex ret = Regex.compileIfRegex(regex);
+        if (Objects.isNull(ret)) {
+            throw new IllegalArgumentException("正規表現がありません : " + regex);
+        }
+        return ret;
+    }
+
+    CompiledRegex(String regex, int patternFlag, boolean isOptionG) {
+        this(regex, patternFlag, isOptionG, false);
+    }
+
+    CompiledRegex(String regex, int patternFlag, boolean isOptionG, boolean isOptionN) {
+        mRegex = regex;
+        mPatternFlag = patternFlag;
+        mIsOptionG = isOptionG;
+        mIsOptionN = isOptionN;
+        mPattern = patternFlag > 0 ? Pattern.compile(regex, patternFlag) : Pattern.compile(regex);
+        mGroupCount = mPattern.matcher("").groupCount();
+        mGroupNames = GroupNames.parse(regex, patternFlag);
+        mHasNestedQuantifier = NestedQuantifiers.find(regex, patternFlag) >= 0;
+        mLinearProgram = isOptionN ? LinearProgram.compile(regex, patternFlag) : null;
+
+        LiteralExtractor extractor = LiteralExtractor.extract(regex, patternFlag);
+        boolean isCaseInsensitive = extractor.isCaseInsensitive();
+        List<String> literals = extractor.literals();
+        if (Option.isInclude(patternFlag, Option.LITERAL)) {
+            mLiteralSearch = literals.isEmpty() ? null : new LiteralSearch(regex, isCaseInsensitive);
+            mPrefixSearch = null;
+            mRequiredSearches = new LiteralSearch[0];
+            return;
+        }
+        mLiteralSearch = null;
+        // \Gは前回のマッチ箇所の終了位置に依存するので、出現位置から探し始めることができない
+        String prefix = extractor.prefix();
+        mPrefixSearch = prefix.isEmpty() || regex.contains("\\G") ? null : new LiteralSearch(prefix, isCaseInsensitive);
+        mRequiredSearches = new LiteralSearch[literals.size()];
+        for (int i = 0; i < mRequiredSearches.length; i++) {
+            mRequiredSearches[i] = new LiteralSearch(literals.get(i), isCaseInsensitive);
+        }
+    }
+
+    /**
+     *  ターゲット文字列にマッチングを行い、その結果を返します
+     *  マッチ箇所は、結果から要求された時点で探されます
+     *  @param target ターゲット文字列
+     *  @return 新しいマッチング結果
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public RegexResult match(CharSequence target) {
+        Objects.requireNonNull(target, "target is null");
+        return new RegexResult(this, target.toString());
+    }
+
+    /**
+     *  マッチングにかける手間を制限して、ターゲット文字列にマッチングを行います
+     *  制限時間はこのメソッドを呼び出した時点から数え、結果からマッチ箇所を取り出す処理にも適用されます
+     *  @param target ターゲット文字列
+     *  @param limit マッチングにかける手間の上限
+     *  @return 新しいマッチング結果。制限を超えると、マッチ箇所を探すメソッドがRegexTimeoutExceptionをスローする
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException limitが入れ子の量指定子を拒否し、この正規表現が入れ子の量指定子を含む場合
+     */
+    public RegexResult match(CharSequence target, MatchLimit limit) {
+        Objects.requireNonNull(target, "target is null");
+        Objects.requireNonNull(limit, "limit is null");
+        String str = target.toString();
+        return new RegexResult(this, str, limit.guard(this, str));
+    }
+
+    /**
+     *  ターゲット文字列のマッチ箇所を先頭から順に返すStreamを返します
+     *  マッチ箇所はStreamが要素を要求した時点で探されるので、limitやfindFirstなどで打ち切った場合、残りの部分は走査しません。
+     *  マッチ箇所が改行を含みえない正規表現であれば、並列のStreamではターゲット文字列を行の区切りで分割して探します
+     *  <pre>{@code
+     * List<String> users = ERROR.matches(log).parallel()
+     *         .map(data -> data.group("user"))
+     *         .distinct()
+     *         .collect(Collectors.toList());
+     * }</pre>
+     *  @param target ターゲット文字列
+     *  @return マッチ箇所の順次Stream
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public Stream<PartData> matches(CharSequence target) {
+        Objects.requireNonNull(target, "target is null");
+        String str = target.toString();
+        return StreamSupport.stream(new MatchSpliterator(this, str, str), false);
+    }
+
+    /**
+     *  ターゲット文字列のマッチ箇所を先頭から順に探し、各グループの位置をactionに渡します
+     *  部分文字列やマッチ箇所ごとのオブジェクトを作成しないので、大量のマッチ箇所を位置だけで処理する場合に利用してください
+     *  <pre>{@code
+     * int words = WORD.forEachOffsets(text, offsets -> counter.add(text, offsets[0], offsets[1]));
+     * }</pre>
+     *  @param target ターゲット文字列
+     *  @param action 各マッチ箇所の位置を受け取る処理
+     *  @return マッチ箇所の数
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public int forEachOffsets(CharSequence target, MatchOffsetsConsumer action) {
+        Objects.requireNonNull(target, "target is null");
+        Objects.requireNonNull(action, "action is null");
+        MatchCursor cursor = MatchCursor.of(this, target);
+        int[] offsets = null; // マッチ箇所ごとに使いまわす
+        int count = 0;
+        while (cursor.find()) {
+            if (Objects.isNull(offsets)) {
+                offsets = new int[(cursor.groupCount() + 1) * 2];
+            }
+            for (int i = 0; i < offsets.length / 2; i++) {
+                offsets[i * 2] = cursor.start(i);
+                offsets[i * 2 + 1] = cursor.end(i);
+            }
+            action.accept(offsets);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     *  置換文字列を解析し、マッチ箇所の置き換えを行うReplacementを作成します
+     *  同じ置換文字列で何度も置き換えを行う場合は、返されたReplacementを保持して使いまわしてください
+     *  @param template 置換文字列。書式はMatcher.replaceAll(String)と同じ
+     *  @return 置換文字列を解析したReplacement
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException 置換文字列の書式が正しくない場合や、存在しない名前のグループを参照している場合
+     *  @throws IndexOutOfBoundsException 存在しない番号のグループを参照している場合
+     */
+    public Replacement replacement(String template) {
+        Objects.requireNonNull(template, "template is null");
+        Replacement last = mLastReplacement;
+        if (Objects.nonNull(last) && last.getTemplate().equals(template)) {
+            return last;
+        }
+        Replacement ret = new Replacement(this, template);
+        mLastReplacement = ret;
+        return ret;
+    }
+
+    /**
+     *  Readerから読み込んだ文字列に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  マッチ箇所の最大長は65536文字です
+     *  @param reader 読み込み元。返されたStreamMatcherを閉じると閉じられる
+     *  @return マッチ箇所を順に返すStreamMatcher
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public StreamMatcher matchStream(Reader reader) {
+        return matchStream(reader, StreamMatcher.DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     *  Readerから読み込んだ文字列に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  @param reader 読み込み元。返されたStreamMatcherを閉じると閉じられる
+     *  @param maxMatchLength マッチ箇所の最大長(文字数)。保持するバッファの大きさはこの値に比例する
+     *  @return マッチ箇所を順に返すStreamMatcher
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException maxMatchLengthが正の数でない場合
+     */
+    public StreamMatcher matchStream(Reader reader, int maxMatchLength) {
+        return new StreamMatcher(this, reader, maxMatchLength);
+    }
+
+    /**
+     *  ファイルの内容に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  マッチ箇所の最大長は65536文字です
+     *  @param path 読み込むファイル
+     *  @param charset ファイルの文字コード
+     *  @return マッチ箇所を順に返すStreamMatcher。使い終わったら閉じる必要がある
+     *  @throws IOException ファイルを開けなかった場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public StreamMatcher matchStream(Path path, Charset charset) throws IOException {
+        return matchStream(path, charset, StreamMatcher.DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     *  ファイルの内容に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  @param path 読み込むファイル
+     *  @param charset ファイルの文字コード
+     *  @param maxMatchLength マッチ箇所の最大長(文字数)。保持するバッファの大きさはこの値に比例する
+     *  @return マッチ箇所を順に返すStreamMatcher。使い終わったら閉じる必要がある
+     *  @throws IOException ファイルを開けなかった場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException maxMatchLengthが正の数でない場合
+     */
+    public StreamMatcher matchStream(Path path, Charset charset, int maxMatchLength) throws IOException {
+        Objects.requireNonNull(path, "path is null");
+        Objects.requireNonNull(charset, "charset is null");
+        // ファイルを開いた後に失敗して閉じ忘れることがないように、引数は開く前に確かめる
+        StreamMatcher.checkMaxMatchLength(maxMatchLength);
+        return matchStream(Files.newBufferedReader(path, charset), maxMatchLength);
+    }
+
+    /**
+     *  チャネルから読み込んだ内容に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  マッチ箇所の最大長は65536文字です
+     *  @param channel 読み込み元。返されたStreamMatcherを閉じると閉じられる
+     *  @param charset 読み込む内容の文字コード
+     *  @return マッチ箇所を順に返すStreamMatcher
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public StreamMatcher matchStream(ReadableByteChannel channel, Charset charset) {
+        return matchStream(channel, charset, StreamMatcher.DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     *  チャネルから読み込んだ内容に対して、全体をメモリに読み込むことなくマッチングを行います
+     *  @param channel 読み込み元。返されたStreamMatcherを閉じると閉じられる
+     *  @param charset 読み込む内容の文字コード
+     *  @param maxMatchLength マッチ箇所の最大長(文字数)。保持するバッファの大きさはこの値に比例する
+     *  @return マッチ箇所を順に返すStreamMatcher
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException maxMatchLengthが正の数でない場合
+     */
+    public StreamMatcher matchStream(ReadableByteChannel channel, Charset charset, int maxMatchLength) {
+        Objects.requireNonNull(channel, "channel is null");
+        Objects.requireNonNull(charset, "charset is null");
+        StreamMatcher.checkMaxMatchLength(maxMatchLength);
+        return matchStream(Channels.newReader(channel, charset.newDecoder(), -1), maxMatchLength);
+    }
+
+    /**
+     *  ファイルをメモリマップしてマッチングを行うRegexFileScannerを作成します
+     *  マッチ箇所の最大長は65536バイトです
+     *  @param charset ファイルの文字コード。US-ASCII、ISO-8859-1、UTF-8のいずれか
+     *  @return 新しいRegexFileScanner
+     *  @throws IllegalArgumentException 対応していない文字コードが渡された場合
+     */
+    public RegexFileScanner fileScanner(Charset charset) {
+        return fileScanner(charset, StreamMatcher.DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     *  ファイルをメモリマップしてマッチングを行うRegexFileScannerを作成します
+     *  @param charset ファイルの文字コード。US-ASCII、ISO-8859-1、UTF-8のいずれか
+     *  @param maxMatchLength マッチ箇所の最大長(バイト数)。セグメントの境界をまたいで余分にマップする大きさになる
+     *  @return 新しいRegexFileScanner
+     *  @throws IllegalArgumentException 対応していない文字コードが渡された場合や、maxMatchLengthが正の数でない場合
+     */
+    public RegexFileScanner fileScanner(Charset charset, int maxMatchLength) {
+        return new RegexFileScanner(this, charset, maxMatchLength, RegexFileScanner.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     *  入力を行ごとに区切り、マッチ箇所を含む行だけを行番号と組にして返すRegexLineScannerを作成します
+     *  @return 新しいRegexLineScanner
+     */
+    public RegexLineScanner lineScanner() {
+        return new RegexLineScanner(this, RegexLineScanner.DEFAULT_READ_SIZE);
+    }
+
+    /**
+     *  ターゲット文字列の一部にでもマッチするかどうかを返します
+     *  RegexResultを作成しないので、真偽値だけが必要な場合に利用してください
+     *  @param target ターゲット文字列
+     *  @return マッチするとtrue、そうでなければfalse
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public boolean test(CharSequence target) {
+        Objects.requireNonNull(target, "target is null");
+        return MatchCursor.of(this, target).find();
+    }
+
+    /**
+     *  マッチングにかける手間を制限して、ターゲット文字列の一部にでもマッチするかどうかを返します
+     *  @param target ターゲット文字列
+     *  @param limit マッチングにかける手間の上限
+     *  @return マッチするとtrue、そうでなければfalse
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @throws IllegalArgumentException limitが入れ子の量指定子を拒否し、この正規表現が入れ子の量指定子を含む場合
+     *  @throws RegexTimeoutException マッチングが制限を超えた場合
+     */
+    public boolean test(CharSequence target, MatchLimit limit) {
+        Objects.requireNonNull(target, "target is null");
+        Objects.requireNonNull(limit, "limit is null");
+        return MatchCursor.of(this, limit.guard(this, target)).find();
+    }
+
+    /**
+     *  (a+)+のように、繰り返しの量指定子をもつグループの中にさらに繰り返しの量指定子があるかどうかを返します
+     *  このような正規表現は、マッチしない入力に対してバックトラックが入力長に対して指数的に増えることがあります。
+     *  判定はコンパイル時に一度だけ行われます
+     *  @return 入れ子の量指定子を含む場合はtrue
+     */
+    public boolean hasNestedQuantifier() {
+        return mHasNestedQuantifier;
+    }
+
+    /**
+     *  nオプションが指定されていたかどうかの真偽値を返します
+     *  @return nオプションが指定されていればtrue。それ以外はfalse
+     */
+    public boolean hasOptionN() {
+        return mIsOptionN;
+    }
+
+    /**
+     *  マッチ箇所を線形時間のエンジンで探すかどうかを返します
+     *  nオプションが指定され、正規表現が線形時間のエンジンで扱える構文だけからなる場合にtrueになります。
+     *  falseの場合は、nオプションが指定されていてもPatternでマッチ箇所を探します
+     *  @return 線形時間のエンジンを使う場合はtrue
+     */
+    public boolean isLinear() {
+        return Objects.nonNull(mLinearProgram);
+    }
+
+    // 改行を読める命令がなければ、マッチ箇所は改行を含まない
+    // 命令列にできない構文を含む場合は、含みうるものとして扱う
+    boolean isLineBounded() {
+        Boolean ret = mIsLineBounded;
+        if (Objects.isNull(ret)) {
+            LinearProgram program = Objects.nonNull(mLinearProgram) ? mLinearProgram
+                    : LinearProgram.compile(mRegex, mPatternFlag);
+            ret = Objects.nonNull(program) && !program.canRead('\n');
+            mIsLineBounded = ret;
+        }
+        return ret;
+    }
+
+    LinearProgram getLinearProgram() {
+        return mLinearProgram;
+    }
+
+    int getGroupCount() {
+        return mGroupCount;
+    }
+
+    Map<String, Integer> getGroupNames() {
+        return mGroupNames;
+    }
+
+    LiteralSearch getLiteralSearch() {
+        return mLiteralSearch;
+    }
+
+    LiteralSearch getPrefixSearch() {
+        return mPrefixSearch;
+    }
+
+    LiteralSearch[] getRequiredSearches() {
+        return mRequiredSearches;
+    }
+
+    /**
+     *  正規表現を返します
+     *  各種オプションや/(スラッシュ)は含まれず、/(スラッシュ)に囲まれた部分のみであることにご注意ください
+     *  @return 正規表現
+     */
+    public String getRegex() {
+        return mRegex;
+    }
+
+    /**
+     *  有効になっているオプションを表すパターンフラグ(Patternフィールドの論理和)を返します
+     *  gオプションは含まれません
+     *  @return パターンフラグ
+     */
+    public int getPatternFlag() {
+        return mPatternFlag;
+    }
+
+    /**
+     *  コンパイルされたPatternを返します
+     *  @return Pattern
+     */
+    public Pattern getPattern() {
+        return mPattern;
+    }
+
+    /**
+     *  gオプションが指定されていたかどうかの真偽値を返します
+     *  @return gオプションが指定されていればtrue。それ以外はfalse
+     */
+    public boolean hasOptionG() {
+        return mIsOptionG;
+    }
+
+    /**
+     *  指定されたオプションを列挙した文字列を作成します
+     *  @return 指定したオプションの文字列表現
+     */
+    public String toStringOptions() {
+        StringBuilder sb = new StringBuilder();
+        if (hasOptionG()) {
+            sb.append(SlashLiteral.OPTION_G);
+        }
+        if (hasOptionN()) {
+            sb.append(SlashLiteral.OPTION_N);
+        }
+        for (Option option : Option.values()) {
+            if (Option.isInclude(mPatternFlag, option)) {
+                sb.append(option.str());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompiledRegex)) {
+            return false;
+        }
+        CompiledRegex other = (CompiledRegex) obj;
+        return mRegex.equals(other.mRegex) && mPatternFlag == other.mPatternFlag && mIsOptionG == other.mIsOptionG
+                && mIsOptionN == other.mIsOptionN;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mRegex, mPatternFlag, mIsOptionG, mIsOptionN);
+    }
+
+    /**
+     *  スラッシュで囲まれた正規表現の形の文字列表現を返します
+     *  @return "/regex/gi"の形の文字列
+     */
+    @Override
+    public String toString() {
+        return SlashLiteral.SLASH + mRegex + SlashLiteral.SLASH + toStringOptions();
+    }
+}
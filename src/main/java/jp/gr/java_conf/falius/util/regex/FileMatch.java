@@ -0,0 +1,46 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ *  ファイル内のマッチ箇所を、ファイルのパスと組にして扱う不変クラスです
+ *  <p>
+ *  ParallelRegexSearchの結果として作成されます。
+ *  PartDataのstart()やend()は、ファイル先頭からのバイト位置です
+ *
+ *  @since 1.3.0
+ */
+public final class FileMatch {
+    private final Path mPath;
+    private final PartData mData;
+
+    FileMatch(Path path, PartData data) {
+        mPath = Objects.requireNonNull(path, "path is null");
+        mData = Objects.requireNonNull(data, "data is null");
+    }
+
+    /**
+     *  マッチ箇所を含むファイルのパスを返します
+     *  @return ファイルのパス
+     */
+    public Path getPath() {
+        return mPath;
+    }
+
+    /**
+     *  マッチ箇所を返します
+     *  @return マッチ箇所
+     */
+    public PartData getData() {
+        return mData;
+    }
+
+    /**
+     *  "パス:開始位置:マッチ文字列"の形の文字列表現を返します
+     */
+    @Override
+    public String toString() {
+        return mPath + ":" + mData.start() + ":" + mData.group();
+    }
+}
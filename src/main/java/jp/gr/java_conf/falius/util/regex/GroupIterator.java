@@ -1,6 +1,7 @@
 package jp.gr.java_conf.falius.util.regex;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
      *  各マッチ文字列の指定されたインデックスのグルーピング文字列をイテレートするIterableであり、Iteratorです
@@ -8,29 +9,31 @@ import java.util.Iterator;
      */
 class GroupIterator implements Iterator<String>, Iterable<String> {
     private final int mIndex;
-    private final int mSize;
-    private final Regex mRegex;
+    private final RegexResult mResult;
     private int mIndexCounter = -1;
 
-    GroupIterator(int index, Regex regex) {
+    GroupIterator(int index, RegexResult result) {
         mIndex = index;
-        mRegex = regex;
-        mSize = regex.matchCount();
+        mResult = result;
     }
 
     /**
      *  次の要素の有無を返します
+     *  次のマッチ箇所はこの時点で探されます
      */
     public boolean hasNext() {
-        return mIndexCounter + 1 < mSize;
+        return mResult.hasMatch(mIndexCounter + 1);
     }
 
     /**
      *  次の要素を返します
      */
     public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
         mIndexCounter++;
-        return mRegex.find(mIndexCounter).group(mIndex);
+        return mResult.data(mIndexCounter).group(mIndex);
     }
 
     /**
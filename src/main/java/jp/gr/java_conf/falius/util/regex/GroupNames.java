@@ -0,0 +1,118 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  正規表現から名前付きグループ((?&lt;name&gt;...))を探し、名前とグループ番号の対応を求めるクラスです
+ *  <p>
+ *  Java 8のPatternは名前とグループ番号の対応を公開していないので、正規表現を一度だけ走査して求めます。
+ *  エスケープ、\Q...\E、文字クラス、COMMENTSオプション(x)のコメントの中の括弧は数えません
+ *
+ *  @since 1.3.0
+ */
+final class GroupNames {
+
+    private GroupNames() {
+    }
+
+    /**
+     *  名前付きグループの名前とグループ番号の対応を返します
+     *  @param regex スラッシュやオプションを除いた正規表現の本体
+     *  @param patternFlag パターンフラグ
+     *  @return 名前からグループ番号への変更不可能なMap。名前付きグループがなければ空のMap
+     */
+    static Map<String, Integer> parse(String regex, int patternFlag) {
+        if (Option.isInclude(patternFlag, Option.LITERAL) || regex.indexOf('(') < 0) {
+            return Collections.emptyMap();
+        }
+        boolean isComments = Option.isInclude(patternFlag, Option.COMMENTS);
+        Map<String, Integer> ret = new HashMap<>();
+        int count = 0;
+        int len = regex.length();
+        int i = 0;
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < len && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? len : end + 2;
+                } else {
+                    i += 2;
+                }
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+            } else if (c == '#' && isComments) {
+                int end = regex.indexOf('\n', i);
+                i = end < 0 ? len : end + 1;
+            } else if (c == '(') {
+                i++;
+                if (i >= len || regex.charAt(i) != '?') {
+                    count++;
+                } else if (i + 2 < len && regex.charAt(i + 1) == '<'
+                        && regex.charAt(i + 2) != '=' && regex.charAt(i + 2) != '!') {
+                    count++;
+                    int end = regex.indexOf('>', i + 2);
+                    if (end > 0) {
+                        ret.put(regex.substring(i + 2, end), count);
+                        i = end + 1;
+                    }
+                } else {
+                    isComments = inlineComments(regex, i + 1, isComments);
+                }
+            } else {
+                i++;
+            }
+        }
+        return ret.isEmpty() ? Collections.<String, Integer> emptyMap() : Collections.unmodifiableMap(ret);
+    }
+
+    // (?x)や(?-x:...)によるCOMMENTSオプションの切り替えを反映する。グループの範囲は考慮しない
+    private static boolean inlineComments(String regex, int from, boolean isComments) {
+        boolean isOn = true;
+        for (int i = from; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '-') {
+                isOn = false;
+            } else if (c == 'x') {
+                isComments = isOn;
+            } else if (!Character.isLetter(c)) {
+                break;
+            }
+        }
+        return isComments;
+    }
+
+    // 入れ子を含む文字クラスを読み飛ばし、閉じ括弧の次の位置を返す
+    static int skipClass(String regex, int i) {
+        int depth = 0;
+        int len = regex.length();
+        while (i < len) {
+            char c = regex.charAt(i++);
+            if (c == '\\') {
+                if (i < len && regex.charAt(i) == 'Q') {
+                    int end = regex.indexOf("\\E", i);
+                    i = end < 0 ? len : end + 2;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                depth++;
+                // 先頭の]や^]は文字として扱われる
+                if (i < len && regex.charAt(i) == '^') {
+                    i++;
+                }
+                if (i < len && regex.charAt(i) == ']') {
+                    i++;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return len;
+    }
+}
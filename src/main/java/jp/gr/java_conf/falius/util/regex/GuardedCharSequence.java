@@ -0,0 +1,69 @@
+package jp.gr.java_conf.falius.util.regex;
+
+/**
+ *  文字の参照回数を数え、MatchLimitの制限を超えるとRegexTimeoutExceptionをスローするCharSequenceです
+ *  <p>
+ *  Matcherはバックトラックのたびにターゲット文字列の文字を参照し直すので、
+ *  charAt(int)の呼び出し回数がマッチングの手間を表します。
+ *  制限時間と割り込みは、一定の回数ごとにまとめて確認します
+ *  <p>
+ *  可変であり、複数のスレッドで共有することはできません
+ *
+ *  @since 1.3.0
+ */
+final class GuardedCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 1024; // 時刻と割り込みを確認する間隔(参照回数)
+
+    private final CharSequence mTarget;
+    private final String mRegex;
+    private final long mDeadline; // System.nanoTime()の値。制限時間がなければ使わない
+    private final boolean mHasDeadline;
+    private final long mMaxSteps;
+    private long mSteps = 0;
+    private int mUntilCheck = CHECK_INTERVAL;
+
+    GuardedCharSequence(CharSequence target, String regex, long timeoutNanos, long maxSteps) {
+        mTarget = target;
+        mRegex = regex;
+        mHasDeadline = timeoutNanos != MatchLimit.UNLIMITED;
+        mDeadline = mHasDeadline ? System.nanoTime() + timeoutNanos : 0;
+        mMaxSteps = maxSteps;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++mSteps > mMaxSteps) {
+            throw new RegexTimeoutException("マッチングが文字の参照回数の上限を超えました", mRegex, mSteps);
+        }
+        if (--mUntilCheck == 0) {
+            mUntilCheck = CHECK_INTERVAL;
+            check();
+        }
+        return mTarget.charAt(index);
+    }
+
+    private void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RegexTimeoutException("マッチング中に割り込まれました", mRegex, mSteps);
+        }
+        if (mHasDeadline && System.nanoTime() - mDeadline > 0) {
+            throw new RegexTimeoutException("マッチングが制限時間を超えました", mRegex, mSteps);
+        }
+    }
+
+    @Override
+    public int length() {
+        return mTarget.length();
+    }
+
+    // グループの文字列を取り出すときに使われるので、制限の対象にしない
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return mTarget.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return mTarget.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ *  マッチ箇所を含む行を、行番号と組にして扱う不変クラスです
+ *  <p>
+ *  RegexLineScannerの結果として作成されます。
+ *  gオプションが指定されていれば行内のすべてのマッチ箇所を、そうでなければ最初のマッチ箇所だけを保持します。
+ *  PartDataのstart()やend()は、入力全体における位置です
+ *
+ *  @since 1.3.0
+ */
+public final class LineMatch {
+    private final long mLineNumber;
+    private final long mLineStart;
+    private final String mLine;
+    private final List<PartData> mData;
+
+    LineMatch(long lineNumber, long lineStart, String line, List<PartData> data) {
+        if (data.isEmpty()) {
+            throw new IllegalArgumentException("data is empty");
+        }
+        mLineNumber = lineNumber;
+        mLineStart = lineStart;
+        mLine = Objects.requireNonNull(line, "line is null");
+        mData = Collections.unmodifiableList(data);
+    }
+
+    /**
+     *  行番号を返します
+     *  @return 1から始まる行番号
+     */
+    public long getLineNumber() {
+        return mLineNumber;
+    }
+
+    /**
+     *  行の先頭の位置を返します
+     *  @return 入力全体における行の先頭の位置
+     */
+    public long getLineStart() {
+        return mLineStart;
+    }
+
+    /**
+     *  行の内容を返します
+     *  @return 行区切りを含まない行の文字列
+     */
+    public String getLine() {
+        return mLine;
+    }
+
+    /**
+     *  行内の最初のマッチ箇所を返します
+     *  @return 最初のマッチ箇所
+     */
+    public PartData getData() {
+        return mData.get(0);
+    }
+
+    /**
+     *  行内のマッチ箇所を返します
+     *  @return 先頭から順に並んだ変更できないリスト。gオプションが指定されていなければ要素はひとつ
+     */
+    public List<PartData> getAllData() {
+        return mData;
+    }
+
+    /**
+     *  grep -nと同じく、"行番号:行の内容"の形の文字列表現を返します
+     */
+    @Override
+    public String toString() {
+        return mLineNumber + ":" + mLine;
+    }
+}
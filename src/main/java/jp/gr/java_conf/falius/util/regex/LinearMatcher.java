@@ -0,0 +1,255 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ *  LinearProgramの命令列をPike VMとして実行し、マッチ箇所を探すクラスです
+ *  <p>
+ *  ターゲット文字列を1文字ずつ読み進めながら、命令列上の全スレッドを同時に進めます。
+ *  同じ命令に到達したスレッドは優先順位の高いものだけを残すので、
+ *  1文字あたりの手間は命令列の長さで抑えられ、バックトラックによる爆発は起こりません。
+ *  補助文字を読んだスレッドは、下位サロゲートを読み飛ばす待機状態を経て次の命令へ進みます
+ *  <p>
+ *  可変であり、複数のスレッドで共有することはできません
+ *
+ *  @since 1.3.0
+ */
+final class LinearMatcher {
+    private final LinearProgram mProgram;
+    private final int mSize; // 命令の数。待機状態はpc + mSizeで表す
+    private ThreadList mCurrent;
+    private ThreadList mNext;
+    private final int[] mMatched; // 最後に見つかったマッチ箇所のスロット
+
+    // addThreadの作業領域。命令の番号と、グループの位置を戻すための(-1 - スロット, 元の値)の組を積む
+    private int[] mStack;
+    private int[] mSlots;
+
+    LinearMatcher(LinearProgram program) {
+        mProgram = program;
+        mSize = program.size();
+        mCurrent = new ThreadList(mSize * 2, program.slotCount());
+        mNext = new ThreadList(mSize * 2, program.slotCount());
+        mMatched = new int[program.slotCount()];
+        mStack = new int[16];
+        mSlots = new int[program.slotCount()];
+    }
+
+    /**
+     *  fromの位置以降で、最初のマッチ箇所を探します
+     *  @param text ターゲット文字列
+     *  @param from 探し始める位置
+     *  @param prefix マッチ箇所の先頭の固定文字列。なければnull
+     *  @return 見つかった場合はtrue
+     */
+    boolean search(CharSequence text, int from, LiteralSearch prefix) {
+        int len = text.length();
+        boolean isMatched = false;
+        mCurrent.clear();
+        for (int pos = from; pos <= len; pos++) {
+            if (!isMatched) {
+                if (mCurrent.mSize == 0 && Objects.nonNull(prefix)) {
+                    // 実行中のスレッドがなければ、先頭の固定文字列が現れる位置まで読み飛ばす
+                    pos = prefix.indexOf(text, pos);
+                    if (pos < 0) {
+                        break;
+                    }
+                }
+                if (pos == from || !isInsidePair(text, pos)) {
+                    Arrays.fill(mSlots, -1);
+                    addThread(mCurrent, 0, text, pos);
+                }
+            }
+            if (mCurrent.mSize == 0) {
+                if (isMatched) {
+                    break;
+                }
+                mCurrent.clear(); // 到達済みの印だけが残っている
+                continue; // この位置から始まるマッチ箇所はない
+            }
+            mNext.clear();
+            isMatched |= step(text, pos);
+            ThreadList tmp = mCurrent;
+            mCurrent = mNext;
+            mNext = tmp;
+        }
+        return isMatched;
+    }
+
+    // 優先順位の高い順にスレッドを進め、マッチしたスレッドより優先順位の低いスレッドは捨てる
+    private boolean step(CharSequence text, int pos) {
+        int len = text.length();
+        int cp = pos < len ? Character.codePointAt(text, pos) : -1;
+        int next = pos + (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 2 : 1);
+        for (int i = 0; i < mCurrent.mSize; i++) {
+            int pc = mCurrent.mDense[i];
+            int[] slots = mCurrent.mSlots[i];
+            if (pc >= mSize) {
+                // 補助文字の下位サロゲートを読み終えた
+                System.arraycopy(slots, 0, mSlots, 0, mSlots.length);
+                addThread(mNext, pc - mSize + 1, text, pos + 1);
+                continue;
+            }
+            boolean isSatisfied;
+            switch (mProgram.op(pc)) {
+            case LinearProgram.MATCH:
+                System.arraycopy(slots, 0, mMatched, 0, mMatched.length);
+                return true;
+            case LinearProgram.LITERAL:
+                isSatisfied = cp >= 0 && (cp == mProgram.arg1(pc) || cp == mProgram.arg2(pc));
+                break;
+            case LinearProgram.CLASS:
+                isSatisfied = cp >= 0 && mProgram.charClass(mProgram.arg1(pc)).test(cp);
+                break;
+            default:
+                throw new IllegalStateException("unexpected instruction : " + mProgram.op(pc));
+            }
+            if (!isSatisfied) {
+                continue;
+            }
+            System.arraycopy(slots, 0, mSlots, 0, mSlots.length);
+            if (next - pos == 2) {
+                mNext.add(pc + mSize, mSlots);
+            } else {
+                addThread(mNext, pc + 1, text, next);
+            }
+        }
+        return false;
+    }
+
+    // Patternが探し始めないサロゲートペアの途中の位置かどうか
+    private boolean isInsidePair(CharSequence text, int pos) {
+        return mProgram.isSkippingLowSurrogates() && pos > 0 && pos < text.length()
+                && Character.isLowSurrogate(text.charAt(pos)) && Character.isHighSurrogate(text.charAt(pos - 1));
+    }
+
+    // 文字を読まない命令をたどり、mSlotsの状態のスレッドを優先順位の順にlistへ追加する
+    private void addThread(ThreadList list, int startPc, CharSequence text, int pos) {
+        int top = 0;
+        mStack[top++] = startPc;
+        while (top > 0) {
+            int pc = mStack[--top];
+            if (pc < 0) {
+                // グループの位置を戻す
+                int slot = -1 - pc;
+                mSlots[slot] = mStack[--top];
+                continue;
+            }
+            if (list.contains(pc)) {
+                continue;
+            }
+            switch (mProgram.op(pc)) {
+            case LinearProgram.JUMP:
+                list.mark(pc);
+                top = push(top, mProgram.arg1(pc));
+                break;
+            case LinearProgram.SPLIT:
+                list.mark(pc);
+                // 優先するarg1を後に積み、先に取り出す
+                top = push(top, mProgram.arg2(pc));
+                top = push(top, mProgram.arg1(pc));
+                break;
+            case LinearProgram.SAVE:
+                list.mark(pc);
+                int slot = mProgram.arg1(pc);
+                top = push(top, mSlots[slot]);
+                top = push(top, -1 - slot);
+                mSlots[slot] = pos;
+                top = push(top, pc + 1);
+                break;
+            case LinearProgram.ASSERT:
+                list.mark(pc);
+                if (LinearProgram.check(mProgram.arg1(pc), text, pos)) {
+                    top = push(top, pc + 1);
+                }
+                break;
+            default:
+                list.add(pc, mSlots);
+                break;
+            }
+        }
+    }
+
+    private int push(int top, int value) {
+        if (top == mStack.length) {
+            mStack = Arrays.copyOf(mStack, top * 2);
+        }
+        mStack[top] = value;
+        return top + 1;
+    }
+
+    /**
+     *  最後に見つかったマッチ箇所で、グループがマッチした開始位置を返します
+     *  @param group グループ番号
+     *  @return 開始位置。グループがマッチしていなければ-1
+     */
+    int start(int group) {
+        return mMatched[group * 2];
+    }
+
+    /**
+     *  最後に見つかったマッチ箇所で、グループがマッチした終了位置を返します
+     *  @param group グループ番号
+     *  @return 終了位置。グループがマッチしていなければ-1
+     */
+    int end(int group) {
+        return mMatched[group * 2 + 1];
+    }
+
+    /**
+     *  グループの数を返します
+     *  @return マッチ箇所全体を除いたグループの数
+     */
+    int groupCount() {
+        return mMatched.length / 2 - 1;
+    }
+
+    // 命令の番号の集合と、各スレッドのグループの位置。追加した順が優先順位になる
+    private static class ThreadList {
+        private final int[] mDense;
+        private final int[] mSparse;
+        private final int[][] mSlots;
+        private int mSize = 0; // mDenseのうち、スレッドとして実行するもの
+        private int mMarked = 0; // mDenseのうち、スレッドとして実行しないが到達済みのものを含む数
+
+        ThreadList(int capacity, int slotCount) {
+            mDense = new int[capacity];
+            mSparse = new int[capacity];
+            mSlots = new int[capacity][slotCount];
+        }
+
+        boolean contains(int pc) {
+            int i = mSparse[pc];
+            return i < mMarked && mDense[i] == pc;
+        }
+
+        // 到達済みにするが、スレッドとしては実行しない
+        void mark(int pc) {
+            mSparse[pc] = mMarked;
+            mDense[mMarked++] = pc;
+        }
+
+        void add(int pc, int[] slots) {
+            if (contains(pc)) {
+                return;
+            }
+            // 実行するスレッドはmDenseの先頭にまとめる
+            if (mMarked > mSize) {
+                int moved = mDense[mSize];
+                mDense[mMarked] = moved;
+                mSparse[moved] = mMarked;
+            }
+            mDense[mSize] = pc;
+            mSparse[pc] = mSize;
+            System.arraycopy(slots, 0, mSlots[mSize], 0, slots.length);
+            mSize++;
+            mMarked++;
+        }
+
+        void clear() {
+            mSize = 0;
+            mMarked = 0;
+        }
+    }
+}
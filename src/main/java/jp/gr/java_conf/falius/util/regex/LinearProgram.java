@@ -0,0 +1,1033 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ *  後方参照を含まない正規表現を、Thompson NFAの命令列にコンパイルした結果です
+ *  <p>
+ *  LinearMatcherがこの命令列をPike VMとして実行し、ターゲット文字列の長さに比例する時間でマッチ箇所を探します。
+ *  スレッドに優先順位を付けて実行するので、見つかるマッチ箇所とグループはjava.util.regexのバックトラックと同じになります
+ *  <p>
+ *  対応する構文は、文字、エスケープ(\t、\x41、あ、\Q...\Eなど)、文字クラス([a-z]、[^\d]、\d、\w、\s)、.(ドット)、
+ *  ^、$、\A、\z、\Z、\b、\B、グループ(捕捉、(?:...)、(?&lt;name&gt;...))、選択(|)、
+ *  量指定子(*、+、?、{n,m}と、その最短一致)と、i、m、s、dのオプションと埋め込みフラグです。
+ *  後方参照、先読みと後読み、独立したグループ、強欲な量指定子、\p{...}などの文字クラス、
+ *  入れ子や&amp;&amp;を含む文字クラス、それ以外のオプションを含む場合と、
+ *  空文字列にマッチしうるものや入れ子の捕捉グループを含むものを繰り返す場合(Patternと結果が一致しないため)はコンパイルせず、
+ *  CompiledRegexはPatternでマッチングを行います
+ *  <p>
+ *  作成後は不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+final class LinearProgram {
+    // 命令の種類
+    static final int LITERAL = 0; // 1文字(コードポイント)を読む。arg1かarg2のどちらかに一致すれば次の命令へ
+    static final int CLASS = 1; // 1文字を読む。mClasses[arg1]を満たせば次の命令へ
+    static final int SPLIT = 2; // arg1とarg2に分岐する。arg1が優先
+    static final int JUMP = 3; // arg1へ進む
+    static final int SAVE = 4; // 現在位置をarg1番目のスロットに記録する
+    static final int ASSERT = 5; // 現在位置が条件arg1を満たせば次の命令へ
+    static final int MATCH = 6; // マッチ箇所が見つかった
+
+    // ASSERTの条件
+    static final int BEGIN = 0; // ^、\A
+    static final int END = 1; // \z
+    static final int DOLLAR = 2; // $、\Z
+    static final int DOLLAR_MULTILINE = 3; // 複数行モードの$
+    static final int CARET_MULTILINE = 4; // 複数行モードの^
+    static final int UNIX_DOLLAR = 5; // Unixラインモードの$、\Z
+    static final int UNIX_DOLLAR_MULTILINE = 6;
+    static final int UNIX_CARET_MULTILINE = 7;
+    static final int WORD_BOUNDARY = 8; // \b
+    static final int NOT_WORD_BOUNDARY = 9; // \B
+
+    private static final int MAX_PROGRAM_SIZE = 10000; // {n,m}の展開で命令列がこれより長くなる場合はコンパイルしない
+    private static final int INFINITE = -1;
+    // 命令列で対応できるオプション
+    private static final int SUPPORTED_FLAGS = Option.CASE_INSENSITIVE.code() | Option.MULTILINE.code()
+            | Option.DOTALL.code() | Option.UNIX_LINES.code();
+
+    private final int[] mOps;
+    private final int[] mArg1;
+    private final int[] mArg2;
+    private final IntPredicate[] mClasses;
+    private final int mSlotCount; // マッチ箇所全体とグループの開始位置と終了位置の数
+    private final boolean mIsSkippingLowSurrogates; // サロゲートペアの途中からは探し始めない
+
+    /**
+     *  正規表現をコンパイルします
+     *  @param regex スラッシュやオプションを除いた正規表現の本体。Patternとしてコンパイルできることが確認済みのもの
+     *  @param patternFlag パターンフラグ
+     *  @return コンパイル結果。対応していない構文やオプションを含む場合はnull
+     */
+    static LinearProgram compile(String regex, int patternFlag) {
+        if ((patternFlag & ~SUPPORTED_FLAGS) != 0) {
+            return null;
+        }
+        Parser parser = new Parser(regex, patternFlag);
+        Node root = parser.parse();
+        if (Objects.isNull(root)) {
+            return null;
+        }
+        Builder builder = new Builder();
+        builder.add(SAVE, 0, 0);
+        root.emit(builder);
+        builder.add(SAVE, 1, 0);
+        builder.add(MATCH, 0, 0);
+        if (builder.size() > MAX_PROGRAM_SIZE) {
+            return null;
+        }
+        return new LinearProgram(builder, (parser.mGroupCount + 1) * 2, parser.mIsSkippingLowSurrogates);
+    }
+
+    private LinearProgram(Builder builder, int slotCount, boolean isSkippingLowSurrogates) {
+        int size = builder.size();
+        mOps = new int[size];
+        mArg1 = new int[size];
+        mArg2 = new int[size];
+        for (int i = 0; i < size; i++) {
+            int[] inst = builder.mInsts.get(i);
+            mOps[i] = inst[0];
+            mArg1[i] = inst[1];
+            mArg2[i] = inst[2];
+        }
+        mClasses = builder.mClasses.toArray(new IntPredicate[builder.mClasses.size()]);
+        mSlotCount = slotCount;
+        mIsSkippingLowSurrogates = isSkippingLowSurrogates;
+    }
+
+    int size() {
+        return mOps.length;
+    }
+
+    int op(int pc) {
+        return mOps[pc];
+    }
+
+    int arg1(int pc) {
+        return mArg1[pc];
+    }
+
+    int arg2(int pc) {
+        return mArg2[pc];
+    }
+
+    IntPredicate charClass(int index) {
+        return mClasses[index];
+    }
+
+    int slotCount() {
+        return mSlotCount;
+    }
+
+    /**
+     *  文字を読む命令のいずれかが、指定した文字を読めるかどうかを返します
+     *  @param cp 文字
+     *  @return 読める命令があればtrue
+     */
+    boolean canRead(int cp) {
+        for (int pc = 0; pc < mOps.length; pc++) {
+            if (mOps[pc] == LITERAL && (mArg1[pc] == cp || mArg2[pc] == cp)) {
+                return true;
+            }
+            if (mOps[pc] == CLASS && mClasses[mArg1[pc]].test(cp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Patternは正規表現に補助文字が含まれる場合、サロゲートペアの下位サロゲートの位置からは探し始めない
+    boolean isSkippingLowSurrogates() {
+        return mIsSkippingLowSurrogates;
+    }
+
+    /**
+     *  位置posが条件を満たすかどうかを、Patternの該当するノードと同じ規則で判定します
+     *  @param kind 条件
+     *  @param text ターゲット文字列
+     *  @param pos 位置
+     *  @return 条件を満たせばtrue
+     */
+    static boolean check(int kind, CharSequence text, int pos) {
+        int end = text.length();
+        switch (kind) {
+        case BEGIN:
+            return pos == 0;
+        case END:
+            return pos == end;
+        case DOLLAR:
+            if (pos < end - 2) {
+                return false;
+            }
+            if (pos == end - 2) {
+                return text.charAt(pos) == '\r' && text.charAt(pos + 1) == '\n';
+            }
+            if (pos < end) {
+                char c = text.charAt(pos);
+                if (c == '\n') {
+                    return !(pos > 0 && text.charAt(pos - 1) == '\r');
+                }
+                return isLineTerminator(c);
+            }
+            return true;
+        case DOLLAR_MULTILINE:
+            if (pos < end) {
+                char c = text.charAt(pos);
+                if (c == '\n') {
+                    return !(pos > 0 && text.charAt(pos - 1) == '\r');
+                }
+                return isLineTerminator(c);
+            }
+            return true;
+        case CARET_MULTILINE:
+            // 入力の末尾には、直前が改行であってもマッチしない
+            if (pos == end) {
+                return false;
+            }
+            if (pos > 0) {
+                char c = text.charAt(pos - 1);
+                if (!isLineTerminator(c)) {
+                    return false;
+                }
+                return !(c == '\r' && text.charAt(pos) == '\n');
+            }
+            return true;
+        case UNIX_DOLLAR:
+            return pos == end || (pos == end - 1 && text.charAt(pos) == '\n');
+        case UNIX_DOLLAR_MULTILINE:
+            return pos == end || text.charAt(pos) == '\n';
+        case UNIX_CARET_MULTILINE:
+            return pos != end && (pos == 0 || text.charAt(pos - 1) == '\n');
+        case WORD_BOUNDARY:
+            return isWordBefore(text, pos) != isWordAt(text, pos);
+        case NOT_WORD_BOUNDARY:
+            return isWordBefore(text, pos) == isWordAt(text, pos);
+        default:
+            throw new IllegalStateException("unknown assertion : " + kind);
+        }
+    }
+
+    private static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isWord(int cp) {
+        return cp == '_' || Character.isLetterOrDigit(cp);
+    }
+
+    // \bの判定。結合文字は、その前にある基底文字と同じ扱いにする
+    private static boolean isWordBefore(CharSequence text, int pos) {
+        if (pos <= 0) {
+            return false;
+        }
+        int cp = Character.codePointBefore(text, pos);
+        return isWord(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && hasBase(text, pos - 1));
+    }
+
+    private static boolean isWordAt(CharSequence text, int pos) {
+        if (pos >= text.length()) {
+            return false;
+        }
+        int cp = Character.codePointAt(text, pos);
+        return isWord(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && hasBase(text, pos));
+    }
+
+    private static boolean hasBase(CharSequence text, int pos) {
+        for (int i = pos; i >= 0; i--) {
+            int cp = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(cp)) {
+                return true;
+            }
+            if (Character.getType(cp) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // 命令列を組み立てる
+    private static class Builder {
+        private final List<int[]> mInsts = new ArrayList<>();
+        private final List<IntPredicate> mClasses = new ArrayList<>();
+
+        int add(int op, int arg1, int arg2) {
+            mInsts.add(new int[] { op, arg1, arg2 });
+            return mInsts.size() - 1;
+        }
+
+        int addClass(IntPredicate predicate) {
+            mClasses.add(predicate);
+            return add(CLASS, mClasses.size() - 1, 0);
+        }
+
+        void patch(int pc, int arg1, int arg2) {
+            int[] inst = mInsts.get(pc);
+            inst[1] = arg1;
+            inst[2] = arg2;
+        }
+
+        int size() {
+            return mInsts.size();
+        }
+    }
+
+    // 構文木
+    private abstract static class Node {
+        abstract void emit(Builder builder);
+
+        // 空文字列にマッチしうるかどうか
+        abstract boolean canBeEmpty();
+    }
+
+    private static class LiteralNode extends Node {
+        private final int mCodePoint;
+        private final int mOther; // 大文字と小文字を区別しない場合のもう一方。なければmCodePointと同じ
+
+        LiteralNode(int codePoint, int other) {
+            mCodePoint = codePoint;
+            mOther = other;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            builder.add(LITERAL, mCodePoint, mOther);
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return false;
+        }
+    }
+
+    private static class ClassNode extends Node {
+        private final IntPredicate mPredicate;
+
+        ClassNode(IntPredicate predicate) {
+            mPredicate = predicate;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            builder.addClass(mPredicate);
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return false;
+        }
+    }
+
+    private static class AssertNode extends Node {
+        private final int mKind;
+
+        AssertNode(int kind) {
+            mKind = kind;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            builder.add(ASSERT, mKind, 0);
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return true;
+        }
+    }
+
+    private static class GroupNode extends Node {
+        private final int mIndex; // 捕捉しないグループは0
+        private final Node mChild;
+
+        GroupNode(int index, Node child) {
+            mIndex = index;
+            mChild = child;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            if (mIndex > 0) {
+                builder.add(SAVE, mIndex * 2, 0);
+            }
+            mChild.emit(builder);
+            if (mIndex > 0) {
+                builder.add(SAVE, mIndex * 2 + 1, 0);
+            }
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return mChild.canBeEmpty();
+        }
+    }
+
+    private static class ConcatNode extends Node {
+        private final List<Node> mChildren;
+
+        ConcatNode(List<Node> children) {
+            mChildren = children;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            for (Node child : mChildren) {
+                child.emit(builder);
+            }
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            for (Node child : mChildren) {
+                if (!child.canBeEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class AltNode extends Node {
+        private final List<Node> mChildren;
+
+        AltNode(List<Node> children) {
+            mChildren = children;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            List<Integer> jumps = new ArrayList<>();
+            for (int i = 0; i < mChildren.size() - 1; i++) {
+                int split = builder.add(SPLIT, 0, 0);
+                mChildren.get(i).emit(builder);
+                jumps.add(builder.add(JUMP, 0, 0));
+                builder.patch(split, split + 1, builder.size());
+            }
+            mChildren.get(mChildren.size() - 1).emit(builder);
+            for (int jump : jumps) {
+                builder.patch(jump, builder.size(), 0);
+            }
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            for (Node child : mChildren) {
+                if (child.canBeEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class RepeatNode extends Node {
+        private final Node mChild;
+        private final int mMin;
+        private final int mMax; // INFINITEは上限なし
+        private final boolean mIsGreedy;
+
+        RepeatNode(Node child, int min, int max, boolean isGreedy) {
+            mChild = child;
+            mMin = min;
+            mMax = max;
+            mIsGreedy = isGreedy;
+        }
+
+        @Override
+        void emit(Builder builder) {
+            for (int i = 0; i < mMin; i++) {
+                mChild.emit(builder);
+                if (builder.size() > MAX_PROGRAM_SIZE) {
+                    return;
+                }
+            }
+            if (mMax == INFINITE) {
+                // x*をsplit L1, L3; L1: x; split L1, L3; L3:とする
+                // 空文字列にマッチした繰り返しの後は、Patternと同じく繰り返しを終えて先へ進む
+                int split = builder.add(SPLIT, 0, 0);
+                mChild.emit(builder);
+                int loop = builder.add(SPLIT, 0, 0);
+                int body = split + 1;
+                int exit = builder.size();
+                branch(builder, split, body, exit);
+                branch(builder, loop, body, exit);
+                return;
+            }
+            List<Integer> splits = new ArrayList<>();
+            for (int i = mMin; i < mMax; i++) {
+                splits.add(builder.add(SPLIT, 0, 0));
+                mChild.emit(builder);
+                if (builder.size() > MAX_PROGRAM_SIZE) {
+                    return;
+                }
+            }
+            int exit = builder.size();
+            for (int split : splits) {
+                branch(builder, split, split + 1, exit);
+            }
+        }
+
+        private void branch(Builder builder, int split, int body, int exit) {
+            if (mIsGreedy) {
+                builder.patch(split, body, exit);
+            } else {
+                builder.patch(split, exit, body);
+            }
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return mMin == 0 || mChild.canBeEmpty();
+        }
+    }
+
+    private static class EmptyNode extends Node {
+        @Override
+        void emit(Builder builder) {
+        }
+
+        @Override
+        boolean canBeEmpty() {
+            return true;
+        }
+    }
+
+    /**
+     *  正規表現を構文木にする再帰下降パーサです
+     *  対応していない構文があれば解析を打ち切り、parse()はnullを返します
+     */
+    private static class Parser {
+        private final String mRegex;
+        private int mPos = 0;
+        private int mFlags;
+        private boolean mIsUnsupported = false;
+        private int mGroupCount = 0;
+        private boolean mIsSkippingLowSurrogates = false;
+
+        Parser(String regex, int patternFlag) {
+            mRegex = regex;
+            mFlags = patternFlag;
+        }
+
+        Node parse() {
+            Node ret = alternation();
+            if (mIsUnsupported || mPos < mRegex.length()) {
+                return null;
+            }
+            return ret;
+        }
+
+        // 解析を打ち切る
+        private Node unsupported() {
+            mIsUnsupported = true;
+            mPos = mRegex.length();
+            return new EmptyNode();
+        }
+
+        private boolean has(Option option) {
+            return (mFlags & option.code()) != 0;
+        }
+
+        private boolean atEnd() {
+            return mPos >= mRegex.length();
+        }
+
+        private char peek() {
+            return mRegex.charAt(mPos);
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(sequence());
+            while (!atEnd() && peek() == '|') {
+                mPos++;
+                alternatives.add(sequence());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new AltNode(alternatives);
+        }
+
+        private Node sequence() {
+            List<Node> nodes = new ArrayList<>();
+            while (!atEnd() && peek() != '|' && peek() != ')') {
+                int groupCount = mGroupCount;
+                Node atom = atom();
+                if (Objects.nonNull(atom)) {
+                    nodes.add(quantifier(atom, groupCount));
+                }
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes);
+        }
+
+        // 埋め込みフラグだけのグループ((?i)など)はnullを返す
+        private Node atom() {
+            char c = peek();
+            switch (c) {
+            case '(':
+                return group();
+            case '[':
+                return charClass();
+            case '\\':
+                return escape();
+            case '.':
+                mPos++;
+                if (has(Option.DOTALL)) {
+                    return new ClassNode(cp -> true);
+                }
+                if (has(Option.UNIX_LINES)) {
+                    return new ClassNode(cp -> cp != '\n');
+                }
+                return new ClassNode(cp -> !isLineTerminator(cp));
+            case '^':
+                mPos++;
+                if (!has(Option.MULTILINE)) {
+                    return new AssertNode(BEGIN);
+                }
+                return new AssertNode(has(Option.UNIX_LINES) ? UNIX_CARET_MULTILINE : CARET_MULTILINE);
+            case '$':
+                mPos++;
+                if (has(Option.UNIX_LINES)) {
+                    return new AssertNode(has(Option.MULTILINE) ? UNIX_DOLLAR_MULTILINE : UNIX_DOLLAR);
+                }
+                return new AssertNode(has(Option.MULTILINE) ? DOLLAR_MULTILINE : DOLLAR);
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                return unsupported();
+            default:
+                int cp = mRegex.codePointAt(mPos);
+                mPos += Character.charCount(cp);
+                return literal(cp);
+            }
+        }
+
+        private Node literal(int cp) {
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                mIsSkippingLowSurrogates = true;
+            } else if (Character.isSurrogate((char) cp)) {
+                // Patternは対にならないサロゲートを文字単位で比較するので、同じ結果にならない
+                return unsupported();
+            }
+            if (has(Option.CASE_INSENSITIVE) && isAsciiLetter(cp)) {
+                return new LiteralNode(toLower(cp), toUpper(cp));
+            }
+            return new LiteralNode(cp, cp);
+        }
+
+        private Node group() {
+            mPos++; // '('
+            int savedFlags = mFlags;
+            int index = 0;
+            if (!atEnd() && peek() == '?') {
+                mPos++;
+                char c = atEnd() ? ')' : peek();
+                if (c == ':') {
+                    mPos++;
+                } else if (c == '<' && mPos + 1 < mRegex.length() && isAsciiLetter(mRegex.charAt(mPos + 1))) {
+                    int close = mRegex.indexOf('>', mPos);
+                    mPos = close + 1;
+                    index = ++mGroupCount;
+                } else {
+                    // 埋め込みフラグ。先読みや後読みなどは対応しない
+                    boolean isOn = true;
+                    while (!atEnd() && peek() != ')' && peek() != ':') {
+                        char flag = peek();
+                        mPos++;
+                        if (flag == '-') {
+                            isOn = false;
+                            continue;
+                        }
+                        Option option = Option.from(flag);
+                        if (Objects.isNull(option) || (option.code() & SUPPORTED_FLAGS) == 0) {
+                            return unsupported();
+                        }
+                        mFlags = isOn ? mFlags | option.code() : mFlags & ~option.code();
+                    }
+                    if (atEnd()) {
+                        return unsupported();
+                    }
+                    if (peek() == ')') {
+                        // (?i)のフラグは、囲んでいるグループの終わりまで有効
+                        mPos++;
+                        return null;
+                    }
+                    mPos++; // ':'
+                }
+            } else {
+                index = ++mGroupCount;
+            }
+            Node child = alternation();
+            if (atEnd() || peek() != ')') {
+                return unsupported();
+            }
+            mPos++;
+            mFlags = savedFlags;
+            return new GroupNode(index, child);
+        }
+
+        // groupCountはatomを読む前のグループの数
+        private Node quantifier(Node atom, int groupCount) {
+            if (atEnd()) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = peek();
+            if (c == '*') {
+                min = 0;
+                max = INFINITE;
+                mPos++;
+            } else if (c == '+') {
+                min = 1;
+                max = INFINITE;
+                mPos++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                mPos++;
+            } else if (c == '{') {
+                int close = mRegex.indexOf('}', mPos);
+                String body = mRegex.substring(mPos + 1, close);
+                int comma = body.indexOf(',');
+                try {
+                    if (comma < 0) {
+                        min = Integer.parseInt(body.trim());
+                        max = min;
+                    } else {
+                        min = Integer.parseInt(body.substring(0, comma).trim());
+                        String upper = body.substring(comma + 1).trim();
+                        max = upper.isEmpty() ? INFINITE : Integer.parseInt(upper);
+                    }
+                } catch (NumberFormatException e) {
+                    return unsupported();
+                }
+                if (min > MAX_PROGRAM_SIZE || max > MAX_PROGRAM_SIZE) {
+                    return unsupported();
+                }
+                mPos = close + 1;
+            } else {
+                return atom;
+            }
+            boolean isGreedy = true;
+            if (!atEnd() && peek() == '?') {
+                isGreedy = false;
+                mPos++;
+            } else if (!atEnd() && peek() == '+') {
+                return unsupported(); // 強欲な量指定子
+            }
+            if (atom.canBeEmpty()) {
+                // 空文字列にマッチした繰り返しの扱いがPatternと一致しないので、対応しない
+                return unsupported();
+            }
+            int outer = atom instanceof GroupNode ? Math.max(((GroupNode) atom).mIndex, groupCount) : groupCount;
+            if (mGroupCount > outer) {
+                // Patternは失敗した繰り返しの中の入れ子のグループの位置を戻さないので、同じ結果にならない
+                return unsupported();
+            }
+            return new RepeatNode(atom, min, max, isGreedy);
+        }
+
+        private Node escape() {
+            mPos++; // '\\'
+            if (atEnd()) {
+                return unsupported();
+            }
+            char c = peek();
+            mPos++;
+            switch (c) {
+            case 'd':
+            case 'D':
+            case 'w':
+            case 'W':
+            case 's':
+            case 'S':
+                if (Character.isUpperCase(c)) {
+                    // Patternは否定の文字クラスがあると、補助文字を含む正規表現と同じくサロゲートペアの途中から探さない
+                    mIsSkippingLowSurrogates = true;
+                }
+                return new ClassNode(predefined(c));
+            case 'b':
+                return new AssertNode(WORD_BOUNDARY);
+            case 'B':
+                return new AssertNode(NOT_WORD_BOUNDARY);
+            case 'A':
+                return new AssertNode(BEGIN);
+            case 'z':
+                return new AssertNode(END);
+            case 'Z':
+                return new AssertNode(has(Option.UNIX_LINES) ? UNIX_DOLLAR : DOLLAR);
+            case 'Q':
+                int end = mRegex.indexOf("\\E", mPos);
+                String quoted = mRegex.substring(mPos, end < 0 ? mRegex.length() : end);
+                mPos = end < 0 ? mRegex.length() : end + 2;
+                List<Node> nodes = new ArrayList<>();
+                for (int i = 0; i < quoted.length();) {
+                    int cp = quoted.codePointAt(i);
+                    nodes.add(literal(cp));
+                    i += Character.charCount(cp);
+                }
+                return new GroupNode(0, nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes));
+            default:
+                mPos--;
+                int cp = escapedCodePoint();
+                return cp < 0 ? unsupported() : literal(cp);
+            }
+        }
+
+        // \に続く1文字を表すエスケープを読み、その文字を返す。対応していなければ-1
+        private int escapedCodePoint() {
+            char c = peek();
+            mPos++;
+            switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'a':
+                return '\u0007';
+            case 'e':
+                return '\u001B';
+            case 'c':
+                return atEnd() ? -1 : mRegex.charAt(mPos++) ^ 64;
+            case '0':
+                return octal();
+            case 'x':
+                return hex();
+            case 'u':
+                return unicode();
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    return -1; // 後方参照や\p、\hなど
+                }
+                mPos--;
+                int cp = mRegex.codePointAt(mPos);
+                mPos += Character.charCount(cp);
+                return cp;
+            }
+        }
+
+        private int octal() {
+            int ret = 0;
+            int digits = 0;
+            while (digits < 3 && !atEnd() && peek() >= '0' && peek() <= '7') {
+                int next = ret * 8 + (peek() - '0');
+                if (next > 0377) {
+                    break;
+                }
+                ret = next;
+                digits++;
+                mPos++;
+            }
+            return digits == 0 ? -1 : ret;
+        }
+
+        private int hex() {
+            if (!atEnd() && peek() == '{') {
+                int close = mRegex.indexOf('}', mPos);
+                if (close < 0) {
+                    return -1;
+                }
+                try {
+                    int ret = Integer.parseInt(mRegex.substring(mPos + 1, close), 16);
+                    mPos = close + 1;
+                    return ret;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+            return hexDigits(2);
+        }
+
+        private int unicode() {
+            int ret = hexDigits(4);
+            // \\uD83D\\uDE00のように続けて書かれたサロゲートペアはひとつの文字になる
+            if (ret >= 0 && Character.isHighSurrogate((char) ret) && mRegex.startsWith("\\u", mPos)) {
+                int saved = mPos;
+                mPos += 2;
+                int low = hexDigits(4);
+                if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                    return Character.toCodePoint((char) ret, (char) low);
+                }
+                mPos = saved;
+            }
+            return ret;
+        }
+
+        private int hexDigits(int count) {
+            if (mPos + count > mRegex.length()) {
+                return -1;
+            }
+            try {
+                int ret = Integer.parseInt(mRegex.substring(mPos, mPos + count), 16);
+                mPos += count;
+                return ret;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static IntPredicate predefined(char c) {
+            switch (c) {
+            case 'd':
+                return cp -> cp >= '0' && cp <= '9';
+            case 'D':
+                return cp -> !(cp >= '0' && cp <= '9');
+            case 'w':
+                return Parser::isWordChar;
+            case 'W':
+                return cp -> !isWordChar(cp);
+            case 's':
+                return Parser::isSpace;
+            default:
+                return cp -> !isSpace(cp);
+            }
+        }
+
+        private static boolean isWordChar(int cp) {
+            return cp == '_' || (cp >= '0' && cp <= '9') || isAsciiLetter(cp);
+        }
+
+        private static boolean isSpace(int cp) {
+            return cp == ' ' || cp == '\t' || cp == '\n' || cp == '\u000B' || cp == '\f' || cp == '\r';
+        }
+
+        // [...]を読む。入れ子や&&は対応しない
+        private Node charClass() {
+            mPos++; // '['
+            boolean isNegated = false;
+            if (!atEnd() && peek() == '^') {
+                isNegated = true;
+                mIsSkippingLowSurrogates = true;
+                mPos++;
+            }
+            boolean isCaseInsensitive = has(Option.CASE_INSENSITIVE);
+            List<int[]> ranges = new ArrayList<>();
+            List<IntPredicate> predicates = new ArrayList<>();
+            boolean isFirst = true;
+            while (true) {
+                if (atEnd()) {
+                    return unsupported();
+                }
+                char c = peek();
+                if (c == ']' && !isFirst) {
+                    mPos++;
+                    break;
+                }
+                if (c == '[' || (c == '&' && mRegex.startsWith("&&", mPos))) {
+                    return unsupported();
+                }
+                isFirst = false;
+                if (c == '\\' && mPos + 1 < mRegex.length() && "dDwWsS".indexOf(mRegex.charAt(mPos + 1)) >= 0) {
+                    char predefined = mRegex.charAt(mPos + 1);
+                    predicates.add(predefined(predefined));
+                    mIsSkippingLowSurrogates |= Character.isUpperCase(predefined);
+                    mPos += 2;
+                    continue;
+                }
+                int lower = classChar();
+                if (lower < 0) {
+                    return unsupported();
+                }
+                int upper = lower;
+                if (mPos + 1 < mRegex.length() && peek() == '-' && mRegex.charAt(mPos + 1) != ']') {
+                    mPos++;
+                    if (peek() == '[' || (peek() == '\\' && mPos + 1 < mRegex.length()
+                            && "dDwWsS".indexOf(mRegex.charAt(mPos + 1)) >= 0)) {
+                        return unsupported();
+                    }
+                    upper = classChar();
+                    if (upper < 0) {
+                        return unsupported();
+                    }
+                }
+                ranges.add(new int[] { lower, upper });
+            }
+            return new ClassNode(new ClassPredicate(ranges, predicates, isNegated, isCaseInsensitive));
+        }
+
+        // 文字クラスの中の1文字を読む。対応していなければ-1
+        private int classChar() {
+            int cp;
+            if (peek() == '\\') {
+                mPos++;
+                if (atEnd()) {
+                    return -1;
+                }
+                if (peek() == 'Q') {
+                    return -1;
+                }
+                cp = escapedCodePoint();
+            } else {
+                cp = mRegex.codePointAt(mPos);
+                mPos += Character.charCount(cp);
+            }
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                mIsSkippingLowSurrogates = true;
+            } else if (cp >= 0 && Character.isSurrogate((char) cp)) {
+                return -1;
+            }
+            return cp;
+        }
+    }
+
+    // 文字クラスの判定。ASCII文字は表を引く
+    private static class ClassPredicate implements IntPredicate {
+        private static final int ASCII_SIZE = 128;
+
+        private final boolean[] mAscii = new boolean[ASCII_SIZE];
+        private final int[][] mRanges;
+        private final IntPredicate[] mPredicates;
+        private final boolean mIsNegated;
+
+        ClassPredicate(List<int[]> ranges, List<IntPredicate> predicates, boolean isNegated,
+                boolean isCaseInsensitive) {
+            mRanges = ranges.toArray(new int[ranges.size()][]);
+            mPredicates = predicates.toArray(new IntPredicate[predicates.size()]);
+            mIsNegated = isNegated;
+            for (int c = 0; c < ASCII_SIZE; c++) {
+                // Patternと同じく、大文字と小文字を区別しない場合はASCII文字の大文字と小文字のどちらかが含まれていればよい
+                boolean contains = contains(c) || (isCaseInsensitive && (contains(toLower(c)) || contains(toUpper(c))));
+                mAscii[c] = contains != isNegated;
+            }
+        }
+
+        @Override
+        public boolean test(int cp) {
+            return cp < ASCII_SIZE ? mAscii[cp] : contains(cp) != mIsNegated;
+        }
+
+        private boolean contains(int cp) {
+            for (int[] range : mRanges) {
+                if (range[0] <= cp && cp <= range[1]) {
+                    return true;
+                }
+            }
+            for (IntPredicate predicate : mPredicates) {
+                if (predicate.test(cp)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int toUpper(int c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,466 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ *  正規表現を解析し、マッチ箇所が必ず含む固定文字列(必須リテラル)を取り出すクラスです
+ *  <p>
+ *  結果は選択肢ごとのリテラルのリストで、マッチ箇所はそのうちの少なくともひとつを含みます。
+ *  解析は保守的に行い、確実に言えない構文(文字クラスや省略可能な部分など)はリテラルの区切りとして扱います。
+ *  必須リテラルを特定できなければ空のリストになります
+ *  <p>
+ *  大文字と小文字を区別しない場合(iオプションや(?i))は、ASCII文字の大文字と小文字を同一視して比較する必要があります。
+ *  uオプションとiオプションを併用した場合など、ASCIIの範囲外の文字が大文字と小文字の変換でASCII文字と対応しうる場合は、
+ *  リテラルを取り出しません
+ *
+ *  @since 1.3.0
+ */
+final class LiteralExtractor {
+    // 量指定子の種類
+    private static final int NO_QUANTIFIER = 0;
+    private static final int OPTIONAL = 1; // 0回を含む
+    private static final int REPEAT = 2; // 1回以上
+
+    private final String mRegex;
+    private int mPos = 0;
+    private boolean mIsCaseInsensitive;
+    private boolean mIsUnsupported = false; // 解析を諦める構文があった
+    private List<String> mLiterals = Collections.emptyList();
+    private String mPrefix = ""; // マッチ箇所が必ずこの文字列から始まる
+    private String mTopPrefix = null; // 最上位の最初の連接の先頭にあるリテラル。解析中に設定する
+
+    /**
+     *  正規表現から必須リテラルを取り出します
+     *  @param regex スラッシュやオプションを除いた正規表現の本体
+     *  @param patternFlag パターンフラグ
+     *  @return 解析結果
+     */
+    static LiteralExtractor extract(String regex, int patternFlag) {
+        LiteralExtractor ret = new LiteralExtractor(regex, patternFlag);
+        ret.parse(patternFlag);
+        return ret;
+    }
+
+    private LiteralExtractor(String regex, int patternFlag) {
+        mRegex = Objects.requireNonNull(regex);
+        mIsCaseInsensitive = Option.isInclude(patternFlag, Option.CASE_INSENSITIVE);
+    }
+
+    /**
+     *  マッチ箇所が少なくともひとつを含むリテラルのリストを返します
+     *  @return 必須リテラルのリスト。特定できなければ空のリスト
+     */
+    List<String> literals() {
+        return mLiterals;
+    }
+
+    /**
+     *  マッチ箇所の先頭に必ず現れるリテラルを返します
+     *  @return 先頭のリテラル。特定できなければ空文字列
+     */
+    String prefix() {
+        return mPrefix;
+    }
+
+    /**
+     *  リテラルをASCII文字の大文字と小文字を区別せずに比較する必要があるかどうかを返します
+     *  @return 区別しない場合はtrue
+     */
+    boolean isCaseInsensitive() {
+        return mIsCaseInsensitive;
+    }
+
+    private void parse(int patternFlag) {
+        if (Option.isInclude(patternFlag, Option.LITERAL)) {
+            if (!mRegex.isEmpty() && !(mIsCaseInsensitive && Option.isInclude(patternFlag, Option.UNICODE_CASE))) {
+                mLiterals = Collections.singletonList(mRegex);
+                mPrefix = mRegex;
+            }
+            return;
+        }
+        if (Option.isInclude(patternFlag, Option.COMMENTS) || (patternFlag & Pattern.CANON_EQ) != 0) {
+            return;
+        }
+
+        List<String> alternatives = alternatives();
+        if (mIsUnsupported || mPos != mRegex.length() || Objects.isNull(alternatives)) {
+            return;
+        }
+        if (mIsCaseInsensitive && Option.isInclude(patternFlag, Option.UNICODE_CASE)) {
+            return; // "k"がケルビン記号にマッチするなど、ASCII文字の比較では判定できない
+        }
+        mLiterals = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(alternatives)));
+        if (alternatives.size() == 1 && Objects.nonNull(mTopPrefix)) {
+            mPrefix = mTopPrefix;
+        }
+    }
+
+    // |で区切られた選択肢ごとの必須リテラル。必須リテラルのない選択肢があればnull
+    private List<String> alternatives() {
+        List<String> ret = new ArrayList<>();
+        boolean isAllFound = true;
+        while (true) {
+            String literal = sequence();
+            if (literal.isEmpty()) {
+                isAllFound = false;
+            }
+            ret.add(literal);
+            if (mPos < mRegex.length() && mRegex.charAt(mPos) == '|') {
+                mPos++;
+                continue;
+            }
+            return isAllFound ? ret : null;
+        }
+    }
+
+    // 連接のうち、最長の必須リテラル。なければ空文字列
+    private String sequence() {
+        boolean isTop = mPos == 0; // 正規表現の先頭から始まる連接
+        StringBuilder run = new StringBuilder(); // 現在連続しているリテラル
+        String best = "";
+        while (mPos < mRegex.length() && !mIsUnsupported) {
+            char c = mRegex.charAt(mPos);
+            if (c == '|' || c == ')') {
+                break;
+            }
+
+            int atomLength = 0; // runの末尾に追加した、量指定子の対象となる文字数
+            String groupLiteral = null;
+            switch (c) {
+            case '\\':
+                atomLength = escape(run);
+                break;
+            case '[':
+                skipClass();
+                break;
+            case '(':
+                groupLiteral = group();
+                break;
+            case '.':
+            case '^':
+            case '$':
+                mPos++;
+                break;
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                mIsUnsupported = true;
+                break;
+            default:
+                int cp = mRegex.codePointAt(mPos);
+                run.appendCodePoint(cp);
+                mPos += Character.charCount(cp);
+                atomLength = Character.charCount(cp);
+                break;
+            }
+            if (atomLength == 0) {
+                isTop = recordPrefix(isTop, run);
+                best = longer(best, run);
+                run.setLength(0);
+            }
+
+            int quantifier = quantifier();
+            if (quantifier == OPTIONAL) {
+                run.setLength(run.length() - atomLength);
+                groupLiteral = null;
+            }
+            if (quantifier != NO_QUANTIFIER) {
+                isTop = recordPrefix(isTop, run);
+                best = longer(best, run); // 繰り返された文字の後ろは連続しない
+                run.setLength(0);
+            }
+            if (Objects.nonNull(groupLiteral)) {
+                best = longer(best, groupLiteral);
+            }
+        }
+        recordPrefix(isTop, run);
+        return longer(best, run);
+    }
+
+    // 先頭から続いていたリテラルが途切れたので、最初の連接であれば先頭のリテラルとして記録する
+    private boolean recordPrefix(boolean isTop, CharSequence run) {
+        if (isTop) {
+            mTopPrefix = run.toString();
+        }
+        return false;
+    }
+
+    private static String longer(String best, CharSequence candidate) {
+        return candidate.length() > best.length() ? candidate.toString() : best;
+    }
+
+    // \から始まるエスケープを読み、リテラルであればrunに追加してその文字数を返す。リテラルでなければ0
+    private int escape(StringBuilder run) {
+        mPos++; // '\\'
+        if (mPos >= mRegex.length()) {
+            mIsUnsupported = true;
+            return 0;
+        }
+        char c = mRegex.charAt(mPos++);
+        switch (c) {
+        case 'Q':
+            int end = mRegex.indexOf("\\E", mPos);
+            String quoted = mRegex.substring(mPos, end < 0 ? mRegex.length() : end);
+            mPos = end < 0 ? mRegex.length() : end + 2;
+            run.append(quoted);
+            return quoted.isEmpty() ? 0 : 1;
+        case 't':
+            return append(run, '\t');
+        case 'n':
+            return append(run, '\n');
+        case 'r':
+            return append(run, '\r');
+        case 'f':
+            return append(run, '\f');
+        case 'a':
+            return append(run, '\u0007');
+        case 'e':
+            return append(run, '\u001B');
+        case '0':
+            return octalEscape(run);
+        case 'x':
+            return hexEscape(run);
+        case 'u':
+            return fixedHex(run, 4);
+        case 'p':
+        case 'P':
+        case 'N':
+            skipBraces();
+            return 0;
+        case 'k':
+            int close = mRegex.indexOf('>', mPos);
+            mPos = close < 0 ? mRegex.length() : close + 1;
+            return 0;
+        default:
+            if (Character.isLetterOrDigit(c)) {
+                // \d、\b、\1、\c(制御文字)などはリテラルとして扱わない
+                if (c == 'c' && mPos < mRegex.length()) {
+                    mPos++;
+                }
+                // 後方参照の番号がどこまで続くかはグループの数によるので、続く数字もリテラルとして扱わない
+                while (c >= '1' && c <= '9' && mPos < mRegex.length() && isDigit(mRegex.charAt(mPos))) {
+                    mPos++;
+                }
+                return 0;
+            }
+            return append(run, c); // \.や\/などの記号
+        }
+    }
+
+    private static int append(StringBuilder run, char c) {
+        run.append(c);
+        return 1;
+    }
+
+    // \0n、\0nnまたは\0mnn(mは0から3)。Patternと同じく、8進数として読めるだけの数字を読む
+    private int octalEscape(StringBuilder run) {
+        int value = 0;
+        int digits = 0;
+        int max = mPos < mRegex.length() && mRegex.charAt(mPos) <= '3' ? 3 : 2;
+        while (digits < max && mPos < mRegex.length() && isOctal(mRegex.charAt(mPos))) {
+            value = value * 8 + (mRegex.charAt(mPos++) - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            mIsUnsupported = true; // Patternでは構文エラー
+            return 0;
+        }
+        return append(run, (char) value);
+    }
+
+    private static boolean isOctal(char c) {
+        return c >= '0' && c <= '7';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // \xhhまたは\x{h...h}
+    private int hexEscape(StringBuilder run) {
+        if (mPos < mRegex.length() && mRegex.charAt(mPos) == '{') {
+            int close = mRegex.indexOf('}', mPos);
+            if (close < 0) {
+                mIsUnsupported = true;
+                return 0;
+            }
+            try {
+                int cp = Integer.parseInt(mRegex.substring(mPos + 1, close), 16);
+                mPos = close + 1;
+                run.appendCodePoint(cp);
+                return Character.charCount(cp);
+            } catch (IllegalArgumentException e) {
+                mIsUnsupported = true;
+                return 0;
+            }
+        }
+        return fixedHex(run, 2);
+    }
+
+    private int fixedHex(StringBuilder run, int digits) {
+        if (mPos + digits > mRegex.length()) {
+            mIsUnsupported = true;
+            return 0;
+        }
+        try {
+            char c = (char) Integer.parseInt(mRegex.substring(mPos, mPos + digits), 16);
+            mPos += digits;
+            return append(run, c);
+        } catch (NumberFormatException e) {
+            mIsUnsupported = true;
+            return 0;
+        }
+    }
+
+    // \p{...}のような中括弧、あるいは1文字を読み飛ばす
+    private void skipBraces() {
+        if (mPos < mRegex.length() && mRegex.charAt(mPos) == '{') {
+            int close = mRegex.indexOf('}', mPos);
+            mPos = close < 0 ? mRegex.length() : close + 1;
+        } else if (mPos < mRegex.length()) {
+            mPos++;
+        }
+    }
+
+    // 入れ子や[&&...]を含む文字クラスを読み飛ばす
+    private void skipClass() {
+        int depth = 0;
+        while (mPos < mRegex.length()) {
+            char c = mRegex.charAt(mPos++);
+            if (c == '\\') {
+                if (mPos < mRegex.length() && mRegex.charAt(mPos) == 'Q') {
+                    int end = mRegex.indexOf("\\E", mPos);
+                    mPos = end < 0 ? mRegex.length() : end + 2;
+                } else {
+                    mPos++;
+                }
+            } else if (c == '[') {
+                depth++;
+                // 先頭の]や^]は文字として扱われる
+                if (mPos < mRegex.length() && mRegex.charAt(mPos) == '^') {
+                    mPos++;
+                }
+                if (mPos < mRegex.length() && mRegex.charAt(mPos) == ']') {
+                    mPos++;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return;
+                }
+            }
+        }
+        mIsUnsupported = true;
+    }
+
+    // グループを読み、その中身の必須リテラルを返す。選択肢を含む場合や先読みなどの場合はnull
+    private String group() {
+        mPos++; // '('
+        boolean isLookaround = false;
+        if (mPos < mRegex.length() && mRegex.charAt(mPos) == '?') {
+            mPos++;
+            char c = mPos < mRegex.length() ? mRegex.charAt(mPos) : ')';
+            if (c == ':' || c == '>') {
+                mPos++;
+            } else if (c == '=' || c == '!') {
+                mPos++;
+                isLookaround = true;
+            } else if (c == '<') {
+                mPos++;
+                char next = mPos < mRegex.length() ? mRegex.charAt(mPos) : ')';
+                if (next == '=' || next == '!') {
+                    mPos++;
+                    isLookaround = true;
+                } else {
+                    int close = mRegex.indexOf('>', mPos); // 名前付きグループ
+                    mPos = close < 0 ? mRegex.length() : close + 1;
+                }
+            } else if (!inlineFlags()) {
+                return null; // (?i)のように中身のないフラグ指定
+            }
+        }
+
+        List<String> content = alternatives();
+        if (mPos >= mRegex.length() || mRegex.charAt(mPos) != ')') {
+            mIsUnsupported = true;
+            return null;
+        }
+        mPos++;
+        if (isLookaround || Objects.isNull(content) || content.size() != 1) {
+            return null;
+        }
+        return content.get(0);
+    }
+
+    // (?idmsux-idmsux)または(?idmsux-idmsux:のフラグを読む。:が続けばtrue
+    private boolean inlineFlags() {
+        while (mPos < mRegex.length()) {
+            char c = mRegex.charAt(mPos++);
+            switch (c) {
+            case 'i':
+                // (?-i)で無効にする場合も、区別しないものとして扱えば判定は保守的になる
+                mIsCaseInsensitive = true;
+                break;
+            case 'm':
+            case 's':
+            case 'd':
+            case '-':
+                break;
+            case ':':
+                return true;
+            case ')':
+                return false;
+            default:
+                mIsUnsupported = true; // x(コメント)やu(Unicodeの大文字小文字)など
+                return false;
+            }
+        }
+        mIsUnsupported = true;
+        return false;
+    }
+
+    // 量指定子を読み、その種類を返す
+    private int quantifier() {
+        if (mPos >= mRegex.length()) {
+            return NO_QUANTIFIER;
+        }
+        int ret;
+        char c = mRegex.charAt(mPos);
+        if (c == '*' || c == '?') {
+            mPos++;
+            ret = OPTIONAL;
+        } else if (c == '+') {
+            mPos++;
+            ret = REPEAT;
+        } else if (c == '{') {
+            int close = mRegex.indexOf('}', mPos);
+            if (close < 0) {
+                mIsUnsupported = true;
+                return NO_QUANTIFIER;
+            }
+            String range = mRegex.substring(mPos + 1, close);
+            int comma = range.indexOf(',');
+            String min = comma < 0 ? range : range.substring(0, comma);
+            try {
+                ret = Integer.parseInt(min.trim()) == 0 ? OPTIONAL : REPEAT;
+            } catch (NumberFormatException e) {
+                mIsUnsupported = true;
+                return NO_QUANTIFIER;
+            }
+            mPos = close + 1;
+        } else {
+            return NO_QUANTIFIER;
+        }
+        // 最短一致(?)や強欲(+)の指定
+        if (mPos < mRegex.length() && (mRegex.charAt(mPos) == '?' || mRegex.charAt(mPos) == '+')) {
+            mPos++;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,110 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ *  固定文字列を探す、Boyer-Moore-Horspool法による部分文字列探索です
+ *  <p>
+ *  大文字と小文字を区別する場合にStringを探すときは、組み込みのString.indexOf(String, int)を使います。
+ *  大文字と小文字を区別しない場合は、ASCII文字だけを同一視します
+ *  <p>
+ *  作成後は不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+final class LiteralSearch {
+    private static final int TABLE_SIZE = 256; // ずらし量の表は文字の下位8ビットで引く
+
+    private final String mLiteral; // 大文字と小文字を区別しない場合は、ASCII文字を小文字にしたもの
+    private final boolean mIsCaseInsensitive;
+    private final int[] mShift;
+
+    LiteralSearch(String literal, boolean isCaseInsensitive) {
+        Objects.requireNonNull(literal, "literal is null");
+        mIsCaseInsensitive = isCaseInsensitive;
+        mLiteral = isCaseInsensitive ? foldAll(literal) : literal;
+
+        int len = mLiteral.length();
+        mShift = new int[TABLE_SIZE];
+        Arrays.fill(mShift, Math.max(1, len));
+        // 下位8ビットが同じ文字は同じ要素を共有するので、小さいずらし量で上書きしていく
+        for (int i = 0; i < len - 1; i++) {
+            mShift[mLiteral.charAt(i) & (TABLE_SIZE - 1)] = len - 1 - i;
+        }
+    }
+
+    /**
+     *  探す文字列の長さを返します
+     *  @return 文字列の長さ
+     */
+    int length() {
+        return mLiteral.length();
+    }
+
+    /**
+     *  fromの位置以降で、最初に固定文字列が現れる位置を返します
+     *  @param text 対象文字列
+     *  @param from 探し始める位置
+     *  @return 見つかった位置。見つからなければ-1
+     */
+    int indexOf(CharSequence text, int from) {
+        int len = mLiteral.length();
+        int textLength = text.length();
+        from = Math.max(0, from);
+        if (!mIsCaseInsensitive && text instanceof String) {
+            return ((String) text).indexOf(mLiteral, from);
+        }
+        if (len == 0) {
+            return from <= textLength ? from : -1;
+        }
+
+        int last = len - 1;
+        char lastChar = mLiteral.charAt(last);
+        for (int i = from; i + len <= textLength;) {
+            char c = fold(text.charAt(i + last));
+            if (c == lastChar && matchesAt(text, i, last)) {
+                return i;
+            }
+            i += mShift[c & (TABLE_SIZE - 1)];
+        }
+        return -1;
+    }
+
+    /**
+     *  固定文字列を含むかどうかを返します
+     *  @param text 対象文字列
+     *  @return 含む場合はtrue
+     */
+    boolean isContainedIn(CharSequence text) {
+        return indexOf(text, 0) >= 0;
+    }
+
+    // startの位置から、固定文字列の最初のcount文字が一致するかどうか
+    private boolean matchesAt(CharSequence text, int start, int count) {
+        for (int j = 0; j < count; j++) {
+            if (fold(text.charAt(start + j)) != mLiteral.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char fold(char c) {
+        return mIsCaseInsensitive && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static String foldAll(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return mLiteral;
+    }
+}
@@ -0,0 +1,363 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Objects;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ *  ターゲット文字列のマッチ箇所を先頭から順に探すカーソルです
+ *  <p>
+ *  Matcher.find()と同じ順序で同じマッチ箇所を返しますが、
+ *  CompiledRegexが正規表現から取り出した固定文字列を使って、マッチ箇所になりえない部分の探索を省きます
+ *  <ul>
+ *  <li>マッチ箇所の先頭が固定文字列であれば、その出現位置だけでMatcherを実行する
+ *  <li>マッチ箇所が必ず含む固定文字列がターゲット文字列になければ、Matcherを実行しない
+ *  <li>LITERALオプション(l)の正規表現は、Matcherを使わずに固定文字列の探索だけで扱う
+ *  <li>nオプションの正規表現は、Matcherの代わりに線形時間のLinearMatcherで扱う
+ *  </ul>
+ *  find()がtrueを返した後は、MatchResultのメソッドで直前のマッチ箇所を取得できます
+ *  <p>
+ *  可変であり、複数のスレッドで共有することはできません
+ *
+ *  @since 1.3.0
+ */
+abstract class MatchCursor implements MatchResult {
+    protected final CompiledRegex mCompiled;
+    protected CharSequence mTarget;
+
+    /**
+     *  正規表現に適したカーソルを作成します
+     *  @param compiled 正規表現
+     *  @param target ターゲット文字列
+     *  @return 新しいカーソル
+     */
+    static MatchCursor of(CompiledRegex compiled, CharSequence target) {
+        if (Objects.nonNull(compiled.getLiteralSearch())) {
+            return new LiteralCursor(compiled, target);
+        }
+        if (Objects.nonNull(compiled.getLinearProgram())) {
+            return new LinearCursor(compiled, target);
+        }
+        if (Objects.nonNull(compiled.getPrefixSearch())) {
+            return new PrefixCursor(compiled, target);
+        }
+        if (compiled.getRequiredSearches().length > 0) {
+            return new RequiredCursor(compiled, target);
+        }
+        return new PatternCursor(compiled, target);
+    }
+
+    /**
+     *  同じ正規表現であればカーソルを使いまわし、そうでなければ新しいカーソルを作成します
+     *  @param cursor 使いまわすカーソル
+     *  @param compiled 正規表現
+     *  @param target ターゲット文字列
+     *  @return 先頭から探し直す状態のカーソル
+     */
+    static MatchCursor reuse(MatchCursor cursor, CompiledRegex compiled, CharSequence target) {
+        if (cursor.mCompiled != compiled) {
+            return of(compiled, target);
+        }
+        cursor.reset(target);
+        return cursor;
+    }
+
+    MatchCursor(CompiledRegex compiled, CharSequence target) {
+        mCompiled = compiled;
+        mTarget = target;
+    }
+
+    /**
+     *  次のマッチ箇所を探します
+     *  @return 見つかった場合はtrue
+     */
+    abstract boolean find();
+
+    /**
+     *  ターゲット文字列を入れ替え、先頭から探し直す状態にします
+     *  @param target 新しいターゲット文字列
+     */
+    void reset(CharSequence target) {
+        mTarget = target;
+    }
+
+    @Override
+    public int start() {
+        return start(0);
+    }
+
+    @Override
+    public int end() {
+        return end(0);
+    }
+
+    @Override
+    public String group() {
+        return group(0);
+    }
+
+    // Matcherをそのまま使う
+    private static class PatternCursor extends MatchCursor {
+        protected final Matcher mMatcher;
+
+        PatternCursor(CompiledRegex compiled, CharSequence target) {
+            super(compiled, target);
+            mMatcher = compiled.getPattern().matcher(target);
+        }
+
+        @Override
+        boolean find() {
+            return mMatcher.find();
+        }
+
+        @Override
+        void reset(CharSequence target) {
+            super.reset(target);
+            mMatcher.reset(target);
+        }
+
+        @Override
+        public int start(int group) {
+            return mMatcher.start(group);
+        }
+
+        @Override
+        public int end(int group) {
+            return mMatcher.end(group);
+        }
+
+        @Override
+        public String group(int group) {
+            return mMatcher.group(group);
+        }
+
+        @Override
+        public int groupCount() {
+            return mMatcher.groupCount();
+        }
+    }
+
+    // 必須の固定文字列がひとつも含まれていなければ、Matcherを実行せずに終える
+    private static class RequiredCursor extends PatternCursor {
+        private boolean mIsChecked = false;
+        private boolean mIsRejected = false;
+
+        RequiredCursor(CompiledRegex compiled, CharSequence target) {
+            super(compiled, target);
+        }
+
+        @Override
+        boolean find() {
+            if (!mIsChecked) {
+                mIsChecked = true;
+                mIsRejected = !containsAny();
+            }
+            return !mIsRejected && mMatcher.find();
+        }
+
+        private boolean containsAny() {
+            for (LiteralSearch search : mCompiled.getRequiredSearches()) {
+                if (search.isContainedIn(mTarget)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void reset(CharSequence target) {
+            super.reset(target);
+            mIsChecked = false;
+            mIsRejected = false;
+        }
+    }
+
+    // 先頭の固定文字列の出現位置だけで、その位置から始まるマッチ箇所があるかを調べる
+    // Matcher.find()も先頭に近い位置から順に同じ判定を行うので、見つかるマッチ箇所は同じになる
+    private static class PrefixCursor extends PatternCursor {
+        private int mFrom = 0; // 次に探し始める位置
+
+        PrefixCursor(CompiledRegex compiled, CharSequence target) {
+            super(compiled, target);
+            // 領域の外側の文字も後読みや境界の判定に使い、領域の先頭は^にマッチさせない
+            mMatcher.useTransparentBounds(true);
+            mMatcher.useAnchoringBounds(false);
+        }
+
+        @Override
+        boolean find() {
+            LiteralSearch prefix = mCompiled.getPrefixSearch();
+            int length = mTarget.length();
+            for (int i = prefix.indexOf(mTarget, mFrom); i >= 0; i = prefix.indexOf(mTarget, i + 1)) {
+                mMatcher.region(i, length);
+                if (mMatcher.lookingAt()) {
+                    // 先頭の固定文字列は空でないので、空文字列にはマッチしない
+                    mFrom = mMatcher.end();
+                    return true;
+                }
+            }
+            mFrom = length + 1;
+            return false;
+        }
+
+        @Override
+        void reset(CharSequence target) {
+            super.reset(target);
+            mFrom = 0;
+        }
+    }
+
+    // nオプションの正規表現を、LinearMatcherで扱う
+    // 必須の固定文字列による判定と先頭の固定文字列による読み飛ばしは、Matcherの場合と同じように行う
+    private static class LinearCursor extends MatchCursor {
+        private final LinearMatcher mMatcher;
+        private int mFrom = 0;
+        private boolean mHasMatch = false;
+        private boolean mIsChecked = false;
+
+        LinearCursor(CompiledRegex compiled, CharSequence target) {
+            super(compiled, target);
+            mMatcher = new LinearMatcher(compiled.getLinearProgram());
+        }
+
+        @Override
+        boolean find() {
+            if (!mIsChecked) {
+                mIsChecked = true;
+                if (!containsRequired()) {
+                    mFrom = mTarget.length() + 1;
+                }
+            }
+            if (mFrom > mTarget.length() || !mMatcher.search(mTarget, mFrom, mCompiled.getPrefixSearch())) {
+                mFrom = mTarget.length() + 1;
+                mHasMatch = false;
+                return false;
+            }
+            mHasMatch = true;
+            // Matcherと同じく、空文字列にマッチした場合は次の位置から探す
+            mFrom = mMatcher.end(0) == mMatcher.start(0) ? mMatcher.end(0) + 1 : mMatcher.end(0);
+            return true;
+        }
+
+        private boolean containsRequired() {
+            LiteralSearch[] searches = mCompiled.getRequiredSearches();
+            if (searches.length == 0) {
+                return true;
+            }
+            for (LiteralSearch search : searches) {
+                if (search.isContainedIn(mTarget)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void reset(CharSequence target) {
+            super.reset(target);
+            mFrom = 0;
+            mHasMatch = false;
+            mIsChecked = false;
+        }
+
+        private void checkMatched(int group) {
+            if (!mHasMatch) {
+                throw new IllegalStateException("No match available");
+            }
+            if (group < 0 || group > mMatcher.groupCount()) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+
+        @Override
+        public int start(int group) {
+            checkMatched(group);
+            return mMatcher.start(group);
+        }
+
+        @Override
+        public int end(int group) {
+            checkMatched(group);
+            return mMatcher.end(group);
+        }
+
+        @Override
+        public String group(int group) {
+            checkMatched(group);
+            int start = mMatcher.start(group);
+            return start < 0 ? null : mTarget.subSequence(start, mMatcher.end(group)).toString();
+        }
+
+        @Override
+        public int groupCount() {
+            return mMatcher.groupCount();
+        }
+    }
+
+    // LITERALオプションの正規表現を、Matcherを使わずに扱う
+    private static class LiteralCursor extends MatchCursor {
+        private int mFrom = 0;
+        private int mStart = -1;
+        private int mEnd = -1;
+
+        LiteralCursor(CompiledRegex compiled, CharSequence target) {
+            super(compiled, target);
+        }
+
+        @Override
+        boolean find() {
+            LiteralSearch search = mCompiled.getLiteralSearch();
+            int index = mFrom <= mTarget.length() ? search.indexOf(mTarget, mFrom) : -1;
+            if (index < 0) {
+                mStart = -1;
+                mEnd = -1;
+                mFrom = mTarget.length() + 1;
+                return false;
+            }
+            mStart = index;
+            mEnd = index + search.length();
+            mFrom = mEnd;
+            return true;
+        }
+
+        @Override
+        void reset(CharSequence target) {
+            super.reset(target);
+            mFrom = 0;
+            mStart = -1;
+            mEnd = -1;
+        }
+
+        private void checkMatched(int group) {
+            if (mStart < 0) {
+                throw new IllegalStateException("No match available");
+            }
+            if (group != 0) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+
+        @Override
+        public int start(int group) {
+            checkMatched(group);
+            return mStart;
+        }
+
+        @Override
+        public int end(int group) {
+            checkMatched(group);
+            return mEnd;
+        }
+
+        @Override
+        public String group(int group) {
+            checkMatched(group);
+            return mTarget.subSequence(mStart, mEnd).toString();
+        }
+
+        @Override
+        public int groupCount() {
+            return 0;
+        }
+    }
+}
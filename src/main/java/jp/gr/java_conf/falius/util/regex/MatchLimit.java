@@ -0,0 +1,150 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  <p>
+ *  マッチングにかける手間の上限を表す不変クラスです
+ *  <p>
+ *  利用者が入力した正規表現などでは、(a+)+のような入れ子の量指定子によってバックトラックが爆発的に増え、
+ *  ひとつのマッチングがいつまでも終わらないことがあります。
+ *  MatchLimitを渡したマッチングでは、ターゲット文字列を文字の参照回数を数えるCharSequenceで包み、
+ *  制限時間や参照回数の上限を超えた場合や、スレッドが割り込まれた場合にRegexTimeoutExceptionをスローして打ち切ります。
+ *  また、入れ子の量指定子を含む正規表現を、マッチングを始める前に拒否することもできます
+ *  <pre>{@code
+ * private static final MatchLimit LIMIT = MatchLimit.timeout(50, TimeUnit.MILLISECONDS)
+ *         .withMaxSteps(10_000_000)
+ *         .rejectingNestedQuantifiers();
+ *
+ * boolean found = CompiledRegex.compile(userInput).test(line, LIMIT);
+ * }</pre>
+ *  <p>
+ *  制限時間は、CompiledRegex.match(CharSequence, MatchLimit)などを呼び出した時点から数えます。
+ *  RegexResultはマッチ箇所を要求された時点で探すので、結果を取り出し終えるまでの時間が制限時間の対象になります
+ *
+ *  @since 1.3.0
+ */
+public final class MatchLimit {
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    /** 割り込みだけを確認し、制限時間や参照回数の上限を設けない制限 */
+    public static final MatchLimit INTERRUPTIBLE = new MatchLimit(UNLIMITED, UNLIMITED, false);
+
+    private final long mTimeoutNanos;
+    private final long mMaxSteps;
+    private final boolean mIsRejectingNestedQuantifiers;
+
+    /**
+     *  制限時間を設けたMatchLimitを作成します
+     *  @param timeout 制限時間
+     *  @param unit 制限時間の単位
+     *  @return 新しいMatchLimit
+     *  @throws IllegalArgumentException timeoutが正の数でない場合
+     */
+    public static MatchLimit timeout(long timeout, TimeUnit unit) {
+        return INTERRUPTIBLE.withTimeout(timeout, unit);
+    }
+
+    /**
+     *  文字の参照回数に上限を設けたMatchLimitを作成します
+     *  @param maxSteps ターゲット文字列の文字を参照する回数の上限
+     *  @return 新しいMatchLimit
+     *  @throws IllegalArgumentException maxStepsが正の数でない場合
+     */
+    public static MatchLimit steps(long maxSteps) {
+        return INTERRUPTIBLE.withMaxSteps(maxSteps);
+    }
+
+    private MatchLimit(long timeoutNanos, long maxSteps, boolean isRejectingNestedQuantifiers) {
+        mTimeoutNanos = timeoutNanos;
+        mMaxSteps = maxSteps;
+        mIsRejectingNestedQuantifiers = isRejectingNestedQuantifiers;
+    }
+
+    /**
+     *  制限時間を変更したMatchLimitを返します
+     *  @param timeout 制限時間
+     *  @param unit 制限時間の単位
+     *  @return 新しいMatchLimit
+     *  @throws IllegalArgumentException timeoutが正の数でない場合
+     */
+    public MatchLimit withTimeout(long timeout, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit is null");
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive : " + timeout);
+        }
+        return new MatchLimit(unit.toNanos(timeout), mMaxSteps, mIsRejectingNestedQuantifiers);
+    }
+
+    /**
+     *  文字の参照回数の上限を変更したMatchLimitを返します
+     *  @param maxSteps ターゲット文字列の文字を参照する回数の上限
+     *  @return 新しいMatchLimit
+     *  @throws IllegalArgumentException maxStepsが正の数でない場合
+     */
+    public MatchLimit withMaxSteps(long maxSteps) {
+        if (maxSteps <= 0) {
+            throw new IllegalArgumentException("maxSteps must be positive : " + maxSteps);
+        }
+        return new MatchLimit(mTimeoutNanos, maxSteps, mIsRejectingNestedQuantifiers);
+    }
+
+    /**
+     *  入れ子の量指定子を含む正規表現を、マッチングを始める前に拒否するMatchLimitを返します
+     *  @return 新しいMatchLimit
+     *  @see CompiledRegex#hasNestedQuantifier()
+     */
+    public MatchLimit rejectingNestedQuantifiers() {
+        return new MatchLimit(mTimeoutNanos, mMaxSteps, true);
+    }
+
+    /**
+     *  正規表現がこの制限のもとでマッチングできるかを確認します
+     *  @param compiled 正規表現
+     *  @throws IllegalArgumentException 入れ子の量指定子を拒否する制限で、正規表現が入れ子の量指定子を含む場合
+     */
+    public void check(CompiledRegex compiled) {
+        if (mIsRejectingNestedQuantifiers && compiled.hasNestedQuantifier()) {
+            throw new IllegalArgumentException("入れ子の量指定子を含む正規表現は使えません : " + compiled);
+        }
+    }
+
+    // 正規表現を確認し、ターゲット文字列を制限を課すCharSequenceで包む
+    CharSequence guard(CompiledRegex compiled, CharSequence target) {
+        check(compiled);
+        return new GuardedCharSequence(target, compiled.toString(), mTimeoutNanos, mMaxSteps);
+    }
+
+    /**
+     *  制限時間を返します
+     *  @param unit 単位
+     *  @return 制限時間。制限時間がなければLong.MAX_VALUE
+     */
+    public long getTimeout(TimeUnit unit) {
+        return mTimeoutNanos == UNLIMITED ? UNLIMITED : unit.convert(mTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     *  文字の参照回数の上限を返します
+     *  @return 参照回数の上限。上限がなければLong.MAX_VALUE
+     */
+    public long getMaxSteps() {
+        return mMaxSteps;
+    }
+
+    /**
+     *  入れ子の量指定子を含む正規表現を拒否するかどうかを返します
+     *  @return 拒否する場合はtrue
+     */
+    public boolean isRejectingNestedQuantifiers() {
+        return mIsRejectingNestedQuantifiers;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MatchLimit[timeout=%s, maxSteps=%s, rejectNested=%b]",
+                mTimeoutNanos == UNLIMITED ? "none" : TimeUnit.NANOSECONDS.toMillis(mTimeoutNanos) + "ms",
+                mMaxSteps == UNLIMITED ? "none" : mMaxSteps, mIsRejectingNestedQuantifiers);
+    }
+}
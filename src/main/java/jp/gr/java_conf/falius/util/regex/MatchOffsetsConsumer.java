@@ -0,0 +1,20 @@
+package jp.gr.java_conf.falius.util.regex;
+
+/**
+ *  マッチ箇所の位置を受け取る処理を表す関数型インターフェースです
+ *  <p>
+ *  CompiledRegex.forEachOffsets(CharSequence, MatchOffsetsConsumer)で使います
+ *
+ *  @since 1.3.0
+ */
+@FunctionalInterface
+public interface MatchOffsetsConsumer {
+
+    /**
+     *  ひとつのマッチ箇所の位置を受け取ります
+     *  @param offsets マッチ箇所全体と各グループの開始位置と終了位置を交互に並べた配列。
+     *      [0]と[1]がマッチ箇所全体、[2]と[3]がひとつ目のグループの位置で、グループがマッチしていなければ-1。
+     *      配列はマッチ箇所ごとに使いまわされるので、保持する場合は複製してください
+     */
+    void accept(int[] offsets);
+}
@@ -0,0 +1,133 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ *  ターゲット文字列のマッチ箇所を先頭から順に返すSpliteratorです
+ *  <p>
+ *  マッチ箇所はtryAdvanceが呼ばれた時点でひとつずつ探されるので、limitやanyMatchなどで打ち切ったStreamは、
+ *  それ以降の部分を走査しません。
+ *  <p>
+ *  マッチ箇所が改行を含みえない正規表現であれば、trySplitでターゲット文字列を改行の直後で分割します。
+ *  分割した各範囲は、その範囲から始まるマッチ箇所を範囲の外側の文字も先読みや後読みに使って探すので、
+ *  並列のStreamでも先頭から順に探した場合と同じマッチ箇所になります。
+ *  改行を含みうる正規表現や、後方参照など判定できない構文を含む正規表現、線形時間のエンジンを使う正規表現、
+ *  MatchLimitで制限した結果のターゲット文字列は分割しません
+ *
+ *  @since 1.3.0
+ */
+final class MatchSpliterator implements Spliterator<PartData> {
+    // これより小さい範囲は分割しない
+    static final int MIN_SPLIT_SIZE = 64 * 1024;
+
+    private final CompiledRegex mCompiled;
+    private final String mTarget;
+    private final CharSequence mMatchTarget; // 実際にマッチングを行う文字列。MatchLimitで制限する場合はmTargetを包んだもの
+    private final int mMinSplitSize;
+    private int mFrom; // この範囲から始まるマッチ箇所を返す
+    private final int mTo;
+    private boolean mIsSplit = false; // 分割された範囲であればtrue
+
+    // 分割していない範囲はMatchCursorで、分割した範囲はregionを設定したMatcherで探す
+    private MatchCursor mCursor = null;
+    private Matcher mMatcher = null;
+    private boolean mIsDone = false;
+
+    MatchSpliterator(CompiledRegex compiled, String target, CharSequence matchTarget) {
+        this(compiled, target, matchTarget, MIN_SPLIT_SIZE);
+    }
+
+    MatchSpliterator(CompiledRegex compiled, String target, CharSequence matchTarget, int minSplitSize) {
+        this(compiled, target, matchTarget, minSplitSize, 0, target.length());
+    }
+
+    private MatchSpliterator(CompiledRegex compiled, String target, CharSequence matchTarget, int minSplitSize,
+            int from, int to) {
+        mCompiled = compiled;
+        mTarget = target;
+        mMatchTarget = matchTarget;
+        mMinSplitSize = minSplitSize;
+        mFrom = from;
+        mTo = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PartData> action) {
+        Objects.requireNonNull(action, "action is null");
+        if (mIsDone) {
+            return false;
+        }
+        MatchResult found = mIsSplit ? findInRange() : findAll();
+        if (Objects.isNull(found)) {
+            mIsDone = true;
+            return false;
+        }
+        action.accept(PartData.lazy(found, mTarget, mCompiled.getGroupNames()));
+        return true;
+    }
+
+    // 見つかったマッチ箇所。なければnull
+    private MatchResult findAll() {
+        if (Objects.isNull(mCursor)) {
+            mCursor = MatchCursor.of(mCompiled, mMatchTarget);
+        }
+        return mCursor.find() ? mCursor : null;
+    }
+
+    private MatchResult findInRange() {
+        if (Objects.isNull(mMatcher)) {
+            mMatcher = mCompiled.getPattern().matcher(mTarget);
+            // 範囲の外側の文字も先読みや後読み、境界の判定に使い、範囲の両端は^や$にマッチさせない
+            mMatcher.useTransparentBounds(true);
+            mMatcher.useAnchoringBounds(false);
+            mMatcher.region(mFrom, mTo);
+        }
+        if (!mMatcher.find()) {
+            return null;
+        }
+        // 範囲の末尾での空文字列へのマッチは、次の範囲の先頭のマッチ箇所として扱う
+        if (mMatcher.start() == mTo && mTo < mTarget.length()) {
+            return null;
+        }
+        return mMatcher;
+    }
+
+    @Override
+    public Spliterator<PartData> trySplit() {
+        if (mIsDone || Objects.nonNull(mCursor) || Objects.nonNull(mMatcher) || mTo - mFrom < mMinSplitSize * 2
+                || !isSplittable()) {
+            return null;
+        }
+        int mid = mFrom + (mTo - mFrom) / 2;
+        int newline = mTarget.indexOf('\n', mid);
+        if (newline < 0 || newline + 1 >= mTo) {
+            return null;
+        }
+        int boundary = newline + 1;
+        MatchSpliterator prefix = new MatchSpliterator(mCompiled, mTarget, mMatchTarget, mMinSplitSize, mFrom,
+                boundary);
+        prefix.mIsSplit = true;
+        mFrom = boundary;
+        mIsSplit = true;
+        return prefix;
+    }
+
+    private boolean isSplittable() {
+        return mMatchTarget == mTarget && !mCompiled.isLinear() && mCompiled.isLineBounded();
+    }
+
+    // マッチ箇所の数は、残りの文字数に1を足した数を超えない
+    @Override
+    public long estimateSize() {
+        return mIsDone ? 0 : mTo - mFrom + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    }
+}
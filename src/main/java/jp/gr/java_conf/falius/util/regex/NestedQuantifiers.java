@@ -0,0 +1,139 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ *  正規表現から、繰り返しの量指定子をもつグループの中に、さらに繰り返しの量指定子がある箇所を探すクラスです
+ *  <p>
+ *  (a+)+や(\w*\s?)*のような入れ子の量指定子は、マッチしない入力に対して、
+ *  内側と外側の繰り返し回数の組み合わせをすべて試すことになり、バックトラックが入力長に対して指数的に増えます。
+ *  強欲な量指定子(*+など)や独立したグループ((?&gt;...))の中の繰り返しはバックトラックしないので対象外です。
+ *  選択肢の重なり((a|a)*など)による爆発は検出しません
+ *
+ *  @since 1.3.0
+ */
+final class NestedQuantifiers {
+
+    private NestedQuantifiers() {
+    }
+
+    /**
+     *  入れ子の量指定子を探します
+     *  @param regex スラッシュやオプションを除いた正規表現の本体
+     *  @param patternFlag パターンフラグ
+     *  @return 外側の量指定子をもつグループの開始位置。見つからなければ-1
+     */
+    static int find(String regex, int patternFlag) {
+        if (Option.isInclude(patternFlag, Option.LITERAL)) {
+            return -1;
+        }
+        boolean isComments = Option.isInclude(patternFlag, Option.COMMENTS);
+        // グループごとに、その中に繰り返しがあるかどうか。要素は{開始位置, 繰り返しの有無, 独立したグループか}
+        Deque<int[]> groups = new ArrayDeque<>();
+        int[] top = { -1, 0, 0 };
+        int len = regex.length();
+        int i = 0;
+        while (i < len) {
+            char c = regex.charAt(i);
+            int atomEnd;
+            if (c == '\\') {
+                if (i + 1 < len && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    atomEnd = end < 0 ? len : end + 2;
+                } else {
+                    atomEnd = Math.min(len, i + 2);
+                }
+            } else if (c == '[') {
+                atomEnd = GroupNames.skipClass(regex, i);
+            } else if (c == '#' && isComments) {
+                int end = regex.indexOf('\n', i);
+                i = end < 0 ? len : end + 1;
+                continue;
+            } else if (c == '(') {
+                groups.push(top);
+                boolean isAtomic = i + 2 < len && regex.charAt(i + 1) == '?' && regex.charAt(i + 2) == '>';
+                top = new int[] { i, 0, isAtomic ? 1 : 0 };
+                i++;
+                continue;
+            } else if (c == ')' && !groups.isEmpty()) {
+                int[] group = top;
+                top = groups.pop();
+                i++;
+                int quantifierEnd = quantifier(regex, i);
+                boolean isRepeat = isRepeat(regex, i, quantifierEnd);
+                if (isRepeat && group[1] != 0 && group[2] == 0) {
+                    return group[0];
+                }
+                if ((isRepeat || group[1] != 0) && group[2] == 0) {
+                    top[1] = 1;
+                }
+                i = quantifierEnd;
+                continue;
+            } else {
+                atomEnd = i + 1;
+            }
+            int quantifierEnd = quantifier(regex, atomEnd);
+            if (isRepeat(regex, atomEnd, quantifierEnd)) {
+                top[1] = 1;
+            }
+            i = quantifierEnd;
+        }
+        return -1;
+    }
+
+    // fromの位置から始まる量指定子の終了位置を返す。量指定子がなければfrom
+    private static int quantifier(String regex, int from) {
+        if (from >= regex.length()) {
+            return from;
+        }
+        int i = from;
+        char c = regex.charAt(i);
+        if (c == '*' || c == '+' || c == '?') {
+            i++;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', i);
+            if (close < 0) {
+                return from;
+            }
+            i = close + 1;
+        } else {
+            return from;
+        }
+        // 最短一致(?)や強欲(+)の指定
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    // 量指定子が、バックトラックしうる2回以上の繰り返しを表すかどうか
+    private static boolean isRepeat(String regex, int from, int end) {
+        // 量指定子がない場合と、強欲な量指定子(a++、a{1,3}+など)の場合
+        if (from == end || (end - from >= 2 && regex.charAt(end - 1) == '+')) {
+            return false;
+        }
+        char c = regex.charAt(from);
+        if (c == '*' || c == '+') {
+            return true;
+        }
+        if (c == '?') {
+            return false;
+        }
+        // {n}、{n,}、{n,m}
+        String body = regex.substring(from + 1, regex.indexOf('}', from));
+        int comma = body.indexOf(',');
+        if (comma < 0) {
+            return false;
+        }
+        String max = body.substring(comma + 1).trim();
+        if (max.isEmpty()) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(max) > Integer.parseInt(body.substring(0, comma).trim());
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+}
@@ -58,6 +58,18 @@ enum Option {
         return sStringToEnum.get(str);
     }
 
+    // オプション文字からOptionを取得する。該当するものがなければnull
+    // スラッシュで囲まれた正規表現の走査中に呼ばれるため、オブジェクトを生成しない
+    public static Option from(char c) {
+        for (Option option : VALUES) {
+            if (option.mStr.charAt(0) == c) {
+                return option;
+            }
+        }
+        return null;
+    }
+
+    private static final Option[] VALUES = values(); // values()は呼び出しのたびに配列を複製するので使いまわす
     private final static Map<String, Option> sStringToEnum = new HashMap<>();
 
     static {
@@ -80,6 +92,11 @@ enum Option {
         return mCode;
     }
 
+    // オプションを表す文字
+    public String str() {
+        return mStr;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,246 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *  <p>
+ *  複数のファイルや大きなファイルに対する正規表現の探索を、ForkJoinPoolで並列に行うクラスです
+ *  <p>
+ *  RegexFileScanner.parallel()などで作成します。
+ *  ファイルごとにタスクを分割し、さらにチャンクの大きさを超えるファイルは行の区切りに合わせたチャンクに分割して、
+ *  それぞれをRegexFileScannerで走査します。
+ *  結果は渡したファイルの順、ファイル内では先頭からの順に並べたFileMatchのリストになり、
+ *  RegexFileScannerでファイルを順に走査した場合と同じ内容になります
+ *  <pre>{@code
+ * ParallelRegexSearch search = CompiledRegex.compile("/ERROR (\\w+)/")
+ *         .fileScanner(StandardCharsets.UTF_8)
+ *         .parallel(new ForkJoinPool(32));
+ * for (FileMatch match : search.search(logFiles)) {
+ *     System.out.println(match);
+ * }
+ * }</pre>
+ *  <p>
+ *  チャンクの境界をまたぐマッチ箇所があった場合、次のチャンクはその終了位置から順に走査し直すので、
+ *  改行をまたぐマッチ箇所が多い正規表現では並列化の効果が小さくなります
+ *  <p>
+ *  このクラスは不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+public class ParallelRegexSearch {
+    static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    // チャンクの境界から改行を探す範囲のバイト数。見つからなければ行の途中で分割する
+    private static final int LINE_SEARCH_SIZE = 4096;
+
+    private final RegexFileScanner mScanner;
+    private final ForkJoinPool mPool;
+    private final long mChunkSize;
+
+    ParallelRegexSearch(RegexFileScanner scanner, ForkJoinPool pool, long chunkSize) {
+        mScanner = Objects.requireNonNull(scanner, "scanner is null");
+        mPool = Objects.requireNonNull(pool, "pool is null");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive : " + chunkSize);
+        }
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     *  走査に使うRegexFileScannerを返します
+     *  @return RegexFileScanner
+     */
+    public RegexFileScanner getScanner() {
+        return mScanner;
+    }
+
+    /**
+     *  タスクを実行するForkJoinPoolを返します
+     *  @return ForkJoinPool
+     */
+    public ForkJoinPool getPool() {
+        return mPool;
+    }
+
+    /**
+     *  ファイルを分割する大きさを返します
+     *  @return チャンクの大きさ(バイト数)
+     */
+    public long getChunkSize() {
+        return mChunkSize;
+    }
+
+    /**
+     *  ひとつのファイルをチャンクに分割して並列に走査し、すべてのマッチ箇所を返します
+     *  @param path 走査するファイル
+     *  @return 先頭から順に並んだマッチ箇所のリスト
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public List<FileMatch> search(Path path) throws IOException {
+        return search(Collections.singletonList(path));
+    }
+
+    /**
+     *  複数のファイルを並列に走査し、すべてのマッチ箇所を返します
+     *  @param paths 走査するファイル
+     *  @return 渡したファイルの順、ファイル内では先頭からの順に並んだマッチ箇所のリスト
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public List<FileMatch> search(Collection<? extends Path> paths) throws IOException {
+        List<Path> list = new ArrayList<>(paths);
+        for (Path path : list) {
+            Objects.requireNonNull(path, "path is null");
+        }
+        try {
+            return mPool.invoke(new FilesTask(list, 0, list.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ファイルのリストを半分ずつに分割して走査するタスク
+    private class FilesTask extends RecursiveTask<List<FileMatch>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Path> mPaths;
+        private final int mFrom;
+        private final int mTo;
+
+        FilesTask(List<Path> paths, int from, int to) {
+            mPaths = paths;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected List<FileMatch> compute() {
+            if (mTo - mFrom == 0) {
+                return new ArrayList<>();
+            }
+            if (mTo - mFrom == 1) {
+                return searchFile(mPaths.get(mFrom));
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            FilesTask first = new FilesTask(mPaths, mFrom, mid);
+            first.fork();
+            List<FileMatch> second = new FilesTask(mPaths, mid, mTo).compute();
+            List<FileMatch> ret = first.join();
+            ret.addAll(second);
+            return ret;
+        }
+    }
+
+    // ひとつのファイルの[from, to)から始まるマッチ箇所を探すタスク
+    private class ChunkTask extends RecursiveTask<List<PartData>> {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel mChannel;
+        private final long mFrom;
+        private final long mTo;
+
+        ChunkTask(FileChannel channel, long from, long to) {
+            mChannel = channel;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected List<PartData> compute() {
+            List<PartData> ret = new ArrayList<>();
+            try {
+                mScanner.scan(mChannel, mFrom, mTo, ret::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return ret;
+        }
+    }
+
+    private List<FileMatch> searchFile(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            List<ChunkTask> tasks = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                tasks.add(new ChunkTask(channel, bounds[i], bounds[i + 1]));
+            }
+            if (tasks.size() == 1) {
+                return toFileMatches(path, tasks.get(0).compute());
+            }
+            RecursiveTask.invokeAll(tasks);
+            return merge(path, channel, tasks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 各チャンクの結果を順につなげる
+    // 前のチャンクのマッチ箇所が境界をまたいでいれば、順に走査した場合と同じ結果になるように、その終了位置から走査し直す
+    private List<FileMatch> merge(Path path, FileChannel channel, List<ChunkTask> tasks) throws IOException {
+        List<FileMatch> ret = new ArrayList<>();
+        long resumeAt = 0;
+        for (ChunkTask task : tasks) {
+            List<PartData> chunk = task.join();
+            if (resumeAt > task.mFrom && !chunk.isEmpty() && chunk.get(0).start() < resumeAt) {
+                chunk = new ArrayList<>();
+                if (resumeAt < task.mTo) {
+                    mScanner.scan(channel, resumeAt, task.mTo, chunk::add);
+                }
+            }
+            for (PartData data : chunk) {
+                ret.add(new FileMatch(path, data));
+                resumeAt = Math.max(resumeAt, data.end());
+            }
+            resumeAt = Math.max(resumeAt, task.mTo);
+        }
+        return ret;
+    }
+
+    private static List<FileMatch> toFileMatches(Path path, List<PartData> list) {
+        List<FileMatch> ret = new ArrayList<>(list.size());
+        for (PartData data : list) {
+            ret.add(new FileMatch(path, data));
+        }
+        return ret;
+    }
+
+    // チャンクの境界を、直後の改行の次の位置に合わせて返す。先頭は0、末尾はファイルの大きさ
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buf = ByteBuffer.allocate(LINE_SEARCH_SIZE);
+        for (long pos = mChunkSize; pos < size; pos += mChunkSize) {
+            long bound = nextLine(channel, pos, buf);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(size);
+
+        long[] ret = new long[bounds.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = bounds.get(i);
+        }
+        return ret;
+    }
+
+    private static long nextLine(FileChannel channel, long pos, ByteBuffer buf) throws IOException {
+        buf.clear();
+        int read = channel.read(buf, pos);
+        for (int i = 0; i < read; i++) {
+            if (buf.get(i) == '\n') {
+                return pos + i + 1;
+            }
+        }
+        return pos;
+    }
+}
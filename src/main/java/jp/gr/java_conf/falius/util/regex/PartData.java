@@ -1,24 +1,87 @@
 package jp.gr.java_conf.falius.util.regex;
 
-import java.util.ArrayList;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.MatchResult;
 
 /**
      *  <p>正規表現にマッチした各部分文字列を扱う内部クラスです
      *  <p>Regexインスタンスからfind(int)に有効値を渡すことで取り出せます
      *  <p>Dataインスタンスのgroup(int)を使うことで扱っている部分文字列全体とグルーピングした文字列を取り出せます
+     *  <p>Regexから取り出したものはターゲット文字列と各グループの位置だけを保持し、
+     *  部分文字列はgroup(int)が呼ばれた時点で初めて作成されます。
+     *  部分文字列を作成せずに扱う場合は、start(int)とend(int)、あるいはgroupView(int)を使ってください
+     *  <p>名前付きグループ((?&lt;name&gt;...))はgroup(String)で名前を指定して取り出せます。
+     *  名前とグループ番号の対応は正規表現ごとに一度だけ求められ、同じ正規表現から取り出したすべてのインスタンスで共有されます
      *
      *  @since 1.2.0
      */
 public class PartData implements Iterable<String> {
-    private static final String[] EMPTY_STRING_ARRAY = new String[0]; // toArray()で使いまわす空の配列
-    // data.get(0) : 扱う部分文字列全体
-    // data.get(1) : 扱う部分文字列のうちグループ化された文字列のひとつ目
-    private final List<String> mData;
+    // 各グループの開始位置と終了位置を交互に並べた配列。位置はmBaseからの相対位置で、グループがマッチしていなければ-1
+    private final int[] mOffsets;
+    private final long mBase; // ターゲット全体におけるmOffsetsの基準位置
+    // mOffsetsが指す文字列。nullであれば部分文字列を作成時に取り出してある
+    private final CharSequence mSource;
+    // groups[0] : 扱う部分文字列全体
+    // groups[1] : 扱う部分文字列のうちグループ化された文字列のひとつ目
+    // mSourceがあれば、group(int)で必要になった時点で作成する
+    private String[] mGroups;
+    private final Map<String, Integer> mGroupNames; // CompiledRegexが保持するものを共有する
 
-    PartData(List<String> data) {
-        mData = new ArrayList<String>(data);
+    // 渡されたリストと配列はコピーせずにそのまま保持するので、呼び出し側で変更しないこと
+    PartData(List<String> data, int[] offsets, long base, Map<String, Integer> groupNames) {
+        this(data.toArray(new String[data.size()]), offsets, base, groupNames);
+    }
+
+    private PartData(String[] groups, int[] offsets, long base, Map<String, Integer> groupNames) {
+        mGroups = groups;
+        mOffsets = offsets;
+        mBase = base;
+        mSource = null;
+        mGroupNames = groupNames;
+    }
+
+    // 部分文字列を作成せず、sourceにおける位置だけを保持する
+    // sourceは不変であること
+    private PartData(CharSequence source, int[] offsets, Map<String, Integer> groupNames) {
+        mGroups = null;
+        mOffsets = offsets;
+        mBase = 0;
+        mSource = source;
+        mGroupNames = groupNames;
+    }
+
+    // マッチした直後のMatcherなどから、マッチ箇所の文字列と位置を取り出して作成する
+    // basePositionは、matchの位置に足すとターゲット全体での位置になる値
+    // マッチさせた文字列が後で変更されたり破棄されたりする場合に使う
+    static PartData of(MatchResult match, long basePosition, Map<String, Integer> groupNames) {
+        int cnt = match.groupCount() + 1;
+        String[] groups = new String[cnt];
+        int[] offsets = new int[cnt * 2];
+
+        // matcher.groupCount()は、あくまでグループの数なのでマッチ文字列全体のmatcher.group(0)は含まない
+        for (int i = 0; i < cnt; i++) {
+            groups[i] = match.group(i);
+            offsets[i * 2] = match.start(i);
+            offsets[i * 2 + 1] = match.end(i);
+        }
+        return new PartData(groups, offsets, basePosition, groupNames);
+    }
+
+    // マッチした直後のMatcherなどから、マッチ箇所の位置だけを取り出して作成する
+    // sourceはマッチさせた不変の文字列で、部分文字列はgroup(int)で必要になった時点で作成する
+    static PartData lazy(MatchResult match, CharSequence source, Map<String, Integer> groupNames) {
+        int cnt = match.groupCount() + 1;
+        int[] offsets = new int[cnt * 2];
+        for (int i = 0; i < cnt; i++) {
+            offsets[i * 2] = match.start(i);
+            offsets[i * 2 + 1] = match.end(i);
+        }
+        return new PartData(source, offsets, groupNames);
     }
 
     /**
@@ -37,11 +100,127 @@ public class PartData implements Iterable<String> {
      *  @throws IndexOutOfBoundsException 引数に有効範囲外のインデックスが渡された場合
      */
     public String group(int index) {
+        checkIndex(index);
+        if (Objects.isNull(mGroups)) {
+            mGroups = new String[size()];
+        }
+        String ret = mGroups[index];
+        if (Objects.isNull(ret) && Objects.nonNull(mSource) && mOffsets[index * 2] >= 0) {
+            ret = mSource.subSequence(mOffsets[index * 2], mOffsets[index * 2 + 1]).toString();
+            mGroups[index] = ret;
+        }
+        return ret;
+    }
+
+    /**
+     *  名前付きグループにマッチした文字列を返します
+     *  @param  name    グループの名前
+     *  @return 名前付きグループにマッチした文字列。マッチしていなければnull
+     *  @throws IllegalArgumentException 正規表現にその名前のグループがない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @since 1.3.0
+     */
+    public String group(String name) {
+        return group(groupIndex(name));
+    }
+
+    /**
+     *  名前付きグループにマッチした文字列を、できるだけ文字列をコピーせずに返します
+     *  @param  name    グループの名前
+     *  @return 名前付きグループにマッチした文字列。マッチしていなければnull
+     *  @throws IllegalArgumentException 正規表現にその名前のグループがない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @since 1.3.0
+     */
+    public CharSequence groupView(String name) {
+        return groupView(groupIndex(name));
+    }
+
+    /**
+     *  名前付きグループのグループ番号を返します
+     *  @param  name    グループの名前
+     *  @return グループ番号。group(int)などにそのまま渡せる
+     *  @throws IllegalArgumentException 正規表現にその名前のグループがない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @since 1.3.0
+     */
+    public int groupIndex(String name) {
+        Objects.requireNonNull(name, "name is null");
+        Integer ret = mGroupNames.get(name);
+        if (Objects.isNull(ret)) {
+            throw new IllegalArgumentException("No group with name <" + name + ">");
+        }
+        return ret;
+    }
+
+    /**
+     *  マッチした全体文字列及びグルーピング文字列を、できるだけ文字列をコピーせずに返します
+     *  Regexから取り出したものであればターゲット文字列の一部を参照するCharSequenceを、
+     *  そうでなければgroup(int)と同じ文字列を返します
+     *  @param  index   取り出す文字列のインデックス。0ならマッチ箇所全体、1ならひとつ目のグルーピング文字列
+     *  @return マッチした全体文字列及びグルーピング文字列。見つからなければnull
+     *  @throws IndexOutOfBoundsException 引数に有効範囲外のインデックスが渡された場合
+     *  @since 1.3.0
+     */
+    public CharSequence groupView(int index) {
+        checkIndex(index);
+        if (Objects.isNull(mSource) || mOffsets[index * 2] < 0) {
+            return group(index);
+        }
+        return CharBuffer.wrap(mSource, mOffsets[index * 2], mOffsets[index * 2 + 1]);
+    }
+
+    /**
+     *  マッチ箇所の開始位置を返します
+     *  start(0)と同義です
+     *  @return ターゲット文字列(ストリームの場合は読み込んだ文字全体)におけるマッチ箇所の開始位置
+     *  @since 1.3.0
+     */
+    public long start() {
+        return start(0);
+    }
+
+    /**
+     *  マッチ箇所全体及びグルーピング文字列の開始位置を返します
+     *  @param  index   0ならマッチ箇所全体、1ならひとつ目のグルーピング文字列
+     *  @return ターゲット文字列(ストリームの場合は読み込んだ文字全体)における開始位置。グループがマッチしていなければ-1
+     *  @throws IndexOutOfBoundsException 引数に有効範囲外のインデックスが渡された場合
+     *  @since 1.3.0
+     */
+    public long start(int index) {
+        checkIndex(index);
+        int offset = mOffsets[index * 2];
+        return offset < 0 ? -1 : mBase + offset;
+    }
+
+    /**
+     *  マッチ箇所の終了位置を返します
+     *  end(0)と同義です
+     *  @return ターゲット文字列(ストリームの場合は読み込んだ文字全体)におけるマッチ箇所の最後の文字の次の位置
+     *  @since 1.3.0
+     */
+    public long end() {
+        return end(0);
+    }
+
+    /**
+     *  マッチ箇所全体及びグルーピング文字列の終了位置を返します
+     *  @param  index   0ならマッチ箇所全体、1ならひとつ目のグルーピング文字列
+     *  @return ターゲット文字列(ストリームの場合は読み込んだ文字全体)における最後の文字の次の位置。グループがマッチしていなければ-1
+     *  @throws IndexOutOfBoundsException 引数に有効範囲外のインデックスが渡された場合
+     *  @since 1.3.0
+     */
+    public long end(int index) {
+        checkIndex(index);
+        int offset = mOffsets[index * 2 + 1];
+        return offset < 0 ? -1 : mBase + offset;
+    }
+
+    private void checkIndex(int index) {
         if (index < 0 || index > size() - 1) {
             throw new IndexOutOfBoundsException(
                     String.format("有効なインデックスは0から%dです : passed index=%d", size() - 1, index));
         }
-        return mData.get(index);
     }
 
     /**
@@ -50,7 +229,7 @@ public class PartData implements Iterable<String> {
      *  @return 扱うデータの数
      */
     public int size() {
-        return mData.size();
+        return mOffsets.length / 2;
     }
 
     /**
@@ -58,7 +237,7 @@ public class PartData implements Iterable<String> {
      *  @return グルーピングの数
      */
     public int groupCount() {
-        return mData.size() - 1;
+        return size() - 1;
     }
 
     /**
@@ -66,7 +245,11 @@ public class PartData implements Iterable<String> {
      *  @return 扱うデータの配列。[0]にマッチ文字列全体が入り、[1]にひとつ目のグループを表す文字列が入る
      */
     public String[] toArray() {
-        return mData.toArray(EMPTY_STRING_ARRAY);
+        String[] ret = new String[size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = group(i);
+        }
+        return ret;
     }
 
     /**
@@ -74,7 +257,7 @@ public class PartData implements Iterable<String> {
      */
     @Override
     public String toString() {
-        return mData.toString();
+        return Arrays.toString(toArray());
     }
 
     /**
@@ -90,6 +273,6 @@ public class PartData implements Iterable<String> {
      *  保持しているデータ(扱っているマッチ文字列全体及び各グルーピング文字列)のイテレータを返します
      */
     public Iterator<String> iterator() {
-        return mData.iterator();
+        return Arrays.asList(toArray()).iterator();
     }
 }
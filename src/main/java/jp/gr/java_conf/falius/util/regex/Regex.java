@@ -1,16 +1,11 @@
 package jp.gr.java_conf.falius.util.regex;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Arrays;
-import java.util.EnumMap;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  *  <p>
@@ -56,6 +51,7 @@ import java.util.regex.Pattern;
  *  <tfoot><tr><td colspan="3">例:gオプションとiオプションを指定する "/regex/gi"または"/(?i)regex/g"</td></tr></tfoot>
  *  <tbody>
  * <tr><td>g</td><td>group()メソッドで取得できる値を変更する</td><td>なし</td></tr>
+ * <tr><td>n</td><td>バックトラックを行わない線形時間のエンジンでマッチ箇所を探す。後方参照などを含み対応できない正規表現では無視される</td><td>なし</td></tr>
  * <tr><td>i</td><td>大文字と小文字を区別しない</td><td>(?i)</td></tr>
  * <tr><td>m</td><td>複数行モードを有効にする。$記号が各行末にもマッチする</td><td>(?m)</td></tr>
  * <tr><td>s</td><td>DOTALLモードを有効にする。.(ドット)が改行にもマッチする</td><td>(?s)</td></tr>
@@ -87,35 +83,32 @@ import java.util.regex.Pattern;
  * }</pre>
  *
  * @since 1.0
- * @version 1.2.0
+ * @version 1.3.0
  */
 public class Regex implements Iterable<String> {
     // ひとつの正規表現に対してmatch()によって異なる対象文字列を次々マッチさせていくという使い方を可能にするため、
     // 可変オブジェクトにしている
     // そのため、Mapなどのkeyとしては不適
     // マルチスレッドでのインスタンス共有も不適
+    // 正規表現そのものは不変のCompiledRegexが、マッチングの結果はRegexResultが扱い、このクラスはそれらに処理を委ねる
+    // スレッド間で正規表現を共有したい場合はCompiledRegexを利用する
 
-    private static final Matcher mSlashMatcher; // スラッシュで囲まれた正規表現の形になっているかどうかを判別する
     private static final String[] EMPTY_STRING_ARRAY = new String[0]; // toArray()で使いまわす空の配列
+    private static final RegexCache sCache = new RegexCache(RegexCache.DEFAULT_CAPACITY); // 解析とコンパイルの結果
 
-    private Pattern mPattern = null;
-    private Matcher mMatcher = null;
-    private String mRegex = null; // 正規表現
+    private CompiledRegex mCompiled = null; // 正規表現
     private String mTarget = null; // 調査対象文字列
-    private boolean mIsOptionG = false; // gオプションの有無
-    private int mPatternFlag = 0; // 有効になっているオプションの値
+    private RegexResult mResult = null; // マッチングの結果。match()のたびに使いまわす
+    private MatchLimit mLimit = null; // マッチングにかける手間の上限。制限しなければnull
 
-    private List<PartData> mDataList = new ArrayList<>(); // マッチした各部分文字列を扱うオブジェクトのリスト
-    private List<String> mMatchList = new ArrayList<>(); // マッチした各部分文字列のリスト
-
-    private enum ResultCode {
-        REGEX_ALL, REGEX, G_OPTION, PATTERN_FLAG;
-    };
-
-    static {
-        // commentモードでは正規表現中に改行が入ることもあるのでDOTALLモード
-        Pattern slashPattern_ = Pattern.compile("^/(.+)/([gimsudxl]*)$", Pattern.DOTALL);
-        mSlashMatcher = slashPattern_.matcher("");
+    /**
+     *  newInstance()やtest()などに渡された正規表現の解析結果とコンパイル結果を保持するキャッシュを返します
+     *  上限数の変更や、ヒット率の確認に利用できます
+     *  @return 共有されているキャッシュ
+     *  @since 1.3.0
+     */
+    public static RegexCache cache() {
+        return sCache;
     }
 
     /**
@@ -131,24 +124,18 @@ public class Regex implements Iterable<String> {
     public static boolean test(CharSequence regexOrTarget, CharSequence targetOrRegex) {
         Objects.requireNonNull(targetOrRegex, "targetOrRegex is null");
 
-        Map<ResultCode, String> regexMap = splitStringRegex(regexOrTarget);
-        if (Objects.nonNull(regexMap)) {
-            if (splitStringRegex(targetOrRegex) == null) {
+        CompiledRegex compiled = compileIfRegex(regexOrTarget);
+        if (Objects.nonNull(compiled)) {
+            if (compileIfRegex(targetOrRegex) != null) {
                 throw new IllegalArgumentException("ターゲット文字列がありません");
             }
-            Pattern pattern = createPattern(
-                    regexMap.get(ResultCode.REGEX), Integer.parseInt(regexMap.get(ResultCode.PATTERN_FLAG)));
-            Matcher matcher = pattern.matcher(targetOrRegex);
-            return matcher.find() ? true : false;
+            return compiled.test(targetOrRegex);
         } else {
-            regexMap = splitStringRegex(targetOrRegex);
-            if (Objects.isNull(regexMap)) {
+            compiled = compileIfRegex(targetOrRegex);
+            if (Objects.isNull(compiled)) {
                 throw new IllegalArgumentException("正規表現がありません");
             }
-            Pattern pattern = createPattern(regexMap.get(ResultCode.REGEX),
-                    Integer.parseInt(regexMap.get(ResultCode.PATTERN_FLAG)));
-            Matcher matcher = pattern.matcher(regexOrTarget);
-            return matcher.find() ? true : false;
+            return compiled.test(regexOrTarget);
         }
     }
 
@@ -165,58 +152,58 @@ public class Regex implements Iterable<String> {
      */
     public static boolean matches(CharSequence regexOrTarget, CharSequence targetOrRegex) {
         Objects.requireNonNull(targetOrRegex, "targetOrRegex is null");
-        Map<ResultCode, String> regexMap = splitStringRegex(regexOrTarget);
-        Map<ResultCode, String> targetMap = splitStringRegex(targetOrRegex);
-        if (Objects.isNull(regexMap) && Objects.isNull(targetMap)) {
+        CompiledRegex regex = compileIfRegex(regexOrTarget);
+        CompiledRegex target = compileIfRegex(targetOrRegex);
+        if (Objects.isNull(regex) && Objects.isNull(target)) {
             throw new IllegalArgumentException("正規表現がありません");
         }
-        if (Objects.nonNull(regexMap) && Objects.nonNull(targetMap)) {
+        if (Objects.nonNull(regex) && Objects.nonNull(target)) {
             throw new IllegalArgumentException("ターゲット文字列がありません");
         }
 
-        if (Objects.nonNull(regexMap)) {
+        if (Objects.nonNull(regex)) {
             // regexOrTarget = 正規表現
-            return Pattern.matches(regexMap.get(ResultCode.REGEX), targetOrRegex);
+            return withoutOption(regex).getPattern().matcher(targetOrRegex).matches();
         } else {
             // targetOrRegex = 正規表現
-            return Pattern.matches(splitStringRegex(targetOrRegex).get(ResultCode.REGEX), regexOrTarget);
+            return withoutOption(target).getPattern().matcher(regexOrTarget).matches();
         }
     }
 
-    // 正規表現(スラッシュなし文字列)とパターンフラグ(Patternフィールドの論理和)からPatternを作成する
-    private static Pattern createPattern(String regex, int patternFlag) {
-        if (patternFlag > 0) {
-            return Pattern.compile(regex, patternFlag);
+    // matches(CharSequence, CharSequence)はオプションを反映しないため、オプションを除いたものを取得する
+    private static CompiledRegex withoutOption(CompiledRegex compiled) {
+        if (compiled.getPatternFlag() == 0) {
+            return compiled;
         }
-        return Pattern.compile(regex);
+        return compileIfRegex("/" + compiled.getRegex() + "/");
     }
 
-    // 正規表現文字列を解析して、結果をマップで返す
+    // 渡された文字列がスラッシュで囲まれた正規表現であれば、解析とコンパイルを行った結果を返す
+    // 一度コンパイルした正規表現はキャッシュから取り出すので、解析もコンパイルも行わない
     // 正規表現の形式になっていなければnullを返す
-    // ^/(.+)/([gimsudxl]*)$
-    private static Map<ResultCode, String> splitStringRegex(CharSequence regexOrTarget) {
+    // 共有される可変の状態を持たないので、複数のスレッドから同時に呼び出せる
+    static CompiledRegex compileIfRegex(CharSequence regexOrTarget) {
         Objects.requireNonNull(regexOrTarget, "regexOrTarget is null");
-
-        mSlashMatcher.reset(regexOrTarget);
-
-        if (!mSlashMatcher.find()) {
+        // ^/(.+)/([gnimsudxl]*)$
+        // 正規表現の形になっていないターゲット文字列はキャッシュのキーにしない
+        int closingSlash = SlashLiteral.closingSlash(regexOrTarget);
+        if (closingSlash < 0) {
             return null;
         }
 
-        Map<ResultCode, String> resultMap = new EnumMap<>(ResultCode.class);
-        // 渡された正規表現全体
-        resultMap.put(ResultCode.REGEX_ALL, mSlashMatcher.group());
-        // 囲んでいるスラッシュやオプション文字列を除いた正規表現の本体
-        resultMap.put(ResultCode.REGEX, mSlashMatcher.group(1));
-
-        // オプション各種
-        String strOptions = mSlashMatcher.group(2);
-        resultMap.put(ResultCode.G_OPTION, strOptions.contains("g") ? "true" : "false"); // gオプションの有無
-        Set<Option> options = Option.optionsFrom(strOptions);
-        int patternFlag = Option.computePatternFlag(options);
-        resultMap.put(ResultCode.PATTERN_FLAG, String.valueOf(patternFlag)); // 修飾子の種類
+        String literal = regexOrTarget.toString();
+        CompiledRegex ret = sCache.get(literal);
+        if (Objects.nonNull(ret)) {
+            return ret;
+        }
 
-        return resultMap;
+        ret = new CompiledRegex(
+                /* regex = */ literal.substring(1, closingSlash),
+                /* patternFlag = */ SlashLiteral.patternFlag(literal, closingSlash),
+                /* isOptionG = */ SlashLiteral.hasOptionG(literal, closingSlash),
+                /* isOptionN = */ SlashLiteral.hasOptionN(literal, closingSlash));
+        sCache.put(literal, ret);
+        return ret;
     }
 
     /**
@@ -242,27 +229,19 @@ public class Regex implements Iterable<String> {
      *  @throws NullPointerException 引数にnullが渡された場合
      */
     public static Regex newInstance(CharSequence regexOrTarget) {
-        Map<ResultCode, String> regexMap = splitStringRegex(regexOrTarget);
-        if (Objects.nonNull(regexMap)) {
+        CompiledRegex compiled = compileIfRegex(regexOrTarget);
+        if (Objects.nonNull(compiled)) {
             // 引数は正規表現
-            boolean optionG = Boolean.parseBoolean(regexMap.get(ResultCode.G_OPTION));
-            int patternFlag = Integer.parseInt(regexMap.get(ResultCode.PATTERN_FLAG));
-            return new Regex(
-                    /* regex = */ regexMap.get(ResultCode.REGEX), /* target = */ null,
-                    /* patternFlag = */ patternFlag, /* isOptionG = */ optionG);
+            return new Regex(/* compiled = */ compiled, /* target = */ null);
         } else {
             // 引数は調査対象文字列
-            return new Regex(
-                    /* regex = */ null, /* target = */ regexOrTarget.toString(),
-                    /* patternFlag */ 0, /* isOptionG = */ false);
+            return new Regex(/* compiled = */ null, /* target = */ regexOrTarget.toString());
         }
     }
 
-    private Regex(String regex, String target, int patternFlag, boolean isOptionG) {
-        mRegex = regex;
+    private Regex(CompiledRegex compiled, String target) {
+        mCompiled = compiled;
         mTarget = target;
-        mIsOptionG = isOptionG;
-        mPatternFlag = patternFlag;
     }
 
     /**
@@ -279,7 +258,36 @@ public class Regex implements Iterable<String> {
      *  @return 正規表現。まだ渡されていなければnull
      */
     public String getRegex() {
-        return mRegex;
+        return Objects.isNull(mCompiled) ? null : mCompiled.getRegex();
+    }
+
+    /**
+     *  渡された正規表現をコンパイルしたものを返します
+     *  @return コンパイルされた正規表現。まだ渡されていなければnull
+     *  @since 1.3.0
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  以降のマッチングにかける手間を制限します
+     *  利用者が入力した正規表現を扱う場合など、マッチングがいつまでも終わらない可能性がある場合に利用してください。
+     *  制限を超えると、マッチ箇所を探すメソッドがRegexTimeoutExceptionをスローします
+     *  @param limit マッチングにかける手間の上限。nullを渡すと制限を解除する
+     *  @return 自身のインスタンス
+     *  @throws IllegalArgumentException limitが入れ子の量指定子を拒否し、渡されている正規表現が入れ子の量指定子を含む場合
+     *  @since 1.3.0
+     */
+    public Regex limit(MatchLimit limit) {
+        if (Objects.nonNull(limit) && Objects.nonNull(mCompiled)) {
+            limit.check(mCompiled);
+        }
+        mLimit = limit;
+        if (Objects.nonNull(mResult)) {
+            mResult = newResult(); // 制限を変えて、先頭から探し直す
+        }
+        return this;
     }
 
     /**
@@ -291,105 +299,55 @@ public class Regex implements Iterable<String> {
      */
     public Regex match(CharSequence targetOrRegex) {
         // すでに一度マッチさせていたインスタンスを再利用する場合
-        if (Objects.nonNull(mMatcher)) {
+        if (Objects.nonNull(mResult)) {
             return renewMatch(targetOrRegex);
         }
 
-        Map<ResultCode, String> regexMap = splitStringRegex(targetOrRegex);
+        CompiledRegex compiled = compileIfRegex(targetOrRegex);
 
-        if ((Objects.isNull(mRegex) && Objects.isNull(regexMap))
-                || (Objects.isNull(mTarget) && Objects.nonNull(regexMap))) {
+        if ((Objects.isNull(mCompiled) && Objects.isNull(compiled))
+                || (Objects.isNull(mTarget) && Objects.nonNull(compiled))) {
             throw new IllegalArgumentException(
-                    mRegex == null ? "正規表現がありません" : "ターゲット文字列がありません");
+                    mCompiled == null ? "正規表現がありません" : "ターゲット文字列がありません");
         }
 
-        if (Objects.nonNull(regexMap)) {
+        if (Objects.nonNull(compiled)) {
             // 引数は正規表現
-            mRegex = regexMap.get(ResultCode.REGEX);
-            mIsOptionG = Boolean.parseBoolean(regexMap.get(ResultCode.G_OPTION));
-            mPatternFlag = Integer.parseInt(regexMap.get(ResultCode.PATTERN_FLAG));
+            mCompiled = compiled;
         } else {
             // 引数は調査対象文字列
             mTarget = targetOrRegex.toString();
         }
 
-        mPattern = createPattern(mRegex, mPatternFlag);
-        mMatcher = mPattern.matcher(mTarget);
+        mResult = newResult();
+
+        return this;
+    }
 
-        return this.build();
+    private RegexResult newResult() {
+        return Objects.isNull(mLimit) ? mCompiled.match(mTarget) : mCompiled.match(mTarget, mLimit);
     }
 
-    // PatternとMatcherのいずれかのみ変更し、もう一方はそのまま
+    // 正規表現と対象文字列のいずれかのみ変更し、もう一方はそのまま
+    // マッチングの結果はMatcherごと使いまわす
     private Regex renewMatch(CharSequence targetOrRegex) {
-        Map<ResultCode, String> regexMap = splitStringRegex(targetOrRegex);
-        if (Objects.nonNull(regexMap)) {
+        CompiledRegex compiled = compileIfRegex(targetOrRegex);
+        if (Objects.nonNull(compiled)) {
             // 引数は正規表現
-            mRegex = regexMap.get(ResultCode.REGEX);
-            mIsOptionG = Boolean.parseBoolean(regexMap.get(ResultCode.G_OPTION));
-            mPatternFlag = Integer.parseInt(regexMap.get(ResultCode.PATTERN_FLAG));
-            mPattern = createPattern(mRegex, mPatternFlag);
-            mMatcher = mMatcher.usePattern(mPattern);
+            mCompiled = compiled;
         } else {
             // 引数は調査対象文字列
             mTarget = targetOrRegex.toString();
-            mMatcher.reset(mTarget);
         }
 
-        return this.build();
-    }
-
-    // targetとregexを掛けあわせて、各種データを作成する
-    // マッチ文字列がひとつもなければgMatchList_およびmDataListはともに空のListになる
-    private Regex build() {
-        // 全マッチ部分文字列リストを作成
-        createMatchAll(mMatchList);
-
-        // 部分文字列ごとに内部データを作る
-        mDataList.clear();
-        List<String> temp;
-        while (Objects.nonNull(temp = createMatchList(mMatcher))) {
-            mDataList.add(new PartData(temp));
+        if (Objects.isNull(mLimit)) {
+            mResult.reset(mCompiled, mTarget);
+        } else {
+            mResult = newResult(); // 制限時間はマッチングごとに数え直す
         }
-
-        mMatcher.reset();
-
         return this;
     }
 
-    // matcherを渡されると、次に見つかるマッチ文字列とグループをリストにして返す
-    // matcherが終端に到達していてそれ以上マッチ文字列が見つからなければnull
-    private List<String> createMatchList(Matcher mat) {
-        if (!mat.find()) {
-            return null;
-        }
-        List<String> ret = new ArrayList<String>();
-
-        ret.add(mat.group()); // マッチ文字列全体
-
-        // matcher.groupCount()は、あくまでグループの数なのでマッチ文字列全体のmatcher.group(0)は含まない
-        // グルーピングが0なら、matcher.group(0)も例外を投げる
-        for (int i = 1, cnt = mat.groupCount() + 1; i < cnt; i++) {
-            String temp = mat.group(i);
-            ret.add(temp);
-        }
-
-        return ret;
-    }
-
-    // targetのうち、正規表現regexに該当する部分を抜き出して配列にする(最初のマッチ部分のみ)
-    // targetの全てにおいて、マッチ部分を順に[0]からlistに入れていく
-    // マッチ文字列がひとつもなければ空のListになる
-    private List<String> createMatchAll(List<String> list) {
-        list.clear();
-
-        while (mMatcher.find()) {
-            list.add(mMatcher.group());
-        }
-
-        mMatcher.reset();
-        return list;
-    }
-
     /**
      *  マッチした箇所を表すDataオブジェクトを返します
      *  このメソッドはgオプションの有無に影響されずに利用できます
@@ -401,15 +359,7 @@ public class Regex implements Iterable<String> {
      */
     public PartData find(int index) {
         checkOrThrow();
-        if (matchCount() == 0) {
-            throw new NoSuchElementException("マッチした部分文字列がありません");
-        }
-        if (index < 0 || index > matchCount() - 1) {
-            throw new IndexOutOfBoundsException(
-                    String.format("有効なインデックスは0から%dです : passed index=%d", matchCount() - 1, index));
-        }
-
-        return mDataList.get(index);
+        return mResult.find(index);
     }
 
     /**
@@ -438,21 +388,23 @@ public class Regex implements Iterable<String> {
      */
     public String group(int index) {
         checkOrThrow();
-        if (matchCount() == 0) {
-            throw new NoSuchElementException("マッチした部分文字列がありません");
-        }
-        if (index < 0 || index > groupCount() - 1) {
-            throw new IndexOutOfBoundsException(
-                    String.format(
-                            "有効なインデックスは0から%dです : passed index=%d : gオプション%s",
-                            (groupCount() - 1), index, hasOptionG() ? "あり" : "なし"));
-        }
+        return mResult.group(index);
+    }
 
-        if (hasOptionG()) {
-            return mMatchList.get(index); // 引数で指定された番号の部分文字列がなければnull
-        } else {
-            return find(0).group(index); // マッチした部分文字列がなければnull
-        }
+    /**
+     *  最初にマッチした箇所で、名前付きグループにマッチした文字列を返します
+     *  gオプションの有無にかかわらず、find(0).group(name)と同義です
+     *  @param  name    グループの名前
+     *  @return 名前付きグループにマッチした文字列。マッチしていなければnull
+     *  @throws java.lang.IllegalStateException 正規表現とターゲット文字列が揃っていない状態で呼び出された場合
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     *  @throws IllegalArgumentException 正規表現にその名前のグループがない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @since 1.3.0
+     */
+    public String group(String name) {
+        checkOrThrow();
+        return mResult.group(name);
     }
 
     /**
@@ -464,11 +416,7 @@ public class Regex implements Iterable<String> {
      */
     public String[] toArray() {
         checkOrThrow();
-        if (hasOptionG()) {
-            return groupCount() > 0 ? mMatchList.toArray(EMPTY_STRING_ARRAY) : EMPTY_STRING_ARRAY;
-        } else {
-            return mDataList.size() > 0 ? mDataList.get(0).toArray() : EMPTY_STRING_ARRAY;
-        }
+        return mResult.toArray();
     }
 
     /**
@@ -477,14 +425,10 @@ public class Regex implements Iterable<String> {
      */
     @Override
     public String toString() {
-        if (Objects.isNull(mRegex) || Objects.isNull(mTarget) || matchCount() == 0) {
+        if (Objects.isNull(mResult)) {
             return Arrays.asList(EMPTY_STRING_ARRAY).toString();
         }
-        if (hasOptionG()) {
-            return mMatchList.toString();
-        } else {
-            return find(0).toString();
-        }
+        return mResult.toString();
     }
 
     /**
@@ -495,7 +439,7 @@ public class Regex implements Iterable<String> {
      */
     public int matchCount() {
         checkOrThrow();
-        return mDataList.size();
+        return mResult.matchCount();
     }
 
     /**
@@ -506,11 +450,7 @@ public class Regex implements Iterable<String> {
      */
     public int groupCount() {
         checkOrThrow();
-        if (hasOptionG()) {
-            return mMatchList.size();
-        } else {
-            return matchCount() > 0 ? find(0).size() : 0;
-        }
+        return mResult.groupCount();
     }
 
     /**
@@ -521,7 +461,7 @@ public class Regex implements Iterable<String> {
      */
     public String replaceAll(String replacement) {
         checkOrThrow();
-        return mMatcher.replaceAll(replacement);
+        return mResult.replaceAll(replacement);
     }
 
     /**
@@ -532,7 +472,7 @@ public class Regex implements Iterable<String> {
      */
     public boolean test() {
         checkOrThrow();
-        return mDataList.size() > 0;
+        return mResult.test();
     }
 
     /**
@@ -543,7 +483,7 @@ public class Regex implements Iterable<String> {
      */
     public boolean matches() {
         checkOrThrow();
-        return mMatcher.matches();
+        return mResult.matches();
     }
 
     /**
@@ -552,33 +492,10 @@ public class Regex implements Iterable<String> {
      * @return 指定したオプションの文字列表現
      */
     public String toStringOptions() {
-        StringBuilder sb = new StringBuilder();
-        if (hasOptionG()) {
-            sb.append('g');
-        }
-        if (Option.hasOption(mPatternFlag, "i")) {
-            sb.append('i');
-        }
-        if (Option.hasOption(mPatternFlag, "m")) {
-            sb.append('m');
+        if (Objects.isNull(mCompiled)) {
+            return "";
         }
-        if (Option.hasOption(mPatternFlag, "s")) {
-            sb.append('s');
-        }
-        if (Option.hasOption(mPatternFlag, "u")) {
-            sb.append('u');
-        }
-        if (Option.hasOption(mPatternFlag, "d")) {
-            sb.append('d');
-        }
-        if (Option.hasOption(mPatternFlag, "x")) {
-            sb.append('x');
-        }
-        if (Option.hasOption(mPatternFlag, "l")) {
-            sb.append('l');
-        }
-
-        return sb.toString();
+        return mCompiled.toStringOptions();
     }
 
     /**
@@ -586,7 +503,16 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現にgオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionG() {
-        return mIsOptionG;
+        return Objects.nonNull(mCompiled) && mCompiled.hasOptionG();
+    }
+
+    /**
+     *  渡された正規表現にnオプションが指定されていたかどうかの真偽値を返します
+     *  @return 渡された正規表現にnオプションが指定されていればtrue。それ以外はfalse
+     *  @since 1.3.0
+     */
+    public boolean hasOptionN() {
+        return Objects.nonNull(mCompiled) && mCompiled.hasOptionN();
     }
 
     /**
@@ -595,7 +521,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にiオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionI() {
-        return Option.hasOption(mPatternFlag, "i");
+        return Option.hasOption(patternFlag(), "i");
     }
 
     /**
@@ -604,7 +530,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にmオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionM() {
-        return Option.hasOption(mPatternFlag, "m");
+        return Option.hasOption(patternFlag(), "m");
     }
 
     /**
@@ -613,7 +539,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にsオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionS() {
-        return Option.hasOption(mPatternFlag, "s");
+        return Option.hasOption(patternFlag(), "s");
     }
 
     /**
@@ -622,7 +548,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にuオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionU() {
-        return Option.hasOption(mPatternFlag, "u");
+        return Option.hasOption(patternFlag(), "u");
     }
 
     /**
@@ -631,7 +557,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にdオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionD() {
-        return Option.hasOption(mPatternFlag, "d");
+        return Option.hasOption(patternFlag(), "d");
     }
 
     /**
@@ -640,7 +566,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にxオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionX() {
-        return Option.hasOption(mPatternFlag, "x");
+        return Option.hasOption(patternFlag(), "x");
     }
 
     /**
@@ -648,7 +574,7 @@ public class Regex implements Iterable<String> {
      *  @return 渡された正規表現の/(スラッシュ)の外側にlオプションが指定されていればtrue。それ以外はfalse
      */
     public boolean hasOptionL() {
-        return Option.hasOption(mPatternFlag, "l");
+        return Option.hasOption(patternFlag(), "l");
     }
 
     /**
@@ -658,17 +584,21 @@ public class Regex implements Iterable<String> {
      *  あるいは最初にマッチした部分文字列とそのグルーピング文字列のイテレータ(gオプションなし)、<br>
      */
     public Iterator<String> iterator() {
-        if (hasOptionG()) {
-            return mMatchList.iterator(); // 各マッチ文字列をイテレートする
-        } else {
-            return find(0).iterator(); // 最初のマッチ文字列とそのグルーピング文字列をイテレートする
+        if (hasOptionG() && Objects.isNull(mResult)) {
+            return Collections.emptyIterator();
         }
+        checkOrThrow();
+        return mResult.iterator();
+    }
+
+    private int patternFlag() {
+        return Objects.isNull(mCompiled) ? 0 : mCompiled.getPatternFlag();
     }
 
     private void checkOrThrow() {
-        if (Objects.isNull(mRegex) || Objects.isNull(mTarget)) {
+        if (Objects.isNull(mCompiled) || Objects.isNull(mTarget)) {
             throw new IllegalStateException(
-                    mRegex == null ? "正規表現がありません" : "ターゲット文字列がありません");
+                    mCompiled == null ? "正規表現がありません" : "ターゲット文字列がありません");
         }
     }
 
@@ -681,14 +611,34 @@ public class Regex implements Iterable<String> {
      *  @throws IndexOutOfBoundsException 渡されたインデックスが有効範囲外の場合
      */
     public GroupIterator groupIterator(int index) {
-        if (matchCount() == 0) {
-            throw new NoSuchElementException("マッチした部分文字列がありません");
-        }
-        if (index < 0 || index > groupCount() - 1) {
-            throw new IndexOutOfBoundsException(
-                    String.format("有効なインデックスは0から%dです : passed index=%d", groupCount() - 1, index));
-        }
-        return new GroupIterator(index, this);
+        checkOrThrow();
+        return mResult.groupIterator(index);
+    }
+
+    /**
+     *  マッチ箇所を先頭から順に返すStreamを返します
+     *  gオプションの有無にかかわらず、各要素はfind(int)で取り出せるものと同じ内容になります。
+     *  マッチ箇所はStreamが要素を要求した時点で探され、find(int)などで探した結果とは共有しません
+     *  @return マッチ箇所の順次Stream。並列にすると、行の区切りで分割して探せる場合がある
+     *  @throws java.lang.IllegalStateException 正規表現とターゲット文字列が揃っていない状態で呼び出された場合
+     *  @since 1.3.0
+     */
+    public Stream<PartData> stream() {
+        checkOrThrow();
+        return mResult.stream();
+    }
+
+    /**
+     *  各マッチ箇所の指定したグルーピング文字列を、先頭から順に返すStreamを返します
+     *  @param  index   グルーピングのインデックス。0にするとマッチ箇所全体の文字列になる
+     *  @return グルーピング文字列の順次Stream。グループがマッチしていないマッチ箇所ではnullが要素になる
+     *  @throws java.lang.IllegalStateException 正規表現とターゲット文字列が揃っていない状態で呼び出された場合
+     *  @throws IndexOutOfBoundsException 正規表現のグループの数を超えるインデックスが渡された場合
+     *  @since 1.3.0
+     */
+    public Stream<String> groupStream(int index) {
+        checkOrThrow();
+        return mResult.groupStream(index);
     }
 
 }
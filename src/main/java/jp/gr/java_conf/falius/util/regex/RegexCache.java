@@ -0,0 +1,239 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  <p>
+ *  スラッシュで囲まれた正規表現文字列("/regex/gi"など)をキーとして、解析とコンパイルを終えた結果を保持するキャッシュです
+ *  <p>
+ *  同じ正規表現を繰り返し渡した場合に、解析とPatternのコンパイルを省略するために
+ *      Regex.test(), Regex.matches(), Regex.newInstance()などから利用されます<br>
+ *  Regex.cache()で取得できます
+ *  <p>
+ *  保持する件数には上限があり、上限を超えると最も長く使われていないものから破棄されます(LRU)<br>
+ *  内部は複数の区画に分割されており、区画ごとにロックを取るため複数スレッドから同時に利用できます。
+ *  上限はすべての区画を合わせた件数に対するもので、各区画は必要なだけ保持できます。
+ *  破棄する際は各区画で最も長く使われていないもののうち、最後に使われた時刻が最も古いものを選びます
+ *
+ *  @since 1.3.0
+ */
+public final class RegexCache {
+    static final int DEFAULT_CAPACITY = 512;
+    private static final int STRIPE_COUNT = 16; // 2の累乗であること
+
+    private final Stripe[] mStripes = new Stripe[STRIPE_COUNT];
+    private volatile int mCapacity;
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    private final LongAdder mHitCount = new LongAdder();
+    private final LongAdder mMissCount = new LongAdder();
+    private final LongAdder mEvictionCount = new LongAdder();
+
+    RegexCache(int capacity) {
+        checkCapacity(capacity);
+        mCapacity = capacity;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            mStripes[i] = new Stripe();
+        }
+    }
+
+    // キャッシュされていればその値を、なければnullを返す
+    CompiledRegex get(String literal) {
+        if (mCapacity == 0) {
+            mMissCount.increment();
+            return null;
+        }
+        Stripe stripe = stripeOf(literal);
+        CompiledRegex ret = null;
+        synchronized (stripe) {
+            Cached cached = stripe.get(literal);
+            if (cached != null) {
+                cached.mLastAccess = System.nanoTime();
+                ret = cached.mCompiled;
+            }
+        }
+        if (ret == null) {
+            mMissCount.increment();
+        } else {
+            mHitCount.increment();
+        }
+        return ret;
+    }
+
+    void put(String literal, CompiledRegex compiled) {
+        if (mCapacity == 0) {
+            return;
+        }
+        Stripe stripe = stripeOf(literal);
+        synchronized (stripe) {
+            if (stripe.put(literal, new Cached(compiled)) == null) {
+                mSize.incrementAndGet();
+            }
+        }
+        evictIfNeeded();
+    }
+
+    private Stripe stripeOf(String literal) {
+        return mStripes[stripeIndex(literal)];
+    }
+
+    static int stripeIndex(String literal) {
+        int h = literal.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPE_COUNT - 1);
+    }
+
+    // 全体の件数が上限を超えている間、各区画の最も古いもののうち最後に使われた時刻が最も古いものを破棄する
+    private void evictIfNeeded() {
+        while (mSize.get() > mCapacity) {
+            Stripe victim = null;
+            long oldest = 0;
+            for (Stripe stripe : mStripes) {
+                synchronized (stripe) {
+                    Cached eldest = stripe.eldest();
+                    if (eldest != null && (victim == null || eldest.mLastAccess - oldest < 0)) {
+                        victim = stripe;
+                        oldest = eldest.mLastAccess;
+                    }
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            synchronized (victim) {
+                // 探している間に他のスレッドが破棄していれば、数え直す
+                if (mSize.get() > mCapacity && victim.removeEldest()) {
+                    mSize.decrementAndGet();
+                    mEvictionCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     *  保持できる正規表現の上限数を返します
+     *  @return 上限数
+     */
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     *  保持できる正規表現の上限数を変更します
+     *  現在保持している件数が新しい上限を超えている場合、古いものから破棄されます
+     *  @param capacity 新しい上限数。0を渡すとキャッシュを無効にします
+     *  @throws IllegalArgumentException 引数が負の数だった場合
+     */
+    public void setCapacity(int capacity) {
+        checkCapacity(capacity);
+        mCapacity = capacity;
+        evictIfNeeded();
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative : " + capacity);
+        }
+    }
+
+    /**
+     *  現在保持している正規表現の数を返します
+     *  @return 保持している数
+     */
+    public int size() {
+        return mSize.get();
+    }
+
+    /**
+     *  保持しているすべての正規表現を破棄します
+     *  各カウンタはそのままです
+     */
+    public void clear() {
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                mSize.addAndGet(-stripe.size());
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     *  キャッシュから取得できた回数を返します
+     *  @return ヒット数
+     */
+    public long hitCount() {
+        return mHitCount.sum();
+    }
+
+    /**
+     *  キャッシュから取得できず、解析とコンパイルを行った回数を返します
+     *  @return ミス数
+     */
+    public long missCount() {
+        return mMissCount.sum();
+    }
+
+    /**
+     *  上限を超えたために破棄された数を返します
+     *  @return 破棄された数
+     */
+    public long evictionCount() {
+        return mEvictionCount.sum();
+    }
+
+    /**
+     *  ヒット数、ミス数、破棄数の各カウンタを0に戻します
+     */
+    public void resetStats() {
+        mHitCount.reset();
+        mMissCount.reset();
+        mEvictionCount.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegexCache[size=%d, capacity=%d, hit=%d, miss=%d, eviction=%d]",
+                size(), capacity(), hitCount(), missCount(), evictionCount());
+    }
+
+    // 保持している正規表現と、最後に使われた時刻(System.nanoTime())
+    // 時刻は区画のロックを取って読み書きする
+    private static final class Cached {
+        private final CompiledRegex mCompiled;
+        private long mLastAccess = System.nanoTime();
+
+        private Cached(CompiledRegex compiled) {
+            mCompiled = compiled;
+        }
+    }
+
+    // アクセス順のLinkedHashMapによるLRU。件数の上限はRegexCacheが全体で管理する
+    // ロックは呼び出し側でこのインスタンスに対して取る
+    private static final class Stripe extends LinkedHashMap<String, Cached> {
+        private static final long serialVersionUID = 1L;
+
+        private Stripe() {
+            super(16, 0.75f, /* accessOrder = */ true);
+        }
+
+        // 最も長く使われていないものを返す。空であればnull
+        private Cached eldest() {
+            Iterator<Cached> it = values().iterator();
+            return it.hasNext() ? it.next() : null;
+        }
+
+        // 最も長く使われていないものを破棄する。空であればfalse
+        private boolean removeEldest() {
+            Iterator<Cached> it = values().iterator();
+            if (!it.hasNext()) {
+                return false;
+            }
+            it.next();
+            it.remove();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+
+/**
+ *  <p>
+ *  ファイルをメモリマップし、ヒープにコピーすることなく正規表現のマッチ箇所を探すクラスです
+ *  <p>
+ *  CompiledRegex.fileScanner(Charset)などで作成します。
+ *  ファイルはFileChannel.mapで一定の大きさのセグメントごとにマップされ、
+ *  マップしたByteBufferをそのまま文字列として扱うCharSequenceに対してPatternを実行します。
+ *  そのため、ファイル全体をStringにしたり、ヒープに読み込んだりすることなく、2GBを超えるファイルも走査できます
+ *  <p>
+ *  対応している文字コードはUS-ASCII、ISO-8859-1、UTF-8です。
+ *  UTF-8の場合、ASCII文字だけからなるセグメントは1バイトを1文字として、
+ *  それ以外のセグメントはマップしたバイト列をその場でデコードしながら扱います
+ *  <p>
+ *  マッチ箇所はPartDataとして先頭から順に渡され、start()やend()はファイル先頭からのバイト位置になります。
+ *  セグメントの境界をまたぐマッチ箇所は、境界の後ろにマッチ箇所の最大長(maxMatchLength)だけ余分にマップして判定するので、
+ *  最大長を超えるマッチ箇所は、最大長までの内容で判定された結果になる可能性があります
+ *  <pre>{@code
+ * CompiledRegex error = CompiledRegex.compile("/ERROR (\\w+)/");
+ * error.fileScanner(StandardCharsets.UTF_8).scan(Paths.get("app.log"),
+ *         data -> System.out.println(data.start() + ": " + data.group(1)));
+ * }</pre>
+ *  <p>
+ *  このクラスは不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+public class RegexFileScanner {
+    static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+    // 後読みや\bのために、セグメントの前にマップしておくバイト数
+    private static final int LOOK_BEHIND = 64;
+
+    private final CompiledRegex mCompiled;
+    private final Charset mCharset;
+    private final boolean mIsUtf8;
+    private final int mMaxMatchLength;
+    private final int mSegmentSize;
+
+    RegexFileScanner(CompiledRegex compiled, Charset charset, int maxMatchLength, int segmentSize) {
+        mCompiled = Objects.requireNonNull(compiled, "compiled is null");
+        mCharset = Objects.requireNonNull(charset, "charset is null");
+        if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)
+                && !charset.equals(StandardCharsets.US_ASCII)) {
+            throw new IllegalArgumentException("対応していない文字コードです : " + charset);
+        }
+        if (maxMatchLength <= 0) {
+            throw new IllegalArgumentException("maxMatchLength must be positive : " + maxMatchLength);
+        }
+        if (segmentSize <= 0 || (long) segmentSize + maxMatchLength + LOOK_BEHIND + 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid segmentSize : " + segmentSize);
+        }
+        mIsUtf8 = charset.equals(StandardCharsets.UTF_8);
+        mMaxMatchLength = maxMatchLength;
+        mSegmentSize = segmentSize;
+    }
+
+    /**
+     *  マッチさせている正規表現を返します
+     *  @return 正規表現
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  ファイルの文字コードを返します
+     *  @return 文字コード
+     */
+    public Charset getCharset() {
+        return mCharset;
+    }
+
+    /**
+     *  マッチ箇所の最大長を返します
+     *  @return マッチ箇所の最大長(バイト数)
+     */
+    public int getMaxMatchLength() {
+        return mMaxMatchLength;
+    }
+
+    /**
+     *  ForkJoinPool.commonPool()で並列に走査するParallelRegexSearchを作成します
+     *  @return 新しいParallelRegexSearch
+     */
+    public ParallelRegexSearch parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     *  指定したForkJoinPoolで並列に走査するParallelRegexSearchを作成します
+     *  ファイルは16MBごとのチャンクに分割されます
+     *  @param pool タスクを実行するForkJoinPool
+     *  @return 新しいParallelRegexSearch
+     */
+    public ParallelRegexSearch parallel(ForkJoinPool pool) {
+        return parallel(pool, ParallelRegexSearch.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     *  指定したForkJoinPoolで並列に走査するParallelRegexSearchを作成します
+     *  @param pool タスクを実行するForkJoinPool
+     *  @param chunkSize ファイルを分割する大きさ(バイト数)。境界は直後の改行に合わせられる
+     *  @return 新しいParallelRegexSearch
+     *  @throws IllegalArgumentException chunkSizeが正の数でない場合
+     */
+    public ParallelRegexSearch parallel(ForkJoinPool pool, long chunkSize) {
+        return new ParallelRegexSearch(this, pool, chunkSize);
+    }
+
+    /**
+     *  ファイル内のマッチ箇所を先頭から順にactionに渡します
+     *  @param path 走査するファイル
+     *  @param action マッチ箇所を受け取る処理
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public void scan(Path path, Consumer<? super PartData> action) throws IOException {
+        Objects.requireNonNull(action, "action is null");
+        scanWhile(path, data -> {
+            action.accept(data);
+            return true;
+        });
+    }
+
+    /**
+     *  ファイル内のすべてのマッチ箇所をリストにして返します
+     *  @param path 走査するファイル
+     *  @return 先頭から順に並んだマッチ箇所のリスト
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public List<PartData> scan(Path path) throws IOException {
+        List<PartData> ret = new ArrayList<>();
+        scan(path, ret::add);
+        return ret;
+    }
+
+    /**
+     *  ファイルの一部にでもマッチするかどうかを返します
+     *  最初のマッチ箇所が見つかった時点で走査をやめます
+     *  @param path 走査するファイル
+     *  @return マッチするとtrue、そうでなければfalse
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public boolean test(Path path) throws IOException {
+        return !scanWhile(path, data -> false);
+    }
+
+    /**
+     *  ファイル内のマッチ箇所の数を返します
+     *  @param path 走査するファイル
+     *  @return マッチ箇所の数
+     *  @throws IOException ファイルの読み込みに失敗した場合
+     */
+    public long count(Path path) throws IOException {
+        long[] count = new long[1];
+        scanWhile(path, data -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    // actionがfalseを返すと走査をやめる。最後まで走査したかどうかを返す
+    private boolean scanWhile(Path path, Predicate<? super PartData> action) throws IOException {
+        Objects.requireNonNull(path, "path is null");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(channel, 0, channel.size(), action);
+        }
+    }
+
+    /**
+     *  ファイルの[from, to)の範囲から始まるマッチ箇所を、先頭から順にactionに渡します
+     *  範囲の前後の内容も、後読みや範囲をまたぐマッチ箇所の判定に使われます。
+     *  ファイルの末尾での空文字列へのマッチは、toがファイルの大きさと等しい場合にのみ渡されます
+     *  @param channel 走査するファイルのチャネル
+     *  @param from 範囲の開始位置(バイト)
+     *  @param to 範囲の終了位置(バイト)
+     *  @param action マッチ箇所を受け取り、走査を続ける場合にtrueを返す処理
+     *  @return 範囲の最後まで走査した場合はtrue、actionがfalseを返して中断した場合はfalse
+     */
+    boolean scan(FileChannel channel, long from, long to, Predicate<? super PartData> action) throws IOException {
+        long size = channel.size();
+        long resumeAt = from;
+        long segmentStart = from;
+        do {
+            long segmentEnd = Math.min(to, segmentStart + mSegmentSize);
+            resumeAt = scanSegment(channel, size, segmentEnd, resumeAt, action);
+            if (resumeAt < 0) {
+                return false;
+            }
+            segmentStart = segmentEnd;
+        } while (segmentStart < to);
+        return true;
+    }
+
+    // [resumeAt, to)から始まるマッチ箇所を探して、次のセグメントで探し始める位置を返す。中断した場合は-1
+    private long scanSegment(FileChannel channel, long size, long to, long resumeAt,
+            Predicate<? super PartData> action) throws IOException {
+        long mapStart = Math.max(0, resumeAt - LOOK_BEHIND);
+        // 境界の直前から始まる最大長のマッチ箇所も、マップした範囲の末尾を入力の終端と誤認しないように1バイト余分にマップする
+        long mapEnd = Math.min(size, to + mMaxMatchLength + 1);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+
+        CharSequence text;
+        if (mIsUtf8) {
+            Utf8CharSequence.align(buffer, mapStart > 0, mapEnd < size);
+            text = Utf8CharSequence.of(buffer);
+        } else {
+            text = new ByteCharSequence(buffer);
+        }
+        long base = mapStart + buffer.position();
+
+        Matcher matcher = mCompiled.getPattern().matcher(text);
+        // 領域の外側の文字も後読みや境界の判定に使い、領域の境界は^や$にマッチさせない
+        // マップした範囲の両端は、LOOK_BEHINDと最大長の余白によって探索の開始位置と境界から離してある
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        matcher.region(charIndex(text, (int) (resumeAt - base)), text.length());
+
+        long lastEnd = Math.max(to, resumeAt);
+        while (matcher.find()) {
+            if (isInsideCodePoint(text, matcher.start())) {
+                continue; // サロゲートペアの間から始まるマッチ箇所は、バイト位置で表せない
+            }
+            long start = base + byteOffset(text, matcher.start());
+            if (start >= to && to < size) {
+                break;
+            }
+            PartData data = toPartData(matcher, text, base, mCompiled.getGroupNames());
+            if (!action.test(data)) {
+                return -1;
+            }
+            lastEnd = Math.max(lastEnd, data.end());
+        }
+        return lastEnd;
+    }
+
+    private static PartData toPartData(Matcher matcher, CharSequence text, long base,
+            Map<String, Integer> groupNames) {
+        if (!(text instanceof Utf8CharSequence)) {
+            return PartData.of(matcher, base, groupNames); // 1文字が1バイト
+        }
+        int cnt = matcher.groupCount() + 1;
+        List<String> data = new ArrayList<String>(cnt);
+        int[] offsets = new int[cnt * 2];
+        for (int i = 0; i < cnt; i++) {
+            data.add(matcher.group(i));
+            int start = matcher.start(i);
+            offsets[i * 2] = start < 0 ? -1 : byteOffset(text, start);
+            offsets[i * 2 + 1] = start < 0 ? -1 : byteOffset(text, matcher.end(i));
+        }
+        return new PartData(data, offsets, base, groupNames);
+    }
+
+    private static boolean isInsideCodePoint(CharSequence text, int charIndex) {
+        return text instanceof Utf8CharSequence && charIndex > 0 && charIndex < text.length()
+                && Character.isLowSurrogate(text.charAt(charIndex))
+                && Character.isHighSurrogate(text.charAt(charIndex - 1));
+    }
+
+    private static int byteOffset(CharSequence text, int charIndex) {
+        return text instanceof Utf8CharSequence ? ((Utf8CharSequence) text).byteOffset(charIndex) : charIndex;
+    }
+
+    private static int charIndex(CharSequence text, int byteOffset) {
+        if (text instanceof Utf8CharSequence) {
+            return ((Utf8CharSequence) text).charIndex(byteOffset);
+        }
+        return Math.max(0, Math.min(byteOffset, text.length()));
+    }
+}
@@ -0,0 +1,289 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ *  <p>
+ *  入力を行ごとに区切り、マッチ箇所を含む行だけを行番号と組にして返すクラスです
+ *  <p>
+ *  CompiledRegex.lineScanner()で作成します。grep -nのように、ログなどを一行ずつ調べる場合に利用してください。
+ *  行の区切りは入力の上で探し、各行は文字列にすることなくその場でマッチングを行うので、
+ *  文字列が作成されるのはマッチ箇所を含む行だけです
+ *  <p>
+ *  各行はそれだけでひとつのターゲット文字列として扱われます。
+ *  行の中には行区切りがないので、^と$はmオプションの有無にかかわらず行の先頭と末尾にマッチし、
+ *  後読みや\bは前後の行を参照しません。
+ *  dオプション(UNIX_LINES)が指定されていれば\nだけを、そうでなければPatternと同じく\r\n、\r、\n、\u0085、\u2028、\u2029を行の区切りとします。
+ *  入力が行区切りで終わる場合、その後ろの空の行は数えません
+ *  <pre>{@code
+ * CompiledRegex error = CompiledRegex.compile("/ERROR (\\w+)/");
+ * error.lineScanner().scan(reader, line -> System.out.println(line.getLineNumber() + ": " + line.getData().group(1)));
+ * }</pre>
+ *  <p>
+ *  このクラスは不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+public class RegexLineScanner {
+    static final int DEFAULT_READ_SIZE = 8 * 1024;
+
+    private final CompiledRegex mCompiled;
+    private final boolean mIsUnixLines;
+    private final int mReadSize; // Readerから一度に読み込む文字数
+
+    RegexLineScanner(CompiledRegex compiled, int readSize) {
+        mCompiled = Objects.requireNonNull(compiled, "compiled is null");
+        if (readSize <= 0) {
+            throw new IllegalArgumentException("readSize must be positive : " + readSize);
+        }
+        mIsUnixLines = Option.isInclude(compiled.getPatternFlag(), Option.UNIX_LINES);
+        mReadSize = readSize;
+    }
+
+    /**
+     *  マッチさせている正規表現を返します
+     *  @return 正規表現
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  文字列を行ごとに走査し、マッチ箇所を含む行を先頭から順にactionに渡します
+     *  PartDataのstart()やend()は、文字列の先頭からの文字位置になります
+     *  @param text 走査する文字列
+     *  @param action マッチ箇所を含む行を受け取る処理
+     *  @return マッチ箇所を含む行の数
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public long scan(CharSequence text, Consumer<? super LineMatch> action) {
+        Objects.requireNonNull(text, "text is null");
+        Objects.requireNonNull(action, "action is null");
+        Pass pass = new Pass(action);
+        pass.scanLines(text, true);
+        return pass.mCount;
+    }
+
+    /**
+     *  文字列を行ごとに走査し、マッチ箇所を含む行をリストにして返します
+     *  @param text 走査する文字列
+     *  @return 先頭から順に並んだ、マッチ箇所を含む行のリスト
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public List<LineMatch> scan(CharSequence text) {
+        List<LineMatch> ret = new ArrayList<>();
+        scan(text, ret::add);
+        return ret;
+    }
+
+    /**
+     *  Readerから読み込みながら行ごとに走査し、マッチ箇所を含む行を先頭から順にactionに渡します
+     *  保持するのは読み込み途中の行だけなので、全体をメモリに読み込むことはありません。
+     *  PartDataのstart()やend()は、読み込んだ文字全体における位置になります
+     *  @param reader 読み込み元。このメソッドでは閉じない
+     *  @param action マッチ箇所を含む行を受け取る処理
+     *  @return マッチ箇所を含む行の数
+     *  @throws IOException 読み込みに失敗した場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public long scan(Reader reader, Consumer<? super LineMatch> action) throws IOException {
+        Objects.requireNonNull(reader, "reader is null");
+        Objects.requireNonNull(action, "action is null");
+        Pass pass = new Pass(action);
+        char[] buf = new char[mReadSize];
+        int len = 0;
+        while (true) {
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2); // 一行が読み込んだ範囲に収まらない
+            }
+            int read = reader.read(buf, len, buf.length - len);
+            boolean isEnd = read < 0;
+            if (!isEnd) {
+                len += read;
+            }
+            int done = pass.scanLines(CharBuffer.wrap(buf, 0, len), isEnd);
+            if (isEnd) {
+                return pass.mCount;
+            }
+            // 区切りが見つかっていない最後の行を先頭に詰める
+            System.arraycopy(buf, done, buf, 0, len - done);
+            len -= done;
+            pass.mBase += done;
+        }
+    }
+
+    /**
+     *  ByteBufferのpositionからlimitまでを行ごとに走査し、マッチ箇所を含む行を先頭から順にactionに渡します
+     *  メモリマップしたファイルなどを、デコードしてヒープにコピーすることなく走査できます。
+     *  PartDataのstart()やend()、LineMatch.getLineStart()は、positionからのバイト位置になります。
+     *  ByteBufferのpositionとlimitは変更しません
+     *  @param buffer 走査するバイト列
+     *  @param charset バイト列の文字コード。US-ASCII、ISO-8859-1、UTF-8のいずれか
+     *  @param action マッチ箇所を含む行を受け取る処理
+     *  @return マッチ箇所を含む行の数
+     *  @throws IllegalArgumentException 対応していない文字コードが渡された場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public long scan(ByteBuffer buffer, Charset charset, Consumer<? super LineMatch> action) {
+        Objects.requireNonNull(buffer, "buffer is null");
+        Objects.requireNonNull(charset, "charset is null");
+        Objects.requireNonNull(action, "action is null");
+        CharSequence text;
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            text = Utf8CharSequence.of(buffer);
+        } else if (charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII)) {
+            text = new ByteCharSequence(buffer);
+        } else {
+            throw new IllegalArgumentException("対応していない文字コードです : " + charset);
+        }
+        Pass pass = new Pass(action);
+        pass.scanLines(text, true);
+        return pass.mCount;
+    }
+
+    // 一回の走査の状態
+    private class Pass {
+        private final Consumer<? super LineMatch> mAction;
+        private final LineView mLine = new LineView();
+        private MatchCursor mCursor = null;
+        private long mLineNumber = 0; // 直前に処理した行の行番号
+        private long mBase = 0; // 渡される文字列の先頭が入力全体の何文字目か
+        private long mCount = 0;
+
+        Pass(Consumer<? super LineMatch> action) {
+            mAction = action;
+        }
+
+        // 文字列を行に区切って処理し、処理し終えた位置を返す
+        // isEndでなければ、区切りが見つかっていない最後の行は処理せずに残す
+        int scanLines(CharSequence text, boolean isEnd) {
+            int length = text.length();
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                int terminator = terminatorLength(text, i, isEnd);
+                if (terminator < 0) {
+                    break; // \r\nの\nがまだ読み込まれていない
+                }
+                if (terminator > 0) {
+                    scanLine(text, lineStart, i);
+                    i += terminator - 1;
+                    lineStart = i + 1;
+                }
+            }
+            if (isEnd && lineStart < length) {
+                scanLine(text, lineStart, length); // 行区切りで終わっていない最後の行
+                lineStart = length;
+            }
+            return lineStart;
+        }
+
+        // 行区切りの文字数を返す。行区切りでなければ0、続きを読み込まないと決まらなければ-1
+        private int terminatorLength(CharSequence text, int index, boolean isEnd) {
+            char c = text.charAt(index);
+            if (c == '\n') {
+                return 1;
+            }
+            if (mIsUnixLines) {
+                return 0;
+            }
+            if (c == '\r') {
+                if (index + 1 < text.length()) {
+                    return text.charAt(index + 1) == '\n' ? 2 : 1;
+                }
+                return isEnd ? 1 : -1;
+            }
+            return c == '\u0085' || c == '\u2028' || c == '\u2029' ? 1 : 0;
+        }
+
+        private void scanLine(CharSequence text, int start, int end) {
+            mLineNumber++;
+            mLine.set(text, start, end);
+            mCursor = Objects.isNull(mCursor) ? MatchCursor.of(mCompiled, mLine)
+                    : MatchCursor.reuse(mCursor, mCompiled, mLine);
+            if (!mCursor.find()) {
+                return;
+            }
+            long lineStart = position(text, start);
+            List<PartData> data = new ArrayList<>(1);
+            do {
+                data.add(toPartData(text, start, lineStart));
+            } while (mCompiled.hasOptionG() && mCursor.find());
+            mAction.accept(new LineMatch(mLineNumber, lineStart, mLine.toString(), data));
+            mCount++;
+        }
+
+        // UTF-8のバイト列であればバイト位置に変換する
+        private long position(CharSequence text, int index) {
+            if (text instanceof Utf8CharSequence) {
+                return mBase + ((Utf8CharSequence) text).byteOffset(index);
+            }
+            return mBase + index;
+        }
+
+        private PartData toPartData(CharSequence text, int start, long lineStart) {
+            if (!(text instanceof Utf8CharSequence)) {
+                return PartData.of(mCursor, lineStart, mCompiled.getGroupNames()); // 1文字が1バイト
+            }
+            int cnt = mCursor.groupCount() + 1;
+            List<String> groups = new ArrayList<>(cnt);
+            int[] offsets = new int[cnt * 2];
+            for (int i = 0; i < cnt; i++) {
+                groups.add(mCursor.group(i));
+                int groupStart = mCursor.start(i);
+                offsets[i * 2] = groupStart < 0 ? -1 : (int) (position(text, start + groupStart) - lineStart);
+                offsets[i * 2 + 1] = groupStart < 0 ? -1 : (int) (position(text, start + mCursor.end(i)) - lineStart);
+            }
+            return new PartData(groups, offsets, lineStart, mCompiled.getGroupNames());
+        }
+    }
+
+    // 文字列の一部を、コピーせずにひとつの文字列として扱う
+    // 行ごとに範囲を入れ替えて使いまわす
+    private static final class LineView implements CharSequence {
+        private CharSequence mText;
+        private int mStart;
+        private int mLength;
+
+        void set(CharSequence text, int start, int end) {
+            mText = text;
+            mStart = start;
+            mLength = end - start;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("index=" + index + ", length=" + mLength);
+            }
+            return mText.charAt(mStart + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > mLength || start > end) {
+                throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + mLength);
+            }
+            return mText.subSequence(mStart + start, mStart + end);
+        }
+
+        @Override
+        public String toString() {
+            return mText.subSequence(mStart, mStart + mLength).toString();
+        }
+    }
+}
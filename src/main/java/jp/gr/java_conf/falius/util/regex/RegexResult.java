@@ -0,0 +1,338 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  <p>
+ *  CompiledRegexをひとつのターゲット文字列にマッチさせた結果を扱うクラスです
+ *  <p>
+ *  CompiledRegex.match(CharSequence)によって作成されます<br>
+ *  find(int)でマッチ箇所を選択し、group(int)によって該当文字列を取り出すことができます。
+ *  各メソッドの意味はRegexの同名のメソッドと同じです
+ *  <p>
+ *  マッチ箇所は、要求された時点で先頭から順に必要な分だけ探されます。
+ *  そのため、このクラスは可変であり、複数のスレッドで共有することはできません。
+ *  スレッド間で共有するのはCompiledRegexにして、呼び出しごとにこのクラスのインスタンスを作成してください
+ *
+ *  @since 1.3.0
+ */
+public class RegexResult implements Iterable<String> {
+    private static final String[] EMPTY_STRING_ARRAY = new String[0]; // toArray()で使いまわす空の配列
+
+    private CompiledRegex mCompiled;
+    private String mTarget; // 調査対象文字列
+    private CharSequence mMatchTarget; // 実際にマッチングを行う文字列。MatchLimitで制限する場合はmTargetを包んだもの
+    private MatchCursor mCursor; // マッチ箇所を先頭から順に探す
+
+    // マッチした各部分文字列を扱うオブジェクトのリスト
+    // マッチ箇所は要求されたところまでしか探さないので、見つけた分だけが入っている
+    private final List<PartData> mDataList = new ArrayList<>();
+    private boolean mIsScanned = false; // ターゲット文字列の末尾まで探し終えたかどうか
+
+    RegexResult(CompiledRegex compiled, String target) {
+        this(compiled, target, target);
+    }
+
+    RegexResult(CompiledRegex compiled, String target, CharSequence matchTarget) {
+        mCompiled = compiled;
+        mTarget = target;
+        mMatchTarget = matchTarget;
+        mCursor = MatchCursor.of(compiled, matchTarget);
+    }
+
+    // 正規表現が同じであればカーソルを使いまわして、正規表現と対象文字列を入れ替える
+    // マッチ箇所はここでは探さず、find(int)やgroup(int)などで必要になった時点で先頭から順に探す
+    RegexResult reset(CompiledRegex compiled, String target) {
+        mCursor = MatchCursor.reuse(mCursor, compiled, target);
+        mCompiled = compiled;
+        mTarget = target;
+        mMatchTarget = target;
+        mDataList.clear();
+        mIsScanned = false;
+        return this;
+    }
+
+    /**
+     *  マッチさせた正規表現を返します
+     *  @return マッチさせた正規表現
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  マッチさせたターゲット文字列を返します
+     *  @return ターゲット文字列
+     */
+    public String getTarget() {
+        return mTarget;
+    }
+
+    // 指定したインデックスのマッチ箇所まで探し、それが存在するかどうかを返す
+    // ターゲット文字列は一度だけ先頭から走査され、見つけたマッチ箇所はmDataListに保持される
+    boolean hasMatch(int index) {
+        while (mDataList.size() <= index && !mIsScanned) {
+            if (mCursor.find()) {
+                mDataList.add(PartData.lazy(mCursor, mTarget, mCompiled.getGroupNames())); // 部分文字列は必要になるまで作らない
+            } else {
+                mIsScanned = true;
+            }
+        }
+        return index < mDataList.size();
+    }
+
+    /**
+     *  マッチした箇所を表すDataオブジェクトを返します
+     *  このメソッドはgオプションの有無に影響されずに利用できます
+     *  @param  index   マッチ箇所のインデックス。マッチ箇所が存在した場合、有効範囲は０ ~ matchCount()-1になります
+     *  @return マッチ箇所を表すDataオブジェクト
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     *  @throws IndexOutOfBoundsException 引数が有効範囲外の場合
+     */
+    public PartData find(int index) {
+        if (!hasMatch(0)) {
+            throw new NoSuchElementException("マッチした部分文字列がありません");
+        }
+        if (index < 0 || !hasMatch(index)) {
+            throw new IndexOutOfBoundsException(
+                    String.format("有効なインデックスは0から%dです : passed index=%d", matchCount() - 1, index));
+        }
+
+        return mDataList.get(index);
+    }
+
+    /**
+     *  最初にマッチした箇所の文字列を返します
+     *  group(0)と同義です
+     *  @return 最初にマッチした箇所の文字列全体
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     */
+    public String group() {
+        return group(0);
+    }
+
+    /**
+     *  <p>正規表現の最後にgを付加したか否かで挙動が変わります
+     *  <p>gあり:引数で指定されたインデックスのマッチ箇所の全体文字列を返します<br>
+     *  gなし:最初にマッチした箇所の指定されたインデックスのグルーピング文字列を返します。
+     *      インデックスが0のときは最初にマッチした箇所の文字列全体を返します。find(0).group(index)と同義です
+     *  @param  index   マッチ箇所のインデックス(gオプションあり)、あるいはグルーピング箇所のインデックス(gオプションなし)
+     *      有効範囲は0からgroupCount()-1
+     *  @return 引数で指定されたインデックスのマッチ箇所(gオプションあり)、
+     *      あるいは最初にマッチした箇所のグルーピング文字列(gオプションなし)
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     *  @throws IndexOutOfBoundsException 渡されたインデックスが有効範囲外の場合
+     */
+    public String group(int index) {
+        if (!hasMatch(0)) {
+            throw new NoSuchElementException("マッチした部分文字列がありません");
+        }
+        if (index < 0 || (hasOptionG() ? !hasMatch(index) : index > mDataList.get(0).size() - 1)) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "有効なインデックスは0から%dです : passed index=%d : gオプション%s",
+                            (groupCount() - 1), index, hasOptionG() ? "あり" : "なし"));
+        }
+
+        if (hasOptionG()) {
+            return mDataList.get(index).group(); // 引数で指定された番号の部分文字列がなければnull
+        } else {
+            return find(0).group(index); // マッチした部分文字列がなければnull
+        }
+    }
+
+    /**
+     *  最初にマッチした箇所で、名前付きグループにマッチした文字列を返します
+     *  gオプションの有無にかかわらず、find(0).group(name)と同義です
+     *  @param  name    グループの名前
+     *  @return 名前付きグループにマッチした文字列。マッチしていなければnull
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     *  @throws IllegalArgumentException 正規表現にその名前のグループがない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     *  @since 1.3.0
+     */
+    public String group(String name) {
+        Objects.requireNonNull(name, "name is null");
+        if (!hasMatch(0)) {
+            throw new NoSuchElementException("マッチした部分文字列がありません");
+        }
+        return find(0).group(name);
+    }
+
+    /**
+     *  group(int)によって取得しうる文字列の配列を作成して返します
+     *  @return マッチした各文字列の配列(gオプションあり)、
+     *      あるいは最初にマッチした箇所の全体文字列と各グルーピング文字列の配列(gオプションなし)
+     *      ひとつもマッチしていなければ空の配列
+     */
+    public String[] toArray() {
+        if (hasOptionG()) {
+            return groupCount() > 0 ? matchStrings().toArray(EMPTY_STRING_ARRAY) : EMPTY_STRING_ARRAY;
+        } else {
+            return hasMatch(0) ? mDataList.get(0).toArray() : EMPTY_STRING_ARRAY;
+        }
+    }
+
+    /**
+     *  マッチ結果を含む文字列表現を返します
+     *  @return マッチした各文字列を含む文字列表現(gオプションあり)、あるいは最初にマッチした箇所の全体文字列と各グルーピング文字列を含む文字列表現(gオプションなし)
+     */
+    @Override
+    public String toString() {
+        if (!hasMatch(0)) {
+            return Arrays.asList(EMPTY_STRING_ARRAY).toString();
+        }
+        if (hasOptionG()) {
+            return matchStrings().toString();
+        } else {
+            return find(0).toString();
+        }
+    }
+
+    /**
+     *  マッチした部分文字列の総数を返します
+     *  マッチしていなければ0になります
+     *  @return マッチした部分文字列の総数
+     */
+    public int matchCount() {
+        hasMatch(Integer.MAX_VALUE);
+        return mDataList.size();
+    }
+
+    // 各マッチ文字列全体のリスト
+    private List<String> matchStrings() {
+        List<String> ret = new ArrayList<>(matchCount());
+        for (PartData data : mDataList) {
+            ret.add(data.group());
+        }
+        return ret;
+    }
+
+    /**
+     * group(int)メソッドによって取得できる値の総数を返します
+     * DataオブジェクトのgroupCount()とは意味が異なるのでご注意ください
+     * @return マッチした部分文字列の数(gオプションあり)、あるいは最初にマッチした部分文字列の扱うデータ数(gオプションなし)
+     */
+    public int groupCount() {
+        if (hasOptionG()) {
+            return matchCount();
+        } else {
+            return hasMatch(0) ? mDataList.get(0).size() : 0;
+        }
+    }
+
+    /**
+     * 調査対象文字列のマッチ部分を、すべてreplacementで置き換えた文字列を返します
+     * @param   replacement 置き換える文字列
+     * @return  すべて置き換えた後の文字列
+     */
+    public String replaceAll(String replacement) {
+        // mCursorはマッチ箇所の走査途中の可能性があるので、Replacementが別のカーソルを使う
+        Replacement compiled;
+        try {
+            compiled = mCompiled.replacement(replacement);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // 書式の誤りはマッチ箇所があるときだけ例外とする、Matcherのふるまいに合わせる
+            return mCompiled.getPattern().matcher(mMatchTarget).replaceAll(replacement);
+        }
+        return compiled.replaceAll(mMatchTarget);
+    }
+
+    /**
+     *  ターゲット文字列に正規表現がマッチしたのかどうかを表す真偽値を返します
+     *  matches()とは異なり、一部にでもマッチしていればtrueを返します
+     *  @return ひとつでもマッチしていればtrue、そうでなければfalse
+     */
+    public boolean test() {
+        return hasMatch(0); // 最初のマッチ箇所が見つかった時点で走査をやめる
+    }
+
+    /**
+     *  ターゲット文字列の１文字目から末尾までの全体が正規表現にマッチしているかどうかの真偽値を返します
+     *  正規表現の両端に^と$を付与した場合のtest()と同義となります
+     *  @return ターゲット文字列の全領域が正規表現にマッチしていればtrue。そうでなければfalse
+     */
+    public boolean matches() {
+        // mCursorはマッチ箇所の走査途中の可能性があるので、別のMatcherを使う
+        return mCompiled.getPattern().matcher(mMatchTarget).matches();
+    }
+
+    /**
+     *  マッチさせた正規表現にgオプションが指定されていたかどうかの真偽値を返します
+     *  @return gオプションが指定されていればtrue。それ以外はfalse
+     */
+    public boolean hasOptionG() {
+        return mCompiled.hasOptionG();
+    }
+
+    /**
+     *  イテレータを返します
+     *  gオプションの有無によってイテレータの内容は変化します
+     *  @return 各マッチ文字列のイテレータ(gオプションあり)、<br>
+     *  あるいは最初にマッチした部分文字列とそのグルーピング文字列のイテレータ(gオプションなし)、<br>
+     */
+    @Override
+    public Iterator<String> iterator() {
+        if (hasOptionG()) {
+            return new GroupIterator(0, this); // 各マッチ文字列を、見つけながらイテレートする
+        } else {
+            return find(0).iterator(); // 最初のマッチ文字列とそのグルーピング文字列をイテレートする
+        }
+    }
+
+    /**
+     *  各マッチ文字列の指定したグルーピング文字列をイテレートするためのIteratorを作成して返します
+     *  @param  index   イテレートするグルーピングのインデックス
+     *     0にするとgオプションを設定した場合と同様の結果を返すイテレータになる
+     *  @return 新しいIterableかつIterator
+     *  @throws NoSuchElementException マッチした部分文字列がない(matchCount() == 0)場合
+     *  @throws IndexOutOfBoundsException 渡されたインデックスが有効範囲外の場合
+     */
+    public GroupIterator groupIterator(int index) {
+        if (matchCount() == 0) {
+            throw new NoSuchElementException("マッチした部分文字列がありません");
+        }
+        if (index < 0 || index > groupCount() - 1) {
+            throw new IndexOutOfBoundsException(
+                    String.format("有効なインデックスは0から%dです : passed index=%d", groupCount() - 1, index));
+        }
+        return new GroupIterator(index, this);
+    }
+
+    /**
+     *  マッチ箇所を先頭から順に返すStreamを返します
+     *  マッチ箇所はStreamが要素を要求した時点で探され、find(int)などで探した結果とは共有しません
+     *  @return マッチ箇所の順次Stream
+     *  @since 1.3.0
+     */
+    public Stream<PartData> stream() {
+        return StreamSupport.stream(new MatchSpliterator(mCompiled, mTarget, mMatchTarget), false);
+    }
+
+    /**
+     *  各マッチ箇所の指定したグルーピング文字列を、先頭から順に返すStreamを返します
+     *  @param  index   グルーピングのインデックス。0にするとマッチ箇所全体の文字列になる
+     *  @return グルーピング文字列の順次Stream。グループがマッチしていないマッチ箇所ではnullが要素になる
+     *  @throws IndexOutOfBoundsException 正規表現のグループの数を超えるインデックスが渡された場合
+     *  @since 1.3.0
+     */
+    public Stream<String> groupStream(int index) {
+        if (index < 0 || index > mCompiled.getGroupCount()) {
+            throw new IndexOutOfBoundsException(
+                    String.format("有効なインデックスは0から%dです : passed index=%d", mCompiled.getGroupCount(), index));
+        }
+        return stream().map(data -> data.group(index));
+    }
+
+    // hasMatch(index)がtrueを返した後に、範囲の確認をせずにマッチ箇所を取り出す
+    PartData data(int index) {
+        return mDataList.get(index);
+    }
+}
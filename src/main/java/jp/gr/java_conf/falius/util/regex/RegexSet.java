@@ -0,0 +1,162 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ *  <p>
+ *  スラッシュで囲まれた複数の正規表現(ルール)を、ひとつのターゲット文字列にまとめてマッチさせるクラスです
+ *  <p>
+ *  各ルールから、マッチ箇所が必ず含む固定文字列(必須リテラル)を取り出し、Aho-Corasick法でまとめて探します。
+ *  ターゲット文字列は一度だけ走査され、必須リテラルが見つかったルールと必須リテラルを取り出せなかったルールだけを、
+ *  Patternで確認します。
+ *  そのため、多数のルールを順にtestする場合に比べて、ほとんどのルールについてターゲット文字列を走査せずに済みます
+ *  <pre>{@code
+ * RegexSet rules = RegexSet.compile("/^GET /i", "/\\.png$/i", "/admin/");
+ * BitSet matched = rules.match(line); // マッチしたルールのインデックス
+ * }</pre>
+ *  <p>
+ *  オプションは各ルールごとに、Regexと同じように解釈されます。gオプションは結果に影響しません<br>
+ *  このクラスは不変であり、複数のスレッドで共有することができます
+ *
+ *  @since 1.3.0
+ */
+public final class RegexSet {
+    private final CompiledRegex[] mRegexes;
+    private final AhoCorasick mPrefilter; // 必須リテラルをもつルールがなければnull
+    private final BitSet mAlwaysCheck; // 必須リテラルがなく、常にPatternで確認するルール
+
+    /**
+     *  スラッシュで囲まれた正規表現をまとめてコンパイルします
+     *  @param regexes スラッシュで囲まれた正規表現。インデックスが結果のBitSetのインデックスになる
+     *  @return 新しいRegexSet
+     *  @throws NullPointerException 引数にnullが含まれる場合
+     *  @throws IllegalArgumentException スラッシュで囲まれた正規表現の形になっていないものが含まれる場合
+     *  @throws java.util.regex.PatternSyntaxException 正規表現の構文が正しくないものが含まれる場合
+     */
+    public static RegexSet compile(CharSequence... regexes) {
+        return compile(Arrays.asList(regexes));
+    }
+
+    /**
+     *  スラッシュで囲まれた正規表現をまとめてコンパイルします
+     *  @param regexes スラッシュで囲まれた正規表現。反復順のインデックスが結果のBitSetのインデックスになる
+     *  @return 新しいRegexSet
+     *  @throws NullPointerException 引数にnullが含まれる場合
+     *  @throws IllegalArgumentException スラッシュで囲まれた正規表現の形になっていないものが含まれる場合
+     *  @throws java.util.regex.PatternSyntaxException 正規表現の構文が正しくないものが含まれる場合
+     */
+    public static RegexSet compile(Collection<? extends CharSequence> regexes) {
+        List<CompiledRegex> list = new ArrayList<>(regexes.size());
+        for (CharSequence regex : regexes) {
+            list.add(CompiledRegex.compile(Objects.requireNonNull(regex, "regex is null")));
+        }
+        return new RegexSet(list.toArray(new CompiledRegex[list.size()]));
+    }
+
+    private RegexSet(CompiledRegex[] regexes) {
+        mRegexes = regexes;
+        mAlwaysCheck = new BitSet(regexes.length);
+
+        List<String> keywords = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < regexes.length; i++) {
+            List<String> literals = LiteralExtractor.extract(regexes[i].getRegex(), regexes[i].getPatternFlag())
+                    .literals();
+            if (literals.isEmpty()) {
+                mAlwaysCheck.set(i);
+            }
+            for (String literal : literals) {
+                keywords.add(literal);
+                ids.add(i);
+            }
+        }
+
+        if (keywords.isEmpty()) {
+            mPrefilter = null;
+        } else {
+            int[] idArray = new int[ids.size()];
+            for (int i = 0; i < idArray.length; i++) {
+                idArray[i] = ids.get(i);
+            }
+            mPrefilter = new AhoCorasick(keywords, idArray);
+        }
+    }
+
+    /**
+     *  ターゲット文字列の一部にでもマッチするルールを調べます
+     *  @param target ターゲット文字列
+     *  @return マッチしたルールのインデックスを設定したBitSet
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public BitSet match(CharSequence target) {
+        BitSet ret = candidates(target);
+        for (int i = ret.nextSetBit(0); i >= 0; i = ret.nextSetBit(i + 1)) {
+            if (!mRegexes[i].test(target)) {
+                ret.clear(i);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     *  いずれかのルールがターゲット文字列の一部にでもマッチするかどうかを返します
+     *  最初にマッチしたルールが見つかった時点で確認をやめます
+     *  @param target ターゲット文字列
+     *  @return いずれかのルールがマッチするとtrue、そうでなければfalse
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public boolean test(CharSequence target) {
+        BitSet candidates = candidates(target);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (mRegexes[i].test(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Patternで確認する必要のあるルール
+    private BitSet candidates(CharSequence target) {
+        Objects.requireNonNull(target, "target is null");
+        BitSet ret = (BitSet) mAlwaysCheck.clone();
+        if (Objects.nonNull(mPrefilter)) {
+            mPrefilter.scan(target, ret);
+        }
+        return ret;
+    }
+
+    /**
+     *  ルールの数を返します
+     *  @return ルールの数
+     */
+    public int size() {
+        return mRegexes.length;
+    }
+
+    /**
+     *  指定したインデックスのルールを返します
+     *  @param index ルールのインデックス
+     *  @return コンパイルされたルール
+     *  @throws IndexOutOfBoundsException 引数が有効範囲外の場合
+     */
+    public CompiledRegex get(int index) {
+        if (index < 0 || index >= mRegexes.length) {
+            throw new IndexOutOfBoundsException(
+                    String.format("有効なインデックスは0から%dです : passed index=%d", mRegexes.length - 1, index));
+        }
+        return mRegexes[index];
+    }
+
+    /**
+     *  各ルールをスラッシュで囲まれた正規表現の形にして並べた文字列表現を返します
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(mRegexes);
+    }
+}
@@ -0,0 +1,38 @@
+package jp.gr.java_conf.falius.util.regex;
+
+/**
+ *  MatchLimitで制限したマッチングが、制限時間や文字の参照回数の上限を超えた場合や、
+ *  マッチング中のスレッドが割り込まれた場合にスローされる例外です
+ *  <p>
+ *  マッチングは途中で打ち切られ、その結果は得られません
+ *
+ *  @since 1.3.0
+ */
+public class RegexTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String mRegex;
+    private final long mSteps;
+
+    RegexTimeoutException(String message, String regex, long steps) {
+        super(message + " : regex=" + regex + ", steps=" + steps);
+        mRegex = regex;
+        mSteps = steps;
+    }
+
+    /**
+     *  打ち切られたマッチングの正規表現を返します
+     *  @return スラッシュで囲まれた正規表現の形の文字列
+     */
+    public String getRegex() {
+        return mRegex;
+    }
+
+    /**
+     *  打ち切られるまでにターゲット文字列の文字を参照した回数を返します
+     *  @return 文字の参照回数
+     */
+    public long getSteps() {
+        return mSteps;
+    }
+}
@@ -0,0 +1,336 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ *  <p>
+ *  置換文字列を一度だけ解析して保持し、正規表現のマッチ箇所を置き換えるクラスです
+ *  <p>
+ *  CompiledRegex.replacement(String)で作成します。
+ *  置換文字列の書式はMatcher.replaceAll(String)と同じで、$1のような番号や${name}のような名前でグループを参照でき、
+ *  \に続く文字はそのまま出力されます。
+ *  Matcher.replaceAll(String)は呼び出しのたびに置換文字列を解析してStringBuilderを作成しますが、
+ *  このクラスは解析済みの結果を使い、呼び出し元が用意したAppendableやCharBufferに直接書き込むことができます
+ *  <pre>{@code
+ * private static final Replacement MASK = CompiledRegex.compile("/(\\d{4})-\\d{4}/g").replacement("$1-****");
+ *
+ * Replacement.Replacer replacer = MASK.newReplacer();
+ * for (String record : records) {
+ *     out.setLength(0);
+ *     replacer.replace(record, out);
+ *     ...
+ * }
+ * }</pre>
+ *  <p>
+ *  このクラスは不変であり、複数のスレッドで共有することができます。
+ *  Matcherを使いまわすReplacerは可変なので、スレッドごとにnewReplacer()で作成してください
+ *
+ *  @since 1.3.0
+ */
+public final class Replacement {
+    private final CompiledRegex mCompiled;
+    private final String mTemplate;
+    // 置換文字列を、固定文字列とグループ参照が交互に並ぶ形に分解したもの
+    // mLiterals[0], mGroups[0], mLiterals[1], ..., mGroups[n - 1], mLiterals[n]の順に出力する
+    private final String[] mLiterals;
+    private final int[] mGroups;
+
+    Replacement(CompiledRegex compiled, String template) {
+        mCompiled = Objects.requireNonNull(compiled, "compiled is null");
+        mTemplate = Objects.requireNonNull(template, "template is null");
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int len = template.length();
+        int i = 0;
+        while (i < len) {
+            char c = template.charAt(i++);
+            if (c == '\\') {
+                if (i >= len) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+                literal.append(template.charAt(i++));
+            } else if (c == '$') {
+                if (i >= len) {
+                    throw new IllegalArgumentException("Illegal group reference: group index is missing");
+                }
+                int group;
+                if (template.charAt(i) == '{') {
+                    int end = i + 1;
+                    while (end < len && isAsciiLetterOrDigit(template.charAt(end))) {
+                        end++;
+                    }
+                    if (end == i + 1) {
+                        throw new IllegalArgumentException("named capturing group has 0 length name");
+                    }
+                    if (end >= len || template.charAt(end) != '}') {
+                        throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                    }
+                    String name = template.substring(i + 1, end);
+                    Integer index = compiled.getGroupNames().get(name);
+                    if (Objects.isNull(index)) {
+                        throw new IllegalArgumentException("No group with name {" + name + "}");
+                    }
+                    group = index;
+                    i = end + 1;
+                } else {
+                    group = template.charAt(i++) - '0';
+                    if (group < 0 || group > 9) {
+                        throw new IllegalArgumentException("Illegal group reference");
+                    }
+                    // Matcherと同じく、グループ数を超えない範囲でできるだけ長い数字をグループ番号とする
+                    while (i < len && Character.isDigit(template.charAt(i))) {
+                        int next = group * 10 + template.charAt(i) - '0';
+                        if (next > compiled.getGroupCount()) {
+                            break;
+                        }
+                        group = next;
+                        i++;
+                    }
+                    if (group > compiled.getGroupCount()) {
+                        throw new IndexOutOfBoundsException("No group " + group);
+                    }
+                }
+                literals.add(literal.toString());
+                groups.add(group);
+                literal.setLength(0);
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+
+        mLiterals = literals.toArray(new String[literals.size()]);
+        mGroups = new int[groups.size()];
+        for (int j = 0; j < mGroups.length; j++) {
+            mGroups[j] = groups.get(j);
+        }
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     *  ターゲット文字列のマッチ箇所をすべて置き換えた文字列を返します
+     *  Matcher.replaceAll(String)と同じ結果になります
+     *  @param target ターゲット文字列
+     *  @return すべて置き換えた後の文字列。マッチ箇所がなければターゲット文字列そのもの
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public String replaceAll(CharSequence target) {
+        Objects.requireNonNull(target, "target is null");
+        MatchCursor cursor = MatchCursor.of(mCompiled, target);
+        if (!cursor.find()) {
+            return target.toString();
+        }
+        StringBuilder sb = new StringBuilder(target.length() + 16);
+        try {
+            replace(cursor, target, sb, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilderへの書き込みでは発生しない
+        }
+        return sb.toString();
+    }
+
+    /**
+     *  ターゲット文字列のマッチ箇所をすべて置き換えた結果をoutに書き込みます
+     *  @param target ターゲット文字列
+     *  @param out 書き込み先
+     *  @return 置き換えたマッチ箇所の数
+     *  @throws IOException outへの書き込みに失敗した場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public int replaceAll(CharSequence target, Appendable out) throws IOException {
+        Objects.requireNonNull(target, "target is null");
+        Objects.requireNonNull(out, "out is null");
+        return replace(MatchCursor.of(mCompiled, target), target, out, false);
+    }
+
+    /**
+     *  ターゲット文字列のマッチ箇所をすべて置き換えた結果を、outの現在位置から書き込みます
+     *  ターゲット文字列の部分文字列を作成せずに書き込みます
+     *  @param target ターゲット文字列
+     *  @param out 書き込み先
+     *  @return 置き換えたマッチ箇所の数
+     *  @throws java.nio.BufferOverflowException outの残りの容量が足りない場合
+     *  @throws NullPointerException 引数にnullが渡された場合
+     */
+    public int replaceAll(CharSequence target, CharBuffer out) {
+        try {
+            return replaceAll(target, (Appendable) out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // CharBufferへの書き込みでは発生しない
+        }
+    }
+
+    /**
+     *  複数のターゲット文字列をそれぞれ置き換え、その結果をdelimiterで区切ってoutに書き込みます
+     *  Matcherはすべてのターゲット文字列で使いまわされます。
+     *  Streamは{@code replacement.replaceEach(stream::iterator, out, "\n")}のように渡すことができます
+     *  @param targets ターゲット文字列
+     *  @param out 書き込み先
+     *  @param delimiter 各ターゲット文字列の結果の後に書き込む文字列
+     *  @return 置き換えたマッチ箇所の総数
+     *  @throws IOException outへの書き込みに失敗した場合
+     *  @throws NullPointerException 引数やtargetsの要素にnullが含まれる場合
+     */
+    public int replaceEach(Iterable<? extends CharSequence> targets, Appendable out, CharSequence delimiter)
+            throws IOException {
+        Objects.requireNonNull(targets, "targets is null");
+        Objects.requireNonNull(out, "out is null");
+        Objects.requireNonNull(delimiter, "delimiter is null");
+        Replacer replacer = newReplacer();
+        int count = 0;
+        for (CharSequence target : targets) {
+            count += replacer.replace(target, out);
+            out.append(delimiter);
+        }
+        return count;
+    }
+
+    /**
+     *  Matcherを使いまわして、ターゲット文字列ごとに置き換えを行うReplacerを作成します
+     *  @return 新しいReplacer
+     */
+    public Replacer newReplacer() {
+        return new Replacer(this);
+    }
+
+    // isFoundがtrueであれば、cursorは最初のマッチ箇所を見つけた状態にある
+    private int replace(MatchCursor cursor, CharSequence target, Appendable out, boolean isFound) throws IOException {
+        int count = 0;
+        int last = 0;
+        while (isFound || cursor.find()) {
+            isFound = false;
+            append(out, target, last, cursor.start());
+            for (int i = 0; i < mGroups.length; i++) {
+                append(out, mLiterals[i]);
+                int start = cursor.start(mGroups[i]);
+                if (start >= 0) {
+                    append(out, target, start, cursor.end(mGroups[i]));
+                }
+            }
+            append(out, mLiterals[mGroups.length]);
+            last = cursor.end();
+            count++;
+        }
+        append(out, target, last, target.length());
+        return count;
+    }
+
+    private static void append(Appendable out, String literal) throws IOException {
+        if (!literal.isEmpty()) {
+            out.append(literal);
+        }
+    }
+
+    // CharBuffer.append(CharSequence, int, int)は部分文字列を作成するので、一文字ずつ書き込む
+    private static void append(Appendable out, CharSequence src, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (out instanceof CharBuffer) {
+            CharBuffer buf = (CharBuffer) out;
+            if (src instanceof String) {
+                buf.put((String) src, start, end);
+            } else {
+                for (int i = start; i < end; i++) {
+                    buf.put(src.charAt(i));
+                }
+            }
+        } else {
+            out.append(src, start, end);
+        }
+    }
+
+    /**
+     *  置き換えに使う正規表現を返します
+     *  @return 正規表現
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  解析前の置換文字列を返します
+     *  @return 置換文字列
+     */
+    public String getTemplate() {
+        return mTemplate;
+    }
+
+    @Override
+    public String toString() {
+        return mCompiled + " -> " + mTemplate;
+    }
+
+    /**
+     *  <p>
+     *  Matcherを使いまわして、ターゲット文字列ごとに置き換えを行うクラスです
+     *  <p>
+     *  Replacement.newReplacer()で作成します。
+     *  置き換えのたびに作成されるのは、書き込み先に書き込まれる結果だけです
+     *  <p>
+     *  このクラスは可変であり、複数のスレッドで共有することはできません
+     *
+     *  @since 1.3.0
+     */
+    public static final class Replacer {
+        private final Replacement mReplacement;
+        private MatchCursor mCursor = null; // 最初の置き換えで作成し、以降は使いまわす
+
+        private Replacer(Replacement replacement) {
+            mReplacement = replacement;
+        }
+
+        /**
+         *  ターゲット文字列のマッチ箇所をすべて置き換えた結果をoutに書き込みます
+         *  @param target ターゲット文字列
+         *  @param out 書き込み先
+         *  @return 置き換えたマッチ箇所の数
+         *  @throws IOException outへの書き込みに失敗した場合
+         *  @throws NullPointerException 引数にnullが渡された場合
+         */
+        public int replace(CharSequence target, Appendable out) throws IOException {
+            Objects.requireNonNull(target, "target is null");
+            Objects.requireNonNull(out, "out is null");
+            if (Objects.isNull(mCursor)) {
+                mCursor = MatchCursor.of(mReplacement.mCompiled, target);
+            } else {
+                mCursor.reset(target);
+            }
+            return mReplacement.replace(mCursor, target, out, false);
+        }
+
+        /**
+         *  ターゲット文字列のマッチ箇所をすべて置き換えた結果を、outの現在位置から書き込みます
+         *  @param target ターゲット文字列
+         *  @param out 書き込み先
+         *  @return 置き換えたマッチ箇所の数
+         *  @throws java.nio.BufferOverflowException outの残りの容量が足りない場合
+         *  @throws NullPointerException 引数にnullが渡された場合
+         */
+        public int replace(CharSequence target, CharBuffer out) {
+            try {
+                return replace(target, (Appendable) out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // CharBufferへの書き込みでは発生しない
+            }
+        }
+
+        /**
+         *  置き換えに使うReplacementを返します
+         *  @return Replacement
+         */
+        public Replacement getReplacement() {
+            return mReplacement;
+        }
+    }
+}
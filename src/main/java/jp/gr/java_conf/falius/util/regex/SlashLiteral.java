@@ -0,0 +1,117 @@
+package jp.gr.java_conf.falius.util.regex;
+
+/**
+ *  スラッシュで囲まれた正規表現("/regex/gi"など)の形になっているかどうかを判別する走査処理をまとめたクラスです
+ *  <p>
+ *  正規表現^/(.+)/([gnimsudxl]*)$(DOTALLモード)と同じ判定を、状態を持たずオブジェクトも生成せずに行います。
+ *  そのため、複数のスレッドから同時に利用できます
+ *
+ *  @since 1.3.0
+ */
+final class SlashLiteral {
+    static final char SLASH = '/';
+    static final char OPTION_G = 'g';
+    static final char OPTION_N = 'n'; // 線形時間のエンジンを使う
+
+    private SlashLiteral() {
+    }
+
+    /**
+     *  閉じスラッシュのインデックスを返します
+     *  @param s 調べる文字列
+     *  @return 正規表現の形になっていれば閉じスラッシュのインデックス。そうでなければ-1
+     */
+    static int closingSlash(CharSequence s) {
+        int end = optionEnd(s);
+        // 先頭のスラッシュ、1文字以上の本体、閉じスラッシュで最低3文字必要
+        if (end < 3 || s.charAt(0) != SLASH) {
+            return -1;
+        }
+
+        // オプションは末尾にしかないので、後ろから閉じスラッシュを探す
+        // オプション文字にスラッシュは含まれないので、最初に見つかったスラッシュが閉じスラッシュになる
+        for (int i = end - 1; i >= 2; i--) {
+            char c = s.charAt(i);
+            if (c == SLASH) {
+                return i;
+            }
+            if (!isOptionChar(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *  オプション文字列の終端(排他的)を返します
+     *  正規表現の$と同様に、末尾の行終端記号ひとつは無視されます
+     *  @param s 調べる文字列
+     *  @return オプション文字列の終端のインデックス
+     */
+    static int optionEnd(CharSequence s) {
+        int end = s.length();
+        if (end == 0) {
+            return 0;
+        }
+        char last = s.charAt(end - 1);
+        if (last == '\n') {
+            end--;
+            if (end > 0 && s.charAt(end - 1) == '\r') {
+                end--;
+            }
+        } else if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     *  closingSlash(CharSequence)で得た閉じスラッシュ以降のオプション文字列から、パターンフラグを計算します
+     *  @param s 調べた文字列
+     *  @param closingSlash 閉じスラッシュのインデックス
+     *  @return パターンフラグ(Patternフィールドの論理和)
+     */
+    static int patternFlag(CharSequence s, int closingSlash) {
+        int ret = 0;
+        for (int i = closingSlash + 1, end = optionEnd(s); i < end; i++) {
+            Option option = Option.from(s.charAt(i));
+            if (option != null) {
+                ret |= option.code();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     *  closingSlash(CharSequence)で得た閉じスラッシュ以降にgオプションがあるかどうかを返します
+     *  @param s 調べた文字列
+     *  @param closingSlash 閉じスラッシュのインデックス
+     *  @return gオプションがあればtrue
+     */
+    static boolean hasOptionG(CharSequence s, int closingSlash) {
+        return hasOption(s, closingSlash, OPTION_G);
+    }
+
+    /**
+     *  closingSlash(CharSequence)で得た閉じスラッシュ以降にnオプションがあるかどうかを返します
+     *  @param s 調べた文字列
+     *  @param closingSlash 閉じスラッシュのインデックス
+     *  @return nオプションがあればtrue
+     */
+    static boolean hasOptionN(CharSequence s, int closingSlash) {
+        return hasOption(s, closingSlash, OPTION_N);
+    }
+
+    private static boolean hasOption(CharSequence s, int closingSlash, char option) {
+        for (int i = closingSlash + 1, end = optionEnd(s); i < end; i++) {
+            if (s.charAt(i) == option) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOptionChar(char c) {
+        return c == OPTION_G || c == OPTION_N || Option.from(c) != null;
+    }
+}
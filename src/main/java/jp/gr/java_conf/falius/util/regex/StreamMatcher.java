@@ -0,0 +1,237 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Matcher;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  <p>
+ *  Readerなどから読み込んだ文字列に対して、全体をメモリに読み込むことなくマッチングを行うクラスです
+ *  <p>
+ *  CompiledRegex.matchStream(Reader)などで作成します。
+ *  マッチ箇所はiteratorとしてnext()で、あるいはstream()で先頭から順にPartDataとして取得できます。
+ *  PartDataのstart()やend()は、読み込んだ文字全体における位置になります
+ *  <p>
+ *  読み込んだ文字は一定の大きさのバッファに保持され、マッチ箇所がバッファの境界をまたぐ場合には続きを読み込んでから判定します。
+ *  バッファはマッチ箇所の最大長(maxMatchLength)を基準にした大きさまでしか拡張されないため、
+ *  最大長を超えるマッチ箇所は、最大長までの入力で判定された結果になるか、見つからない可能性があります
+ *  <pre>{@code
+ * CompiledRegex error = CompiledRegex.compile("/ERROR (\\w+)/");
+ * try (StreamMatcher matcher = error.matchStream(Paths.get("app.log"), StandardCharsets.UTF_8)) {
+ *     while (matcher.hasNext()) {
+ *         System.out.println(matcher.next().group(1));
+ *     }
+ * }
+ * }</pre>
+ *  <p>
+ *  このクラスは可変であり、複数のスレッドで共有することはできません
+ *
+ *  @since 1.3.0
+ */
+public class StreamMatcher implements Iterator<PartData>, Closeable {
+    static final int DEFAULT_MAX_MATCH_LENGTH = 64 * 1024;
+    private static final int READ_SIZE = 8 * 1024; // 一度に読み込む文字数
+    // 後読みや\b、複数行モードの^のために、探索開始位置より前に残しておく文字数
+    // バッファ先頭の文字が入力の先頭と誤認されないように、最低でも1文字は残す
+    private static final int LOOK_BEHIND = 64;
+
+    private final CompiledRegex mCompiled;
+    private final Reader mReader;
+    private final int mMaxMatchLength;
+
+    private char[] mBuf;
+    private CharBuffer mView; // mBufの有効な範囲を表すCharSequence
+    private Matcher mMatcher;
+    private int mLen = 0; // mBufに読み込んである文字数
+    private int mPos = 0; // 次にマッチ箇所を探し始めるmBuf上の位置
+    private long mBase = 0; // mBuf[0]が読み込んだ文字全体の何文字目か
+    private boolean mIsEof = false;
+
+    private PartData mNext = null; // 見つけたが、まだnext()で返していないマッチ箇所
+    private boolean mIsFinished = false;
+
+    StreamMatcher(CompiledRegex compiled, Reader reader, int maxMatchLength) {
+        checkMaxMatchLength(maxMatchLength);
+        mCompiled = Objects.requireNonNull(compiled, "compiled is null");
+        mReader = Objects.requireNonNull(reader, "reader is null");
+        mMaxMatchLength = maxMatchLength;
+        mBuf = new char[Math.min(maxMatchLength, READ_SIZE) + READ_SIZE];
+        resetView();
+    }
+
+    // 読み込み元を開く前に確かめられるように、コンストラクタとは別に用意する
+    static void checkMaxMatchLength(int maxMatchLength) {
+        if (maxMatchLength <= 0) {
+            throw new IllegalArgumentException("maxMatchLength must be positive : " + maxMatchLength);
+        }
+    }
+
+    /**
+     *  マッチさせている正規表現を返します
+     *  @return 正規表現
+     */
+    public CompiledRegex getCompiledRegex() {
+        return mCompiled;
+    }
+
+    /**
+     *  マッチ箇所の最大長を返します
+     *  @return マッチ箇所の最大長(文字数)
+     */
+    public int getMaxMatchLength() {
+        return mMaxMatchLength;
+    }
+
+    /**
+     *  次のマッチ箇所があるかどうかを返します
+     *  必要であれば、マッチ箇所が見つかるか入力の終端に達するまで読み込みます
+     *  @throws UncheckedIOException 読み込みに失敗した場合
+     */
+    @Override
+    public boolean hasNext() {
+        if (Objects.isNull(mNext) && !mIsFinished) {
+            mNext = findNext();
+            mIsFinished = Objects.isNull(mNext);
+        }
+        return Objects.nonNull(mNext);
+    }
+
+    /**
+     *  次のマッチ箇所を返します
+     *  @throws NoSuchElementException それ以上マッチ箇所がない場合
+     *  @throws UncheckedIOException 読み込みに失敗した場合
+     */
+    @Override
+    public PartData next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("マッチした部分文字列がありません");
+        }
+        PartData ret = mNext;
+        mNext = null;
+        return ret;
+    }
+
+    /**
+     *  残りのマッチ箇所を順に返すStreamを返します
+     *  Streamを閉じると、このインスタンスも閉じられます
+     *  @return マッチ箇所のStream
+     */
+    public Stream<PartData> stream() {
+        Spliterator<PartData> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     *  読み込み元を閉じます
+     */
+    @Override
+    public void close() throws IOException {
+        mIsFinished = true;
+        mNext = null;
+        mReader.close();
+    }
+
+    // 次のマッチ箇所を探す。入力の終端までに見つからなければnull
+    private PartData findNext() {
+        while (true) {
+            if (mPos > mLen) {
+                // 最後の文字の後ろで空文字列にマッチした後
+                if (mIsEof) {
+                    return null;
+                }
+                fill(mPos);
+                continue;
+            }
+
+            mMatcher.region(mPos, mLen);
+            boolean isFound = mMatcher.find();
+            // 入力の終端に達していなければ、続きを読み込むと結果が変わる可能性がある
+            boolean needsMore = !mIsEof && mMatcher.hitEnd();
+
+            // 続きを読み込まないと確定しなくても、マッチ箇所の開始位置から最大長以上読み込んでいれば確定させる
+            if (isFound && (!needsMore || mLen - mMatcher.start() >= mMaxMatchLength)) {
+                return accept();
+            }
+            if (!isFound && !needsMore) {
+                if (mIsEof) {
+                    return null;
+                }
+                // 読み込んである範囲にはマッチ箇所が始まる可能性のある位置がない
+                mPos = mLen;
+            }
+
+            // 最大長より前から始まるマッチ箇所は考慮しない
+            fill(Math.max(mPos, mLen - mMaxMatchLength));
+        }
+    }
+
+    private PartData accept() {
+        PartData ret = PartData.of(mMatcher, mBase, mCompiled.getGroupNames());
+        int start = mMatcher.start();
+        int end = mMatcher.end();
+        // Matcher.find()と同様に、空文字列にマッチした場合は次の位置から探す
+        mPos = end == start ? end + 1 : end;
+        return ret;
+    }
+
+    // keepFrom以降の文字を残してバッファを詰め、続きを読み込む
+    private void fill(int keepFrom) {
+        mPos = keepFrom;
+        int shift = Math.max(0, Math.min(keepFrom, mLen) - LOOK_BEHIND);
+        if (shift > 0) {
+            System.arraycopy(mBuf, shift, mBuf, 0, mLen - shift);
+            mLen -= shift;
+            mPos -= shift;
+            mBase += shift;
+        }
+
+        if (mBuf.length - mLen < READ_SIZE) {
+            char[] newBuf = new char[mLen + READ_SIZE];
+            System.arraycopy(mBuf, 0, newBuf, 0, mLen);
+            mBuf = newBuf;
+        }
+
+        try {
+            int read = mReader.read(mBuf, mLen, mBuf.length - mLen);
+            if (read < 0) {
+                mIsEof = true;
+            } else {
+                mLen += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resetView();
+    }
+
+    private void resetView() {
+        if (Objects.isNull(mView) || mView.array() != mBuf) {
+            mView = CharBuffer.wrap(mBuf);
+            if (Objects.isNull(mMatcher)) {
+                mMatcher = mCompiled.getPattern().matcher(mView);
+                // 領域の外側の文字も後読みや境界の判定に使い、領域の境界は^や$にマッチさせない
+                mMatcher.useTransparentBounds(true);
+                mMatcher.useAnchoringBounds(false);
+            }
+        }
+        mView.limit(mLen);
+        mMatcher.reset(mView);
+    }
+}
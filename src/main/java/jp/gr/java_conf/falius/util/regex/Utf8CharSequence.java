@@ -0,0 +1,268 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *  UTF-8のバイト列を格納したByteBufferを、コピーせずにUTF-16の文字列として扱うCharSequenceです
+ *  <p>
+ *  作成時に一度だけバイト列を走査し、一定の文字数ごとにバイト位置を記録しておきます。
+ *  charAt(int)は直前に参照した位置か、最も近い記録位置からデコードするので、
+ *  Matcherのように先頭から順に参照する場合はほぼ定数時間で文字を返せます<br>
+ *  不正なバイトは1バイトごとにU+FFFDとして扱います
+ *  <p>
+ *  参照位置を内部に保持するので、複数のスレッドで共有することはできません
+ *
+ *  @since 1.3.0
+ */
+final class Utf8CharSequence implements CharSequence {
+    private static final int STEP = 128; // バイト位置を記録する間隔の文字数
+    private static final char REPLACEMENT = '\ufffd';
+
+    private final ByteBuffer mBuffer;
+    private final int mOffset; // mBufferの絶対位置で、このシーケンスの先頭
+    private final int mByteLength;
+    private final int mLength; // UTF-16での文字数
+
+    // k番目の記録位置は、文字位置がk*STEP以上となる最初のコードポイントの先頭
+    private final int[] mCheckChars;
+    private final int[] mCheckBytes;
+    private final int mCheckCount;
+
+    // 直前に参照したコードポイントの先頭の文字位置とバイト位置、そのコードポイントと次の文字位置
+    private int mCursorChar = 0;
+    private int mCursorByte = 0;
+    private int mCursorCodePoint = 0;
+    private int mCursorLen = 0; // バイト数
+    private int mCursorNext = 0;
+
+    /**
+     *  ByteBufferのpositionからlimitまでを文字列として扱うCharSequenceを作成します
+     *  すべてASCII文字であれば、位置の記録を必要としないByteCharSequenceを返します
+     *  @param buffer UTF-8のバイト列
+     *  @return 文字列として扱うCharSequence
+     */
+    static CharSequence of(ByteBuffer buffer) {
+        int from = buffer.position();
+        int to = buffer.limit();
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) < 0) {
+                return new Utf8CharSequence(buffer, from, to - from);
+            }
+        }
+        return new ByteCharSequence(buffer);
+    }
+
+    /**
+     *  ByteBufferの範囲の両端が文字の途中にならないように、positionとlimitを調整します
+     *  先頭では継続バイトを読み飛ばし、末尾では途中で切れている文字を取り除きます
+     *  @param buffer 調整するByteBuffer
+     *  @param trimHead 先頭を調整するかどうか
+     *  @param trimTail 末尾を調整するかどうか
+     */
+    static void align(ByteBuffer buffer, boolean trimHead, boolean trimTail) {
+        if (trimHead) {
+            int pos = buffer.position();
+            int max = Math.min(buffer.limit(), pos + 3);
+            while (pos < max && isContinuation(buffer.get(pos))) {
+                pos++;
+            }
+            buffer.position(pos);
+        }
+        if (trimTail) {
+            int limit = buffer.limit();
+            int lead = limit - 1;
+            int min = Math.max(buffer.position(), limit - 4);
+            while (lead >= min && isContinuation(buffer.get(lead))) {
+                lead--;
+            }
+            if (lead >= min && lead + expectedLength(buffer.get(lead) & 0xff) > limit) {
+                buffer.limit(lead);
+            }
+        }
+    }
+
+    private Utf8CharSequence(ByteBuffer buffer, int offset, int byteLength) {
+        mBuffer = buffer;
+        mOffset = offset;
+        mByteLength = byteLength;
+
+        int[] checkChars = new int[byteLength / STEP + 2];
+        int[] checkBytes = new int[checkChars.length];
+        int count = 0;
+        int chars = 0;
+        int b = 0;
+        while (b < byteLength) {
+            // 一文字の増分は高々2なので、記録位置を飛ばすことはない
+            if (chars >= count * STEP) {
+                checkChars[count] = chars;
+                checkBytes[count] = b;
+                count++;
+            }
+            int len = sequenceLength(b);
+            chars += Character.charCount(decode(b, len));
+            b += len;
+        }
+        mLength = chars;
+        mCheckChars = count == checkChars.length ? checkChars : Arrays.copyOf(checkChars, count);
+        mCheckBytes = count == checkBytes.length ? checkBytes : Arrays.copyOf(checkBytes, count);
+        mCheckCount = count;
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= mLength) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + mLength);
+        }
+        seek(index);
+        if (mCursorNext - mCursorChar == 1) {
+            return (char) mCursorCodePoint;
+        }
+        return index == mCursorChar
+                ? Character.highSurrogate(mCursorCodePoint) : Character.lowSurrogate(mCursorCodePoint);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > mLength || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + mLength);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, mLength).toString();
+    }
+
+    /**
+     *  文字位置に対応するバイト位置を返します
+     *  サロゲートペアの下位の位置が渡された場合は、そのコードポイントの次のバイト位置を返します
+     *  @param index 文字位置。0からlength()まで
+     *  @return このシーケンスの先頭からのバイト位置
+     */
+    int byteOffset(int index) {
+        if (index < 0 || index > mLength) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + mLength);
+        }
+        if (index == mLength) {
+            return mByteLength;
+        }
+        seek(index);
+        return index == mCursorChar ? mCursorByte : mCursorByte + mCursorLen;
+    }
+
+    /**
+     *  バイト位置以降で最初に始まるコードポイントの文字位置を返します
+     *  @param byteOffset このシーケンスの先頭からのバイト位置
+     *  @return 文字位置。byteOffsetが末尾以降ならlength()
+     */
+    int charIndex(int byteOffset) {
+        if (byteOffset <= 0) {
+            return 0;
+        }
+        if (byteOffset >= mByteLength) {
+            return mLength;
+        }
+        int k = Arrays.binarySearch(mCheckBytes, 0, mCheckCount, byteOffset);
+        if (k < 0) {
+            k = -k - 2; // byteOffsetより前にある最後の記録位置
+        }
+        int chars = mCheckChars[k];
+        int b = mCheckBytes[k];
+        while (b < byteOffset) {
+            int len = sequenceLength(b);
+            chars += Character.charCount(decode(b, len));
+            b += len;
+        }
+        return chars;
+    }
+
+    // 文字位置indexを含むコードポイントの先頭まで、参照位置を移動する
+    private void seek(int index) {
+        if (index >= mCursorChar && index < mCursorNext) {
+            return; // 直前と同じコードポイント
+        }
+        if (index < mCursorChar || index - mCursorChar > STEP) {
+            int k = Math.min(index / STEP, mCheckCount - 1);
+            while (mCheckChars[k] > index) {
+                k--;
+            }
+            moveCursor(mCheckChars[k], mCheckBytes[k]);
+        }
+        while (mCursorNext <= index) {
+            moveCursor(mCursorNext, mCursorByte + mCursorLen);
+        }
+    }
+
+    private void moveCursor(int charIndex, int byteOffset) {
+        mCursorChar = charIndex;
+        mCursorByte = byteOffset;
+        mCursorLen = sequenceLength(byteOffset);
+        mCursorCodePoint = decode(byteOffset, mCursorLen);
+        mCursorNext = charIndex + Character.charCount(mCursorCodePoint);
+    }
+
+    // バイト位置bから始まるコードポイントのバイト数。不正なバイト列なら1
+    private int sequenceLength(int b) {
+        int lead = mBuffer.get(mOffset + b) & 0xff;
+        int len = expectedLength(lead);
+        if (len == 1 || b + len > mByteLength) {
+            return 1;
+        }
+        for (int i = 1; i < len; i++) {
+            if (!isContinuation(mBuffer.get(mOffset + b + i))) {
+                return 1;
+            }
+        }
+        return len;
+    }
+
+    // バイト位置bから始まるlenバイトのコードポイント
+    private int decode(int b, int len) {
+        int lead = mBuffer.get(mOffset + b) & 0xff;
+        switch (len) {
+        case 2:
+            return (lead & 0x1f) << 6 | continuation(b + 1);
+        case 3:
+            return (lead & 0x0f) << 12 | continuation(b + 1) << 6 | continuation(b + 2);
+        case 4:
+            int codePoint = (lead & 0x07) << 18 | continuation(b + 1) << 12 | continuation(b + 2) << 6
+                    | continuation(b + 3);
+            return Character.isValidCodePoint(codePoint) ? codePoint : REPLACEMENT;
+        default:
+            return lead < 0x80 ? lead : REPLACEMENT;
+        }
+    }
+
+    private int continuation(int b) {
+        return mBuffer.get(mOffset + b) & 0x3f;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    // 先頭バイトから想定されるバイト数。先頭バイトになりえない値なら1
+    private static int expectedLength(int lead) {
+        if (lead < 0xc2) {
+            return 1;
+        }
+        if (lead < 0xe0) {
+            return 2;
+        }
+        if (lead < 0xf0) {
+            return 3;
+        }
+        return lead < 0xf5 ? 4 : 1;
+    }
+}
@@ -0,0 +1,126 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.LongBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CheckBitsTest {
+
+    @Test
+    public void sameAsBitSetTest() {
+        Random random = new Random(0);
+        for (int size : new int[] { 0, 1, 63, 64, 65, 130, 1000 }) {
+            CheckBits bits = new CheckBits(size);
+            BitSet expected = new BitSet(size);
+            for (int n = 0; n < size * 3; n++) {
+                int index = random.nextInt(size);
+                if (random.nextBoolean()) {
+                    assertThat(bits.set(index), is(!expected.get(index)));
+                    expected.set(index);
+                } else {
+                    assertThat(bits.clear(index), is(expected.get(index)));
+                    expected.clear(index);
+                }
+                assertThat(bits.count(), is(expected.cardinality()));
+            }
+            for (int i = 0; i <= size; i++) {
+                int nextClear = expected.nextClearBit(i);
+                assertThat(bits.nextSet(i), is(expected.nextSetBit(i)));
+                assertThat(bits.nextClear(i), is(nextClear < size ? nextClear : -1));
+            }
+        }
+    }
+
+    @Test
+    public void rangeTest() {
+        Random random = new Random(1);
+        for (int size : new int[] { 0, 1, 64, 65, 200 }) {
+            CheckBits bits = new CheckBits(size);
+            BitSet expected = new BitSet(size);
+            for (int n = 0; n < 200; n++) {
+                int from = random.nextInt(size + 1);
+                int to = from + random.nextInt(size - from + 1);
+                switch (random.nextInt(4)) {
+                case 0:
+                    bits.setRange(from, to);
+                    expected.set(from, to);
+                    break;
+                case 1:
+                    bits.clearRange(from, to);
+                    expected.clear(from, to);
+                    break;
+                case 2:
+                    if (from < size) {
+                        assertThat(bits.flip(from), is(!expected.get(from)));
+                        expected.flip(from);
+                    }
+                    break;
+                default:
+                    if (random.nextInt(10) == 0) {
+                        bits.clearAll();
+                        expected.clear();
+                    }
+                }
+                assertThat(bits.count(), is(expected.cardinality()));
+                for (int i = 0; i < size; i++) {
+                    assertThat(bits.get(i), is(expected.get(i)));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invalidRangeTest() {
+        new CheckBits(10).setRange(5, 11);
+    }
+
+    @Test
+    public void isAllTest() {
+        CheckBits bits = new CheckBits(70);
+        for (int i = 0; i < 70; i++) {
+            assertThat(bits.isAll(), is(false));
+            bits.set(i);
+        }
+        assertThat(bits.isAll(), is(true));
+        assertThat(bits.nextClear(0), is(-1));
+        assertThat(new CheckBits(0).isAll(), is(true));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfRangeTest() {
+        new CheckBits(64).set(64);
+    }
+
+    @Test
+    public void attachTest() {
+        LongBuffer store = LongBuffer.allocate(2);
+        store.put(0, 0b101L);
+        CheckBits bits = new CheckBits(100);
+        bits.attach(store);
+        assertThat(bits.count(), is(2));
+        assertThat(bits.get(2), is(true));
+
+        // 変更したワードが書き込まれる
+        bits.set(70);
+        assertThat(store.get(1), is(1L << 6));
+        bits.clear(0);
+        assertThat(store.get(0), is(0b100L));
+        bits.setRange(60, 100);
+        assertThat(Long.bitCount(store.get(0)) + Long.bitCount(store.get(1)), is(bits.count()));
+        bits.clearAll();
+        assertThat(store.get(0), is(0L));
+        assertThat(store.get(1), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attachBeyondSizeTest() {
+        LongBuffer store = LongBuffer.allocate(2);
+        store.put(1, 1L << 40);
+        new CheckBits(100).attach(store);
+    }
+}
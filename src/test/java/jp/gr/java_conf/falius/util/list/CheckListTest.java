@@ -3,11 +3,20 @@ package jp.gr.java_conf.falius.util.list;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -181,4 +190,209 @@ public class CheckListTest {
         assertThat(list.isChecked(2), is(false));
         assertThat(list.isChecked(1), is(true));
     }
+
+    @Test
+    public void indexOfTest() {
+        CheckList<String> list = new CheckList<>("a", "b", "a", "c");
+        assertThat(list.indexOf("a"), is(0));
+        assertThat(list.lastIndexOf("a"), is(2));
+        assertThat(list.indexOf("d"), is(-1));
+        assertThat(list.contains("c"), is(true));
+        assertThat(list.contains("d"), is(false));
+
+        // 重複した要素は最初のものがチェックされる
+        list.check("a");
+        assertThat(list.isChecked("a"), is(true));
+        assertThat(list.nonCheckedSet().contains("a"), is(true));
+    }
+
+    @Test
+    public void checkedCountTest() {
+        CheckList<Integer> list = new CheckList<>(0, 1, 2, 3, 4);
+        list.check(1);
+        list.check(1);
+        list.checkByIndex(3);
+        assertThat(list.checkedCount(), is(2));
+        assertThat(list.nextUnchecked(0), is(0));
+        assertThat(list.nextUnchecked(1), is(2));
+        assertThat(list.nextUnchecked(3), is(4));
+        assertThat(list.nextUnchecked(5), is(-1));
+    }
+
+    @Test
+    public void checkedViewTest() {
+        CheckList<String> list = new CheckList<>("a", "b", "c");
+        Set<String> checked = list.checkedSet();
+        Set<String> nonChecked = list.nonCheckedSet();
+        list.check("b");
+        // その後のチェックが反映される
+        assertThat(checked, is(Collections.singleton("b")));
+        assertThat(nonChecked, is(new HashSet<>(Arrays.asList("a", "c"))));
+        assertThat(nonChecked.contains("b"), is(false));
+        assertThat(checked.contains("d"), is(false));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void checkedViewUnmodifiableTest() {
+        new CheckList<>("a", "b").checkedSet().add("a");
+    }
+
+    @Test
+    public void bulkTest() {
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            elems.add(i);
+        }
+        CheckList<Integer> list = new CheckList<>(elems);
+        list.checkRange(10, 150);
+        assertThat(list.checkedCount(), is(140));
+        assertThat(list.nextUnchecked(10), is(150));
+        list.uncheckRange(60, 70);
+        assertThat(list.checkedCount(), is(130));
+        assertThat(list.isChecked(65), is(false));
+
+        list.checkAll(Arrays.asList(0, 65, 199));
+        assertThat(list.checkedCount(), is(133));
+        list.uncheck(65);
+        list.uncheckByIndex(0);
+        assertThat(list.checkedCount(), is(131));
+
+        assertThat(list.toggle(5), is(true));
+        assertThat(list.toggle(5), is(false));
+        assertThat(list.isChecked(5), is(false));
+
+        list.uncheckAll();
+        assertThat(list.checkedCount(), is(0));
+        list.checkRange(0, 200);
+        assertThat(list.isCheckedAll(), is(true));
+    }
+
+    @Test
+    public void checkAllMissingTest() {
+        CheckList<String> list = new CheckList<>("a", "b", "c");
+        try {
+            list.checkAll(Arrays.asList("a", "d"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 存在しない要素があれば、どの要素もチェックしない
+            assertThat(list.checkedCount(), is(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkMissingTest() {
+        new CheckList<>("a", "b").check("c");
+    }
+
+    @Test
+    public void largeCheckTest() {
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < 1000000; i++) {
+            elems.add(i);
+        }
+        CheckList<Integer> list = new CheckList<>(elems);
+        for (int i = elems.size() - 1; i >= 0; i--) {
+            list.check(i);
+        }
+        assertThat(list.isCheckedAll(), is(true));
+        assertThat(list.indexOf(999999), is(999999));
+    }
+
+    @Test
+    public void listenerTest() {
+        CheckList<String> list = new CheckList<>("a", "b", "c", "d");
+        List<CheckEvent<String>> events = new ArrayList<>();
+        CheckListener<String> listener = events::addAll;
+        list.addCheckListener(listener);
+
+        list.check("b");
+        list.check("b"); // 変化しなければ通知されない
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getFromIndex(), is(1));
+        assertThat(events.get(0).getElement(), is("b"));
+        assertThat(events.get(0).isChecked(), is(true));
+
+        list.toggle("b");
+        assertThat(events.get(1).isChecked(), is(false));
+
+        list.checkRange(0, 4);
+        assertThat(events.get(2).getFromIndex(), is(0));
+        assertThat(events.get(2).getToIndex(), is(4));
+        assertThat(events.get(2).getElement(), is(nullValue()));
+        list.checkRange(1, 3);
+        assertThat(events.size(), is(3));
+
+        list.uncheckAll();
+        assertThat(events.get(3).isChecked(), is(false));
+        list.checkAll(Arrays.asList("a", "c"));
+        assertThat(events.size(), is(6));
+
+        assertThat(list.removeCheckListener(listener), is(true));
+        list.uncheck("a");
+        assertThat(events.size(), is(6));
+    }
+
+    @Test
+    public void checkpointTest() throws IOException {
+        List<String> elems = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            elems.add("elem" + i);
+        }
+        Path file = Files.createTempFile("check-list", ".chk");
+        try {
+            CheckList<String> list = CheckList.withCheckpoint(file, elems);
+            assertThat(list.checkedCount(), is(0));
+            list.check("elem3");
+            list.checkRange(100, 300);
+            list.uncheckByIndex(200);
+            list.syncCheckpoint();
+
+            // 作成し直すと、保存されていたチェックの有無から再開する
+            CheckList<String> reopened = CheckList.withCheckpoint(file, elems);
+            assertThat(reopened.checkedCount(), is(200));
+            assertThat(reopened.isChecked("elem3"), is(true));
+            assertThat(reopened.isChecked("elem200"), is(false));
+            assertThat(reopened.nextUnchecked(100), is(200));
+
+            reopened.uncheckAll();
+            assertThat(CheckList.withCheckpoint(file, elems).checkedCount(), is(0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void syncWithoutCheckpointTest() {
+        new CheckList<>("a").syncCheckpoint();
+    }
+
+    @Test
+    public void concurrentCheckTest() throws Exception {
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            elems.add(i);
+        }
+        CheckList<Integer> list = new CheckList<>(elems);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // 隣り合う要素、つまり同じワードのビットを異なるスレッドからチェックする
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                executor.execute(() -> {
+                    for (int i = offset; i < elems.size(); i += 8) {
+                        list.check(elems.get(i));
+                    }
+                });
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!list.isCheckedAll() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(list.isCheckedAll(), is(true));
+        assertThat(list.checkedCount(), is(100000));
+        assertThat(list.nextUnchecked(0), is(-1));
+    }
 }
@@ -0,0 +1,105 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CheckListenersTest {
+
+    @Test
+    public void synchronousTest() {
+        CheckListeners<String> listeners = new CheckListeners<>();
+        assertThat(listeners.isEmpty(), is(true));
+        List<List<CheckEvent<String>>> received = new ArrayList<>();
+        listeners.add(received::add, Runnable::run, 0, TimeUnit.NANOSECONDS);
+        assertThat(listeners.isEmpty(), is(false));
+
+        listeners.fire(CheckEvent.of(1, true, "b"));
+        listeners.fire(new ArrayList<>());
+        assertThat(received.size(), is(1));
+        assertThat(received.get(0).get(0).getElement(), is("b"));
+    }
+
+    @Test
+    public void executorTest() {
+        CheckListeners<String> listeners = new CheckListeners<>();
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        List<CheckEvent<String>> received = new ArrayList<>();
+        listeners.add(received::addAll, executor, 0, TimeUnit.NANOSECONDS);
+
+        listeners.fire(CheckEvent.of(0, true, "a"));
+        // Executorが実行するまでリスナーは呼び出されない
+        assertThat(received.isEmpty(), is(true));
+        assertThat(tasks.size(), is(1));
+        tasks.get(0).run();
+        assertThat(received.size(), is(1));
+    }
+
+    @Test
+    public void coalesceTest() throws InterruptedException {
+        CheckListeners<String> listeners = new CheckListeners<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        List<List<CheckEvent<String>>> received = new ArrayList<>();
+        listeners.add(events -> {
+            received.add(events);
+            latch.countDown();
+        }, Runnable::run, 100, TimeUnit.MILLISECONDS);
+
+        List<String> elems = Arrays.asList("a", "b", "c");
+        for (int i = 0; i < elems.size(); i++) {
+            listeners.fire(CheckEvent.of(i, true, elems.get(i)));
+        }
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(received.size(), is(1));
+        List<CheckEvent<String>> events = received.get(0);
+        assertThat(events.size(), is(3));
+        for (int i = 0; i < elems.size(); i++) {
+            assertThat(events.get(i).getFromIndex(), is(i));
+            assertThat(events.get(i).getElement(), is(elems.get(i)));
+        }
+    }
+
+    @Test
+    public void removeTest() throws Exception {
+        CheckListeners<String> listeners = new CheckListeners<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<CheckEvent<String>> received = new ArrayList<>();
+            CheckListener<String> listener = received::addAll;
+            listeners.add(listener, executor, 50, TimeUnit.MILLISECONDS);
+            listeners.fire(CheckEvent.of(0, true, "a"));
+
+            assertThat(listeners.remove(listener), is(true));
+            assertThat(listeners.remove(listener), is(false));
+            assertThat(listeners.isEmpty(), is(true));
+
+            // 集約中だった変化は破棄される
+            Thread.sleep(200);
+            executor.submit(() -> {}).get();
+            assertThat(received.isEmpty(), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeWindowTest() {
+        new CheckListeners<String>().add(events -> {}, Runnable::run, -1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullExecutorTest() {
+        new CheckListeners<String>().add(events -> {}, null, 0, TimeUnit.MILLISECONDS);
+    }
+}
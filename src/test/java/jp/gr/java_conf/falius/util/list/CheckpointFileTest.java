@@ -0,0 +1,64 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckpointFileTest {
+    private Path mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = Files.createTempFile("checkpoint-file", ".chk");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(mFile);
+    }
+
+    @Test
+    public void createTest() throws IOException {
+        CheckpointFile checkpoint = CheckpointFile.open(mFile, 130);
+        assertThat(checkpoint.words().limit(), is(3));
+        assertThat(Files.size(mFile), is(16L + 3 * 8));
+
+        checkpoint.words().put(2, 1L);
+        checkpoint.force();
+        assertThat(CheckpointFile.open(mFile, 130).words().get(2), is(1L));
+    }
+
+    @Test
+    public void emptyTest() throws IOException {
+        assertThat(CheckpointFile.open(mFile, 0).words().limit(), is(0));
+        assertThat(CheckpointFile.open(mFile, 0).words().limit(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMismatchTest() throws IOException {
+        CheckpointFile.open(mFile, 100);
+        CheckpointFile.open(mFile, 200);
+    }
+
+    @Test(expected = IOException.class)
+    public void notCheckpointTest() throws IOException {
+        Files.write(mFile, "this is not a checkpoint file".getBytes("UTF-8"));
+        CheckpointFile.open(mFile, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedTest() throws IOException {
+        CheckpointFile.open(mFile, 1000);
+        byte[] bytes = Files.readAllBytes(mFile);
+        Files.write(mFile, Arrays.copyOf(bytes, bytes.length - 8));
+        CheckpointFile.open(mFile, 1000);
+    }
+}
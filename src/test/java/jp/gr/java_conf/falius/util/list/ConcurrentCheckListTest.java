@@ -0,0 +1,121 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+public class ConcurrentCheckListTest {
+
+    @Test
+    public void concurrentCheckTest() throws Exception {
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            elems.add(i);
+        }
+        ConcurrentCheckList<Integer> list = new ConcurrentCheckList<>(elems);
+        CompletableFuture<Void> future = list.allChecked();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // 各要素を二つのスレッドからチェックする
+            for (int t = 0; t < 16; t++) {
+                int offset = t % 8;
+                executor.execute(() -> {
+                    for (int i = offset; i < elems.size(); i += 8) {
+                        list.check(elems.get(i));
+                    }
+                });
+            }
+            assertThat(list.awaitAllChecked(30, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(list.isCheckedAll(), is(true));
+        assertThat(list.checkedCount(), is(100000));
+        assertThat(list.nextUnchecked(0), is(-1));
+        assertThat(future.isDone(), is(true));
+    }
+
+    @Test
+    public void completionOrderTest() throws Exception {
+        ConcurrentCheckList<String> list = new ConcurrentCheckList<>("a", "b");
+        // allChecked()に続く処理の中でも、すべての要素がチェックされたと見える
+        CompletableFuture<Boolean> inCallback = list.allChecked().thenApply(v -> list.isCheckedAll());
+        list.check("a");
+        assertThat(list.isCheckedAll(), is(false));
+        list.check("b");
+        assertThat(inCallback.get(), is(true));
+        assertThat(list.awaitAllChecked(0, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void checkTest() throws Exception {
+        ConcurrentCheckList<String> list = new ConcurrentCheckList<>("a", "b", "c");
+        CompletableFuture<Void> future = list.allChecked();
+        list.check("b");
+        assertThat(list.checkByIndex(1), is(false));
+        assertThat(list.isChecked("b"), is(true));
+        assertThat(list.isChecked("a"), is(false));
+        assertThat(list.checkedCount(), is(1));
+        assertThat(list.nextUnchecked(1), is(2));
+        assertThat(list.awaitAllChecked(10, TimeUnit.MILLISECONDS), is(false));
+        assertThat(future.isDone(), is(false));
+
+        // 返されたFutureを完了させても影響しない
+        list.allChecked().complete(null);
+        assertThat(list.allChecked().isDone(), is(false));
+
+        list.check("a");
+        list.check("c");
+        assertThat(list.isCheckedAll(), is(true));
+        assertThat(future.isDone(), is(true));
+        list.awaitAllChecked();
+    }
+
+    @Test
+    public void emptyTest() {
+        assertThat(new ConcurrentCheckList<String>().isCheckedAll(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkMissingTest() {
+        new ConcurrentCheckList<>("a").check("b");
+    }
+
+    @Test
+    public void listenerTest() throws InterruptedException {
+        int size = 1000;
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            elems.add(i);
+        }
+        ConcurrentCheckList<Integer> list = new ConcurrentCheckList<>(elems);
+        LongAdder received = new LongAdder();
+        list.addCheckListener(events -> received.add(events.size()), Runnable::run, 10, TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            executor.execute(() -> {
+                list.checkByIndex(index);
+                list.checkByIndex(index);
+            });
+        }
+        executor.shutdown();
+        list.awaitAllChecked();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.sum() < size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // 新たにチェックした分だけ通知される
+        assertThat(received.sum(), is((long) size));
+    }
+}
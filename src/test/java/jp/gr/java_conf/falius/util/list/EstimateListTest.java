@@ -3,7 +3,11 @@ package jp.gr.java_conf.falius.util.list;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -352,4 +356,159 @@ public class EstimateListTest {
         assertThat(subList.estimatedIndex(), is(-1));
     }
 
+    @Test
+    public void listenerTest() {
+        EstimateList<String> list = new EstimateList<String>() {
+            {
+                add("abc");
+                add("def");
+                add("ghi");
+            }
+        };
+        List<List<CheckEvent<String>>> received = new ArrayList<>();
+        list.addCheckListener(received::add);
+
+        list.estimate("abc"); // 指定が変わらなければ通知されない
+        assertThat(received.isEmpty(), is(true));
+
+        list.estimate("ghi");
+        List<CheckEvent<String>> events = received.get(0);
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getElement(), is("abc"));
+        assertThat(events.get(0).isChecked(), is(false));
+        assertThat(events.get(1).getElement(), is("ghi"));
+        assertThat(events.get(1).isChecked(), is(true));
+
+        list.estimateNext();
+        assertThat(received.get(1).get(1).getFromIndex(), is(0));
+        list.estimatePrev();
+        assertThat(received.get(2).get(1).getFromIndex(), is(2));
+
+        // 要素の追加による指定インデックスの移動は通知されない
+        list.add(0, "aaa");
+        assertThat(received.size(), is(3));
+    }
+
+    @Test
+    public void listenerEmptyTest() {
+        EstimateList<String> list = new EstimateList<>();
+        List<CheckEvent<String>> events = new ArrayList<>();
+        list.addCheckListener(events::addAll);
+        list.add("abc");
+        list.add("def");
+        list.estimateByIndex(1);
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0).getFromIndex(), is(0));
+    }
+
+    @Test
+    public void indexedTest() {
+        EstimateList<String> list = EstimateList.indexed(Arrays.asList("abc", "def", "ghi", "def"));
+        assertThat(list.isIndexed(), is(true));
+        assertThat(new EstimateList<String>().isIndexed(), is(false));
+
+        // 重複した要素は最初の要素が指定される
+        assertThat(list.estimate("def"), is(true));
+        assertThat(list.estimatedIndex(), is(1));
+        assertThat(list.estimate("xyz"), is(false));
+
+        list.add(0, "aaa");
+        assertThat(list.indexOf("def"), is(2));
+        list.remove("abc");
+        assertThat(list.indexOf("ghi"), is(2));
+        list.add("jkl");
+        assertThat(list.indexOf("jkl"), is(4));
+        list.remove(4);
+        assertThat(list.contains("jkl"), is(false));
+
+        // サブリストを通した変更も反映される
+        list.subList(0, 2).clear(); // remain : "ghi", "def"
+        assertThat(list.indexOf("def"), is(1));
+        list.subList(0, 1).add("mno"); // "ghi", "mno", "def"
+        assertThat(list.indexOf("def"), is(2));
+
+        Iterator<String> it = list.iterator();
+        it.next();
+        it.remove(); // "mno", "def"
+        assertThat(list.indexOf("def"), is(1));
+
+        list.clear();
+        assertThat(list.indexOf("def"), is(-1));
+    }
+
+    @Test
+    public void indexedRandomTest() {
+        Random random = new Random(1);
+        List<Integer> initial = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            initial.add(random.nextInt(30));
+        }
+        EstimateList<Integer> expected = new EstimateList<>(initial);
+        EstimateList<Integer> actual = EstimateList.indexed(initial);
+        for (int n = 0; n < 2000; n++) {
+            Integer value = random.nextInt(30);
+            switch (random.nextInt(6)) {
+            case 0:
+                expected.add(value);
+                actual.add(value);
+                break;
+            case 1:
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, value);
+                actual.add(index, value);
+                break;
+            case 2:
+                if (!expected.isEmpty()) {
+                    int rmIndex = random.nextInt(expected.size());
+                    expected.remove(rmIndex);
+                    actual.remove(rmIndex);
+                }
+                break;
+            case 3:
+                if (!expected.isEmpty()) {
+                    expected.remove(expected.size() - 1);
+                    actual.remove(actual.size() - 1);
+                }
+                break;
+            case 4:
+                if (!expected.isEmpty()) {
+                    int setIndex = random.nextInt(expected.size());
+                    expected.set(setIndex, value);
+                    actual.set(setIndex, value);
+                }
+                break;
+            default:
+                assertThat(actual.estimate(value), is(expected.estimate(value)));
+                assertThat(actual.estimatedIndex(), is(expected.estimatedIndex()));
+                break;
+            }
+            assertThat(actual.indexOf(value), is(expected.indexOf(value)));
+        }
+        assertThat(new ArrayList<>(actual), is(new ArrayList<>(expected)));
+    }
+
+    @Test
+    public void indexedRemoveAllTest() {
+        List<Integer> initial = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            initial.add(i % 500);
+        }
+        List<Integer> removed = new ArrayList<>();
+        for (int i = 0; i < 600; i += 3) {
+            removed.add(i);
+        }
+        EstimateList<Integer> expected = new EstimateList<>(initial);
+        EstimateList<Integer> actual = EstimateList.indexed(initial);
+        expected.estimate(499);
+        actual.estimate(499);
+
+        assertThat(actual.removeAll(removed), is(expected.removeAll(removed)));
+        assertThat(new ArrayList<>(actual), is(new ArrayList<>(expected)));
+        assertThat(actual.estimatedIndex(), is(expected.estimatedIndex()));
+        for (int i = 0; i < 600; i++) {
+            assertThat(actual.indexOf(i), is(expected.indexOf(i)));
+        }
+        assertThat(actual.estimate(3), is(true));
+        assertThat(actual.estimatedIndex(), is(expected.indexOf(3)));
+    }
 }
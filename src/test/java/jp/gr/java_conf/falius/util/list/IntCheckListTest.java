@@ -0,0 +1,96 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntCheckListTest {
+
+    @Test
+    public void sameAsCheckListTest() {
+        Random random = new Random(0);
+        for (int size : new int[] { 0, 1, 7, 100, 5000 }) {
+            int[] values = new int[size];
+            List<Integer> boxed = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                // 重複や負の数、極端な値を含める
+                values[i] = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(size * 2) - size;
+                boxed.add(values[i]);
+            }
+            IntCheckList list = new IntCheckList(values);
+            CheckList<Integer> expected = new CheckList<>(boxed);
+            for (int n = 0; n < size; n++) {
+                int value = values[random.nextInt(size)];
+                list.check(value);
+                expected.check(value);
+            }
+            assertThat(list.size(), is(size));
+            assertThat(list.checkedCount(), is(expected.checkedCount()));
+            assertThat(list.isCheckedAll(), is(expected.isCheckedAll()));
+            for (int i = 0; i < size; i++) {
+                assertThat(list.get(i), is(values[i]));
+                assertThat(list.indexOf(values[i]), is(expected.indexOf(values[i])));
+                assertThat(list.isChecked(values[i]), is(expected.isChecked(values[i])));
+                assertThat(list.nextUnchecked(i), is(expected.nextUnchecked(i)));
+            }
+            for (int n = 0; n < 100; n++) {
+                int value = random.nextInt();
+                assertThat(list.contains(value), is(boxed.contains(value)));
+            }
+        }
+    }
+
+    @Test
+    public void forEachTest() {
+        IntCheckList list = new IntCheckList(5, -3, Integer.MIN_VALUE, 0, Integer.MAX_VALUE);
+        list.check(-3);
+        list.check(Integer.valueOf(Integer.MAX_VALUE));
+        list.checkByIndex(0);
+        List<Integer> all = new ArrayList<>();
+        List<Integer> checked = new ArrayList<>();
+        List<Integer> unchecked = new ArrayList<>();
+        list.forEach(all::add);
+        list.forEachChecked(checked::add);
+        list.forEachUnchecked(unchecked::add);
+        assertThat(all, is(Arrays.asList(5, -3, Integer.MIN_VALUE, 0, Integer.MAX_VALUE)));
+        assertThat(checked, is(Arrays.asList(5, -3, Integer.MAX_VALUE)));
+        assertThat(unchecked, is(Arrays.asList(Integer.MIN_VALUE, 0)));
+    }
+
+    @Test
+    public void checkableTest() {
+        Checkable<Integer> checkable = new IntCheckList(1, 2);
+        checkable.check(2);
+        assertThat(((IntCheckList) checkable).isChecked(2), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkMissingTest() {
+        new IntCheckList(1, 2).check(3);
+    }
+
+    @Test
+    public void emptyTest() {
+        IntCheckList list = new IntCheckList();
+        assertThat(list.contains(0), is(false));
+        assertThat(list.isCheckedAll(), is(true));
+    }
+
+    @Test
+    public void listenerTest() {
+        IntCheckList list = new IntCheckList(10, 20, 30);
+        List<CheckEvent<Integer>> events = new ArrayList<>();
+        list.addCheckListener(events::addAll);
+        list.check(20);
+        list.check(20);
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getElement(), is(20));
+        assertThat(events.get(0).getFromIndex(), is(1));
+    }
+}
@@ -0,0 +1,84 @@
+package jp.gr.java_conf.falius.util.list;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongCheckListTest {
+
+    @Test
+    public void sameAsCheckListTest() {
+        Random random = new Random(0);
+        for (int size : new int[] { 0, 1, 7, 100, 5000 }) {
+            long[] values = new long[size];
+            List<Long> boxed = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                // 重複や負の数、極端な値を含める
+                values[i] = random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(size * 2) - size;
+                boxed.add(values[i]);
+            }
+            LongCheckList list = new LongCheckList(values);
+            CheckList<Long> expected = new CheckList<>(boxed);
+            for (int n = 0; n < size; n++) {
+                long value = values[random.nextInt(size)];
+                list.check(value);
+                expected.check(value);
+            }
+            assertThat(list.size(), is(size));
+            assertThat(list.checkedCount(), is(expected.checkedCount()));
+            assertThat(list.isCheckedAll(), is(expected.isCheckedAll()));
+            for (int i = 0; i < size; i++) {
+                assertThat(list.get(i), is(values[i]));
+                assertThat(list.indexOf(values[i]), is(expected.indexOf(values[i])));
+                assertThat(list.isChecked(values[i]), is(expected.isChecked(values[i])));
+                assertThat(list.nextUnchecked(i), is(expected.nextUnchecked(i)));
+            }
+            for (int n = 0; n < 100; n++) {
+                long value = random.nextLong();
+                assertThat(list.contains(value), is(boxed.contains(value)));
+            }
+        }
+    }
+
+    @Test
+    public void forEachTest() {
+        LongCheckList list = new LongCheckList(5, -3, Long.MIN_VALUE, 0, Long.MAX_VALUE);
+        list.check(-3);
+        list.check(Long.valueOf(Long.MAX_VALUE));
+        list.checkByIndex(0);
+        List<Long> all = new ArrayList<>();
+        List<Long> checked = new ArrayList<>();
+        List<Long> unchecked = new ArrayList<>();
+        list.forEach(all::add);
+        list.forEachChecked(checked::add);
+        list.forEachUnchecked(unchecked::add);
+        assertThat(all, is(Arrays.asList(5L, -3L, Long.MIN_VALUE, 0L, Long.MAX_VALUE)));
+        assertThat(checked, is(Arrays.asList(5L, -3L, Long.MAX_VALUE)));
+        assertThat(unchecked, is(Arrays.asList(Long.MIN_VALUE, 0L)));
+    }
+
+    @Test
+    public void checkableTest() {
+        Checkable<Long> checkable = new LongCheckList(1, 2);
+        checkable.check(2L);
+        assertThat(((LongCheckList) checkable).isChecked(2), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkMissingTest() {
+        new LongCheckList(1, 2).check(3);
+    }
+
+    @Test
+    public void emptyTest() {
+        LongCheckList list = new LongCheckList();
+        assertThat(list.contains(0), is(false));
+        assertThat(list.isCheckedAll(), is(true));
+    }
+}
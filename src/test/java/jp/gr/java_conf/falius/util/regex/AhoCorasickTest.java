@@ -0,0 +1,59 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AhoCorasickTest {
+
+    @Test
+    public void scanTest() {
+        List<String> keywords = Arrays.asList("he", "she", "his", "hers", "日本語", "本");
+        AhoCorasick ac = new AhoCorasick(keywords, new int[] { 0, 1, 2, 3, 4, 5 });
+
+        BitSet found = new BitSet();
+        ac.scan("uSHErs", found);
+        assertThat(found.toString(), is("{0, 1, 3}"));
+
+        found.clear();
+        ac.scan("日本人と日本語", found);
+        assertThat(found.toString(), is("{4, 5}"));
+    }
+
+    @Test
+    public void sameAsContainsTest() {
+        String[] pieces = { "a", "b", "A", "あ", "い", "ab", "あい" };
+        Random random = new Random(0);
+        for (int n = 0; n < 500; n++) {
+            String[] keywords = new String[1 + random.nextInt(6)];
+            int[] ids = new int[keywords.length];
+            for (int k = 0; k < keywords.length; k++) {
+                keywords[k] = randomString(random, pieces, 1 + random.nextInt(3));
+                ids[k] = k;
+            }
+            AhoCorasick ac = new AhoCorasick(Arrays.asList(keywords), ids);
+            String text = randomString(random, pieces, random.nextInt(15));
+
+            BitSet found = new BitSet();
+            ac.scan(text, found);
+            for (int k = 0; k < keywords.length; k++) {
+                assertThat(text + " " + keywords[k], found.get(k),
+                        is(text.toLowerCase().contains(keywords[k].toLowerCase())));
+            }
+        }
+    }
+
+    private static String randomString(Random random, String[] pieces, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return sb.toString();
+    }
+}
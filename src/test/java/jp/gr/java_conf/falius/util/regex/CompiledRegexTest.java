@@ -0,0 +1,146 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CompiledRegexTest {
+    private static final CompiledRegex COLOR = CompiledRegex.compile("/'(\\S+) (green)'/g");
+
+    @Test
+    public void compileTest() {
+        CompiledRegex compiled = CompiledRegex.compile("/(tes)t/gi");
+        assertThat(compiled.getRegex(), is("(tes)t"));
+        assertTrue(compiled.hasOptionG());
+        assertThat(compiled.toStringOptions(), is("gi"));
+        assertThat(compiled.toString(), is("/(tes)t/gi"));
+        assertThat(compiled, is(CompiledRegex.compile("/(tes)t/ig")));
+        assertThat(compiled.hashCode(), is(CompiledRegex.compile("/(tes)t/ig").hashCode()));
+        assertThat(compiled, is(not(CompiledRegex.compile("/(tes)t/i"))));
+        assertTrue(compiled.test("TEST"));
+        assertFalse(compiled.test("tst"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notRegexTest() {
+        CompiledRegex.compile("this is not regex");
+    }
+
+    @Test
+    public void resultTest() {
+        RegexResult first = COLOR.match("I like 'lite green','yellow green' and 'dark green'.");
+        RegexResult second = COLOR.match("'sky green'");
+
+        assertThat(first.matchCount(), is(3));
+        assertThat(first.group(2), is("'dark green'"));
+        assertThat(first.find(1).group(1), is("yellow"));
+        assertThat(first.find(1).start(), is(20L));
+        assertThat(first.find(1).start(1), is(21L));
+        assertThat(first.find(1).end(2), is(33L));
+        assertThat(second.matchCount(), is(1));
+        assertThat(second.find(0).group(1), is("sky"));
+        assertThat(first.getCompiledRegex(), is(sameInstance(COLOR)));
+
+        RegexResult none = COLOR.match("no color");
+        assertFalse(none.test());
+        assertThat(none.groupCount(), is(0));
+        assertThat(none.toArray().length, is(0));
+        assertThat(none.toString(), is("[]"));
+    }
+
+    @Test
+    public void offsetsTest() {
+        String text = "I like 'lite green','yellow green' and 'dark green'.";
+        List<String> found = new ArrayList<>();
+        int count = COLOR.forEachOffsets(text, offsets -> {
+            assertThat(offsets.length, is(6));
+            found.add(text.substring(offsets[2], offsets[3]) + "@" + offsets[0]);
+        });
+        assertThat(count, is(3));
+        assertThat(found, is(Arrays.asList("lite@7", "yellow@20", "dark@39")));
+        assertThat(CompiledRegex.compile("/(a)|b/").forEachOffsets("b", offsets -> {
+            assertThat(offsets[2], is(-1));
+        }), is(1));
+    }
+
+    @Test
+    public void lazyGroupTest() {
+        PartData data = COLOR.match("x 'dark green'").find(0);
+        assertThat(data.start(1), is(3L));
+        assertThat(data.groupView(1).toString(), is("dark"));
+        assertThat(data.group(1), is("dark"));
+        assertThat(data.group(1), is(sameInstance(data.group(1))));
+        assertThat(data.toString(), is("['dark green', dark, green]"));
+
+        PartData optional = CompiledRegex.compile("/(a)?b/").match("b").find(0);
+        assertThat(optional.group(1), is(nullValue()));
+        assertThat(optional.groupView(1), is(nullValue()));
+    }
+
+    @Test
+    public void linearTest() {
+        CompiledRegex linear = CompiledRegex.compile("/'(\\S+) (green)'/gn");
+        assertTrue(linear.hasOptionN());
+        assertTrue(linear.isLinear());
+        assertThat(linear.toStringOptions(), is("gn"));
+        assertThat(linear, is(not(COLOR)));
+
+        String text = "I like 'lite green','yellow green' and 'dark green'.";
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        COLOR.forEachOffsets(text, offsets -> expected.add(Arrays.toString(offsets)));
+        linear.forEachOffsets(text, offsets -> actual.add(Arrays.toString(offsets)));
+        assertThat(actual, is(expected));
+        assertThat(linear.match(text).find(2).group(1), is("dark"));
+
+        // 後方参照を含む場合はPatternでマッチングを行う
+        CompiledRegex fallback = CompiledRegex.compile("/(a)\\1/n");
+        assertTrue(fallback.hasOptionN());
+        assertFalse(fallback.isLinear());
+        assertTrue(fallback.test("xaa"));
+        assertFalse(COLOR.isLinear());
+    }
+
+    @Test
+    public void facadeTest() {
+        Regex regex = Regex.newInstance("/'(\\S+) (green)'/g").match("'lite green'");
+        // 共有のRegexCacheは他のテストによって追い出されることがあるので、同じインスタンスかどうかは確かめない
+        assertThat(regex.getCompiledRegex(), is(COLOR));
+        assertThat(regex.toStringOptions(), is("g"));
+    }
+
+    @Test
+    public void sharedTest() throws Exception {
+        // staticフィールドに保持したひとつのインスタンスを、複数のスレッドで同時に使う
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final String color = "color" + t;
+                tasks.add(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        RegexResult result = COLOR.match("'" + color + " green' and '" + i + " green'");
+                        assertThat(result.find(0).group(1), is(color));
+                        assertThat(result.find(1).group(1), is(String.valueOf(i)));
+                    }
+                    return true;
+                });
+            }
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class GroupNamesTest {
+
+    @Test
+    public void parseTest() {
+        Map<String, Integer> names = GroupNames.parse("(a)(?<first>b)(?:c)(?=d)(?<!e)(?<second>f(g))", 0);
+        assertThat(names.size(), is(2));
+        assertThat(names.get("first"), is(2));
+        assertThat(names.get("second"), is(3));
+    }
+
+    @Test
+    public void skipTest() {
+        assertThat(GroupNames.parse("\\((?<a>x)", 0).get("a"), is(1));
+        assertThat(GroupNames.parse("[(](?<a>x)", 0).get("a"), is(1));
+        assertThat(GroupNames.parse("[a[(]](?<a>x)", 0).get("a"), is(1));
+        assertThat(GroupNames.parse("\\Q(()\\E(?<a>x)", 0).get("a"), is(1));
+        assertThat(GroupNames.parse("# (\n(?<a>x)", Pattern.COMMENTS).get("a"), is(1));
+        assertThat(GroupNames.parse("(?x)# (\n(?<a>x)", 0).get("a"), is(1));
+        assertThat(GroupNames.parse("(?<a>x)", Pattern.LITERAL).isEmpty(), is(true));
+    }
+}
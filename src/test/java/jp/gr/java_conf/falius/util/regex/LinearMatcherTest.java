@@ -0,0 +1,116 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LinearMatcherTest {
+
+    // Patternと同じマッチ箇所とグループが見つかることを確認する
+    private static void assertSameAsPattern(String regex, int flag, String... targets) {
+        LinearProgram program = LinearProgram.compile(regex, flag);
+        assertThat(regex, program, is(notNullValue()));
+        LinearMatcher linear = new LinearMatcher(program);
+        for (String target : targets) {
+            Matcher matcher = Pattern.compile(regex, flag).matcher(target);
+            assertThat(regex, linear.groupCount(), is(matcher.groupCount()));
+            List<String> expected = new ArrayList<>();
+            while (matcher.find()) {
+                StringBuilder sb = new StringBuilder();
+                for (int g = 0; g <= matcher.groupCount(); g++) {
+                    sb.append(matcher.start(g)).append('-').append(matcher.end(g)).append(' ');
+                }
+                expected.add(sb.toString());
+            }
+            List<String> actual = new ArrayList<>();
+            int from = 0;
+            while (from <= target.length() && linear.search(target, from, null)) {
+                StringBuilder sb = new StringBuilder();
+                for (int g = 0; g <= linear.groupCount(); g++) {
+                    sb.append(linear.start(g)).append('-').append(linear.end(g)).append(' ');
+                }
+                actual.add(sb.toString());
+                from = linear.end(0) == linear.start(0) ? linear.end(0) + 1 : linear.end(0);
+            }
+            assertThat(regex + " on " + target, actual, is(expected));
+        }
+    }
+
+    @Test
+    public void logLineTest() {
+        assertSameAsPattern("(\\d{4})-(\\d\\d)-(\\d\\d) (ERROR|WARN) (\\w+)", 0,
+                "2017-01-02 ERROR main failed\n2017-01-03 INFO ok\n2017-01-04 WARN worker slow",
+                "", "2017-01-02 DEBUG x");
+    }
+
+    @Test
+    public void priorityTest() {
+        assertSameAsPattern("(a+)(a*)", 0, "aaa baa");
+        assertSameAsPattern("(a+?)(a*)", 0, "aaa baa");
+        assertSameAsPattern("(a|ab)(c|bcd)(d*)", 0, "abcd");
+        assertSameAsPattern("(?:x|xy)z?", 0, "xyz xz x");
+        assertSameAsPattern("a{2,3}?b{1,2}", 0, "aaaabb aab");
+        assertSameAsPattern("a*", 0, "baaac");
+    }
+
+    @Test
+    public void assertionTest() {
+        assertSameAsPattern("^\\w+$", Pattern.MULTILINE, "abc\r\ndef\n\nghi ");
+        assertSameAsPattern("\\bfoo\\B", 0, "foox foo xfoox foofoo");
+        assertSameAsPattern("\\Ab|b\\z|b\\Z", 0, "bab\n", "bb");
+        assertSameAsPattern("^.$", Pattern.MULTILINE | Pattern.UNIX_LINES, "a\r\nb\nc");
+    }
+
+    @Test
+    public void optionTest() {
+        assertSameAsPattern("[a-c]+x", Pattern.CASE_INSENSITIVE, "ABx abX dX");
+        assertSameAsPattern("a(?i)b(?-i:c)d", 0, "aBcD aBCd abcd");
+        assertSameAsPattern("a.b", Pattern.DOTALL, "a\nb a\rb");
+        assertSameAsPattern("[^a-c\\d]+", Pattern.CASE_INSENSITIVE, "xyzABC12 q");
+    }
+
+    @Test
+    public void escapeTest() {
+        assertSameAsPattern("\\x41\\u0042\\t\\Q.*\\E\\x{3042}", 0, "AB\t.*あ AB\t..あ");
+        assertSameAsPattern("(?<year>\\d+)/\\.", 0, "2017/. 12/x");
+    }
+
+    @Test
+    public void surrogateTest() {
+        assertSameAsPattern("😀+|\\B", 0, "x😀😀y");
+        assertSameAsPattern(".", 0, "a😀b");
+        assertSameAsPattern("[^a]z|\\B", 0, "1x😀");
+        assertSameAsPattern("z|\\B", 0, "1x😀");
+    }
+
+    @Test
+    public void linearTimeTest() {
+        // バックトラックでは入力の長さに対して指数関数的に時間がかかる
+        LinearProgram program = LinearProgram.compile("(x+x+)+y", 0);
+        assertThat(program, is(notNullValue()));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append('x');
+        }
+        assertThat(new LinearMatcher(program).search(sb, 0, null), is(false));
+        sb.append('y');
+        assertThat(new LinearMatcher(program).search(sb, 0, null), is(true));
+    }
+
+    @Test
+    public void prefixTest() {
+        LinearMatcher matcher = new LinearMatcher(LinearProgram.compile("ERROR (\\w+)", 0));
+        String target = "INFO a ERROR b ERROR c";
+        assertThat(matcher.search(target, 0, new LiteralSearch("ERROR ", false)), is(true));
+        assertThat(matcher.start(1), is(13));
+        assertThat(matcher.search(target, 14, new LiteralSearch("ERROR ", false)), is(true));
+        assertThat(matcher.start(1), is(21));
+        assertThat(matcher.search(target, 22, new LiteralSearch("ERROR ", false)), is(false));
+    }
+}
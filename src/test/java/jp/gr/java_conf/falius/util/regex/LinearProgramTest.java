@@ -0,0 +1,49 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LinearProgramTest {
+
+    @Test
+    public void supportedTest() {
+        assertThat(LinearProgram.compile("(\\d{4})-(\\d\\d) (ERROR|WARN)", 0), is(notNullValue()));
+        assertThat(LinearProgram.compile("^[^\\s,]+(?:,\\w*?)?$", Pattern.MULTILINE), is(notNullValue()));
+        assertThat(LinearProgram.compile("(?i:abc)\\b", Pattern.DOTALL | Pattern.UNIX_LINES), is(notNullValue()));
+        assertThat(LinearProgram.compile("(?<name>x+)y", 0), is(notNullValue()));
+    }
+
+    @Test
+    public void unsupportedTest() {
+        assertThat(LinearProgram.compile("(a)\\1", 0), is(nullValue())); // 後方参照
+        assertThat(LinearProgram.compile("a(?=b)", 0), is(nullValue())); // 先読み
+        assertThat(LinearProgram.compile("(?<=a)b", 0), is(nullValue())); // 後読み
+        assertThat(LinearProgram.compile("(?>a+)b", 0), is(nullValue())); // 独立したグループ
+        assertThat(LinearProgram.compile("a++b", 0), is(nullValue())); // 強欲な量指定子
+        assertThat(LinearProgram.compile("\\p{L}", 0), is(nullValue()));
+        assertThat(LinearProgram.compile("[a-z&&[^x]]", 0), is(nullValue()));
+        assertThat(LinearProgram.compile("a", Pattern.COMMENTS), is(nullValue()));
+        assertThat(LinearProgram.compile("(?x)a", 0), is(nullValue()));
+        assertThat(LinearProgram.compile("(a*)*", 0), is(nullValue())); // 空文字列にマッチしうる繰り返し
+        assertThat(LinearProgram.compile("\\b+", 0), is(nullValue()));
+        assertThat(LinearProgram.compile("(\\w(a))+", 0), is(nullValue())); // 入れ子の捕捉グループの繰り返し
+    }
+
+    @Test
+    public void skippingLowSurrogatesTest() {
+        assertThat(LinearProgram.compile("ab", 0).isSkippingLowSurrogates(), is(false));
+        assertThat(LinearProgram.compile("a😀", 0).isSkippingLowSurrogates(), is(true));
+        assertThat(LinearProgram.compile("[^a]", 0).isSkippingLowSurrogates(), is(true));
+        assertThat(LinearProgram.compile("\\W", 0).isSkippingLowSurrogates(), is(true));
+    }
+
+    @Test
+    public void sizeTest() {
+        assertThat(LinearProgram.compile("a{10000}", 0), is(nullValue()));
+        assertThat(LinearProgram.compile("(a)", 0).slotCount(), is(4));
+    }
+}
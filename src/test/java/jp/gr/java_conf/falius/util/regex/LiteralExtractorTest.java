@@ -0,0 +1,123 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LiteralExtractorTest {
+
+    private static List<String> literals(String regex) {
+        return LiteralExtractor.extract(regex, 0).literals();
+    }
+
+    @Test
+    public void literalTest() {
+        assertThat(literals("ERROR: (\\d+)"), is(Arrays.asList("ERROR: ")));
+        assertThat(literals("abc?de"), is(Arrays.asList("ab")));
+        assertThat(literals("ab+cd"), is(Arrays.asList("ab")));
+        assertThat(literals("a\\.png$"), is(Arrays.asList("a.png")));
+        assertThat(literals("\\Qa+b\\E\\d"), is(Arrays.asList("a+b")));
+        assertThat(literals("x(?:hello)+y"), is(Arrays.asList("hello")));
+        assertThat(literals("(?<year>\\d{4})-summer"), is(Arrays.asList("-summer")));
+        assertThat(literals("foo|barbaz"), is(Arrays.asList("foo", "barbaz")));
+        assertThat(literals("\\x41\\u3042"), is(Arrays.asList("Aあ")));
+        assertThat(literals("[abc]+(?=xyz)q"), is(Arrays.asList("q")));
+    }
+
+    @Test
+    public void octalEscapeTest() {
+        assertThat(literals("\\0101"), is(Arrays.asList("A")));
+        assertThat(literals("x\\0101y"), is(Arrays.asList("xAy")));
+        assertThat(literals("\\0477"), is(Arrays.asList("'7"))); // \047の後に7
+        assertThat(literals("a\\07b"), is(Arrays.asList("a\u0007b")));
+        // 後方参照に続く数字は、グループの数によって番号の一部になりうる
+        assertThat(literals("(a)\\12bc"), is(Arrays.asList("bc")));
+
+        assertTrue(CompiledRegex.compile("/\\0101/").test("xAx"));
+        assertThat(RegexSet.compile("/\\0101/", "/zzz/").test("xAx"), is(true));
+    }
+
+    @Test
+    public void prefixTest() {
+        assertThat(LiteralExtractor.extract("ERROR: (\\d+)", 0).prefix(), is("ERROR: "));
+        assertThat(LiteralExtractor.extract("ab?c", 0).prefix(), is("a"));
+        assertThat(LiteralExtractor.extract("ab+c", 0).prefix(), is("ab"));
+        assertThat(LiteralExtractor.extract("abc", 0).prefix(), is("abc"));
+        assertThat(LiteralExtractor.extract("a.b", Pattern.LITERAL).prefix(), is("a.b"));
+        assertThat(LiteralExtractor.extract("\\d+abc", 0).prefix(), is(""));
+        assertThat(LiteralExtractor.extract("abc|abd", 0).prefix(), is(""));
+        assertThat(LiteralExtractor.extract("(abc)d", 0).prefix(), is(""));
+    }
+
+    @Test
+    public void noLiteralTest() {
+        List<String> empty = Collections.emptyList();
+        assertThat(literals("\\d+"), is(empty));
+        assertThat(literals("foo|\\w+"), is(empty));
+        assertThat(literals("(abc)?"), is(empty));
+        assertThat(literals("a{0,3}"), is(empty));
+        assertThat(literals("(?x)a b"), is(empty));
+        assertThat(LiteralExtractor.extract("abc", Pattern.COMMENTS).literals(), is(empty));
+        assertThat(LiteralExtractor.extract("abc", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).literals(),
+                is(empty));
+    }
+
+    @Test
+    public void optionTest() {
+        LiteralExtractor literal = LiteralExtractor.extract("a.b", Pattern.LITERAL);
+        assertThat(literal.literals(), is(Arrays.asList("a.b")));
+        assertFalse(literal.isCaseInsensitive());
+        assertTrue(LiteralExtractor.extract("abc", Pattern.CASE_INSENSITIVE).isCaseInsensitive());
+        assertTrue(LiteralExtractor.extract("x(?i)abc", 0).isCaseInsensitive());
+    }
+
+    @Test
+    public void soundnessTest() {
+        // どのマッチ箇所も、取り出したリテラルのいずれかを含むことをランダムな正規表現で確認する
+        String[] atoms = { "a", "b", "ab", "\\.", "[ab]", "(a|b)", "(?:ba)", "\\d", ".", "x", "(?i)", "\\Qa.\\E" };
+        String[] quantifiers = { "", "", "", "?", "*", "+", "{2}", "{0,2}", "{1,}" };
+        String[] texts = { "ab.ba1x", "bbaAB.a.x", "xxAba.2", "ba.ab", "a.a.bX1" };
+        Random random = new Random(0);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 1 + random.nextInt(5);
+            for (int i = 0; i < len; i++) {
+                sb.append(atoms[random.nextInt(atoms.length)]).append(quantifiers[random.nextInt(quantifiers.length)]);
+                if (random.nextInt(8) == 0) {
+                    sb.append('|');
+                }
+            }
+            String regex = sb.toString();
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            LiteralExtractor extractor = LiteralExtractor.extract(regex, 0);
+            if (extractor.literals().isEmpty()) {
+                continue;
+            }
+            for (String text : texts) {
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    String found = extractor.isCaseInsensitive() ? m.group().toLowerCase() : m.group();
+                    boolean isContained = false;
+                    for (String literal : extractor.literals()) {
+                        String expected = extractor.isCaseInsensitive() ? literal.toLowerCase() : literal;
+                        isContained |= found.contains(expected);
+                    }
+                    assertTrue(regex + " " + m.group() + " " + extractor.literals(), isContained);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LiteralSearchTest {
+
+    @Test
+    public void indexOfTest() {
+        LiteralSearch search = new LiteralSearch("ERROR", false);
+        assertThat(search.indexOf("INFO ERROR ERROR", 0), is(5));
+        assertThat(search.indexOf(new StringBuilder("INFO ERROR ERROR"), 6), is(11));
+        assertThat(search.indexOf("error", 0), is(-1));
+        assertThat(search.length(), is(5));
+
+        LiteralSearch ignoreCase = new LiteralSearch("ErRoR", true);
+        assertThat(ignoreCase.indexOf("info error", 0), is(5));
+        assertTrue(ignoreCase.isContainedIn(new StringBuilder("xERRORx")));
+        assertFalse(ignoreCase.isContainedIn("ERRO"));
+    }
+
+    @Test
+    public void sameAsIndexOfTest() {
+        // 下位8ビットが同じ文字('a'と'š'など)を含めて、String.indexOfと同じ結果になることを確認する
+        char[] chars = { 'a', 'b', 'A', 'B', 'š', 'Ţ', 'あ' };
+        Random random = new Random(0);
+        for (int n = 0; n < 5000; n++) {
+            String literal = randomString(random, chars, 1 + random.nextInt(4));
+            String text = randomString(random, chars, random.nextInt(30));
+            int from = random.nextInt(text.length() + 2) - 1;
+
+            LiteralSearch search = new LiteralSearch(literal, false);
+            assertThat(search.indexOf(new StringBuilder(text), from), is(text.indexOf(literal, from)));
+
+            LiteralSearch ignoreCase = new LiteralSearch(literal, true);
+            String lowerText = text.replace('A', 'a').replace('B', 'b');
+            String lowerLiteral = literal.replace('A', 'a').replace('B', 'b');
+            assertThat(ignoreCase.indexOf(text, from), is(lowerText.indexOf(lowerLiteral, from)));
+        }
+    }
+
+    private static String randomString(Random random, char[] chars, int len) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            sb.append(chars[random.nextInt(chars.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+
+public class MatchCursorTest {
+    private static final String[] REGEXES = {
+            "/ERROR: (\\d+)/", "/ab?c/", "/ab+/i", "/(?<=x)ab/", "/ab\\b/", "/a.b/l", "/A.B/li", "/\\d+ab/",
+            "/(a|b)c/", "/x*/", "/ab$/m", "/\\Gab/", "/ab(?i)C/", "/a+ba/",
+    };
+
+    private static List<String> results(MatchResult result, boolean isFound, List<String> list) {
+        if (isFound) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i <= result.groupCount(); i++) {
+                sb.append(result.group(i)).append('@').append(result.start(i)).append('-').append(result.end(i))
+                        .append(' ');
+            }
+            list.add(sb.toString());
+        }
+        return list;
+    }
+
+    @Test
+    public void sameAsMatcherTest() {
+        // Matcher.find()と同じマッチ箇所を同じ順序で返すことを、ランダムな文字列で確認する
+        String[] pieces = { "a", "b", "c", "A", "B", "C", "x", "\n", "ERROR: ", "12", ".", " " };
+        Random random = new Random(0);
+        for (int n = 0; n < 500; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(20);
+            for (int i = 0; i < len; i++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String target = sb.toString();
+
+            for (String regex : REGEXES) {
+                CompiledRegex compiled = CompiledRegex.compile(regex);
+                List<String> expected = new ArrayList<>();
+                Matcher m = compiled.getPattern().matcher(target);
+                while (true) {
+                    boolean isFound = m.find();
+                    results(m, isFound, expected);
+                    if (!isFound) {
+                        break;
+                    }
+                }
+
+                List<String> actual = new ArrayList<>();
+                MatchCursor cursor = MatchCursor.of(compiled, target);
+                while (true) {
+                    boolean isFound = cursor.find();
+                    results(cursor, isFound, actual);
+                    if (!isFound) {
+                        break;
+                    }
+                }
+                assertThat(regex + " " + target, actual, is(expected));
+                assertThat(regex + " " + target, compiled.test(target), is(!expected.isEmpty()));
+            }
+        }
+    }
+
+    @Test
+    public void reuseTest() {
+        CompiledRegex prefix = CompiledRegex.compile("/ab/");
+        MatchCursor cursor = MatchCursor.of(prefix, "xab");
+        assertTrue(cursor.find());
+        assertThat(cursor.start(), is(1));
+        assertThat(MatchCursor.reuse(cursor, prefix, "abab"), is(sameInstance(cursor)));
+        assertTrue(cursor.find());
+        assertThat(cursor.start(), is(0));
+
+        MatchCursor other = MatchCursor.reuse(cursor, CompiledRegex.compile("/b/l"), "ab");
+        assertThat(other, is(not(sameInstance(cursor))));
+        assertTrue(other.find());
+        assertThat(other.group(), is("b"));
+    }
+}
@@ -0,0 +1,95 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MatchLimitTest {
+    // Java 9以降のPatternは単純な(a+)+の失敗を記憶して爆発を防ぐので、後方参照で記憶を無効にする
+    private static final CompiledRegex EVIL = CompiledRegex.compile("/^((a+)+)\\2?$/");
+    private static final String EVIL_TARGET = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!";
+
+    @Test
+    public void stepsTest() {
+        try {
+            EVIL.test(EVIL_TARGET, MatchLimit.steps(100_000));
+            fail();
+        } catch (RegexTimeoutException e) {
+            assertThat(e.getRegex(), is("/^((a+)+)\\2?$/"));
+            assertThat(e.getSteps(), is(100_001L));
+        }
+    }
+
+    @Test
+    public void timeoutTest() {
+        long start = System.nanoTime();
+        try {
+            EVIL.match(EVIL_TARGET, MatchLimit.timeout(50, TimeUnit.MILLISECONDS)).test();
+            fail();
+        } catch (RegexTimeoutException e) {
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, is(true));
+        }
+    }
+
+    @Test
+    public void interruptTest() {
+        Thread.currentThread().interrupt();
+        try {
+            EVIL.test(EVIL_TARGET, MatchLimit.INTERRUPTIBLE);
+            fail();
+        } catch (RegexTimeoutException e) {
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void withinLimitTest() {
+        MatchLimit limit = MatchLimit.timeout(10, TimeUnit.SECONDS).withMaxSteps(1_000_000);
+        CompiledRegex color = CompiledRegex.compile("/'(\\S+) green'/g");
+        String text = "I like 'lite green','yellow green' and 'dark green'.";
+        RegexResult result = color.match(text, limit);
+        assertThat(result.matchCount(), is(3));
+        assertThat(result.find(1).group(1), is("yellow"));
+        assertThat(result.replaceAll("<$1>"), is(color.match(text).replaceAll("<$1>")));
+        assertThat(color.test("no match", limit), is(false));
+        assertThat(limit.getMaxSteps(), is(1_000_000L));
+        assertThat(limit.getTimeout(TimeUnit.SECONDS), is(10L));
+    }
+
+    @Test
+    public void rejectTest() {
+        MatchLimit limit = MatchLimit.INTERRUPTIBLE.rejectingNestedQuantifiers();
+        assertThat(EVIL.hasNestedQuantifier(), is(true));
+        try {
+            EVIL.match("aaa", limit);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        assertThat(CompiledRegex.compile("/(ab)+c/").test("ababc", limit), is(true));
+    }
+
+    @Test
+    public void regexTest() {
+        Regex regex = Regex.newInstance(EVIL_TARGET).limit(MatchLimit.steps(10_000));
+        try {
+            regex.match("/^((a+)+)\\2?$/").test();
+            fail();
+        } catch (RegexTimeoutException e) {
+        }
+        assertThat(regex.match("/a{3}/").group(), is("aaa"));
+        try {
+            regex.limit(MatchLimit.steps(10_000).rejectingNestedQuantifiers()).match("/(a*)*/");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalTimeoutTest() {
+        MatchLimit.timeout(0, TimeUnit.SECONDS);
+    }
+}
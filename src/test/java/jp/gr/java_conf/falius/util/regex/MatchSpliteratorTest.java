@@ -0,0 +1,87 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+public class MatchSpliteratorTest {
+
+    private static String log(int lines) {
+        Random random = new Random(0);
+        String[] levels = { "INFO", "WARN", "ERROR" };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append(String.format("2017-01-%02d %s user%d code=%d%n",
+                    i % 28 + 1, levels[random.nextInt(levels.length)], random.nextInt(50), random.nextInt(1000)));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> expected(CompiledRegex compiled, String target) {
+        List<String> ret = new ArrayList<>();
+        Matcher matcher = compiled.getPattern().matcher(target);
+        while (matcher.find()) {
+            ret.add(matcher.start() + ":" + matcher.group());
+        }
+        return ret;
+    }
+
+    private static List<String> parallel(CompiledRegex compiled, String target, int minSplitSize) {
+        return StreamSupport.stream(new MatchSpliterator(compiled, target, target, minSplitSize), true)
+                .map(data -> data.start() + ":" + data.group())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void splitTest() {
+        String target = log(2000);
+        CompiledRegex error = CompiledRegex.compile("/^\\S+ ERROR (\\w+)|\\d+$|\\b/gm");
+        MatchSpliterator spliterator = new MatchSpliterator(error, target, target, 1024);
+        Spliterator<PartData> prefix = spliterator.trySplit();
+        assertThat(prefix, is(notNullValue()));
+        assertThat(parallel(error, target, 1024), is(expected(error, target)));
+    }
+
+    @Test
+    public void notSplitTest() {
+        String target = log(2000);
+        // 改行を含みうるもの、後方参照を含むもの、線形時間のエンジンを使うものは分割しない
+        for (String regex : new String[] { "/\\s+ERROR/", "/(\\d)\\1/", "/ERROR (\\w+)/n" }) {
+            CompiledRegex compiled = CompiledRegex.compile(regex);
+            assertThat(regex, new MatchSpliterator(compiled, target, target, 1024).trySplit(), is(nullValue()));
+            assertThat(regex, parallel(compiled, target, 1024), is(expected(compiled, target)));
+        }
+        // 小さい範囲は分割しない
+        CompiledRegex word = CompiledRegex.compile("/\\w+/");
+        assertThat(new MatchSpliterator(word, "a\nb\nc", "a\nb\nc", 1024).trySplit(), is(nullValue()));
+    }
+
+    @Test
+    public void shortCircuitTest() {
+        // 要求された分だけ探す
+        StringBuilder sb = new StringBuilder("x1 x2 x3");
+        MatchLimit limit = MatchLimit.steps(100);
+        for (int i = 0; i < 100000; i++) {
+            sb.append(" y");
+        }
+        RegexResult result = CompiledRegex.compile("/x\\d/").match(sb, limit);
+        assertThat(result.stream().limit(2).map(PartData::group).collect(Collectors.toList()),
+                is(Arrays.asList("x1", "x2")));
+        try {
+            CompiledRegex.compile("/x\\d/").match(sb, limit).stream().count();
+            fail(); // 全体を走査すると上限を超える
+        } catch (RegexTimeoutException e) {
+            assertThat(e.getSteps(), is(101L));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class NestedQuantifiersTest {
+
+    @Test
+    public void nestedTest() {
+        assertThat(NestedQuantifiers.find("(a+)+", 0), is(0));
+        assertThat(NestedQuantifiers.find("x(a*)*", 0), is(1));
+        assertThat(NestedQuantifiers.find("^(\\w+\\s?)*$", 0), is(1));
+        assertThat(NestedQuantifiers.find("((ab)+c)+", 0), is(0));
+        assertThat(NestedQuantifiers.find("(?:a|b+){2,}", 0), is(0));
+        assertThat(NestedQuantifiers.find("((a+))+", 0), is(0));
+    }
+
+    @Test
+    public void safeTest() {
+        assertThat(NestedQuantifiers.find("(ab)+c*", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a+)?", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a+){1}", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a{2})+", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a++)+", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a+)++", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(?>a+)+", 0), is(-1));
+        assertThat(NestedQuantifiers.find("\\(a+\\)+", 0), is(-1));
+        assertThat(NestedQuantifiers.find("([a+)]+)", 0), is(-1));
+        assertThat(NestedQuantifiers.find("(a+)+", Pattern.LITERAL), is(-1));
+    }
+}
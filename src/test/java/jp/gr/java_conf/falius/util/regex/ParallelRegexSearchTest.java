@@ -0,0 +1,108 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelRegexSearchTest {
+    private static final String[] PATTERNS = {
+            "/ERROR (\\w+)/", "/^\\w+/m", "/x*/", "/\\d+\\n\\w+/", "/(?<=\\n)b/", "/日本\\S*/",
+    };
+
+    private final List<Path> mFiles = new ArrayList<>();
+    private ForkJoinPool mPool;
+
+    @Before
+    public void setUp() throws IOException {
+        String[] pieces = { "ERROR ", "INFO ", "a", "b", "x", "1", "2", " ", "\n", "\n", "日本" };
+        Random random = new Random(0);
+        for (int n = 0; n < 8; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = n == 0 ? 0 : random.nextInt(3000);
+            while (sb.length() < len) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            Path file = Files.createTempFile("parallel-search", ".log");
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            mFiles.add(file);
+        }
+        mPool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mPool.shutdown();
+        for (Path file : mFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<String> toStrings(List<FileMatch> matches) {
+        List<String> ret = new ArrayList<>();
+        for (FileMatch match : matches) {
+            ret.add(match.toString() + "-" + match.getData().end());
+        }
+        return ret;
+    }
+
+    @Test
+    public void sameAsSequentialTest() throws IOException {
+        for (String pattern : PATTERNS) {
+            RegexFileScanner scanner = CompiledRegex.compile(pattern).fileScanner(StandardCharsets.UTF_8);
+            List<FileMatch> expected = new ArrayList<>();
+            for (Path file : mFiles) {
+                for (PartData data : scanner.scan(file)) {
+                    expected.add(new FileMatch(file, data));
+                }
+            }
+
+            // 小さなチャンクに分割して、境界を多く含むようにする
+            for (long chunkSize : new long[] { 7, 100, 1 << 20 }) {
+                List<FileMatch> actual = scanner.parallel(mPool, chunkSize).search(mFiles);
+                assertThat(pattern + " " + chunkSize, toStrings(actual), is(toStrings(expected)));
+            }
+        }
+    }
+
+    @Test
+    public void singleFileTest() throws IOException {
+        Path file = mFiles.get(1);
+        RegexFileScanner scanner = CompiledRegex.compile("/ERROR (\\w+)/").fileScanner(StandardCharsets.UTF_8);
+        ParallelRegexSearch search = scanner.parallel(mPool, 64);
+        assertThat(search.getPool(), is(mPool));
+        assertThat(search.getChunkSize(), is(64L));
+
+        List<FileMatch> matches = search.search(file);
+        assertThat(matches.size(), is(scanner.scan(file).size()));
+        for (FileMatch match : matches) {
+            assertThat(match.getPath(), is(file));
+            assertThat(match.getData().group(), startsWith("ERROR "));
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void noFileTest() throws IOException {
+        Path missing = mFiles.get(0).resolveSibling("missing-" + System.nanoTime());
+        CompiledRegex.compile("/a/").fileScanner(StandardCharsets.UTF_8).parallel(mPool)
+                .search(Arrays.asList(mFiles.get(0), missing));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeTest() {
+        CompiledRegex.compile("/a/").fileScanner(StandardCharsets.UTF_8).parallel(mPool, 0);
+    }
+}
@@ -0,0 +1,110 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RegexCacheTest {
+
+    @Test
+    public void hitAndMissTest() {
+        RegexCache cache = new RegexCache(16);
+        CompiledRegex compiled = new CompiledRegex("a(b)c", 0, true);
+
+        assertThat(cache.get("/a(b)c/g"), is(nullValue()));
+        cache.put("/a(b)c/g", compiled);
+        assertThat(cache.get("/a(b)c/g"), is(sameInstance(compiled)));
+        assertThat(cache.get("/a(b)c/g"), is(sameInstance(compiled)));
+
+        assertThat(cache.hitCount(), is(2L));
+        assertThat(cache.missCount(), is(1L));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void evictionTest() {
+        RegexCache cache = new RegexCache(32);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("/" + i + "/", new CompiledRegex(String.valueOf(i), 0, false));
+        }
+        assertTrue(cache.size() <= 32);
+        assertThat(cache.evictionCount(), is(1000L - cache.size()));
+
+        cache.setCapacity(0);
+        assertThat(cache.size(), is(0));
+        assertThat(cache.evictionCount(), is(1000L));
+        cache.put("/a/", new CompiledRegex("a", 0, false));
+        assertThat(cache.get("/a/"), is(nullValue()));
+    }
+
+    @Test
+    public void capacityNotMultipleOfStripesTest() {
+        // 上限は区画の数に関係なく、全体の件数に対して守られる
+        for (int capacity : new int[] { 1, 20 }) {
+            RegexCache cache = new RegexCache(capacity);
+            for (int i = 0; i < 1000; i++) {
+                cache.put("/" + i + "/", new CompiledRegex(String.valueOf(i), 0, false));
+                assertTrue(cache.size() <= cache.capacity());
+            }
+            assertThat(cache.size(), is(capacity));
+            assertThat(cache.evictionCount(), is(1000L - capacity));
+
+            cache.setCapacity(capacity - 1);
+            assertThat(cache.size(), is(capacity - 1));
+        }
+    }
+
+    @Test
+    public void sameStripeTest() {
+        // 同じ区画に入る正規表現でも、全体の上限に収まっていれば互いを破棄しない
+        String first = "/0/";
+        String second = null;
+        for (int i = 1; second == null; i++) {
+            if (RegexCache.stripeIndex("/" + i + "/") == RegexCache.stripeIndex(first)) {
+                second = "/" + i + "/";
+            }
+        }
+        RegexCache cache = new RegexCache(2);
+        for (int i = 0; i < 1000; i++) {
+            for (String literal : new String[] { first, second }) {
+                if (cache.get(literal) == null) {
+                    cache.put(literal, new CompiledRegex(literal, 0, false));
+                }
+            }
+        }
+        assertThat(cache.missCount(), is(2L));
+        assertThat(cache.hitCount(), is(1998L));
+        assertThat(cache.evictionCount(), is(0L));
+    }
+
+    @Test
+    public void leastRecentlyUsedTest() {
+        // 使われ続けている正規表現は、他の正規表現がいくら追加されても破棄されない
+        RegexCache cache = new RegexCache(32);
+        CompiledRegex hot = new CompiledRegex("hot", 0, false);
+        cache.put("/hot/", hot);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("/" + i + "/", new CompiledRegex(String.valueOf(i), 0, false));
+            assertThat(cache.get("/hot/"), is(sameInstance(hot)));
+        }
+        assertThat(cache.get("/0/"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCapacityTest() {
+        new RegexCache(-1);
+    }
+
+    @Test
+    public void regexUsesCacheTest() {
+        String literal = "/cache (hit) test/gi";
+        Regex.newInstance(literal);
+        long hit = Regex.cache().hitCount();
+
+        assertTrue(Regex.test("CACHE HIT TEST", literal));
+        assertTrue(Regex.newInstance("cache hit test", literal).hasOptionG());
+        assertThat(Regex.newInstance(literal).match("Cache Hit Test").find(0).group(1), is("Hit"));
+        assertTrue(Regex.cache().hitCount() >= hit + 3);
+    }
+}
@@ -0,0 +1,126 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+
+public class RegexFileScannerTest {
+    private static final String[] PATTERNS = {
+            "/\\w+/", "/^\\S+/m", "/\\b\\d{2,5}\\b/", "/(?<=a)b+/", "/x*/", "/(é|ü)(\\w)?/",
+            "/\\S+$/", "/[^\\n]{1,10}$/m", "/\\A\\w/", "/😀+/",
+    };
+
+    // 1文字ずつのランダムな文字列。UTF-8以外ではASCIIかLatin-1の文字だけを使う
+    private static String randomText(Random random, int len, boolean isUtf8) {
+        String[] pieces = isUtf8
+                ? new String[] { "a", "b", "x", " ", "\n", "1", "2", "é", "ü", "日", "😀", "_" }
+                : new String[] { "a", "b", "x", " ", "\n", "1", "2", "é", "ü", "_" };
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < len) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return sb.toString();
+    }
+
+    // Stringに対するMatcherの結果を、文字位置をバイト位置に変換した文字列にする
+    private static List<String> expected(CompiledRegex regex, String text, Charset charset) {
+        List<String> ret = new ArrayList<>();
+        Matcher m = regex.getPattern().matcher(text);
+        while (m.find()) {
+            if (m.start() > 0 && m.start() < text.length() && Character.isLowSurrogate(text.charAt(m.start()))) {
+                continue; // サロゲートペアの間から始まる空文字列へのマッチは、ファイルからは報告されない
+            }
+            ret.add(m.group() + "@" + text.substring(0, m.start()).getBytes(charset).length + "-"
+                    + text.substring(0, m.end()).getBytes(charset).length);
+        }
+        return ret;
+    }
+
+    private static List<String> actual(RegexFileScanner scanner, Path file) throws IOException {
+        List<String> ret = new ArrayList<>();
+        scanner.scan(file, data -> ret.add(data.group() + "@" + data.start() + "-" + data.end()));
+        return ret;
+    }
+
+    private void assertSameAsString(Charset charset) throws IOException {
+        boolean isUtf8 = charset.equals(StandardCharsets.UTF_8);
+        Random random = new Random(1);
+        Path file = Files.createTempFile("regex-file-scanner", ".txt");
+        try {
+            for (int n = 0; n < 20; n++) {
+                String text = randomText(random, random.nextInt(600), isUtf8);
+                Files.write(file, text.getBytes(charset));
+                for (String pattern : PATTERNS) {
+                    CompiledRegex regex = CompiledRegex.compile(pattern);
+                    // セグメントの境界を多く含むように、小さなセグメントで走査する
+                    // マッチ箇所の最大長は、ランダムな文字列で空白を挟まずに続く長さよりも十分に長くしておく
+                    int segmentSize = 1 + random.nextInt(80);
+                    RegexFileScanner scanner = new RegexFileScanner(regex, charset, 256, segmentSize);
+                    assertThat(pattern + " " + segmentSize, actual(scanner, file), is(expected(regex, text, charset)));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void utf8Test() throws IOException {
+        assertSameAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void latin1Test() throws IOException {
+        assertSameAsString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void emptyFileTest() throws IOException {
+        Path file = Files.createTempFile("regex-file-scanner", ".txt");
+        try {
+            assertThat(CompiledRegex.compile("/^$/").fileScanner(StandardCharsets.UTF_8).count(file), is(1L));
+            assertFalse(CompiledRegex.compile("/a/").fileScanner(StandardCharsets.UTF_8).test(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void scanTest() throws IOException {
+        String text = "INFO start\nERROR disk\nINFO retry\nERROR ネットワーク\n";
+        Path file = Files.createTempFile("regex-file-scanner", ".log");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            RegexFileScanner scanner = CompiledRegex.compile("/ERROR (\\S+)/").fileScanner(StandardCharsets.UTF_8);
+
+            List<PartData> list = scanner.scan(file);
+            assertThat(list.size(), is(2));
+            assertThat(list.get(0).group(1), is("disk"));
+            assertThat(list.get(1).group(1), is("ネットワーク"));
+            // 位置は文字数ではなくバイト数になる
+            long start = text.substring(0, text.indexOf("ネットワーク")).getBytes(StandardCharsets.UTF_8).length;
+            assertThat(list.get(1).start(1), is(start));
+            assertThat(list.get(1).end(1), is(start + "ネットワーク".getBytes(StandardCharsets.UTF_8).length));
+            assertTrue(scanner.test(file));
+            assertThat(scanner.count(file), is(2L));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedCharsetTest() {
+        CompiledRegex.compile("/a/").fileScanner(StandardCharsets.UTF_16);
+    }
+}
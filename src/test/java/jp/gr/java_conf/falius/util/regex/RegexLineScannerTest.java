@@ -0,0 +1,152 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+
+public class RegexLineScannerTest {
+    private static final String[] PATTERNS = {
+            "/\\w+/", "/\\w+/g", "/^\\S+/", "/\\S+$/g", "/(?<=a)b+/g", "/x*/g", "/^$/", "/\\bab/gi",
+            "/a(b)?x/gn", "/^.*$/d", "/\\d{2}/gl", "/\\w+$/m",
+    };
+
+    private static String randomText(Random random, int len) {
+        String[] pieces = { "a", "b", "x", " ", "\n", "\r", "\r\n", "\u0085", "1", "2", "\\d{2}", "_" };
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < len) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return sb.toString();
+    }
+
+    // Stringに分割した各行にMatcherを実行した結果
+    private static List<String> expected(CompiledRegex regex, String text) {
+        String separator = Option.isInclude(regex.getPatternFlag(), Option.UNIX_LINES)
+                ? "\n" : "\r\n|[\n\r\u0085\u2028\u2029]";
+        List<String> ret = new ArrayList<>();
+        Matcher lines = java.util.regex.Pattern.compile(separator).matcher(text);
+        int lineStart = 0;
+        int lineNumber = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = lines.find() ? lines.start() : text.length();
+            lineNumber++;
+            String line = text.substring(lineStart, lineEnd);
+            Matcher m = regex.getPattern().matcher(line);
+            StringBuilder sb = new StringBuilder();
+            while (m.find()) {
+                sb.append(m.group()).append('@').append(lineStart + m.start()).append('-').append(lineStart + m.end())
+                        .append(' ');
+                if (!regex.hasOptionG()) {
+                    break;
+                }
+            }
+            if (sb.length() > 0) {
+                ret.add(lineNumber + ":" + line + ":" + sb);
+            }
+            lineStart = lineEnd == text.length() ? lineEnd : lines.end();
+        }
+        return ret;
+    }
+
+    private static String toString(LineMatch match) {
+        StringBuilder sb = new StringBuilder();
+        for (PartData data : match.getAllData()) {
+            sb.append(data.group()).append('@').append(data.start()).append('-').append(data.end()).append(' ');
+        }
+        return match + ":" + sb;
+    }
+
+    private static List<String> actual(RegexLineScanner scanner, String text) {
+        List<String> ret = new ArrayList<>();
+        scanner.scan(text, match -> ret.add(toString(match)));
+        return ret;
+    }
+
+    private static List<String> actualReader(RegexLineScanner scanner, String text) throws IOException {
+        List<String> ret = new ArrayList<>();
+        scanner.scan(new StringReader(text), match -> ret.add(toString(match)));
+        return ret;
+    }
+
+    @Test
+    public void sameAsSplitTest() throws IOException {
+        Random random = new Random(1);
+        for (int n = 0; n < 50; n++) {
+            String text = randomText(random, random.nextInt(300));
+            for (String pattern : PATTERNS) {
+                CompiledRegex regex = CompiledRegex.compile(pattern);
+                List<String> expected = expected(regex, text);
+                assertThat(pattern, actual(regex.lineScanner(), text), is(expected));
+                // 読み込みの境界が行や\r\nの途中になるように、小さな単位で読み込む
+                int readSize = 1 + random.nextInt(16);
+                assertThat(pattern + " " + readSize, actualReader(new RegexLineScanner(regex, readSize), text),
+                        is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void grepTest() {
+        String log = "INFO start\nERROR disk full\r\nWARN retry\nERROR timeout ERROR cache\n";
+        List<LineMatch> lines = CompiledRegex.compile("/ERROR (\\w+)/").lineScanner().scan(log);
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(0).toString(), is("2:ERROR disk full"));
+        assertThat(lines.get(0).getLineStart(), is(11L));
+        assertThat(lines.get(0).getData().group(1), is("disk"));
+        assertThat(lines.get(0).getData().start(), is(11L));
+        assertThat(lines.get(1).getLineNumber(), is(4L));
+        assertThat(lines.get(1).getAllData().size(), is(1));
+
+        List<LineMatch> all = CompiledRegex.compile("/ERROR (\\w+)/g").lineScanner().scan(log);
+        assertThat(all.get(1).getAllData().size(), is(2));
+        assertThat(all.get(1).getAllData().get(1).group(1), is("cache"));
+    }
+
+    @Test
+    public void unixLinesTest() {
+        // dオプションでは\rは行の区切りではない
+        String text = "a\rb\nc";
+        assertThat(CompiledRegex.compile("/^b/").lineScanner().scan(text).size(), is(1));
+        assertThat(CompiledRegex.compile("/^b/d").lineScanner().scan(text).size(), is(0));
+        assertThat(CompiledRegex.compile("/^c/d").lineScanner().scan(text).get(0).getLineNumber(), is(2L));
+    }
+
+    @Test
+    public void byteBufferTest() {
+        String text = "日本語 ERROR a\néè ERROR bc\n";
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        List<LineMatch> lines = new ArrayList<>();
+        long count = CompiledRegex.compile("/ERROR (\\w+)/").lineScanner().scan(buffer, StandardCharsets.UTF_8,
+                lines::add);
+        assertThat(count, is(2L));
+        assertThat(lines.get(0).getData().start(), is(10L));
+        assertThat(lines.get(0).getData().end(1), is(17L));
+        assertThat(lines.get(1).getLineStart(), is(18L));
+        assertThat(lines.get(1).getLine(), is("éè ERROR bc"));
+        assertThat(lines.get(1).getData().start(1), is(29L));
+        assertThat(buffer.position(), is(0));
+
+        ByteBuffer latin = ByteBuffer.wrap("x\ny ab\n".getBytes(StandardCharsets.ISO_8859_1));
+        List<String> found = new ArrayList<>();
+        CompiledRegex.compile("/a(b)/").lineScanner().scan(latin, StandardCharsets.ISO_8859_1,
+                line -> found.add(line.getLineNumber() + ":" + line.getData().start(1)));
+        assertThat(found, is(Arrays.asList("2:5")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedCharsetTest() {
+        CompiledRegex.compile("/a/").lineScanner().scan(ByteBuffer.allocate(0), StandardCharsets.UTF_16, line -> {
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RegexSetTest {
+
+    @Test
+    public void matchTest() {
+        RegexSet rules = RegexSet.compile("/^GET /i", "/\\.png$/i", "/admin/", "/\\d{3}/", "/ユーザー(\\d+)/");
+        assertThat(rules.size(), is(5));
+
+        BitSet matched = rules.match("get /admin/logo.PNG");
+        assertThat(matched, is(bits(0, 1, 2)));
+        assertThat(rules.match("POST /ADMIN 404"), is(bits(3)));
+        assertThat(rules.match("ユーザー12"), is(bits(4)));
+        assertTrue(rules.match("nothing").isEmpty());
+        assertTrue(rules.test("x.png"));
+        assertFalse(rules.test("png"));
+        assertThat(rules.get(2).toString(), is("/admin/"));
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet ret = new BitSet();
+        for (int i : indices) {
+            ret.set(i);
+        }
+        return ret;
+    }
+
+    @Test
+    public void sameAsSequentialTest() {
+        // 多数のルールを順にtestした場合と同じ結果になることを、ランダムな文字列で確認する
+        String[] words = { "error", "Warn", "info", "GET", "post", "404", "500", "user", "ユーザー", "id=", ".png" };
+        String[] forms = { "/%s/", "/%s/i", "/^%s/", "/%s\\d+/", "/(?:%s|x)y/", "/\\b%s\\b/i", "/%s?z/", "/[%s]/" };
+        Random random = new Random(0);
+        List<String> regexes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String word = words[random.nextInt(words.length)] + words[random.nextInt(words.length)];
+            regexes.add(String.format(forms[random.nextInt(forms.length)], word));
+        }
+        RegexSet rules = RegexSet.compile(regexes);
+
+        for (int n = 0; n < 300; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(12);
+            for (int i = 0; i < len; i++) {
+                String word = words[random.nextInt(words.length)];
+                sb.append(random.nextBoolean() ? word : word.toUpperCase())
+                        .append(random.nextInt(4) == 0 ? "" : " ");
+                if (random.nextInt(3) == 0) {
+                    sb.append(random.nextInt(1000));
+                }
+            }
+            String line = sb.toString();
+
+            BitSet expected = new BitSet();
+            for (int i = 0; i < regexes.size(); i++) {
+                if (Regex.test(line, regexes.get(i))) {
+                    expected.set(i);
+                }
+            }
+            assertThat(line, rules.match(line), is(expected));
+            assertThat(line, rules.test(line), is(!expected.isEmpty()));
+        }
+    }
+
+    @Test
+    public void noLiteralTest() {
+        RegexSet rules = RegexSet.compile(Arrays.asList("/\\d+/", "/[a-z]{3}/"));
+        assertThat(rules.match("12 ab"), is(bits(0)));
+        assertThat(rules.match("abc"), is(bits(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notRegexTest() {
+        RegexSet.compile("/a/", "not a regex");
+    }
+}
@@ -3,7 +3,15 @@ package jp.gr.java_conf.falius.util.regex;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.junit.Test;
@@ -155,6 +163,39 @@ public class RegexTest {
                 "there are many greens. I like 'lite green','yellow green' and 'dark green'.", "/yellow green/"));
     }
 
+    @Test
+    public void namedGroupTest() {
+        Regex reg = Regex.newInstance("/'(?<tone>\\S+) (?<color>green)'(?<mark>!)?/g")
+                .match("I like 'lite green','yellow green' and 'dark green'!");
+        assertThat(reg.group("tone"), is("lite"));
+        assertThat(reg.find(2).group("tone"), is("dark"));
+        assertThat(reg.find(2).group("mark"), is("!"));
+        assertThat(reg.find(1).group("mark"), is(nullValue()));
+        assertThat(reg.find(1).groupIndex("color"), is(2));
+        assertThat(reg.find(1).groupView("color").toString(), is("green"));
+    }
+
+    @Test
+    public void streamTest() {
+        Regex reg = Regex.newInstance("/'(\\S+) (green)'(!)?/")
+                .match("I like 'lite green','yellow green' and 'dark green'!");
+        assertThat(reg.stream().map(PartData::group).collect(Collectors.toList()),
+                is(Arrays.asList("'lite green'", "'yellow green'", "'dark green'!")));
+        assertThat(reg.groupStream(1).filter(s -> s.startsWith("y")).findFirst().get(), is("yellow"));
+        assertThat(reg.groupStream(3).collect(Collectors.toList()), is(Arrays.asList(null, null, "!")));
+        assertThat(reg.match("no color").stream().count(), is(0L));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void groupStreamOutOfBoundsTest() {
+        Regex.newInstance("/'(\\S+) (green)'/").match("'lite green'").groupStream(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownGroupNameTest() {
+        Regex.newInstance("/(?<tone>\\S+) green/").match("lite green").group("color");
+    }
+
     @Test(expected = IndexOutOfBoundsException.class)
     public void testFailedTest() {
         Regex.newInstance(
@@ -448,4 +489,65 @@ public class RegexTest {
         }
         assertThat(counter, is(expected.length));
     }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        // 複数のスレッドから同時に静的メソッドを呼び出しても、互いの結果を壊さない
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                tasks.add(() -> {
+                    int checked = 0;
+                    for (int i = 0; i < 20000; i++) {
+                        int n = (id * 31 + i) % 97;
+                        String target = "id" + n + " value" + n;
+                        String regex = "/id(" + n + ") value\\1/" + (i % 2 == 0 ? "gi" : "");
+                        assertTrue(Regex.test(target, regex));
+                        assertTrue(Regex.test(regex, target));
+                        assertFalse(Regex.test("id" + (n + 1) + " value" + n, regex));
+                        assertTrue(Regex.matches(target, "/id" + n + " value" + n + "/"));
+                        assertThat(Regex.newInstance(target, regex).find(0).group(1), is(String.valueOf(n)));
+                        checked++;
+                    }
+                    return checked;
+                });
+            }
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                assertThat(future.get(), is(20000));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void lazyMatchTest() {
+        // マッチ箇所は必要になった分だけ探されるが、呼び出し順によって結果は変わらない
+        Regex reg = Regex.newInstance("a1 b2 c3 d4 e5", "/([a-z])(\\d)/g");
+        assertTrue(reg.test());
+        assertThat(reg.group(0), is("a1"));
+        assertFalse(reg.matches()); // 別のMatcherを使うので、走査途中の状態に影響しない
+        assertThat(reg.replaceAll("$2$1"), is("1a 2b 3c 4d 5e"));
+        assertThat(reg.find(2).group(1), is("c"));
+
+        Iterator<String> it = reg.iterator();
+        assertThat(it.next(), is("a1"));
+        assertThat(reg.find(1).group(2), is("2"));
+        String[] expected = { "b2", "c3", "d4", "e5" };
+        for (String e : expected) {
+            assertTrue(it.hasNext());
+            assertThat(it.next(), is(e));
+        }
+        assertFalse(it.hasNext());
+        assertThat(reg.matchCount(), is(5));
+        assertThat(reg.toString(), is("[a1, b2, c3, d4, e5]"));
+
+        // 対象文字列を変えると、最初から探し直す
+        reg.match("x9");
+        assertThat(reg.matchCount(), is(1));
+        assertThat(reg.group(0), is("x9"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class ReplacementTest {
+
+    private static void assertSameAsMatcher(String regex, String template, String... targets) {
+        CompiledRegex compiled = CompiledRegex.compile(regex);
+        Replacement replacement = compiled.replacement(template);
+        Pattern pattern = compiled.getPattern();
+        for (String target : targets) {
+            String expected = pattern.matcher(target).replaceAll(template);
+            assertThat(regex + " " + template, replacement.replaceAll(target), is(expected));
+        }
+    }
+
+    @Test
+    public void sameAsMatcherTest() {
+        assertSameAsMatcher("/(\\d)([a-z])/g", "$2$1", "1a 2b 3c 4d 5e", "none", "");
+        assertSameAsMatcher("/a*/", "-", "baaac", "", "aaa");
+        assertSameAsMatcher("/(?<year>\\d{4})-(?<month>\\d\\d)/", "${month}/${year}", "2016-04 and 2017-12");
+        assertSameAsMatcher("/(a)(b)?/", "[$1|$2]", "a ab b");
+        assertSameAsMatcher("/x/", "\\$1\\\\", "axbxc");
+        assertSameAsMatcher("/(a)(b)(c)(d)(e)(f)(g)(h)(i)(j)/", "$10$11", "abcdefghij");
+        assertSameAsMatcher("/(a)/", "$11", "aa");
+        assertSameAsMatcher("/\\./l", "!", "a.b.c");
+        assertSameAsMatcher("/ab/i", "<$0>", "xAbyaB");
+    }
+
+    @Test
+    public void outputTest() throws IOException {
+        Replacement replacement = CompiledRegex.compile("/(\\d+)-\\d+/").replacement("$1-****");
+        StringBuilder sb = new StringBuilder("> ");
+        assertThat(replacement.replaceAll("tel 03-1234, 06-5678", sb), is(2));
+        assertThat(sb.toString(), is("> tel 03-****, 06-****"));
+
+        CharBuffer buf = CharBuffer.allocate(32);
+        assertThat(replacement.replaceAll(new StringBuilder("no 1-2"), buf), is(1));
+        buf.flip();
+        assertThat(buf.toString(), is("no 1-****"));
+
+        try {
+            replacement.replaceAll("12345-6789", CharBuffer.allocate(4));
+            fail();
+        } catch (BufferOverflowException e) {
+        }
+    }
+
+    @Test
+    public void replaceEachTest() throws IOException {
+        Replacement replacement = CompiledRegex.compile("/\\s+/g").replacement(" ");
+        List<String> records = Arrays.asList("a  b", "c", "d \t e  f");
+        StringBuilder sb = new StringBuilder();
+        assertThat(replacement.replaceEach(records, sb, "\n"), is(3));
+        assertThat(sb.toString(), is("a b\nc\nd e f\n"));
+
+        Replacement.Replacer replacer = replacement.newReplacer();
+        for (String record : records) {
+            CharBuffer buf = CharBuffer.allocate(16);
+            replacer.replace(record, buf);
+            buf.flip();
+            assertThat(buf.toString(), is(Pattern.compile("\\s+").matcher(record).replaceAll(" ")));
+        }
+    }
+
+    @Test
+    public void cacheTest() {
+        CompiledRegex compiled = CompiledRegex.compile("/a/");
+        Replacement replacement = compiled.replacement("b");
+        assertThat(compiled.replacement("b"), is(sameInstance(replacement)));
+        assertThat(compiled.replacement("c").getTemplate(), is("c"));
+    }
+
+    @Test
+    public void illegalTemplateTest() {
+        CompiledRegex compiled = CompiledRegex.compile("/(?<word>a)/");
+        for (String template : new String[] { "$", "\\", "$x", "${}", "${word", "${other}" }) {
+            try {
+                compiled.replacement(template);
+                fail(template);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        try {
+            compiled.replacement("$2");
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+        // RegexResultはMatcherと同じく、マッチ箇所がなければ例外とならない
+        assertThat(compiled.match("bbb").replaceAll("$2"), is("bbb"));
+    }
+}
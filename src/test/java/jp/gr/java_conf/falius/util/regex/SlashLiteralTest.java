@@ -0,0 +1,64 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class SlashLiteralTest {
+    // 置き換える前の判定に使っていた正規表現
+    private static final Pattern SLASH_PATTERN = Pattern.compile("^/(.+)/([gimsudxl]*)$", Pattern.DOTALL);
+
+    @Test
+    public void literalTest() {
+        assertThat(SlashLiteral.closingSlash("/abc/"), is(4));
+        assertThat(SlashLiteral.closingSlash("/a/b/gi"), is(4));
+        assertThat(SlashLiteral.closingSlash("///"), is(2));
+        assertThat(SlashLiteral.closingSlash("/abc/g\n"), is(4));
+        assertThat(SlashLiteral.closingSlash("//g"), is(-1));
+        assertThat(SlashLiteral.closingSlash("/usr/bin"), is(-1));
+        assertThat(SlashLiteral.closingSlash("abc/"), is(-1));
+        assertThat(SlashLiteral.closingSlash(""), is(-1));
+
+        int slash = SlashLiteral.closingSlash("/abc/gim");
+        assertTrue(SlashLiteral.hasOptionG("/abc/gim", slash));
+        assertThat(SlashLiteral.patternFlag("/abc/gim", slash), is(Pattern.CASE_INSENSITIVE | Pattern.MULTILINE));
+        assertFalse(SlashLiteral.hasOptionG("/abc/i", SlashLiteral.closingSlash("/abc/i")));
+        assertTrue(SlashLiteral.hasOptionN("/abc/gn", SlashLiteral.closingSlash("/abc/gn")));
+        assertFalse(SlashLiteral.hasOptionN("/abc/g", SlashLiteral.closingSlash("/abc/g")));
+    }
+
+    @Test
+    public void sameAsPatternTest() {
+        // 以前の正規表現による判定と同じ結果になることを、ランダムな文字列で確認する
+        char[] chars = { '/', 'a', 'g', 'i', 'm', 's', 'u', 'd', 'x', 'l', 'z', '\n', '\r', '\\', ' ' };
+        Random random = new Random(0);
+        for (int n = 0; n < 100000; n++) {
+            int len = random.nextInt(8);
+            StringBuilder sb = new StringBuilder();
+            if (random.nextBoolean()) {
+                sb.append('/');
+            }
+            for (int i = 0; i < len; i++) {
+                sb.append(chars[random.nextInt(chars.length)]);
+            }
+            String s = sb.toString();
+
+            Matcher m = SLASH_PATTERN.matcher(s);
+            int slash = SlashLiteral.closingSlash(s);
+            if (m.find()) {
+                assertThat(s, slash, is(m.end(1)));
+                String options = m.group(2);
+                assertThat(s, SlashLiteral.hasOptionG(s, slash), is(options.contains("g")));
+                assertThat(s, SlashLiteral.patternFlag(s, slash),
+                        is(Option.computePatternFlag(Option.optionsFrom(options))));
+            } else {
+                assertThat(s, slash, is(-1));
+            }
+        }
+    }
+}
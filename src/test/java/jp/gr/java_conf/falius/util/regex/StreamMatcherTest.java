@@ -0,0 +1,146 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class StreamMatcherTest {
+
+    // 一度に少しずつしか読み込めないReader
+    private static class ChunkedReader extends Reader {
+        private final String mSource;
+        private final Random mRandom;
+        private int mPos = 0;
+
+        ChunkedReader(String source, long seed) {
+            mSource = source;
+            mRandom = new Random(seed);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (mPos >= mSource.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, 1 + mRandom.nextInt(7)), mSource.length() - mPos);
+            mSource.getChars(mPos, mPos + n, cbuf, off);
+            mPos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void sameAsStringTest() {
+        // 入力を細かく区切って読み込んでも、文字列全体にマッチさせた結果と同じになる
+        String[] regexes = { "/ERROR (\\w+)/", "/a+/", "/x*/", "/^line\\d+$/m", "/(?<=a)b/", "/\\bab\\b/",
+                "/^ab/", "/ab$/", "/a.*?b/s", "/(a)|(b)/" };
+        char[] chars = { 'a', 'b', 'x', ' ', '\n', 'E', 'R', 'O', '1' };
+        Random random = new Random(1);
+        for (int n = 0; n < 300; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0, len = random.nextInt(300); i < len; i++) {
+                if (random.nextInt(20) == 0) {
+                    sb.append(random.nextBoolean() ? "ERROR code" : "line1");
+                } else {
+                    sb.append(chars[random.nextInt(chars.length)]);
+                }
+            }
+            String text = sb.toString();
+            for (String regex : regexes) {
+                CompiledRegex compiled = CompiledRegex.compile(regex);
+                List<String> expected = new ArrayList<>();
+                Matcher m = compiled.getPattern().matcher(text);
+                while (m.find()) {
+                    expected.add(describe(m.start(), m.end(), m.group(), m.groupCount() > 0 ? m.group(1) : null));
+                }
+
+                List<String> actual = compiled.matchStream(new ChunkedReader(text, n)).stream()
+                        .map(data -> describe(data.start(), data.end(), data.group(),
+                                data.groupCount() > 0 ? data.group(1) : null))
+                        .collect(Collectors.toList());
+                assertThat(regex + " : " + text, actual, is(expected));
+            }
+        }
+    }
+
+    private String describe(long start, long end, String group, String group1) {
+        return start + "-" + end + ":" + group + ":" + group1;
+    }
+
+    @Test
+    public void maxMatchLengthTest() {
+        // 最大長を超えるマッチ箇所があっても、入力全体を保持することなく最後まで読み進める
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        StreamMatcher matcher = CompiledRegex.compile("/a+/").matchStream(new StringReader(new String(chars)), 100);
+        assertThat(matcher.getMaxMatchLength(), is(100));
+
+        long expectedStart = 0;
+        while (matcher.hasNext()) {
+            PartData data = matcher.next();
+            assertThat(data.start(), is(expectedStart));
+            assertThat((long) data.group().length(), is(data.end() - data.start()));
+            expectedStart = data.end();
+        }
+        assertThat(expectedStart, is(100000L));
+    }
+
+    @Test
+    public void pathAndChannelTest() throws IOException {
+        String text = "INFO start\nERROR disk\nINFO retry\nERROR ネットワーク\n";
+        Path file = Files.createTempFile("stream-matcher", ".log");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            CompiledRegex error = CompiledRegex.compile("/ERROR (\\S+)/");
+
+            try (StreamMatcher matcher = error.matchStream(file, StandardCharsets.UTF_8)) {
+                assertThat(matcher.next().group(1), is("disk"));
+                PartData data = matcher.next();
+                assertThat(data.group(1), is("ネットワーク"));
+                assertThat(data.start(1), is((long) text.indexOf("ネットワーク")));
+                assertFalse(matcher.hasNext());
+            }
+
+            try (StreamMatcher matcher = error.matchStream(
+                    Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+                    StandardCharsets.UTF_8)) {
+                assertThat(matcher.stream().map(data -> data.group(1)).collect(Collectors.toList()),
+                        is(Arrays.asList("disk", "ネットワーク")));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathArgumentTest() throws IOException {
+        // ファイルを開く前に引数を確かめるので、存在しないファイルでもIllegalArgumentExceptionになる
+        CompiledRegex.compile("/a/").matchStream(Paths.get("no-such-file.log"), StandardCharsets.UTF_8, 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void channelCharsetTest() {
+        CompiledRegex.compile("/a/").matchStream(Channels.newChannel(new ByteArrayInputStream(new byte[0])), null);
+    }
+}
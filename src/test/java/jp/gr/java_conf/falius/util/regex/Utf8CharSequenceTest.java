@@ -0,0 +1,67 @@
+package jp.gr.java_conf.falius.util.regex;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Utf8CharSequenceTest {
+
+    @Test
+    public void asciiTest() {
+        CharSequence seq = Utf8CharSequence.of(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+        assertThat(seq, is(instanceOf(ByteCharSequence.class)));
+        assertThat(seq.toString(), is("abc"));
+        assertThat(seq.subSequence(1, 3).toString(), is("bc"));
+    }
+
+    @Test
+    public void sameAsStringTest() {
+        String[] pieces = { "a", "é", "日本", "😀", "\n", "z" };
+        Random random = new Random(0);
+        for (int n = 0; n < 200; n++) {
+            StringBuilder sb = new StringBuilder("é");
+            int len = random.nextInt(1000);
+            for (int i = 0; i < len; i++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String str = sb.toString();
+            Utf8CharSequence seq = (Utf8CharSequence) Utf8CharSequence.of(
+                    ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(seq.length(), is(str.length()));
+            assertThat(seq.toString(), is(str));
+            // 前後に飛びながら参照しても同じ文字を返す
+            for (int i = 0; i < 100; i++) {
+                int index = random.nextInt(str.length());
+                assertThat(seq.charAt(index), is(str.charAt(index)));
+                if (!Character.isLowSurrogate(str.charAt(index))) {
+                    int bytes = str.substring(0, index).getBytes(StandardCharsets.UTF_8).length;
+                    assertThat(seq.byteOffset(index), is(bytes));
+                    assertThat(seq.charIndex(bytes), is(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void alignTest() {
+        byte[] bytes = "é日😀".getBytes(StandardCharsets.UTF_8); // 2 + 3 + 4バイト
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, 6); // 先頭がéの途中、末尾が😀の途中
+        Utf8CharSequence.align(buffer, true, true);
+        assertThat(buffer.position(), is(2));
+        assertThat(buffer.limit(), is(5));
+        assertThat(Utf8CharSequence.of(buffer).toString(), is("日"));
+    }
+
+    @Test
+    public void malformedTest() {
+        byte[] bytes = { 'a', (byte) 0xe6, 'b', (byte) 0xff };
+        CharSequence seq = Utf8CharSequence.of(ByteBuffer.wrap(bytes));
+        assertThat(seq.toString(), is("a�b�"));
+    }
+}